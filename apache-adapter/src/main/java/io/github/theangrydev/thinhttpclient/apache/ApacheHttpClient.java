@@ -19,55 +19,367 @@ package io.github.theangrydev.thinhttpclient.apache;
 
 import io.github.theangrydev.thinhttpclient.api.*;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
 import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URL;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
-import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
 import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.api.StreamingResponse.streamingResponse;
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Arrays.stream;
-import static java.util.stream.Collectors.toList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @SuppressWarnings("PMD") //TODO: fix
 public class ApacheHttpClient implements HttpClient {
 
     private final CloseableHttpClient httpClient;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final HttpClientConfiguration configuration;
+    private final Compression compression;
 
-    private ApacheHttpClient(CloseableHttpClient httpClient) {
+    // The async client runs its own I/O reactor threads, so it is only started if it is actually used
+    private volatile CloseableHttpAsyncClient httpAsyncClient;
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+
+    // Apache has no timeout for a whole call, so calls that run out of time are aborted from here, once one needs to be
+    private volatile ScheduledExecutorService timeoutScheduler;
+
+    private ApacheHttpClient(CloseableHttpClient httpClient, PoolingHttpClientConnectionManager connectionManager, HttpClientConfiguration configuration) {
         this.httpClient = httpClient;
+        this.connectionManager = connectionManager;
+        this.configuration = configuration;
+        this.compression = Compression.compression(configuration);
     }
 
     public static ApacheHttpClient apacheHttpClient() {
-        return new ApacheHttpClient(HttpClientBuilder.create().build());
+        return apacheHttpClient(HttpClientConfiguration.defaults());
+    }
+
+    /**
+     * The per request connect and read timeouts are set in the {@link RequestConfig} of each request, capped at the time
+     * left for the call. Apache has no timeout for the call as a whole, so a call that runs out of time is aborted by a
+     * timer instead. For a streaming response, the timer is stopped once the response head arrives.
+     *
+     * @param configuration The connection pooling and transport settings to use.
+     * @return A {@link HttpClient} backed by Apache HttpClient, with a pooling connection manager configured from the
+     * given configuration.
+     */
+    public static ApacheHttpClient apacheHttpClient(HttpClientConfiguration configuration) {
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", CallTimer.plainSocketFactory())
+                .register("https", CallTimer.sslSocketFactory())
+                .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(CallTimer.connectionOperator(socketFactories), null, -1, MILLISECONDS);
+        connectionManager.setMaxTotal(configuration.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(configuration.maxConnectionsPerHost);
+        connectionManager.setValidateAfterInactivity(millis(configuration.validateAfterInactivity));
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+                .setTcpNoDelay(configuration.tcpNoDelay)
+                .setSndBufSize(configuration.sendBufferSize)
+                .setRcvBufSize(configuration.receiveBufferSize)
+                .setSoTimeout(millis(configuration.readTimeout))
+                .build());
+        CloseableHttpClient httpClient = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setRequestExecutor(CallTimer.requestExecutor())
+                .setDefaultRequestConfig(requestConfig(configuration))
+                .setKeepAliveStrategy(keepAliveStrategy(configuration))
+                .evictIdleConnections(configuration.keepAlive.toMillis(), MILLISECONDS)
+                // Compression is applied by the adapter, so that the async client behaves the same way
+                .disableContentCompression()
+                .build();
+        return new ApacheHttpClient(httpClient, connectionManager, configuration);
     }
 
     @Override
     public Response execute(Request request) throws IOException {
-        HttpUriRequest apacheRequest = adaptRequest(request);
-        try (CloseableHttpResponse apacheResponse = httpClient.execute(apacheRequest)) {
-            return adaptResponse(apacheResponse);
+        CallTimeout callTimeout = CallTimeout.start(request);
+        HttpUriRequest apacheRequest = adaptRequest(request, callTimeout);
+        HttpClientContext context = HttpClientContext.create();
+        CallTimer timer = CallTimer.blocking(context);
+        Optional<ScheduledFuture<?>> abort = whenOutOfTime(callTimeout, apacheRequest::abort);
+        try (CloseableHttpResponse apacheResponse = httpClient.execute(apacheRequest, context)) {
+            return adaptResponse(apacheResponse, timer);
+        } catch (IOException exception) {
+            throw callTimeout.exceeded(exception);
+        } finally {
+            abort.ifPresent(scheduled -> scheduled.cancel(false));
+        }
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(request);
+        HttpUriRequest apacheRequest = adaptRequest(request, callTimeout);
+        Optional<ScheduledFuture<?>> abort = whenOutOfTime(callTimeout, apacheRequest::abort);
+        CloseableHttpResponse apacheResponse;
+        try {
+            apacheResponse = httpClient.execute(apacheRequest);
+        } catch (IOException exception) {
+            throw callTimeout.exceeded(exception);
+        } finally {
+            abort.ifPresent(scheduled -> scheduled.cancel(false));
+        }
+        try {
+            Headers headers = adaptHeaders(apacheResponse);
+            if (compression.decompresses(headers)) {
+                return streamingResponse(Compression.decompressedHeaders(headers), apacheResponse.getStatusLine().getStatusCode(), Compression.decompress(headers, adaptBodyStream(apacheResponse)));
+            }
+            return streamingResponse(headers, apacheResponse.getStatusLine().getStatusCode(), adaptBodyStream(apacheResponse));
+        } catch (IOException | RuntimeException exception) {
+            apacheResponse.close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        CallTimer timer = CallTimer.async();
+        CallTimeout callTimeout;
+        HttpUriRequest apacheRequest;
+        try {
+            callTimeout = CallTimeout.start(request);
+            apacheRequest = adaptRequest(request, callTimeout);
+        } catch (IOException exception) {
+            response.completeExceptionally(exception);
+            return response;
+        }
+        Future<HttpResponse> exchange = httpAsyncClient().execute(apacheRequest, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse apacheResponse) {
+                try {
+                    response.complete(adaptResponse(apacheResponse, timer));
+                } catch (IOException exception) {
+                    response.completeExceptionally(callTimeout.exceeded(exception));
+                }
+            }
+
+            @Override
+            public void failed(Exception exception) {
+                if (exception instanceof IOException) {
+                    response.completeExceptionally(callTimeout.exceeded((IOException) exception));
+                } else {
+                    response.completeExceptionally(exception);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                response.cancel(false);
+            }
+        });
+        Optional<ScheduledFuture<?>> abort = whenOutOfTime(callTimeout, () -> {
+            if (response.completeExceptionally(callTimeout.timedOut())) {
+                exchange.cancel(true);
+                apacheRequest.abort();
+            }
+        });
+        // Cancelling the future aborts the exchange, which releases its connection straight away
+        response.whenComplete((ignored, failure) -> {
+            abort.ifPresent(scheduled -> scheduled.cancel(false));
+            if (response.isCancelled()) {
+                exchange.cancel(true);
+                apacheRequest.abort();
+            }
+        });
+        return response;
+    }
+
+    private Optional<ScheduledFuture<?>> whenOutOfTime(CallTimeout callTimeout, Runnable abort) {
+        if (!callTimeout.isLimited()) {
+            return Optional.empty();
+        }
+        return Optional.of(timeoutScheduler().schedule(abort, callTimeout.remainingNanos(), NANOSECONDS));
+    }
+
+    private ScheduledExecutorService timeoutScheduler() {
+        ScheduledExecutorService scheduler = timeoutScheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                scheduler = timeoutScheduler;
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "apache-http-client-timeouts");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                    timeoutScheduler = scheduler;
+                }
+            }
         }
+        return scheduler;
+    }
+
+    /**
+     * @return The blocking and the async connection pools added together.
+     */
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+        int connections = stats.getLeased() + stats.getAvailable();
+        int idleConnections = stats.getAvailable();
+        int pendingRequests = stats.getPending();
+        PoolingNHttpClientConnectionManager asyncConnectionManager = this.asyncConnectionManager;
+        if (asyncConnectionManager != null) {
+            PoolStats asyncStats = asyncConnectionManager.getTotalStats();
+            connections += asyncStats.getLeased() + asyncStats.getAvailable();
+            idleConnections += asyncStats.getAvailable();
+            pendingRequests += asyncStats.getPending();
+        }
+        return Optional.of(ConnectionPoolStats.connectionPoolStats(connections, idleConnections, pendingRequests));
     }
 
     @Override
     public void close() throws IOException {
         httpClient.close();
+        synchronized (this) {
+            if (httpAsyncClient != null) {
+                httpAsyncClient.close();
+            }
+            if (timeoutScheduler != null) {
+                timeoutScheduler.shutdownNow();
+            }
+        }
+    }
+
+    private CloseableHttpAsyncClient httpAsyncClient() {
+        CloseableHttpAsyncClient client = httpAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpAsyncClient;
+                if (client == null) {
+                    PoolingNHttpClientConnectionManager connectionManager = createAsyncConnectionManager(configuration);
+                    client = createHttpAsyncClient(configuration, connectionManager);
+                    client.start();
+                    asyncConnectionManager = connectionManager;
+                    httpAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * The connection manager is made here, rather than by the builder, so that its pool can be monitored.
+     */
+    private static PoolingNHttpClientConnectionManager createAsyncConnectionManager(HttpClientConfiguration configuration) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setTcpNoDelay(configuration.tcpNoDelay)
+                .setSndBufSize(configuration.sendBufferSize)
+                .setRcvBufSize(configuration.receiveBufferSize)
+                .setConnectTimeout(millis(configuration.connectTimeout))
+                .setSoTimeout(millis(configuration.readTimeout))
+                .build();
+        PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        } catch (IOReactorException exception) {
+            // This is what the builder does when it makes the I/O reactor itself
+            throw new IllegalStateException(exception);
+        }
+        connectionManager.setMaxTotal(configuration.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(configuration.maxConnectionsPerHost);
+        return connectionManager;
     }
 
-    private HttpUriRequest adaptRequest(Request request) {
+    private static CloseableHttpAsyncClient createHttpAsyncClient(HttpClientConfiguration configuration, PoolingNHttpClientConnectionManager connectionManager) {
+        return HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(configuration))
+                .setKeepAliveStrategy(keepAliveStrategy(configuration))
+                .build();
+    }
+
+    private static RequestConfig requestConfig(HttpClientConfiguration configuration) {
+        return RequestConfig.custom()
+                .setConnectTimeout(millis(configuration.connectTimeout))
+                .setSocketTimeout(millis(configuration.readTimeout))
+                .build();
+    }
+
+    /**
+     * Use the keep-alive that the server asks for, but never keep a connection for longer than the configured keep-alive.
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(HttpClientConfiguration configuration) {
+        long keepAlive = configuration.keepAlive.toMillis();
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            if (serverKeepAlive > 0) {
+                return Math.min(serverKeepAlive, keepAlive);
+            }
+            return keepAlive;
+        };
+    }
+
+    private static int millis(Duration duration) {
+        return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
+    }
+
+    private HttpUriRequest adaptRequest(Request request, CallTimeout callTimeout) throws IOException {
+        Request compressedRequest = compression.compress(request);
+        HttpRequestBase apacheRequest = adaptRequestLine(compressedRequest);
+        for (Header header : compressedRequest.headers) {
+            apacheRequest.addHeader(header.name, header.value);
+        }
+        if (request.connectTimeout.isPresent() || request.readTimeout.isPresent() || callTimeout.isLimited()) {
+            apacheRequest.setConfig(requestConfig(request, callTimeout));
+        }
+        return apacheRequest;
+    }
+
+    private RequestConfig requestConfig(Request request, CallTimeout callTimeout) {
+        return RequestConfig.custom()
+                .setConnectTimeout(millis(callTimeout.cap(request.connectTimeout.orElse(configuration.connectTimeout))))
+                .setSocketTimeout(millis(callTimeout.cap(request.readTimeout.orElse(configuration.readTimeout))))
+                .setConnectionRequestTimeout(millis(callTimeout.cap(Duration.ZERO)))
+                .build();
+    }
+
+    private HttpRequestBase adaptRequestLine(Request request) {
         if (request.method.hasBody) {
             String header = request.header(CONTENT_TYPE);
             return HttpRequestWithEntity.httpRequestWithEntity(request.url, request.method, request.body, header);
@@ -76,12 +388,25 @@ public class ApacheHttpClient implements HttpClient {
         }
     }
 
-    private Response adaptResponse(CloseableHttpResponse apacheResponse) throws IOException {
+    private Response adaptResponse(HttpResponse apacheResponse, CallTimer timer) throws IOException {
         StatusLine statusLine = apacheResponse.getStatusLine();
-        return response(adaptHeaders(apacheResponse), statusLine.getStatusCode(), adaptBody(apacheResponse));
+        Headers headers = adaptHeaders(apacheResponse);
+        HttpEntity entity = apacheResponse.getEntity();
+        if (entity != null && compression.decompresses(headers)) {
+            apacheResponse.setEntity(new InputStreamEntity(Compression.decompress(headers, entity.getContent()), ContentType.get(entity)));
+            headers = Compression.decompressedHeaders(headers);
+        }
+        long bodyStart = System.nanoTime();
+        String body = adaptBody(apacheResponse);
+        timer.bodyRead(System.nanoTime() - bodyStart);
+        return response(adaptProtocol(statusLine.getProtocolVersion()), headers, statusLine.getStatusCode(), body, timer.timings());
     }
 
-    private String adaptBody(CloseableHttpResponse apacheResponse) throws IOException {
+    private Protocol adaptProtocol(ProtocolVersion protocolVersion) {
+        return Protocol.protocol(protocolVersion.getProtocol() + '/' + protocolVersion.getMajor() + '.' + protocolVersion.getMinor());
+    }
+
+    private String adaptBody(HttpResponse apacheResponse) throws IOException {
         HttpEntity entity = apacheResponse.getEntity();
         if (entity == null) {
             return "";
@@ -90,19 +415,122 @@ public class ApacheHttpClient implements HttpClient {
         }
     }
 
-    private Headers adaptHeaders(CloseableHttpResponse apacheResponse) {
-        return headers(stream(apacheResponse.getAllHeaders()).map(this::adaptHeader).collect(toList()));
+    private InputStream adaptBodyStream(CloseableHttpResponse apacheResponse) throws IOException {
+        HttpEntity entity = apacheResponse.getEntity();
+        if (entity == null) {
+            apacheResponse.close();
+            return new ByteArrayInputStream(new byte[0]);
+        } else {
+            return new ConnectionReleasingInputStream(entity.getContent(), apacheResponse);
+        }
     }
 
-    private Header adaptHeader(org.apache.http.Header header) {
-        return Header.header(header.getName(), adaptHeaderValue(header.getValue()));
+    private Headers adaptHeaders(HttpResponse apacheResponse) {
+        return Headers.view(new ApacheHeaderFields(apacheResponse.getAllHeaders()));
     }
 
-    private String adaptHeaderValue(String value) {
-        if (value == null) {
-            return "";
-        } else {
-            return value;
+    private static final class ApacheHeaderFields implements Headers.Fields {
+        private final org.apache.http.Header[] headers;
+
+        @SuppressWarnings("PMD.ArrayIsStoredDirectly") // The array is a copy that Apache made for this response
+        ApacheHeaderFields(org.apache.http.Header[] headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public int size() {
+            return headers.length;
+        }
+
+        @Override
+        public String name(int field) {
+            return headers[field].getName();
+        }
+
+        @Override
+        public String value(int field) {
+            String value = headers[field].getValue();
+            if (value == null) {
+                return "";
+            } else {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Closing the entity content releases the connection back to the pool, but only after reading the rest of the
+     * body. If the body was not read to the end, it is cheaper to close the connection than to drain it.
+     */
+    private static final class ConnectionReleasingInputStream extends FilterInputStream {
+        private final CloseableHttpResponse apacheResponse;
+        private boolean endOfStream;
+
+        ConnectionReleasingInputStream(InputStream content, CloseableHttpResponse apacheResponse) {
+            super(content);
+            this.apacheResponse = apacheResponse;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            endOfStream = read == -1;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            endOfStream = read == -1;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (endOfStream) {
+                    super.close();
+                }
+            } finally {
+                apacheResponse.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the {@link Body} straight to the connection, rather than copying it into an intermediate entity.
+     */
+    private static final class BodyEntity extends AbstractHttpEntity {
+        private final Body body;
+
+        BodyEntity(Body body, String contentType) {
+            this.body = body;
+            setContentType(contentType);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return body.inputStream();
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            body.writeTo(outputStream);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
         }
     }
 
@@ -113,9 +541,9 @@ public class ApacheHttpClient implements HttpClient {
             this.method = method;
         }
 
-        static HttpRequestWithoutEntity httpRequestWithoutEntity(URL url, Method method) {
+        static HttpRequestWithoutEntity httpRequestWithoutEntity(Url url, Method method) {
             HttpRequestWithoutEntity httpRequest = new HttpRequestWithoutEntity(method);
-            httpRequest.setURI(URI.create(url.toExternalForm()));
+            httpRequest.setURI(url.toUri());
             return httpRequest;
         }
 
@@ -132,11 +560,11 @@ public class ApacheHttpClient implements HttpClient {
             this.method = method;
         }
 
-        static HttpRequestWithEntity httpRequestWithEntity(URL url, Method method, String body, String contentType) {
+        static HttpRequestWithEntity httpRequestWithEntity(Url url, Method method, Body body, String contentType) {
             HttpRequestWithEntity httpRequest = new HttpRequestWithEntity(method);
-            httpRequest.setURI(URI.create(url.toExternalForm()));
+            httpRequest.setURI(url.toUri());
             if (!body.isEmpty()) {
-                httpRequest.setEntity(new StringEntity(body, ContentType.parse(contentType)));
+                httpRequest.setEntity(new BodyEntity(body, contentType));
             }
             return httpRequest;
         }
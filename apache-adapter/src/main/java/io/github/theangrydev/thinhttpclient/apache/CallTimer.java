@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.apache;
+
+import io.github.theangrydev.thinhttpclient.api.Timings;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.Lookup;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.HttpClientConnectionOperator;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.DefaultHttpClientConnectionOperator;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.ssl.SSLContexts;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Collects the {@link Timings} of one call. Apache HttpClient has no event listener, so the blocking client is given
+ * a connection operator, socket factories and a request executor that find the timer in the {@link HttpContext} of
+ * the call and add to it.
+ * <p>
+ * The async client runs its exchanges on I/O reactor threads that none of these hooks reach, so only the total time
+ * of an async call is measured.
+ */
+final class CallTimer {
+    private static final String ATTRIBUTE = CallTimer.class.getName();
+
+    private final long start = System.nanoTime();
+    private final boolean blocking;
+    private boolean opened;
+    private boolean handshaken;
+    private boolean received;
+    private boolean read;
+    private long dns;
+    private long connect;
+    private long tls;
+    private long socket;
+    private long timeToFirstByte;
+    private long body;
+
+    private CallTimer(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    static CallTimer blocking(HttpContext context) {
+        CallTimer timer = new CallTimer(true);
+        context.setAttribute(ATTRIBUTE, timer);
+        return timer;
+    }
+
+    static CallTimer async() {
+        return new CallTimer(false);
+    }
+
+    /**
+     * @param socketFactories The socket factories to use for each scheme.
+     * @return A connection operator that times opening connections, including resolving the host name.
+     */
+    static HttpClientConnectionOperator connectionOperator(Lookup<ConnectionSocketFactory> socketFactories) {
+        return new TimingConnectionOperator(new DefaultHttpClientConnectionOperator(socketFactories, null, null));
+    }
+
+    /**
+     * @return The same plain socket factory that Apache uses by default, timing the TCP connection.
+     */
+    static ConnectionSocketFactory plainSocketFactory() {
+        return new TimingPlainSocketFactory();
+    }
+
+    /**
+     * @return The same TLS socket factory that Apache uses by default, timing the TCP connection and the handshake.
+     */
+    static ConnectionSocketFactory sslSocketFactory() {
+        return new TimingSslSocketFactory();
+    }
+
+    static HttpRequestExecutor requestExecutor() {
+        return new TimingRequestExecutor();
+    }
+
+    void bodyRead(long nanos) {
+        read = true;
+        body += nanos;
+    }
+
+    Timings timings() {
+        Timings.TimingsBuilder timings = Timings.builder().totalNanos(System.nanoTime() - start);
+        if (!blocking) {
+            return timings.build();
+        }
+        timings.connectionReused(!opened);
+        if (opened) {
+            timings.dnsNanos(dns).connectNanos(connect);
+        }
+        if (handshaken) {
+            timings.tlsNanos(tls);
+        }
+        if (received) {
+            timings.timeToFirstByteNanos(timeToFirstByte);
+        }
+        if (read) {
+            timings.bodyNanos(body);
+        }
+        return timings.build();
+    }
+
+    private static CallTimer of(HttpContext context) {
+        Object timer = context.getAttribute(ATTRIBUTE);
+        return timer instanceof CallTimer ? (CallTimer) timer : null;
+    }
+
+    /**
+     * The host name is resolved by {@link #connect}, before it calls the socket factory, so whatever time is not spent
+     * in the socket factory is spent resolving it.
+     */
+    private static final class TimingConnectionOperator implements HttpClientConnectionOperator {
+        private final HttpClientConnectionOperator delegate;
+
+        TimingConnectionOperator(HttpClientConnectionOperator delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void connect(ManagedHttpClientConnection connection, HttpHost host, InetSocketAddress localAddress, int connectTimeout, SocketConfig socketConfig, HttpContext context) throws IOException {
+            CallTimer timer = of(context);
+            if (timer == null) {
+                delegate.connect(connection, host, localAddress, connectTimeout, socketConfig, context);
+                return;
+            }
+            long start = System.nanoTime();
+            long socketBefore = timer.socket;
+            try {
+                delegate.connect(connection, host, localAddress, connectTimeout, socketConfig, context);
+            } finally {
+                timer.opened = true;
+                timer.dns += System.nanoTime() - start - (timer.socket - socketBefore);
+            }
+        }
+
+        @Override
+        public void upgrade(ManagedHttpClientConnection connection, HttpHost host, HttpContext context) throws IOException {
+            delegate.upgrade(connection, host, context);
+        }
+    }
+
+    private static final class TimingPlainSocketFactory implements ConnectionSocketFactory {
+        private final ConnectionSocketFactory delegate = PlainConnectionSocketFactory.getSocketFactory();
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return delegate.createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                CallTimer timer = of(context);
+                if (timer != null) {
+                    long elapsed = System.nanoTime() - start;
+                    timer.connect += elapsed;
+                    timer.socket += elapsed;
+                }
+            }
+        }
+    }
+
+    /**
+     * The TCP connection is made by {@link #connectSocket}, which then calls {@link #createLayeredSocket} for the
+     * handshake, so timing both tells the two apart. Tunnelling through a proxy calls {@link #createLayeredSocket}
+     * on its own.
+     */
+    private static final class TimingSslSocketFactory extends SSLConnectionSocketFactory {
+
+        TimingSslSocketFactory() {
+            super(SSLContexts.createDefault(), getDefaultHostnameVerifier());
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
+            CallTimer timer = of(context);
+            if (timer == null) {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            }
+            long start = System.nanoTime();
+            long tlsBefore = timer.tls;
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                timer.connect += elapsed - (timer.tls - tlsBefore);
+                timer.socket += elapsed;
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.createLayeredSocket(socket, target, port, context);
+            } finally {
+                CallTimer timer = of(context);
+                if (timer != null) {
+                    timer.handshaken = true;
+                    timer.tls += System.nanoTime() - start;
+                }
+            }
+        }
+    }
+
+    /**
+     * Receiving the response starts once the request has been sent and finishes once the response head has been
+     * read, leaving the body on the connection.
+     */
+    private static final class TimingRequestExecutor extends HttpRequestExecutor {
+
+        @Override
+        protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection connection, HttpContext context) throws HttpException, IOException {
+            long start = System.nanoTime();
+            try {
+                return super.doReceiveResponse(request, connection, context);
+            } finally {
+                CallTimer timer = of(context);
+                if (timer != null) {
+                    timer.received = true;
+                    timer.timeToFirstByte += System.nanoTime() - start;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static java.lang.String.format;
+
+/**
+ * Runs a batch of requests through {@link HttpClient#executeAsync(Request)}, starting a new one whenever one finishes,
+ * so that no more than a fixed number are outstanding in total and for each host.
+ * <p>
+ * Hosts take turns to start their next request, so a host with a long queue does not hold up the others. Requests are
+ * started from whichever thread is free to do so, without recursing: when a response completes on the thread that
+ * started it, which is what happens when {@link HttpClient#executeAsync(Request)} blocks, the next request is started
+ * by the loop that is already running rather than from inside the callback.
+ */
+final class BatchExecution {
+    private final HttpClient httpClient;
+    private final List<Request> requests;
+    private final List<CompletableFuture<Response>> responses;
+    private final int concurrency;
+    private final int concurrencyPerHost;
+
+    // The following are guarded by this
+    private final Map<String, ArrayDeque<Integer>> queuedByHost = new LinkedHashMap<>();
+    private final Map<String, Integer> outstandingByHost = new HashMap<>();
+    private final ArrayDeque<String> readyHosts = new ArrayDeque<>();
+    private final Set<String> readyHostSet = new HashSet<>();
+    private int outstanding;
+    private boolean starting;
+    private boolean startAgain;
+
+    private BatchExecution(HttpClient httpClient, List<Request> requests, int concurrency, int concurrencyPerHost) {
+        this.httpClient = httpClient;
+        this.requests = requests;
+        this.concurrency = concurrency;
+        this.concurrencyPerHost = concurrencyPerHost;
+        this.responses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            responses.add(new CompletableFuture<>());
+            queuedByHost.computeIfAbsent(host(requests.get(i)), host -> new ArrayDeque<>()).add(i);
+        }
+        for (String host : queuedByHost.keySet()) {
+            markReady(host);
+        }
+    }
+
+    static List<CompletableFuture<Response>> executeAll(HttpClient httpClient, List<Request> requests, int concurrency, int concurrencyPerHost) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException(format("concurrency must be positive but was %d", concurrency));
+        }
+        if (concurrencyPerHost <= 0) {
+            throw new IllegalArgumentException(format("concurrencyPerHost must be positive but was %d", concurrencyPerHost));
+        }
+        BatchExecution batchExecution = new BatchExecution(httpClient, new ArrayList<>(requests), concurrency, concurrencyPerHost);
+        batchExecution.startRequests();
+        return batchExecution.responses;
+    }
+
+    private void startRequests() {
+        synchronized (this) {
+            if (starting) {
+                startAgain = true;
+                return;
+            }
+            starting = true;
+        }
+        while (true) {
+            List<Integer> startable;
+            synchronized (this) {
+                startable = takeStartable();
+                if (startable.isEmpty()) {
+                    if (!startAgain) {
+                        starting = false;
+                        return;
+                    }
+                    startAgain = false;
+                    continue;
+                }
+            }
+            startable.forEach(this::start);
+        }
+    }
+
+    private List<Integer> takeStartable() {
+        List<Integer> startable = new ArrayList<>();
+        while (outstanding < concurrency && !readyHosts.isEmpty()) {
+            String host = readyHosts.removeFirst();
+            readyHostSet.remove(host);
+            ArrayDeque<Integer> queued = queuedByHost.get(host);
+            startable.add(queued.removeFirst());
+            outstanding++;
+            int outstandingForHost = outstandingByHost.merge(host, 1, Integer::sum);
+            if (!queued.isEmpty() && outstandingForHost < concurrencyPerHost) {
+                markReady(host);
+            }
+        }
+        return startable;
+    }
+
+    private void start(int index) {
+        Request request = requests.get(index);
+        CompletableFuture<Response> response;
+        try {
+            response = httpClient.executeAsync(request);
+        } catch (RuntimeException exception) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(exception);
+        }
+        response.whenComplete((result, failure) -> {
+            finished(host(request));
+            if (failure == null) {
+                responses.get(index).complete(result);
+            } else {
+                responses.get(index).completeExceptionally(failure);
+            }
+        });
+    }
+
+    private void finished(String host) {
+        synchronized (this) {
+            outstanding--;
+            outstandingByHost.merge(host, -1, Integer::sum);
+            if (!queuedByHost.get(host).isEmpty()) {
+                markReady(host);
+            }
+        }
+        startRequests();
+    }
+
+    private void markReady(String host) {
+        if (readyHostSet.add(host)) {
+            readyHosts.addLast(host);
+        }
+    }
+
+    private static String host(Request request) {
+        return request.url.host + ':' + request.url.effectivePort();
+    }
+}
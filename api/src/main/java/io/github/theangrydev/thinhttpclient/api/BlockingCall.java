@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Waits for a call that runs on another thread, for the blocking methods of a {@link HttpClient} that are built on an
+ * asynchronous one, and reports how the wait ended the way a blocking call would.
+ * <p>
+ * A call that is given up on, because the thread was interrupted or it ran out of time, is cancelled. Callers that
+ * share a call with others should wait on a copy of it.
+ */
+public final class BlockingCall {
+
+    private BlockingCall() {
+    }
+
+    /**
+     * @param request The request that is being executed.
+     * @param call The call that will complete with its outcome.
+     * @param <T> The type of the outcome.
+     * @return The outcome of the call.
+     * @throws InterruptedIOException If the thread was interrupted while waiting.
+     * @throws IOException If the call failed with one, or with a checked exception.
+     */
+    public static <T> T await(Request request, Future<T> call) throws IOException {
+        try {
+            return call.get();
+        } catch (InterruptedException exception) {
+            call.cancel(true);
+            throw interrupted(request, exception);
+        } catch (ExecutionException exception) {
+            throw unwrap(exception);
+        }
+    }
+
+    /**
+     * @param request The request that is being executed.
+     * @param call The call that will complete with its outcome.
+     * @param callTimeout How long the call has left to finish in.
+     * @param <T> The type of the outcome.
+     * @return The outcome of the call.
+     * @throws RequestTimeoutException If the call did not finish in time.
+     * @throws InterruptedIOException If the thread was interrupted while waiting.
+     * @throws IOException If the call failed with one, or with a checked exception.
+     */
+    public static <T> T await(Request request, Future<T> call, CallTimeout callTimeout) throws IOException {
+        if (!callTimeout.isLimited()) {
+            return await(request, call);
+        }
+        try {
+            return call.get(callTimeout.remainingNanos(), NANOSECONDS);
+        } catch (TimeoutException exception) {
+            call.cancel(true);
+            throw callTimeout.timedOut();
+        } catch (InterruptedException exception) {
+            call.cancel(true);
+            throw interrupted(request, exception);
+        } catch (ExecutionException exception) {
+            throw unwrap(exception);
+        }
+    }
+
+    /**
+     * Restores the interrupt status of the thread, so that whatever it does next still knows it was interrupted.
+     *
+     * @param request The request that was being executed.
+     * @param exception How the thread was interrupted.
+     * @return An {@link InterruptedIOException} to throw instead.
+     */
+    public static InterruptedIOException interrupted(Request request, InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException interruptedIOException = new InterruptedIOException(format("Interrupted while executing %s", request));
+        interruptedIOException.initCause(exception);
+        return interruptedIOException;
+    }
+
+    /**
+     * @param exception How a call failed.
+     * @return The {@link IOException} that the call failed with, or one caused by the checked exception that it
+     * failed with.
+     * @throws RuntimeException If the call failed with one, which is rethrown as it is.
+     * @throws Error If the call failed with one, which is rethrown as it is.
+     */
+    public static IOException unwrap(ExecutionException exception) {
+        Throwable cause = exception.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The HTTP message-body of a {@link Request}, as bytes that are ready to be written to the connection.
+ * <p>
+ * None of the bodies copy their content, so byte arrays and buffers must not be modified after they are given to a
+ * {@link Body}, and file bodies are read from disk each time they are written.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
+ */
+public abstract class Body {
+
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+    private static final Body EMPTY = new BytesBody(new byte[0], "");
+
+    private Body() {
+    }
+
+    /**
+     * @return A {@link Body} with no content.
+     */
+    public static Body empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param text The text to send.
+     * @param charset The {@link Charset} to encode the text with. The encoding is done once, here.
+     * @return A {@link Body} with the encoded text as its content.
+     */
+    public static Body text(String text, Charset charset) {
+        return new BytesBody(text.getBytes(charset), text);
+    }
+
+    /**
+     * @param bytes The bytes to send. These are not copied.
+     * @return A {@link Body} with the given bytes as its content.
+     */
+    public static Body bytes(byte[] bytes) {
+        return new BytesBody(bytes, null);
+    }
+
+    /**
+     * @param buffer The bytes to send, from the buffer's position to its limit. The content is not copied, and the
+     *               position and limit of the given buffer are not changed.
+     * @return A {@link Body} with the remaining bytes in the buffer as its content.
+     */
+    public static Body byteBuffer(ByteBuffer buffer) {
+        return new ByteBufferBody(buffer.duplicate());
+    }
+
+    /**
+     * @param path The file to send. It is streamed from disk each time the body is written, so that large files are
+     *             sent in constant memory. For the same reason, it is never gzipped by {@link Compression}.
+     * @return A {@link Body} with the content of the file.
+     * @throws IllegalArgumentException If the size of the file could not be read.
+     */
+    public static Body file(Path path) {
+        try {
+            return new FileBody(path, Files.size(path));
+        } catch (IOException exception) {
+            throw new IllegalArgumentException(format("Could not read the size of '%s'", path), exception);
+        }
+    }
+
+    /**
+     * @return The number of bytes that will be written.
+     */
+    public abstract long contentLength();
+
+    public boolean isEmpty() {
+        return contentLength() == 0;
+    }
+
+    /**
+     * @return Whether the content is already held in memory, so that it can be copied without reading it from disk.
+     */
+    boolean isInMemory() {
+        return true;
+    }
+
+    /**
+     * Write the whole body to the given stream, without closing it.
+     *
+     * @param outputStream The stream to write to.
+     * @throws IOException If the body could not be written.
+     */
+    public abstract void writeTo(OutputStream outputStream) throws IOException;
+
+    /**
+     * Write the whole body to the given channel, without closing it. File bodies are transferred directly from the
+     * file to the channel, so may avoid being copied into the heap at all.
+     *
+     * @param channel The blocking channel to write to.
+     * @throws IOException If the body could not be written.
+     */
+    public abstract void writeTo(WritableByteChannel channel) throws IOException;
+
+    /**
+     * @return A new stream that reads the body from the beginning.
+     * @throws IOException If the body could not be opened.
+     */
+    public abstract InputStream inputStream() throws IOException;
+
+    private static final class BytesBody extends Body {
+        private final byte[] bytes;
+        private final String text;
+
+        @SuppressWarnings("PMD.ArrayIsStoredDirectly") // Copying would double the memory used by large bodies
+        BytesBody(byte[] bytes, String text) {
+            this.bytes = bytes;
+            this.text = text;
+        }
+
+        @Override
+        public long contentLength() {
+            return bytes.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(bytes);
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            writeFully(ByteBuffer.wrap(bytes), channel);
+        }
+
+        @Override
+        public InputStream inputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            BytesBody body = (BytesBody) other;
+            return Arrays.equals(bytes, body.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public String toString() {
+            if (text == null) {
+                return format("<%d bytes>", bytes.length);
+            }
+            return text;
+        }
+    }
+
+    private static final class ByteBufferBody extends Body {
+        private final ByteBuffer buffer;
+
+        ByteBufferBody(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            if (buffer.hasArray()) {
+                outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                ByteBuffer content = buffer.duplicate();
+                byte[] chunk = new byte[Math.min(COPY_BUFFER_SIZE, content.remaining())];
+                while (content.hasRemaining()) {
+                    int length = Math.min(chunk.length, content.remaining());
+                    content.get(chunk, 0, length);
+                    outputStream.write(chunk, 0, length);
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            writeFully(buffer.duplicate(), channel);
+        }
+
+        @Override
+        public InputStream inputStream() throws IOException {
+            if (buffer.hasArray()) {
+                return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            ByteBuffer content = buffer.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    if (content.hasRemaining()) {
+                        return content.get() & 0xFF;
+                    }
+                    return -1;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    if (!content.hasRemaining()) {
+                        return -1;
+                    }
+                    int read = Math.min(length, content.remaining());
+                    content.get(bytes, offset, read);
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            ByteBufferBody body = (ByteBufferBody) other;
+            return Objects.equals(buffer, body.buffer);
+        }
+
+        @Override
+        public int hashCode() {
+            return buffer.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return format("<%d bytes>", buffer.remaining());
+        }
+    }
+
+    private static final class FileBody extends Body {
+        private final Path path;
+        private final long size;
+
+        FileBody(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        boolean isInMemory() {
+            return false;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            writeTo(Channels.newChannel(outputStream));
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            try (FileChannel file = FileChannel.open(path, READ)) {
+                long position = 0;
+                while (position < size) {
+                    long transferred = file.transferTo(position, size - position, channel);
+                    if (transferred == 0 && position >= file.size()) {
+                        throw new IOException(format("'%s' is shorter than the %d bytes that were expected", path, size));
+                    }
+                    position += transferred;
+                }
+            }
+        }
+
+        @Override
+        public InputStream inputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+            FileBody body = (FileBody) other;
+            return Objects.equals(path, body.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return format("<%d bytes from %s>", size, path);
+        }
+    }
+
+    private static void writeFully(ByteBuffer content, WritableByteChannel channel) throws IOException {
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+}
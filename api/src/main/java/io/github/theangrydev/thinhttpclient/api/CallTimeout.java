@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static java.lang.String.format;
+
+/**
+ * The time that one call has to finish in, from when it is executed. Adapters start one for each call, hand the time
+ * that is left to their own call timeout mechanism and report running out of it as a {@link RequestTimeoutException}.
+ * <p>
+ * For a streaming response, the time covers at least the wait for the response head. Some adapters also limit
+ * reading the body with it.
+ *
+ * @see Request#timeout
+ * @see Request#deadline
+ */
+public final class CallTimeout {
+    private final Request request;
+    private final long timeoutNanos;
+    private final long start;
+
+    private CallTimeout(Request request, long timeoutNanos, long start) {
+        this.request = request;
+        this.timeoutNanos = timeoutNanos;
+        this.start = start;
+    }
+
+    /**
+     * @param request The request that is about to be executed.
+     * @return A {@link CallTimeout} that starts now and lasts until the earlier of the {@link Request#timeout} and the
+     * {@link Request#deadline}, or forever if neither is set.
+     * @throws RequestTimeoutException If the deadline has already passed, so the request should not be sent at all.
+     */
+    public static CallTimeout start(Request request) throws RequestTimeoutException {
+        long start = System.nanoTime();
+        long timeoutNanos = request.timeout.map(Duration::toNanos).orElse(Long.MAX_VALUE);
+        if (request.deadline.isPresent()) {
+            timeoutNanos = Math.min(timeoutNanos, request.deadline.get().remainingNanos());
+        }
+        CallTimeout callTimeout = new CallTimeout(request, timeoutNanos, start);
+        if (timeoutNanos <= 0) {
+            throw callTimeout.timedOut();
+        }
+        return callTimeout;
+    }
+
+    /**
+     * @return True if the call has a limited amount of time.
+     */
+    public boolean isLimited() {
+        return timeoutNanos != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The time left in nanoseconds, which is zero or negative once it has run out, or {@link Long#MAX_VALUE}
+     * if the call is not limited.
+     */
+    public long remainingNanos() {
+        if (!isLimited()) {
+            return Long.MAX_VALUE;
+        }
+        return timeoutNanos - (System.nanoTime() - start);
+    }
+
+    /**
+     * @param timeout A connect or read timeout, where {@link Duration#ZERO} means to wait forever.
+     * @return The shorter of the timeout and the time left, rounded up to a whole millisecond, as most socket
+     * timeouts are, or the timeout itself if the call is not limited.
+     */
+    public Duration cap(Duration timeout) {
+        if (!isLimited()) {
+            return timeout;
+        }
+        Duration remaining = Duration.ofMillis(Math.max(1, (remainingNanos() + 999_999) / 1_000_000));
+        if (timeout.isZero() || remaining.compareTo(timeout) < 0) {
+            return remaining;
+        }
+        return timeout;
+    }
+
+    /**
+     * @return A {@link RequestTimeoutException} saying that the call ran out of time.
+     */
+    public RequestTimeoutException timedOut() {
+        return new RequestTimeoutException(message());
+    }
+
+    /**
+     * @param cause Why the call failed.
+     * @return A {@link RequestTimeoutException} caused by the failure if the call has run out of time, since the
+     * failure is then most likely the adapter giving up, or else the failure itself.
+     */
+    public IOException exceeded(IOException cause) {
+        if (cause instanceof RequestTimeoutException || remainingNanos() > 0) {
+            return cause;
+        }
+        return new RequestTimeoutException(message(), cause);
+    }
+
+    private String message() {
+        return format("%s %s did not complete within %dms", request.method, request.url, Math.max(0, timeoutNanos) / 1_000_000);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_LENGTH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.RANGE;
+
+/**
+ * The compression policy of a {@link HttpClientConfiguration}, applied the same way by every adapter: requests ask for
+ * {@link #ACCEPTED_CODINGS} and large request bodies are gzipped, and compressed response bodies are decompressed as
+ * they are read, so that a streamed response never has to be held in memory.
+ * <p>
+ * A request body is gzipped into memory before it is sent, so that its Content-Length is known. Only bodies that are
+ * already in memory are gzipped: a {@link Body#file file} body is sent as it is, so that it is still streamed from
+ * disk in constant memory however large it is.
+ * <p>
+ * A response is only decompressed if every content-coding it was sent with is one of {@link #ACCEPTED_CODINGS}. Once it
+ * has been, the Content-Encoding and Content-Length headers are removed, since they describe the bytes on the wire
+ * rather than the body that is returned.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7231#section-3.1.2.2">RFC 7231 HTTP/1.1 3.1.2.2 Content-Encoding</a>
+ * @see <a href="https://tools.ietf.org/html/rfc7230#section-4.2">RFC 7230 HTTP/1.1 4.2 Compression Codings</a>
+ */
+public final class Compression {
+
+    /**
+     * The content-codings that can be decompressed, in the form of an Accept-Encoding header value.
+     */
+    public static final String ACCEPTED_CODINGS = "gzip, deflate";
+
+    private static final String GZIP = "gzip";
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+
+    private final boolean decompressResponses;
+    private final int requestCompressionThreshold;
+
+    private Compression(boolean decompressResponses, int requestCompressionThreshold) {
+        this.decompressResponses = decompressResponses;
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * @param configuration The configuration to take the policy from.
+     * @return The {@link Compression} policy of the configuration.
+     */
+    public static Compression compression(HttpClientConfiguration configuration) {
+        return new Compression(configuration.decompressResponses, configuration.requestCompressionThreshold);
+    }
+
+    /**
+     * @return Whether compressed responses are asked for and decompressed.
+     */
+    public boolean decompressesResponses() {
+        return decompressResponses;
+    }
+
+    /**
+     * Ask for a compressed response, unless the request already says which codings it accepts or asks for a range,
+     * whose offsets would refer to the compressed bytes, and gzip the body if it is large enough and is not a file.
+     *
+     * @param request The {@link Request} that is about to be sent.
+     * @return The {@link Request} to send instead, which may be the same one.
+     * @throws IOException If the body could not be read in order to compress it.
+     */
+    public Request compress(Request request) throws IOException {
+        boolean acceptCompressed = decompressResponses && request.header(ACCEPT_ENCODING).isEmpty() && request.header(RANGE).isEmpty();
+        boolean compressBody = requestCompressionThreshold > 0 && request.method.hasBody
+                && request.body.contentLength() >= requestCompressionThreshold && request.body.isInMemory()
+                && request.header(CONTENT_ENCODING).isEmpty();
+        if (!acceptCompressed && !compressBody) {
+            return request;
+        }
+        Request.RequestBuilder compressed = request.modify();
+        if (acceptCompressed) {
+            compressed.header(ACCEPT_ENCODING, ACCEPTED_CODINGS);
+        }
+        if (compressBody) {
+            compressed.body(gzip(request.body)).header(CONTENT_ENCODING, GZIP);
+        }
+        return compressed.build();
+    }
+
+    /**
+     * @param headers The headers of a response.
+     * @return Whether the response body should be decompressed with {@link #decompress(Headers, InputStream)}.
+     */
+    public boolean decompresses(Headers headers) {
+        if (!decompressResponses) {
+            return false;
+        }
+        List<String> codings = codings(headers);
+        if (codings.isEmpty()) {
+            return false;
+        }
+        for (String coding : codings) {
+            if (!isSupported(coding)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param headers The headers of a response that {@link #decompresses(Headers)}.
+     * @param body The body as it arrived.
+     * @return A stream that decompresses the body as it is read, undoing the codings in the reverse of the order they
+     * were applied. An empty body, such as that of a HEAD request, stays empty.
+     * @throws IOException If the start of the body could not be read.
+     */
+    public static InputStream decompress(Headers headers, InputStream body) throws IOException {
+        List<String> codings = codings(headers);
+        InputStream decompressed = body;
+        for (int i = codings.size() - 1; i >= 0; i--) {
+            decompressed = decompress(codings.get(i), decompressed);
+        }
+        return decompressed;
+    }
+
+    /**
+     * @param headers The headers of a response that {@link #decompresses(Headers)}.
+     * @param body The buffer that holds the body as it arrived.
+     * @param offset Where the body starts in the buffer.
+     * @param length How long the body is.
+     * @return The decompressed body.
+     * @throws IOException If the body is not validly compressed.
+     */
+    public static byte[] decompress(Headers headers, byte[] body, int offset, int length) throws IOException {
+        try (InputStream decompressed = decompress(headers, new ByteArrayInputStream(body, offset, length))) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(32, length * 4));
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = decompressed.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * @param headers The headers of a response that has been decompressed.
+     * @return The headers without Content-Encoding and Content-Length.
+     */
+    public static Headers decompressedHeaders(Headers headers) {
+        List<Header> decompressed = new ArrayList<>(headers.size());
+        for (Header header : headers) {
+            if (!CONTENT_ENCODING.equalsIgnoreCase(header.name) && !CONTENT_LENGTH.equalsIgnoreCase(header.name)) {
+                decompressed.add(header);
+            }
+        }
+        return Headers.headers(decompressed);
+    }
+
+    private static List<String> codings(Headers headers) {
+        List<String> codings = new ArrayList<>(1);
+        for (String values : headers.values(CONTENT_ENCODING)) {
+            for (String value : values.split(",")) {
+                String coding = value.trim().toLowerCase(Locale.ENGLISH);
+                if (!coding.isEmpty() && !"identity".equals(coding)) {
+                    codings.add(coding);
+                }
+            }
+        }
+        return codings;
+    }
+
+    private static boolean isSupported(String coding) {
+        return GZIP.equals(coding) || "x-gzip".equals(coding) || "deflate".equals(coding);
+    }
+
+    private static InputStream decompress(String coding, InputStream body) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(body, 2);
+        byte[] start = new byte[2];
+        int read = input.read(start);
+        if (read <= 0) {
+            return input;
+        }
+        input.unread(start, 0, read);
+        if ("deflate".equals(coding)) {
+            // Some servers send a raw deflate stream rather than the zlib format the specification asks for
+            return new InflatingInputStream(input, new Inflater(!isZlibHeader(start, read)));
+        }
+        return new GZIPInputStream(input, COPY_BUFFER_SIZE);
+    }
+
+    private static boolean isZlibHeader(byte[] start, int length) {
+        int header = ((start[0] & 0xff) << 8) | (start[1] & 0xff);
+        return length == 2 && (start[0] & 0x0f) == 8 && header % 31 == 0;
+    }
+
+    // A body in memory is held in one array or buffer, so its length fits in an int
+    private static Body gzip(Body body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) (body.contentLength() / 4 + 32));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, COPY_BUFFER_SIZE)) {
+            body.writeTo(gzip);
+        }
+        return Body.bytes(compressed.toByteArray());
+    }
+
+    /**
+     * Releases the native memory of its {@link Inflater} when it is closed, which an {@link InflaterInputStream} only
+     * does for an {@link Inflater} that it made itself.
+     */
+    private static final class InflatingInputStream extends InflaterInputStream {
+        InflatingInputStream(InputStream input, Inflater inflater) {
+            super(input, inflater, COPY_BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
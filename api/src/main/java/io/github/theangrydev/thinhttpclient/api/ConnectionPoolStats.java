@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * A point in time reading of the connection pool of a {@link HttpClient}, for monitoring.
+ *
+ * @see HttpClient#connectionPoolStats()
+ */
+public final class ConnectionPoolStats {
+
+    /**
+     * The number of connections that are open, whether in use or idle.
+     */
+    public final int connections;
+
+    /**
+     * The number of open connections that are idle in the pool, waiting to be reused.
+     */
+    public final int idleConnections;
+
+    /**
+     * The number of requests that are waiting for a connection.
+     */
+    public final int pendingRequests;
+
+    private ConnectionPoolStats(int connections, int idleConnections, int pendingRequests) {
+        this.connections = connections;
+        this.idleConnections = idleConnections;
+        this.pendingRequests = pendingRequests;
+    }
+
+    /**
+     * @param connections The number of connections that are open, whether in use or idle.
+     * @param idleConnections The number of open connections that are idle in the pool.
+     * @param pendingRequests The number of requests that are waiting for a connection.
+     * @return A {@link ConnectionPoolStats}.
+     */
+    public static ConnectionPoolStats connectionPoolStats(int connections, int idleConnections, int pendingRequests) {
+        return new ConnectionPoolStats(connections, idleConnections, pendingRequests);
+    }
+
+    /**
+     * @return The number of open connections that are in use.
+     */
+    public int activeConnections() {
+        return connections - idleConnections;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        ConnectionPoolStats that = (ConnectionPoolStats) other;
+        return connections == that.connections &&
+                idleConnections == that.idleConnections &&
+                pendingRequests == that.pendingRequests;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connections, idleConnections, pendingRequests);
+    }
+
+    @Override
+    public String toString() {
+        return format("connections=%d, idleConnections=%d, pendingRequests=%d", connections, idleConnections, pendingRequests);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.time.Duration;
+
+import static java.lang.String.format;
+
+/**
+ * A point in time by which something must be finished, such as all the calls made on behalf of one incoming request.
+ * It is measured with {@link System#nanoTime()}, so it is not affected by changes to the wall clock, and only means
+ * anything within the JVM that made it.
+ *
+ * @see Request.RequestBuilder#deadline(Deadline)
+ */
+public final class Deadline {
+    private final long nanoTime;
+
+    private Deadline(long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param duration How long from now the deadline is.
+     * @return A {@link Deadline} that duration from now.
+     */
+    public static Deadline after(Duration duration) {
+        return new Deadline(System.nanoTime() + duration.toNanos());
+    }
+
+    /**
+     * @return The time left until the deadline, which is negative once it has passed.
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(remainingNanos());
+    }
+
+    /**
+     * @return True if there is no time left.
+     */
+    public boolean hasPassed() {
+        return remainingNanos() <= 0;
+    }
+
+    long remainingNanos() {
+        return nanoTime - System.nanoTime();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        Deadline deadline = (Deadline) other;
+        return nanoTime == deadline.nanoTime;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(nanoTime);
+    }
+
+    @Override
+    public String toString() {
+        return format("Deadline in %s", remaining());
+    }
+}
@@ -23,21 +23,42 @@ import java.util.stream.StreamSupport;
 
 import static java.lang.System.lineSeparator;
 import static java.util.Collections.emptyList;
-import static java.util.stream.Collectors.*;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.joining;
 
 /**
  * HTTP header fields.
+ * <p>
+ * The fields are either stored as a flat array of alternating names and values, in the order they were given, or are a
+ * {@link #view(Fields)} of the header structure of an underlying HTTP client. Names are looked up case-insensitively:
+ * a linear scan is used for a handful of fields and beyond that an open-addressed index is built the first time a
+ * field is looked up. {@link Header} objects are only created when the fields are iterated over.
  *
  * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.2">RFC 2616 HTTP/1.1 4.2 Message Headers</a>
  */
 public final class Headers implements Iterable<Header> {
 
-    private final List<Header> headers;
-    private final Map<String, List<String>> headerValues;
+    private static final int MAX_FIELDS_TO_SCAN = 8;
 
-    private Headers(List<Header> headers, Map<String, List<String>> headerValues) {
-        this.headerValues = headerValues;
-        this.headers = headers;
+    private final Fields fields;
+
+    // Built lazily and published racily, which is safe because Index is immutable
+    private transient Index index;
+
+    private Headers(Fields fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Index-based access to header fields that are held in some other structure.
+     * The fields must not change once they have been viewed.
+     */
+    public interface Fields {
+        int size();
+
+        String name(int field);
+
+        String value(int field);
     }
 
     public static Headers headers(Header... headers) {
@@ -45,23 +66,89 @@ public final class Headers implements Iterable<Header> {
     }
 
     public static Headers headers(List<Header> headers) {
-        Map<String, List<String>> headerValues = headers.stream().collect(
-                groupingBy(header -> header.name,
-                        mapping(header -> header.value, toList())));
-        return new Headers(headers, headerValues);
+        String[] namesAndValues = new String[headers.size() * 2];
+        int position = 0;
+        for (Header header : headers) {
+            namesAndValues[position++] = header.name;
+            namesAndValues[position++] = header.value;
+        }
+        return new Headers(new NamesAndValues(namesAndValues));
     }
 
+    /**
+     * @param fields The fields to view. They are not copied.
+     * @return {@link Headers} that read through to the given fields.
+     */
+    public static Headers view(Fields fields) {
+        return new Headers(fields);
+    }
+
+    /**
+     * @param name The case-insensitive field name.
+     * @return The values of all the fields with the given name as a comma separated list, or the empty {@link String}
+     * if there are none.
+     */
     public String value(String name) {
-        return values(name).stream().collect(joining(","));
+        int field = firstField(name);
+        if (field == -1) {
+            return "";
+        }
+        int next = nextField(name, field);
+        if (next == -1) {
+            return value(field);
+        }
+        StringBuilder values = new StringBuilder(value(field));
+        for (; next != -1; next = nextField(name, next)) {
+            values.append(',').append(value(next));
+        }
+        return values.toString();
     }
 
+    /**
+     * @param name The case-insensitive field name.
+     * @return The values of all the fields with the given name, in the order they were given.
+     */
     public List<String> values(String name) {
-        return headerValues.getOrDefault(name, emptyList());
+        int field = firstField(name);
+        if (field == -1) {
+            return emptyList();
+        }
+        int next = nextField(name, field);
+        if (next == -1) {
+            return singletonList(value(field));
+        }
+        List<String> values = new ArrayList<>();
+        values.add(value(field));
+        for (; next != -1; next = nextField(name, next)) {
+            values.add(value(next));
+        }
+        return values;
+    }
+
+    public int size() {
+        return fields.size();
     }
 
     @Override
     public Iterator<Header> iterator() {
-        return headers.iterator();
+        return new Iterator<Header>() {
+            private int field;
+
+            @Override
+            public boolean hasNext() {
+                return field < size();
+            }
+
+            @Override
+            public Header next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Header header = Header.header(name(field), value(field));
+                field++;
+                return header;
+            }
+        };
     }
 
     public Stream<Header> stream() {
@@ -70,7 +157,7 @@ public final class Headers implements Iterable<Header> {
 
     @Override
     public String toString() {
-        return headers.stream().map(Header::toString).collect(joining(lineSeparator()));
+        return stream().map(Header::toString).collect(joining(lineSeparator()));
     }
 
     @Override
@@ -82,12 +169,140 @@ public final class Headers implements Iterable<Header> {
             return false;
         }
         Headers headers = (Headers) other;
-        return Objects.equals(this.headers, headers.headers) &&
-                Objects.equals(headerValues, headers.headerValues);
+        if (size() != headers.size()) {
+            return false;
+        }
+        for (int field = 0; field < size(); field++) {
+            if (!Objects.equals(name(field), headers.name(field)) || !Objects.equals(value(field), headers.value(field))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(headers, headerValues);
+        int hash = 1;
+        for (int field = 0; field < size(); field++) {
+            hash = 31 * hash + Objects.hash(name(field), value(field));
+        }
+        return hash;
+    }
+
+    private String name(int field) {
+        return fields.name(field);
+    }
+
+    private String value(int field) {
+        return fields.value(field);
+    }
+
+    private int firstField(String name) {
+        if (size() <= MAX_FIELDS_TO_SCAN) {
+            return scanFrom(name, 0);
+        }
+        return index().firstField(this, name);
+    }
+
+    private int nextField(String name, int field) {
+        if (size() <= MAX_FIELDS_TO_SCAN) {
+            return scanFrom(name, field + 1);
+        }
+        return index().nextField(field);
+    }
+
+    private int scanFrom(String name, int start) {
+        for (int field = start; field < size(); field++) {
+            if (name.equalsIgnoreCase(name(field))) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private Index index() {
+        Index built = index;
+        if (built == null) {
+            built = new Index(this);
+            index = built;
+        }
+        return built;
+    }
+
+    private static int caseInsensitiveHash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(name.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class NamesAndValues implements Fields {
+        private final String[] namesAndValues;
+
+        @SuppressWarnings("PMD.ArrayIsStoredDirectly") // The array is created by Headers and never exposed
+        NamesAndValues(String[] namesAndValues) {
+            this.namesAndValues = namesAndValues;
+        }
+
+        @Override
+        public int size() {
+            return namesAndValues.length / 2;
+        }
+
+        @Override
+        public String name(int field) {
+            return namesAndValues[field * 2];
+        }
+
+        @Override
+        public String value(int field) {
+            return namesAndValues[field * 2 + 1];
+        }
+    }
+
+    /**
+     * An open-addressed hash table from each distinct (case-insensitive) name to its first field, with the later fields
+     * of the same name chained in field order.
+     */
+    private static final class Index {
+        private final int[] slots;
+        private final int[] nextFields;
+
+        Index(Headers headers) {
+            this.slots = new int[Integer.highestOneBit(headers.size() * 2 - 1) * 2];
+            this.nextFields = new int[headers.size()];
+            int[] lastFields = new int[slots.length];
+            int mask = slots.length - 1;
+            for (int field = 0; field < headers.size(); field++) {
+                nextFields[field] = -1;
+                String name = headers.name(field);
+                int slot = caseInsensitiveHash(name) & mask;
+                while (slots[slot] != 0 && !name.equalsIgnoreCase(headers.name(slots[slot] - 1))) {
+                    slot = (slot + 1) & mask;
+                }
+                if (slots[slot] == 0) {
+                    slots[slot] = field + 1;
+                } else {
+                    nextFields[lastFields[slot]] = field;
+                }
+                lastFields[slot] = field;
+            }
+        }
+
+        int firstField(Headers headers, String name) {
+            int mask = slots.length - 1;
+            for (int slot = caseInsensitiveHash(name) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int field = slots[slot] - 1;
+                if (name.equalsIgnoreCase(headers.name(field))) {
+                    return field;
+                }
+            }
+            return -1;
+        }
+
+        int nextField(int field) {
+            return nextFields[field];
+        }
     }
 }
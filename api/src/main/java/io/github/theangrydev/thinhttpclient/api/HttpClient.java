@@ -17,13 +17,107 @@
  */
 package io.github.theangrydev.thinhttpclient.api;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static io.github.theangrydev.thinhttpclient.api.StreamingResponse.streamingResponse;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public interface HttpClient extends Closeable {
     Response execute(Request request) throws IOException;
 
+    /**
+     * Execute the request without holding a thread while waiting for the response.
+     * <p>
+     * The default implementation executes the request on the calling thread and returns a {@link CompletableFuture}
+     * that is already complete. Implementations with a non-blocking transport should override it.
+     *
+     * @param request The {@link Request} to execute.
+     * @return A {@link CompletableFuture} that completes with the {@link Response}, or exceptionally if it failed.
+     */
+    default CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        try {
+            response.complete(execute(request));
+        } catch (IOException | RuntimeException exception) {
+            response.completeExceptionally(exception);
+        }
+        return response;
+    }
+
+    /**
+     * Execute a batch of independent requests, with at most {@code concurrency} of them outstanding at once, and at
+     * most that many to any one host.
+     *
+     * @param requests The requests to execute.
+     * @param concurrency The most requests that can be outstanding at once.
+     * @return A {@link CompletableFuture} for each request, in the same order as the requests. Each one completes with
+     * the {@link Response}, or exceptionally if that request failed, independently of the others.
+     * @see #executeAll(List, int, int)
+     */
+    default List<CompletableFuture<Response>> executeAll(List<Request> requests, int concurrency) {
+        return executeAll(requests, concurrency, concurrency);
+    }
+
+    /**
+     * Execute a batch of independent requests, with at most {@code concurrency} of them outstanding at once, and at
+     * most {@code concurrencyPerHost} to any one host, so that a batch does not take every connection to a host away
+     * from other traffic.
+     * <p>
+     * The requests are started with {@link #executeAsync(Request)}, so they only overlap if it does not block. With
+     * the default implementation, they are executed one at a time on the calling thread.
+     *
+     * @param requests The requests to execute.
+     * @param concurrency The most requests that can be outstanding at once.
+     * @param concurrencyPerHost The most requests to the same host and port that can be outstanding at once.
+     * @return A {@link CompletableFuture} for each request, in the same order as the requests. Each one completes with
+     * the {@link Response}, or exceptionally if that request failed, independently of the others.
+     * @throws IllegalArgumentException If either limit is not positive.
+     */
+    default List<CompletableFuture<Response>> executeAll(List<Request> requests, int concurrency, int concurrencyPerHost) {
+        return BatchExecution.executeAll(this, requests, concurrency, concurrencyPerHost);
+    }
+
+    /**
+     * Execute the request and return as soon as the response headers have arrived, leaving the body to be read as a
+     * stream. The {@link StreamingResponse} must be closed to release the connection.
+     * <p>
+     * The default implementation reads the whole body into memory first and then streams it as UTF-8. Implementations
+     * that can stream from the connection should override it.
+     *
+     * @param request The {@link Request} to execute.
+     * @return A {@link StreamingResponse} that has not had its body read yet.
+     * @throws IOException If the request failed before the response headers arrived.
+     */
+    default StreamingResponse executeStreaming(Request request) throws IOException {
+        Response response = execute(request);
+        return streamingResponse(response.headers, response.status, new ByteArrayInputStream(response.body.getBytes(UTF_8)));
+    }
+
+    /**
+     * Read the state of the connection pool, for monitoring. It should be cheap enough to poll every few seconds.
+     * <p>
+     * The default implementation has nothing to report. Decorators should pass this through to the client they wrap.
+     *
+     * @return The {@link ConnectionPoolStats}, or empty if the client does not keep track of them.
+     */
+    default Optional<ConnectionPoolStats> connectionPoolStats() {
+        return Optional.empty();
+    }
+
     default Response execute(Request.RequestBuilder requestBuilder) throws IOException {
         return execute(requestBuilder.build());
     }
+
+    default CompletableFuture<Response> executeAsync(Request.RequestBuilder requestBuilder) {
+        return executeAsync(requestBuilder.build());
+    }
+
+    default StreamingResponse executeStreaming(Request.RequestBuilder requestBuilder) throws IOException {
+        return executeStreaming(requestBuilder.build());
+    }
 }
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * Connection pooling and transport settings that every adapter understands, so that a client can be tuned without
+ * any library specific code.
+ * <p>
+ * The defaults are those of {@link #defaults()}; a {@link Duration#ZERO} timeout means no timeout and a buffer size of
+ * zero leaves the operating system default in place.
+ */
+@SuppressWarnings("PMD.TooManyMethods") // This is by design
+public final class HttpClientConfiguration {
+
+    /**
+     * The maximum number of connections that may be open at once, across all hosts.
+     */
+    public final int maxConnections;
+
+    /**
+     * The maximum number of connections that may be open to a single host at once.
+     */
+    public final int maxConnectionsPerHost;
+
+    /**
+     * How long an idle connection is kept in the pool before it is closed.
+     */
+    public final Duration keepAlive;
+
+    /**
+     * How long a pooled connection may be idle before it is checked for staleness when it is next leased.
+     * OkHttp always checks a pooled connection before reusing it, so only the Apache adapter uses this.
+     */
+    public final Duration validateAfterInactivity;
+
+    /**
+     * Whether Nagle's algorithm is disabled, so that small requests are not delayed.
+     */
+    public final boolean tcpNoDelay;
+
+    /**
+     * The socket send buffer size in bytes, or zero for the operating system default.
+     */
+    public final int sendBufferSize;
+
+    /**
+     * The socket receive buffer size in bytes, or zero for the operating system default.
+     */
+    public final int receiveBufferSize;
+
+    /**
+     * How long to wait for a connection to be established, or {@link Duration#ZERO} to wait forever.
+     */
+    public final Duration connectTimeout;
+
+    /**
+     * How long to wait for data on an established connection, or {@link Duration#ZERO} to wait forever.
+     */
+    public final Duration readTimeout;
+
+    /**
+     * Whether plaintext (http) requests start speaking HTTP/2 straight away (h2c), without an upgrade, because the
+     * servers are known to support it. Requests over TLS negotiate HTTP/2 regardless. Only the OkHttp adapter uses this.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3.4">RFC 7540 HTTP/2 3.4 Starting HTTP/2 with Prior Knowledge</a>
+     */
+    public final boolean http2PriorKnowledge;
+
+    /**
+     * Whether requests advertise {@link Compression#ACCEPTED_CODINGS} in Accept-Encoding, unless they already have
+     * one, and compressed responses are decompressed as they are read. When it is off, no adapter asks for compression.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-5.3.4">RFC 7231 HTTP/1.1 5.3.4 Accept-Encoding</a>
+     */
+    public final boolean decompressResponses;
+
+    /**
+     * The size in bytes from which request bodies are gzipped and sent with Content-Encoding: gzip, or zero to never
+     * compress them. The server must be able to decode gzipped request bodies. {@link Body#file File} bodies are never
+     * compressed, so that they are still sent in constant memory.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-3.1.2.2">RFC 7231 HTTP/1.1 3.1.2.2 Content-Encoding</a>
+     */
+    public final int requestCompressionThreshold;
+
+    private HttpClientConfiguration(int maxConnections, int maxConnectionsPerHost, Duration keepAlive,
+                                    Duration validateAfterInactivity, boolean tcpNoDelay, int sendBufferSize,
+                                    int receiveBufferSize, Duration connectTimeout, Duration readTimeout,
+                                    boolean http2PriorKnowledge, boolean decompressResponses,
+                                    int requestCompressionThreshold) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.keepAlive = keepAlive;
+        this.validateAfterInactivity = validateAfterInactivity;
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.http2PriorKnowledge = http2PriorKnowledge;
+        this.decompressResponses = decompressResponses;
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * @return The configuration used when none is given: 64 connections, 16 per host, a 5 minute keep-alive,
+     * validation after 2 seconds of inactivity, TCP_NODELAY, default buffer sizes, 10 second timeouts, no HTTP/2
+     * prior knowledge, and compressed responses but not requests.
+     */
+    public static HttpClientConfiguration defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Start building a configuration.
+     *
+     * @return A {@link HttpClientConfigurationBuilder} with the fields set to the {@link #defaults()}.
+     */
+    public static HttpClientConfigurationBuilder builder() {
+        return new HttpClientConfigurationBuilder();
+    }
+
+    /**
+     * Make a copy of this {@link HttpClientConfiguration} and use it to start building a new one.
+     *
+     * @return A {@link HttpClientConfigurationBuilder} with fields set to the values of the fields in this one.
+     */
+    public HttpClientConfigurationBuilder modify() {
+        return builder()
+                .maxConnections(maxConnections)
+                .maxConnectionsPerHost(maxConnectionsPerHost)
+                .keepAlive(keepAlive)
+                .validateAfterInactivity(validateAfterInactivity)
+                .tcpNoDelay(tcpNoDelay)
+                .sendBufferSize(sendBufferSize)
+                .receiveBufferSize(receiveBufferSize)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .http2PriorKnowledge(http2PriorKnowledge)
+                .decompressResponses(decompressResponses)
+                .requestCompressionThreshold(requestCompressionThreshold);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        HttpClientConfiguration that = (HttpClientConfiguration) other;
+        return maxConnections == that.maxConnections &&
+                maxConnectionsPerHost == that.maxConnectionsPerHost &&
+                tcpNoDelay == that.tcpNoDelay &&
+                http2PriorKnowledge == that.http2PriorKnowledge &&
+                decompressResponses == that.decompressResponses &&
+                requestCompressionThreshold == that.requestCompressionThreshold &&
+                sendBufferSize == that.sendBufferSize &&
+                receiveBufferSize == that.receiveBufferSize &&
+                Objects.equals(keepAlive, that.keepAlive) &&
+                Objects.equals(validateAfterInactivity, that.validateAfterInactivity) &&
+                Objects.equals(connectTimeout, that.connectTimeout) &&
+                Objects.equals(readTimeout, that.readTimeout);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxConnections, maxConnectionsPerHost, keepAlive, validateAfterInactivity, tcpNoDelay,
+                sendBufferSize, receiveBufferSize, connectTimeout, readTimeout, http2PriorKnowledge,
+                decompressResponses, requestCompressionThreshold);
+    }
+
+    @Override
+    public String toString() {
+        return format("maxConnections=%d, maxConnectionsPerHost=%d, keepAlive=%s, validateAfterInactivity=%s, " +
+                        "tcpNoDelay=%s, sendBufferSize=%d, receiveBufferSize=%d, connectTimeout=%s, readTimeout=%s, " +
+                        "http2PriorKnowledge=%s, decompressResponses=%s, requestCompressionThreshold=%d",
+                maxConnections, maxConnectionsPerHost, keepAlive, validateAfterInactivity, tcpNoDelay,
+                sendBufferSize, receiveBufferSize, connectTimeout, readTimeout, http2PriorKnowledge,
+                decompressResponses, requestCompressionThreshold);
+    }
+
+    /**
+     * This is a builder for {@link HttpClientConfiguration} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static class HttpClientConfigurationBuilder {
+
+        private int maxConnections = 64;
+        private int maxConnectionsPerHost = 16;
+        private Duration keepAlive = Duration.ofMinutes(5);
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+        private boolean tcpNoDelay = true;
+        private int sendBufferSize;
+        private int receiveBufferSize;
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration readTimeout = Duration.ofSeconds(10);
+        private boolean http2PriorKnowledge;
+        private boolean decompressResponses = true;
+        private int requestCompressionThreshold;
+
+        /**
+         * @param maxConnections The maximum number of connections that may be open at once, across all hosts.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the number is not positive.
+         */
+        public HttpClientConfigurationBuilder maxConnections(int maxConnections) {
+            this.maxConnections = checkPositive(maxConnections, "maxConnections");
+            return this;
+        }
+
+        /**
+         * @param maxConnectionsPerHost The maximum number of connections that may be open to a single host at once.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the number is not positive.
+         */
+        public HttpClientConfigurationBuilder maxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = checkPositive(maxConnectionsPerHost, "maxConnectionsPerHost");
+            return this;
+        }
+
+        /**
+         * @param keepAlive How long an idle connection is kept in the pool before it is closed.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public HttpClientConfigurationBuilder keepAlive(Duration keepAlive) {
+            this.keepAlive = checkNotNegative(keepAlive, "keepAlive");
+            return this;
+        }
+
+        /**
+         * @param validateAfterInactivity How long a pooled connection may be idle before it is checked for staleness.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public HttpClientConfigurationBuilder validateAfterInactivity(Duration validateAfterInactivity) {
+            this.validateAfterInactivity = checkNotNegative(validateAfterInactivity, "validateAfterInactivity");
+            return this;
+        }
+
+        /**
+         * @param tcpNoDelay Whether Nagle's algorithm is disabled.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         */
+        public HttpClientConfigurationBuilder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * @param sendBufferSize The socket send buffer size in bytes, or zero for the operating system default.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the size is negative.
+         */
+        public HttpClientConfigurationBuilder sendBufferSize(int sendBufferSize) {
+            this.sendBufferSize = checkNotNegative(sendBufferSize, "sendBufferSize");
+            return this;
+        }
+
+        /**
+         * @param receiveBufferSize The socket receive buffer size in bytes, or zero for the operating system default.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the size is negative.
+         */
+        public HttpClientConfigurationBuilder receiveBufferSize(int receiveBufferSize) {
+            this.receiveBufferSize = checkNotNegative(receiveBufferSize, "receiveBufferSize");
+            return this;
+        }
+
+        /**
+         * @param connectTimeout How long to wait for a connection, or {@link Duration#ZERO} to wait forever.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public HttpClientConfigurationBuilder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = checkNotNegative(connectTimeout, "connectTimeout");
+            return this;
+        }
+
+        /**
+         * @param readTimeout How long to wait for data on a connection, or {@link Duration#ZERO} to wait forever.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public HttpClientConfigurationBuilder readTimeout(Duration readTimeout) {
+            this.readTimeout = checkNotNegative(readTimeout, "readTimeout");
+            return this;
+        }
+
+        /**
+         * @param http2PriorKnowledge Whether plaintext requests use HTTP/2 without an upgrade.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         */
+        public HttpClientConfigurationBuilder http2PriorKnowledge(boolean http2PriorKnowledge) {
+            this.http2PriorKnowledge = http2PriorKnowledge;
+            return this;
+        }
+
+        /**
+         * @param decompressResponses Whether compressed responses are asked for and decompressed.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         */
+        public HttpClientConfigurationBuilder decompressResponses(boolean decompressResponses) {
+            this.decompressResponses = decompressResponses;
+            return this;
+        }
+
+        /**
+         * @param requestCompressionThreshold The size in bytes from which request bodies other than files are gzipped,
+         *                                    or zero to never compress them.
+         * @return This {@link HttpClientConfigurationBuilder}.
+         * @throws IllegalArgumentException If the size is negative.
+         */
+        public HttpClientConfigurationBuilder requestCompressionThreshold(int requestCompressionThreshold) {
+            this.requestCompressionThreshold = checkNotNegative(requestCompressionThreshold, "requestCompressionThreshold");
+            return this;
+        }
+
+        /**
+         * Construct a {@link HttpClientConfiguration} with the fields that have been accumulated.
+         *
+         * @return The {@link HttpClientConfiguration}.
+         * @throws IllegalStateException If there are more connections allowed per host than in total.
+         */
+        public HttpClientConfiguration build() {
+            if (maxConnectionsPerHost > maxConnections) {
+                throw new IllegalStateException(format("maxConnectionsPerHost (%d) should not be more than maxConnections (%d)!", maxConnectionsPerHost, maxConnections));
+            }
+            return new HttpClientConfiguration(maxConnections, maxConnectionsPerHost, keepAlive, validateAfterInactivity,
+                    tcpNoDelay, sendBufferSize, receiveBufferSize, connectTimeout, readTimeout, http2PriorKnowledge,
+                    decompressResponses, requestCompressionThreshold);
+        }
+
+        private static int checkPositive(int value, String fieldName) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(format("%s should be positive but was %d", fieldName, value));
+            }
+            return value;
+        }
+
+        private static int checkNotNegative(int value, String fieldName) {
+            if (value < 0) {
+                throw new IllegalArgumentException(format("%s should not be negative but was %d", fieldName, value));
+            }
+            return value;
+        }
+
+        private static Duration checkNotNegative(Duration value, String fieldName) {
+            if (value.isNegative()) {
+                throw new IllegalArgumentException(format("%s should not be negative but was %s", fieldName, value));
+            }
+            return value;
+        }
+    }
+}
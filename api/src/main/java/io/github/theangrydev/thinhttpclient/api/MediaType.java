@@ -17,8 +17,12 @@
  */
 package io.github.theangrydev.thinhttpclient.api;
 
+import java.nio.charset.Charset;
+import java.util.Locale;
 import java.util.Objects;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public final class MediaType {
     public static final MediaType TEXT_PLAIN = MediaType.mediaType("text/plain");
     public static final MediaType APPLICATION_XML = MediaType.mediaType("application/xml");
@@ -34,6 +38,29 @@ public final class MediaType {
         return new MediaType(name);
     }
 
+    /**
+     * @param contentType The value of a Content-Type header, which may be empty.
+     * @return The {@link Charset} named by its charset parameter, or UTF-8 if there isn't one or it is not supported.
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-3.1.1.1">RFC 7231 HTTP/1.1 3.1.1.1 Media Type</a>
+     */
+    public static Charset charset(String contentType) {
+        int charset = contentType.toLowerCase(Locale.ENGLISH).indexOf("charset=");
+        if (charset < 0) {
+            return UTF_8;
+        }
+        String name = contentType.substring(charset + "charset=".length());
+        int end = name.indexOf(';');
+        if (end >= 0) {
+            name = name.substring(0, end);
+        }
+        name = name.trim().replace("\"", "");
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException unsupported) {
+            return UTF_8;
+        }
+    }
+
     @Override
     public String toString() {
         return name;
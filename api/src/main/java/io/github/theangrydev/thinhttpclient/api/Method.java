@@ -21,13 +21,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * This enumerates the possible HTTP/1.1 Method tokens according to RFC 2616 and RFC 5789.
@@ -85,6 +88,8 @@ public final class Method {
 
     private static final List<Method> KNOWN_METHODS = unmodifiableList(asList(OPTIONS, GET, HEAD, POST, PUT, DELETE, TRACE, CONNECT, PATCH));
     private static final Map<String, Method> KNOWN_METHODS_BY_NAME = unmodifiableMap(KNOWN_METHODS.stream().collect(toMap(method -> method.name, identity())));
+    private static final Set<String> SAFE_METHOD_NAMES = unmodifiableSet(asList(OPTIONS, GET, HEAD, TRACE).stream().map(method -> method.name).collect(toSet()));
+    private static final Set<String> IDEMPOTENT_METHOD_NAMES = unmodifiableSet(asList(OPTIONS, GET, HEAD, TRACE, PUT, DELETE).stream().map(method -> method.name).collect(toSet()));
 
     public final String name;
     public final boolean hasBody;
@@ -103,6 +108,24 @@ public final class Method {
                 .orElseThrow(() -> new IllegalArgumentException(format("Unrecognised method '%s', please provide the boolean argument to say whether the method should have a body", name)));
     }
 
+    /**
+     * @return True if the method is defined to be read-only, so that sending it has no side effects on the server.
+     * Methods that are not one of the standard ones are assumed not to be.
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-4.2.1">RFC 7231 HTTP/1.1 Semantics 4.2.1 Safe Methods</a>
+     */
+    public boolean isSafe() {
+        return SAFE_METHOD_NAMES.contains(name);
+    }
+
+    /**
+     * @return True if sending the method several times has the same effect on the server as sending it once, so that
+     * it can be repeated automatically. Methods that are not one of the standard ones are assumed not to be.
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-4.2.2">RFC 7231 HTTP/1.1 Semantics 4.2.2 Idempotent Methods</a>
+     */
+    public boolean isIdempotent() {
+        return IDEMPOTENT_METHOD_NAMES.contains(name);
+    }
+
     @Override
     public String toString() {
         return name;
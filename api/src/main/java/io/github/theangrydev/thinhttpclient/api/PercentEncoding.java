@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Percent-encoding of query parameter names and values.
+ * <p>
+ * The same few names and values tend to be encoded over and over, so short ones are remembered, up to a fixed number
+ * of them. Text that has nothing to encode is returned as it is, without allocating.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc3986#section-2.1">RFC 3986 URI Generic Syntax 2.1 Percent-Encoding</a>
+ */
+final class PercentEncoding {
+    private static final int MAX_CACHED = 1024;
+    private static final int MAX_CACHED_LENGTH = 64;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final ConcurrentHashMap<String, String> ENCODED = new ConcurrentHashMap<>();
+
+    private PercentEncoding() {
+    }
+
+    static String encodeQueryComponent(String text) {
+        if (!needsEncoding(text)) {
+            return text;
+        }
+        if (text.length() > MAX_CACHED_LENGTH) {
+            return encode(text);
+        }
+        String encoded = ENCODED.get(text);
+        if (encoded == null) {
+            encoded = encode(text);
+            if (ENCODED.size() < MAX_CACHED) {
+                ENCODED.putIfAbsent(text, encoded);
+            }
+        }
+        return encoded;
+    }
+
+    private static boolean needsEncoding(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!isUnreserved(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String encode(String text) {
+        byte[] bytes = text.getBytes(UTF_8);
+        StringBuilder encoded = new StringBuilder(bytes.length * 3);
+        for (byte b : bytes) {
+            char character = (char) (b & 0xFF);
+            if (isUnreserved(character)) {
+                encoded.append(character);
+            } else {
+                encoded.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc3986#section-2.3">RFC 3986 URI Generic Syntax 2.3 Unreserved Characters</a>
+     */
+    private static boolean isUnreserved(char character) {
+        return character >= 'a' && character <= 'z'
+                || character >= 'A' && character <= 'Z'
+                || character >= '0' && character <= '9'
+                || character == '-' || character == '.' || character == '_' || character == '~';
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * This enumerates the versions of HTTP that a response can be received over.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7230#section-2.6">RFC 7230 HTTP/1.1 2.6 Protocol Versioning</a>
+ * @see <a href="https://tools.ietf.org/html/rfc7540">RFC 7540 Hypertext Transfer Protocol Version 2 (HTTP/2)</a>
+ */
+public final class Protocol {
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc1945">RFC 1945 Hypertext Transfer Protocol -- HTTP/1.0</a>
+     */
+    public static final Protocol HTTP_1_0 = new Protocol("HTTP/1.0");
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230">RFC 7230 HTTP/1.1 Message Syntax and Routing</a>
+     */
+    public static final Protocol HTTP_1_1 = new Protocol("HTTP/1.1");
+
+    /**
+     * Either negotiated during the TLS handshake or, for plaintext connections, assumed with prior knowledge (h2c).
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3">RFC 7540 HTTP/2 3 Starting HTTP/2</a>
+     */
+    public static final Protocol HTTP_2 = new Protocol("HTTP/2");
+
+    private static final List<Protocol> KNOWN_PROTOCOLS = unmodifiableList(asList(HTTP_1_0, HTTP_1_1, HTTP_2));
+    private static final Map<String, Protocol> KNOWN_PROTOCOLS_BY_NAME = unmodifiableMap(KNOWN_PROTOCOLS.stream().collect(toMap(protocol -> protocol.name, identity())));
+
+    public final String name;
+
+    private Protocol(String name) {
+        this.name = name;
+    }
+
+    public static Protocol protocol(String name) {
+        return Optional.ofNullable(KNOWN_PROTOCOLS_BY_NAME.get(name))
+                .orElseThrow(() -> new IllegalArgumentException(format("Unrecognised protocol '%s'", name)));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        Protocol protocol = (Protocol) other;
+        return Objects.equals(name, protocol.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(name);
+    }
+}
@@ -17,17 +17,21 @@
  */
 package io.github.theangrydev.thinhttpclient.api;
 
-import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
 import static io.github.theangrydev.thinhttpclient.api.Method.GET;
 import static io.github.theangrydev.thinhttpclient.api.Method.POST;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * This class represents a HTTP/1.1 request.
@@ -42,7 +46,7 @@ public final class Request {
      *
      * @see <a href="https://tools.ietf.org/html/rfc2616#section-3.2.2">RFC 2616 HTTP/1.1 3.2.2 http URL</a>
      */
-    public final URL url;
+    public final Url url;
 
     /**
      * The HTTP Method that the request is for.
@@ -54,11 +58,11 @@ public final class Request {
 
     /**
      * The HTTP message-body that will be sent.
-     * If {@link Method#hasBody} returns false, then
+     * If {@link Method#hasBody} returns false, then this will be {@link Body#empty()}.
      *
      * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
      */
-    public final String body;
+    public final Body body;
 
     /**
      * The HTTP header fields that will be sent.
@@ -67,6 +71,35 @@ public final class Request {
      */
     public final Headers headers;
 
+    /**
+     * How long to wait for a connection to be established for this request, instead of the
+     * {@link HttpClientConfiguration#connectTimeout}, or {@link Duration#ZERO} to wait forever.
+     * The JDK adapter can only set the connect timeout for the whole client, so it ignores this.
+     */
+    public final Optional<Duration> connectTimeout;
+
+    /**
+     * How long to wait for data while receiving the response to this request, instead of the
+     * {@link HttpClientConfiguration#readTimeout}, or {@link Duration#ZERO} to wait forever.
+     */
+    public final Optional<Duration> readTimeout;
+
+    /**
+     * How long the whole call may take, from connecting to reading the response, before it fails with a
+     * {@link RequestTimeoutException}.
+     *
+     * @see CallTimeout
+     */
+    public final Optional<Duration> timeout;
+
+    /**
+     * When the whole call must be finished by, which is usually passed down from the caller so that all of its calls
+     * share one budget. If there is also a {@link #timeout}, whichever comes first applies.
+     *
+     * @see CallTimeout
+     */
+    public final Optional<Deadline> deadline;
+
     public String header(String name) {
         return headers.value(name);
     }
@@ -75,7 +108,7 @@ public final class Request {
      * Start building a {@link Method#GET} request.
      *
      * @return A {@link RequestBuilder} that has the {@link #method} set to {@link Method#GET}
-     * and the {@link #body} set to the empty {@link String}.
+     * and the {@link #body} set to {@link Body#empty()}.
      */
     public static RequestBuilder get() {
         return builder().method(GET);
@@ -105,18 +138,29 @@ public final class Request {
      * @return A {@link RequestBuilder} with fields set to the values of the fields in this {@link Request}.
      */
     public RequestBuilder modify() {
-        return new RequestBuilder().method(method).url(url).body(body).headers(headers);
+        RequestBuilder builder = new RequestBuilder().method(method).url(url).body(body).headers(headers);
+        builder.connectTimeout = connectTimeout;
+        builder.readTimeout = readTimeout;
+        builder.timeout = timeout;
+        builder.deadline = deadline;
+        return builder;
     }
 
-    private static Request request(URL url, Method method, String body, Headers headers) {
-        return new Request(url, method, body, headers);
+    private static Request request(Url url, Method method, Body body, Headers headers, Optional<Duration> connectTimeout,
+                                   Optional<Duration> readTimeout, Optional<Duration> timeout, Optional<Deadline> deadline) {
+        return new Request(url, method, body, headers, connectTimeout, readTimeout, timeout, deadline);
     }
 
-    private Request(URL url, Method method, String body, Headers headers) {
+    private Request(Url url, Method method, Body body, Headers headers, Optional<Duration> connectTimeout,
+                    Optional<Duration> readTimeout, Optional<Duration> timeout, Optional<Deadline> deadline) {
         this.url = url;
         this.method = method;
         this.body = body;
         this.headers = headers;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.timeout = timeout;
+        this.deadline = deadline;
     }
 
     @Override
@@ -131,12 +175,16 @@ public final class Request {
         return Objects.equals(url, request.url) &&
                 Objects.equals(method, request.method) &&
                 Objects.equals(body, request.body) &&
-                Objects.equals(headers, request.headers);
+                Objects.equals(headers, request.headers) &&
+                Objects.equals(connectTimeout, request.connectTimeout) &&
+                Objects.equals(readTimeout, request.readTimeout) &&
+                Objects.equals(timeout, request.timeout) &&
+                Objects.equals(deadline, request.deadline);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(url, method, body, headers);
+        return Objects.hash(url, method, body, headers, connectTimeout, readTimeout, timeout, deadline);
     }
 
     @Override
@@ -152,9 +200,13 @@ public final class Request {
     public static class RequestBuilder {
 
         private final List<Header> headers = new ArrayList<>();
-        private URL url;
+        private Url url;
         private Method method;
-        private String body;
+        private Body body;
+        private Optional<Duration> connectTimeout = Optional.empty();
+        private Optional<Duration> readTimeout = Optional.empty();
+        private Optional<Duration> timeout = Optional.empty();
+        private Optional<Deadline> deadline = Optional.empty();
 
         /**
          * Set the HTTP Method.
@@ -179,11 +231,23 @@ public final class Request {
          * @return This {@link RequestBuilder}.
          * @see <a href="https://tools.ietf.org/html/rfc2616#section-3.2.2">RFC 2616 HTTP/1.1 3.2.2 http URL</a>
          */
-        public RequestBuilder url(URL url) {
+        public RequestBuilder url(Url url) {
             this.url = url;
             return this;
         }
 
+        /**
+         * Set the URL from a {@link URL}, which is converted to a {@link Url} without resolving its host name.
+         *
+         * @param url The URL to set
+         * @return This {@link RequestBuilder}.
+         * @throws IllegalArgumentException If the URL is not a valid absolute http or https URL.
+         * @see <a href="https://tools.ietf.org/html/rfc2616#section-3.2.2">RFC 2616 HTTP/1.1 3.2.2 http URL</a>
+         */
+        public RequestBuilder url(URL url) {
+            return url(Url.url(url.toExternalForm()));
+        }
+
         /**
          * Add a HTTP header with the given name and value.
          * It is possible to add multiple headers with the same name.
@@ -213,52 +277,151 @@ public final class Request {
         }
 
         /**
-         * Set the URL after parsing the {@code url} as a {@link URL}.
+         * Set the URL after parsing the {@code url} as a {@link Url}.
          *
          * @param url The URL to set
          * @return This {@link RequestBuilder}.
-         * @throws IllegalArgumentException If no protocol is specified, or an unknown protocol is found, or {@code url} is {@code null}.
+         * @throws IllegalArgumentException If {@code url} is not a valid absolute http or https URL, or is {@code null}.
          * @see <a href="https://tools.ietf.org/html/rfc2616#section-3.2.2">RFC 2616 HTTP/1.1 3.2.2 http URL</a>
          */
         public RequestBuilder url(String url) {
-            try {
-                return url(new URL(url));
-            } catch (MalformedURLException exception) {
-                throw new IllegalArgumentException(exception.getMessage(), exception);
-            }
+            return url(Url.url(url));
         }
 
         /**
-         * Set the request body.
+         * Set the request body to the given text, encoded as UTF-8.
          *
          * @param body The request body to set.
+         * @param mediaType The media type of the body.
          * @return This {@link RequestBuilder}.
          * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
          */
         public RequestBuilder body(String body, MediaType mediaType) {
-            return body(body).header(CONTENT_TYPE, mediaType.toString());
+            return body(Body.text(body, UTF_8), mediaType);
         }
 
         /**
-         * Set the request body.
+         * Set the request body to the given text, encoded with the given {@link Charset}.
          *
          * @param body The request body to set.
+         * @param mediaType The media type of the body.
+         * @param charset The charset to encode the body with, which is also added to the Content-Type header.
          * @return This {@link RequestBuilder}.
          * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
          */
         public RequestBuilder body(String body, MediaType mediaType, Charset charset) {
-            return body(body).header(CONTENT_TYPE, mediaType + "; charset=" + charset);
+            return body(Body.text(body, charset)).header(CONTENT_TYPE, mediaType + "; charset=" + charset);
         }
 
         /**
-         * Set the request body to the empty {@link String} and remove the Content-Type header.
+         * Set the request body to the given bytes, which are not copied.
+         *
+         * @param body The request body to set.
+         * @param mediaType The media type of the body.
+         * @return This {@link RequestBuilder}.
+         * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
+         */
+        public RequestBuilder body(byte[] body, MediaType mediaType) {
+            return body(Body.bytes(body), mediaType);
+        }
+
+        /**
+         * Set the request body to the remaining bytes in the given buffer, which are not copied.
+         *
+         * @param body The request body to set.
+         * @param mediaType The media type of the body.
+         * @return This {@link RequestBuilder}.
+         * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
+         */
+        public RequestBuilder body(ByteBuffer body, MediaType mediaType) {
+            return body(Body.byteBuffer(body), mediaType);
+        }
+
+        /**
+         * Set the request body to the content of the given file, which is streamed from disk when it is sent.
+         *
+         * @param body The file to send as the request body.
+         * @param mediaType The media type of the body.
+         * @return This {@link RequestBuilder}.
+         * @throws IllegalArgumentException If the size of the file could not be read.
+         * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
+         */
+        public RequestBuilder body(Path body, MediaType mediaType) {
+            return body(Body.file(body), mediaType);
+        }
+
+        /**
+         * Set the request body.
+         *
+         * @param body The request body to set.
+         * @param mediaType The media type of the body.
+         * @return This {@link RequestBuilder}.
+         * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
+         */
+        public RequestBuilder body(Body body, MediaType mediaType) {
+            return body(body).header(CONTENT_TYPE, mediaType.toString());
+        }
+
+        /**
+         * Set the request body to {@link Body#empty()} and remove the Content-Type header.
          *
          * @return This {@link RequestBuilder}.
          * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.3">RFC 2616 HTTP/1.1 4.3 Message Body</a>
          * @see HeaderName#CONTENT_TYPE
          */
         public RequestBuilder noBody() {
-            return body("").removeHeader(CONTENT_TYPE);
+            return body(Body.empty()).removeHeader(CONTENT_TYPE);
+        }
+
+        /**
+         * Set how long to wait for a connection for this request, instead of the client's connect timeout.
+         *
+         * @param connectTimeout How long to wait for a connection, or {@link Duration#ZERO} to wait forever.
+         * @return This {@link RequestBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public RequestBuilder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = Optional.of(checkNotNegative(connectTimeout, "connectTimeout"));
+            return this;
+        }
+
+        /**
+         * Set how long to wait for data while receiving the response, instead of the client's read timeout.
+         *
+         * @param readTimeout How long to wait for data, or {@link Duration#ZERO} to wait forever.
+         * @return This {@link RequestBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public RequestBuilder readTimeout(Duration readTimeout) {
+            this.readTimeout = Optional.of(checkNotNegative(readTimeout, "readTimeout"));
+            return this;
+        }
+
+        /**
+         * Set how long the whole call may take before it fails with a {@link RequestTimeoutException}.
+         *
+         * @param timeout How long the call may take.
+         * @return This {@link RequestBuilder}.
+         * @throws IllegalArgumentException If the duration is not positive.
+         */
+        public RequestBuilder timeout(Duration timeout) {
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException(format("timeout should be positive but was %s", timeout));
+            }
+            this.timeout = Optional.of(timeout);
+            return this;
+        }
+
+        /**
+         * Set when the whole call must be finished by. The request is not sent at all if the deadline has already
+         * passed when it is executed.
+         *
+         * @param deadline When the call must be finished by.
+         * @return This {@link RequestBuilder}.
+         */
+        public RequestBuilder deadline(Deadline deadline) {
+            this.deadline = Optional.of(deadline);
+            return this;
         }
 
         /**
@@ -273,16 +436,16 @@ public final class Request {
             checkFieldWasSet(method, "Method");
             checkFieldWasSet(body, "Body");
             checkBodyIsEmptyForMethodsWithNoBody();
-            return request(url, method, body, Headers.headers(headers));
+            return request(url, method, body, Headers.headers(headers), connectTimeout, readTimeout, timeout, deadline);
         }
 
-        private RequestBuilder body(String body) {
+        RequestBuilder body(Body body) {
             this.body = body;
             return this;
         }
 
         private RequestBuilder removeHeader(String name) {
-            headers.removeIf(header -> name.equals(header.name));
+            headers.removeIf(header -> name.equalsIgnoreCase(header.name));
             return this;
         }
 
@@ -292,6 +455,13 @@ public final class Request {
             }
         }
 
+        private static Duration checkNotNegative(Duration value, String fieldName) {
+            if (value.isNegative()) {
+                throw new IllegalArgumentException(format("%s should not be negative but was %s", fieldName, value));
+            }
+            return value;
+        }
+
         private static void checkFieldWasSet(Object field, String fieldName) {
             if (field == null) {
                 throw new IllegalStateException(format("%s was not set!", fieldName));
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call runs out of the time it was given by {@link Request#timeout} or {@link Request#deadline}. It is
+ * thrown straight away, without sending the request, if there was no time left to begin with.
+ * <p>
+ * Running out of the per request {@link Request#connectTimeout} or {@link Request#readTimeout} is reported the same
+ * way as running out of the ones in the {@link HttpClientConfiguration}, usually as a
+ * {@link java.net.SocketTimeoutException}.
+ */
+public class RequestTimeoutException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public RequestTimeoutException(String message) {
+        super(message);
+    }
+
+    public RequestTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
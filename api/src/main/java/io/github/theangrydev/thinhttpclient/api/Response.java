@@ -21,18 +21,50 @@ import java.util.List;
 import java.util.Objects;
 
 public final class Response {
-    private final Headers headers;
+    public final Protocol protocol;
+    public final Headers headers;
     public final int status;
     public final String body;
 
-    private Response(Headers headers, int status, String body) {
+    /**
+     * How long each phase of the call that received this response took. These are not part of {@link #equals(Object)},
+     * since they describe the call rather than the response.
+     */
+    public final Timings timings;
+
+    private Response(Protocol protocol, Headers headers, int status, String body, Timings timings) {
+        this.protocol = protocol;
         this.headers = headers;
         this.status = status;
         this.body = body;
+        this.timings = timings;
     }
 
     public static Response response(Headers headers, int status, String body) {
-        return new Response(headers, status, body);
+        return response(Protocol.HTTP_1_1, headers, status, body);
+    }
+
+    /**
+     * @param protocol The {@link Protocol} that the response was received over.
+     * @param headers The response headers.
+     * @param status The response status code.
+     * @param body The response body.
+     * @return A {@link Response}.
+     */
+    public static Response response(Protocol protocol, Headers headers, int status, String body) {
+        return response(protocol, headers, status, body, Timings.NONE);
+    }
+
+    /**
+     * @param protocol The {@link Protocol} that the response was received over.
+     * @param headers The response headers.
+     * @param status The response status code.
+     * @param body The response body.
+     * @param timings How long each phase of the call took.
+     * @return A {@link Response}.
+     */
+    public static Response response(Protocol protocol, Headers headers, int status, String body, Timings timings) {
+        return new Response(protocol, headers, status, body, timings);
     }
 
     public String header(String name) {
@@ -58,12 +90,13 @@ public final class Response {
         }
         Response response = (Response) other;
         return status == response.status &&
+                Objects.equals(protocol, response.protocol) &&
                 Objects.equals(headers, response.headers) &&
                 Objects.equals(body, response.body);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(headers, status, body);
+        return Objects.hash(protocol, headers, status, body);
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * A response whose body has not been read yet, so that it can be consumed incrementally rather than held in memory.
+ * <p>
+ * This must be closed once the body has been consumed, so that the underlying connection can be reused.
+ *
+ * @see Response for a response whose body has already been read into a {@link String}
+ */
+public final class StreamingResponse implements Closeable {
+    public final Headers headers;
+    public final int status;
+    private final InputStream body;
+
+    private StreamingResponse(Headers headers, int status, InputStream body) {
+        this.headers = headers;
+        this.status = status;
+        this.body = body;
+    }
+
+    /**
+     * @param headers The response headers.
+     * @param status The response status code.
+     * @param body The response body. Closing it should release the underlying connection.
+     * @return A {@link StreamingResponse} that reads from the given body.
+     */
+    public static StreamingResponse streamingResponse(Headers headers, int status, InputStream body) {
+        return new StreamingResponse(headers, status, body);
+    }
+
+    public String header(String name) {
+        return headers.value(name);
+    }
+
+    public List<String> headerValues(String name) {
+        return headers.values(name);
+    }
+
+    /**
+     * @return The response body as a stream of bytes. Closing it is the same as closing this {@link StreamingResponse}.
+     */
+    public InputStream body() {
+        return body;
+    }
+
+    /**
+     * @return The response body as a channel. Closing it is the same as closing this {@link StreamingResponse}.
+     */
+    public ReadableByteChannel channel() {
+        return Channels.newChannel(body);
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+
+    @Override
+    public String toString() {
+        return "HTTP " + status;
+    }
+}
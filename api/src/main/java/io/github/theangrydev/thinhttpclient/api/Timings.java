@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.lang.String.format;
+
+/**
+ * How long each phase of a call took, so that a slow network, connection churn and a slow server can be told apart.
+ * <p>
+ * The durations are in nanoseconds. A phase that did not happen during the call, such as connecting when a pooled
+ * connection was reused, or that the adapter cannot see, is {@link #NOT_MEASURED}, and the time spent in it is counted
+ * in the next phase that is measured. If a call is redirected, the phases of each hop are added together.
+ *
+ * @see Response#timings
+ */
+public final class Timings {
+
+    /**
+     * The duration of a phase that did not happen or that the adapter cannot see.
+     */
+    public static final long NOT_MEASURED = -1;
+
+    /**
+     * The timings of a {@link Response} that was not received by an adapter, such as one that was made up in a test.
+     */
+    public static final Timings NONE = builder().build();
+
+    /**
+     * Resolving the host name to an address.
+     */
+    public final long dnsNanos;
+
+    /**
+     * Opening the TCP connection.
+     */
+    public final long connectNanos;
+
+    /**
+     * The TLS handshake.
+     */
+    public final long tlsNanos;
+
+    /**
+     * From the request having been sent until the start of the response arrived, which is mostly the time the server
+     * took to handle the request.
+     */
+    public final long timeToFirstByteNanos;
+
+    /**
+     * Reading the response body.
+     */
+    public final long bodyNanos;
+
+    /**
+     * The whole call, from being executed until the response was complete.
+     */
+    public final long totalNanos;
+
+    /**
+     * Whether the request was sent over a connection that was already open, or empty if the adapter cannot tell.
+     */
+    public final Optional<Boolean> connectionReused;
+
+    private Timings(long dnsNanos, long connectNanos, long tlsNanos, long timeToFirstByteNanos, long bodyNanos, long totalNanos, Optional<Boolean> connectionReused) {
+        this.dnsNanos = dnsNanos;
+        this.connectNanos = connectNanos;
+        this.tlsNanos = tlsNanos;
+        this.timeToFirstByteNanos = timeToFirstByteNanos;
+        this.bodyNanos = bodyNanos;
+        this.totalNanos = totalNanos;
+        this.connectionReused = connectionReused;
+    }
+
+    /**
+     * Start building timings.
+     *
+     * @return A {@link TimingsBuilder} with every phase {@link #NOT_MEASURED}.
+     */
+    public static TimingsBuilder builder() {
+        return new TimingsBuilder();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        Timings timings = (Timings) other;
+        return dnsNanos == timings.dnsNanos &&
+                connectNanos == timings.connectNanos &&
+                tlsNanos == timings.tlsNanos &&
+                timeToFirstByteNanos == timings.timeToFirstByteNanos &&
+                bodyNanos == timings.bodyNanos &&
+                totalNanos == timings.totalNanos &&
+                Objects.equals(connectionReused, timings.connectionReused);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dnsNanos, connectNanos, tlsNanos, timeToFirstByteNanos, bodyNanos, totalNanos, connectionReused);
+    }
+
+    @Override
+    public String toString() {
+        return format("dns=%dns, connect=%dns, tls=%dns, timeToFirstByte=%dns, body=%dns, total=%dns, connectionReused=%s",
+                dnsNanos, connectNanos, tlsNanos, timeToFirstByteNanos, bodyNanos, totalNanos, connectionReused.map(String::valueOf).orElse("unknown"));
+    }
+
+    /**
+     * This is a builder for {@link Timings} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static class TimingsBuilder {
+        private long dnsNanos = NOT_MEASURED;
+        private long connectNanos = NOT_MEASURED;
+        private long tlsNanos = NOT_MEASURED;
+        private long timeToFirstByteNanos = NOT_MEASURED;
+        private long bodyNanos = NOT_MEASURED;
+        private long totalNanos = NOT_MEASURED;
+        private Optional<Boolean> connectionReused = Optional.empty();
+
+        public TimingsBuilder dnsNanos(long dnsNanos) {
+            this.dnsNanos = dnsNanos;
+            return this;
+        }
+
+        public TimingsBuilder connectNanos(long connectNanos) {
+            this.connectNanos = connectNanos;
+            return this;
+        }
+
+        public TimingsBuilder tlsNanos(long tlsNanos) {
+            this.tlsNanos = tlsNanos;
+            return this;
+        }
+
+        public TimingsBuilder timeToFirstByteNanos(long timeToFirstByteNanos) {
+            this.timeToFirstByteNanos = timeToFirstByteNanos;
+            return this;
+        }
+
+        public TimingsBuilder bodyNanos(long bodyNanos) {
+            this.bodyNanos = bodyNanos;
+            return this;
+        }
+
+        public TimingsBuilder totalNanos(long totalNanos) {
+            this.totalNanos = totalNanos;
+            return this;
+        }
+
+        public TimingsBuilder connectionReused(boolean connectionReused) {
+            this.connectionReused = Optional.of(connectionReused);
+            return this;
+        }
+
+        public Timings build() {
+            return new Timings(dnsNanos, connectNanos, tlsNanos, timeToFirstByteNanos, bodyNanos, totalNanos, connectionReused);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import java.net.URI;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * An absolute http or https URL, parsed once into its components.
+ * <p>
+ * Unlike {@link java.net.URL}, comparing and hashing a {@link Url} never resolves the host name: two URLs are equal if
+ * their normalized text is equal. The scheme and host are normalized to lower case, everything else is kept as it
+ * was given. User information in the authority is not supported.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc3986#section-3">RFC 3986 URI Generic Syntax 3 Syntax Components</a>
+ * @see <a href="https://tools.ietf.org/html/rfc7230#section-2.7">RFC 7230 HTTP/1.1 2.7 Uniform Resource Identifiers</a>
+ */
+@SuppressWarnings("PMD.TooManyMethods") // This is by design
+public final class Url {
+    private static final int HTTP_PORT = 80;
+    private static final int HTTPS_PORT = 443;
+    private static final int NO_PORT = -1;
+
+    /**
+     * Either "http" or "https".
+     */
+    public final String scheme;
+
+    /**
+     * The host name or IP address. IPv6 addresses keep their square brackets.
+     */
+    public final String host;
+
+    /**
+     * The port that was given, or -1 if none was.
+     *
+     * @see #effectivePort()
+     */
+    public final int port;
+
+    /**
+     * The percent-encoded path, which is empty if none was given.
+     */
+    public final String path;
+
+    /**
+     * The percent-encoded query, without the leading '?', which is empty if none was given.
+     */
+    public final String query;
+
+    /**
+     * The fragment, without the leading '#', which is empty if none was given. It is never sent to the server.
+     */
+    public final String fragment;
+
+    private final String text;
+    private final int hash;
+    private volatile URI uri;
+
+    private Url(String scheme, String host, int port, String path, String query, String fragment) {
+        this.scheme = scheme;
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.query = query;
+        this.fragment = fragment;
+        this.text = text(scheme, host, port, path, query, fragment);
+        this.hash = text.hashCode();
+    }
+
+    /**
+     * @param url The text of an absolute http or https URL.
+     * @return The parsed {@link Url}.
+     * @throws IllegalArgumentException If the URL is not a valid absolute http or https URL.
+     */
+    public static Url url(String url) {
+        if (url == null) {
+            throw new IllegalArgumentException("URL must not be null");
+        }
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            throw new IllegalArgumentException(format("URL '%s' is not absolute", url));
+        }
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH);
+        checkScheme(scheme, url);
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = indexOfAny(url, authorityStart, "/?#");
+        String authority = url.substring(authorityStart, authorityEnd);
+        if (authority.indexOf('@') >= 0) {
+            throw new IllegalArgumentException(format("URL '%s' has user information, which is not supported", url));
+        }
+        int portStart = authority.startsWith("[") ? authority.indexOf(':', authority.indexOf(']')) : authority.indexOf(':');
+        String host = (portStart == -1 ? authority : authority.substring(0, portStart)).toLowerCase(Locale.ENGLISH);
+        int port = portStart == -1 ? NO_PORT : parsePort(authority.substring(portStart + 1), url);
+
+        int queryStart = indexOfAny(url, authorityEnd, "?#");
+        int fragmentStart = url.indexOf('#', authorityEnd);
+        if (fragmentStart == -1) {
+            fragmentStart = url.length();
+        }
+        String path = url.substring(authorityEnd, queryStart);
+        String query = queryStart < fragmentStart ? url.substring(queryStart + 1, fragmentStart) : "";
+        String fragment = fragmentStart < url.length() ? url.substring(fragmentStart + 1) : "";
+        return url(scheme, host, port, path, query, fragment, url);
+    }
+
+    /**
+     * Start building a {@link Url}.
+     *
+     * @return A {@link UrlBuilder} with the scheme set to "http" and no other fields set.
+     */
+    public static UrlBuilder builder() {
+        return new UrlBuilder();
+    }
+
+    /**
+     * Make a copy of this {@link Url} and use it to start building a new one.
+     *
+     * @return A {@link UrlBuilder} with fields set to the values of the fields in this {@link Url}.
+     */
+    public UrlBuilder modify() {
+        return new UrlBuilder().scheme(scheme).host(host).port(port).path(path).query(query).fragment(fragment);
+    }
+
+    /**
+     * @return The port that was given, or the default port for the scheme if none was.
+     */
+    public int effectivePort() {
+        return port == NO_PORT ? defaultPort() : port;
+    }
+
+    public boolean isHttps() {
+        return "https".equals(scheme);
+    }
+
+    /**
+     * @return The host and, if it is not the default for the scheme, the port, as they should appear in a Host field.
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-5.4">RFC 7230 HTTP/1.1 5.4 Host</a>
+     */
+    public String authority() {
+        if (port == NO_PORT || port == defaultPort()) {
+            return host;
+        }
+        return host + ':' + port;
+    }
+
+    /**
+     * @return The path and query, as they should appear in the request line.
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-5.3.1">RFC 7230 HTTP/1.1 5.3.1 origin-form</a>
+     */
+    public String requestTarget() {
+        String origin = path.isEmpty() ? "/" : path;
+        if (query.isEmpty()) {
+            return origin;
+        }
+        return origin + '?' + query;
+    }
+
+    /**
+     * @return The equivalent {@link URI}, which is only created the first time it is asked for.
+     */
+    public URI toUri() {
+        URI result = uri;
+        if (result == null) {
+            result = URI.create(text);
+            uri = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        Url url = (Url) other;
+        return hash == url.hash && text.equals(url.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private int defaultPort() {
+        return isHttps() ? HTTPS_PORT : HTTP_PORT;
+    }
+
+    private static Url url(String scheme, String host, int port, String path, String query, String fragment, Object source) {
+        if (host.isEmpty()) {
+            throw new IllegalArgumentException(format("URL '%s' has no host", source));
+        }
+        if (!path.isEmpty() && path.charAt(0) != '/') {
+            throw new IllegalArgumentException(format("URL '%s' has a path that does not start with '/'", source));
+        }
+        checkCharacters(host, source);
+        checkCharacters(path, source);
+        checkCharacters(query, source);
+        checkCharacters(fragment, source);
+        return new Url(scheme, host, port, path, query, fragment);
+    }
+
+    private static String text(String scheme, String host, int port, String path, String query, String fragment) {
+        StringBuilder text = new StringBuilder(scheme.length() + host.length() + path.length() + query.length() + fragment.length() + 16);
+        text.append(scheme).append("://").append(host);
+        if (port != NO_PORT) {
+            text.append(':').append(port);
+        }
+        text.append(path);
+        if (!query.isEmpty()) {
+            text.append('?').append(query);
+        }
+        if (!fragment.isEmpty()) {
+            text.append('#').append(fragment);
+        }
+        return text.toString();
+    }
+
+    private static void checkScheme(String scheme, Object source) {
+        if (!"http".equals(scheme) && !"https".equals(scheme)) {
+            throw new IllegalArgumentException(format("URL '%s' has scheme '%s' but only http and https are supported", source, scheme));
+        }
+    }
+
+    private static int parsePort(String port, Object source) {
+        if (port.isEmpty() || port.length() > 5) {
+            throw new IllegalArgumentException(format("URL '%s' has an invalid port '%s'", source, port));
+        }
+        int value = 0;
+        for (int i = 0; i < port.length(); i++) {
+            int digit = Character.digit(port.charAt(i), 10);
+            if (digit < 0) {
+                throw new IllegalArgumentException(format("URL '%s' has an invalid port '%s'", source, port));
+            }
+            value = value * 10 + digit;
+        }
+        checkPort(value, source);
+        return value;
+    }
+
+    private static void checkPort(int port, Object source) {
+        if (port != NO_PORT && (port < 1 || port > 65535)) {
+            throw new IllegalArgumentException(format("URL '%s' has an invalid port '%d'", source, port));
+        }
+    }
+
+    /**
+     * Spaces, control characters and the characters that RFC 3986 excludes from every component must be
+     * percent-encoded.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc3986#appendix-A">RFC 3986 URI Generic Syntax Appendix A Collected ABNF for URI</a>
+     */
+    private static void checkCharacters(String component, Object source) {
+        for (int i = 0; i < component.length(); i++) {
+            char character = component.charAt(i);
+            if (character <= ' ' || character >= 0x7F || "\"<>\\^`{|}".indexOf(character) >= 0) {
+                throw new IllegalArgumentException(format("URL '%s' has a character that must be percent-encoded at index %d", source, i));
+            }
+        }
+    }
+
+    private static int indexOfAny(String text, int from, String characters) {
+        for (int i = from; i < text.length(); i++) {
+            if (characters.indexOf(text.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * This is a builder for {@link Url} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static class UrlBuilder {
+        private final StringBuilder query = new StringBuilder();
+        private String scheme = "http";
+        private String host;
+        private int port = NO_PORT;
+        private String path = "";
+        private String fragment = "";
+
+        /**
+         * @param scheme Either "http" or "https".
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder scheme(String scheme) {
+            this.scheme = scheme.toLowerCase(Locale.ENGLISH);
+            return this;
+        }
+
+        /**
+         * @param host The host name or IP address. IPv6 addresses must be in square brackets.
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder host(String host) {
+            this.host = host.toLowerCase(Locale.ENGLISH);
+            return this;
+        }
+
+        /**
+         * @param port The port, or -1 to use the default port for the scheme.
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param path The path, which must already be percent-encoded.
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder path(String path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * Replace the whole query.
+         *
+         * @param query The query without the leading '?', which must already be percent-encoded.
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder query(String query) {
+            this.query.setLength(0);
+            this.query.append(query);
+            return this;
+        }
+
+        /**
+         * Add a parameter to the end of the query, percent-encoding the name and value.
+         * It is possible to add multiple parameters with the same name.
+         *
+         * @param name The name of the parameter, which will be percent-encoded.
+         * @param value The value of the parameter, which will be percent-encoded.
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder queryParameter(String name, String value) {
+            if (query.length() > 0) {
+                query.append('&');
+            }
+            query.append(PercentEncoding.encodeQueryComponent(name)).append('=').append(PercentEncoding.encodeQueryComponent(value));
+            return this;
+        }
+
+        /**
+         * @param fragment The fragment without the leading '#'.
+         * @return This {@link UrlBuilder}.
+         */
+        public UrlBuilder fragment(String fragment) {
+            this.fragment = fragment;
+            return this;
+        }
+
+        /**
+         * @return The {@link Url}.
+         * @throws IllegalArgumentException If the fields do not make up a valid http or https URL.
+         */
+        public Url build() {
+            String source = text(scheme, host == null ? "" : host, port, path, query.toString(), fragment);
+            checkScheme(scheme, source);
+            checkPort(port, source);
+            return url(scheme, host == null ? "" : host, port, path, query.toString(), fragment, source);
+        }
+    }
+}
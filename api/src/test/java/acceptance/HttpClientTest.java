@@ -23,16 +23,33 @@ import com.googlecode.yatspec.junit.Row;
 import com.googlecode.yatspec.junit.Table;
 import com.googlecode.yatspec.junit.TableRunner;
 import com.googlecode.yatspec.state.givenwhenthen.TestState;
+import io.github.theangrydev.thinhttpclient.api.Deadline;
 import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Protocol;
 import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.RequestTimeoutException;
 import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.api.Timings;
 import org.assertj.core.api.WithAssertions;
 import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.http.RequestMethod.fromString;
@@ -93,6 +110,20 @@ public abstract class HttpClientTest extends TestState implements WithAssertions
                 .withHeader("Content-Length", equalTo(String.valueOf(body.length()))));
     }
 
+    @Table({
+        @Row("POST"),
+        @Row("PUT"),
+        @Row("PATCH")
+    })
+    @Test
+    public void methodsWithBodyCanSendAnEmptyBody(String methodName) throws IOException {
+        httpClient.execute(Request.builder().method(method(methodName)).url(baseUrl() + "/test")
+                .body("", TEXT_PLAIN));
+
+        verify(newRequestPattern(fromString(methodName), urlPathEqualTo("/test"))
+                .withRequestBody(equalTo("")));
+    }
+
     /**
      * @see <a href=" https://tools.ietf.org/html/rfc2616#section-9.3">RFC 2616 HTTP/1.1 9.3 GET</a>
      */
@@ -120,6 +151,57 @@ public abstract class HttpClientTest extends TestState implements WithAssertions
                 .withHeader("Content-Type", equalTo("application/xml; charset=UTF-8")));
     }
 
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
+     */
+    @Test
+    public void byteArrayRequestBody() throws IOException {
+        String expectedBody = "<something>wow</something>";
+        httpClient.execute(Request.post().url(baseUrl() + "/test")
+                .body(expectedBody.getBytes(UTF_8), APPLICATION_XML));
+
+        verify(postRequestedFor(urlPathEqualTo("/test"))
+                .withRequestBody(equalTo(expectedBody))
+                .withHeader("Content-Length", equalTo("26"))
+                .withHeader("Content-Type", equalTo("application/xml")));
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
+     */
+    @Test
+    public void byteBufferRequestBody() throws IOException {
+        String expectedBody = "<something>wow</something>";
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.put(expectedBody.getBytes(UTF_8)).flip();
+        httpClient.execute(Request.post().url(baseUrl() + "/test")
+                .body(buffer, APPLICATION_XML));
+
+        verify(postRequestedFor(urlPathEqualTo("/test"))
+                .withRequestBody(equalTo(expectedBody))
+                .withHeader("Content-Length", equalTo("26")));
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
+     */
+    @Test
+    public void fileRequestBody() throws IOException {
+        String expectedBody = "<something>wow</something>";
+        Path file = Files.createTempFile("request-body", ".xml");
+        try {
+            Files.write(file, expectedBody.getBytes(UTF_8));
+            httpClient.execute(Request.post().url(baseUrl() + "/test")
+                    .body(file, APPLICATION_XML));
+        } finally {
+            Files.delete(file);
+        }
+
+        verify(postRequestedFor(urlPathEqualTo("/test"))
+                .withRequestBody(equalTo(expectedBody))
+                .withHeader("Content-Length", equalTo("26")));
+    }
+
     /**
      * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
      */
@@ -149,6 +231,187 @@ public abstract class HttpClientTest extends TestState implements WithAssertions
         assertThat(response.body).isEqualTo(expectedBody);
     }
 
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
+     */
+    @Test
+    public void streamingResponseBody() throws IOException {
+        String expectedBody = "some body";
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("name", "value")
+                .withBody(expectedBody)));
+
+        try (StreamingResponse response = httpClient.executeStreaming(Request.get().url(baseUrl() + "/test"))) {
+            assertThat(response.status).isEqualTo(200);
+            assertThat(response.header("name")).isEqualTo("value");
+            assertThat(response.body()).hasSameContentAs(new ByteArrayInputStream(expectedBody.getBytes(UTF_8)));
+        }
+    }
+
+    @Test
+    public void closingAStreamingResponseBeforeTheEndDoesNotAffectTheNextRequest() throws IOException {
+        givenThat(get(urlEqualTo("/large")).willReturn(aResponse()
+                .withBody(new byte[1024 * 1024])));
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse()
+                .withBody("some body")));
+
+        try (StreamingResponse response = httpClient.executeStreaming(Request.get().url(baseUrl() + "/large"))) {
+            assertThat(response.body().read()).isEqualTo(0);
+        }
+        Response response = httpClient.execute(Request.get().url(baseUrl() + "/test"));
+
+        assertThat(response.body).isEqualTo("some body");
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
+     */
+    @Test
+    public void responseBodyAsync() throws ExecutionException, InterruptedException {
+        String expectedBody = "some body";
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse()
+                .withBody(expectedBody)));
+
+        Response response = httpClient.executeAsync(Request.get().url(baseUrl() + "/test")).get();
+
+        assertThat(response.body).isEqualTo(expectedBody);
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-7.2">RFC 2616 HTTP/1.1 7.2 Entity Body</a>
+     */
+    @Test
+    public void requestBodyAsync() throws ExecutionException, InterruptedException {
+        String expectedBody = "<something>wow</something>";
+        httpClient.executeAsync(Request.post().url(baseUrl() + "/test")
+                .body(expectedBody, APPLICATION_XML, UTF_8)).get();
+
+        verify(postRequestedFor(urlPathEqualTo("/test"))
+                .withRequestBody(equalTo(expectedBody))
+                .withHeader("Content-Type", equalTo("application/xml; charset=UTF-8")));
+    }
+
+    @Test
+    public void emptyRequestBodyAsync() throws ExecutionException, InterruptedException {
+        httpClient.executeAsync(Request.post().url(baseUrl() + "/test").noBody()).get();
+
+        verify(postRequestedFor(urlPathEqualTo("/test"))
+                .withRequestBody(equalTo("")));
+    }
+
+    @Test
+    public void executeAllReturnsResponsesInTheOrderOfTheRequests() {
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            givenThat(get(urlEqualTo("/test/" + i)).willReturn(aResponse().withBody("body " + i)));
+            requests.add(Request.get().url(baseUrl() + "/test/" + i).build());
+        }
+        requests.add(Request.get().url("http://localhost:1/test").build());
+
+        List<CompletableFuture<Response>> responses = httpClient.executeAll(requests, 4);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(responses.get(i).join().body).isEqualTo("body " + i);
+        }
+        assertThatThrownBy(() -> responses.get(20).join()).hasCauseInstanceOf(IOException.class);
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-3.1.2.2">RFC 7231 HTTP/1.1 3.1.2.2 Content-Encoding</a>
+     */
+    @Test
+    public void compressedResponsesAreAskedForAndDecompressed() throws IOException {
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse()
+                .withHeader("Content-Encoding", "gzip")
+                .withBody(gzip("compressed body"))));
+
+        Response response = httpClient.execute(Request.get().url(baseUrl() + "/test"));
+        Response asyncResponse = httpClient.executeAsync(Request.get().url(baseUrl() + "/test")).join();
+        try (StreamingResponse streamingResponse = httpClient.executeStreaming(Request.get().url(baseUrl() + "/test"))) {
+            assertThat(streamingResponse.body()).hasSameContentAs(new ByteArrayInputStream("compressed body".getBytes(UTF_8)));
+        }
+
+        assertThat(response.body).isEqualTo("compressed body");
+        assertThat(response.header("Content-Encoding")).isEmpty();
+        assertThat(asyncResponse.body).isEqualTo("compressed body");
+        verify(3, getRequestedFor(urlEqualTo("/test")).withHeader("Accept-Encoding", containing("gzip")));
+    }
+
+    @Test
+    public void eachCallIsTimedAndReportsWhetherItReusedAConnection() throws IOException {
+        stubFor(get(urlEqualTo("/test")).willReturn(aResponse().withStatus(200).withBody("body")));
+
+        Timings first = httpClient.execute(Request.get().url(baseUrl() + "/test")).timings;
+        Timings second = httpClient.execute(Request.get().url(baseUrl() + "/test")).timings;
+
+        assertThat(first.totalNanos).isPositive();
+        assertThat(second.totalNanos).isPositive();
+        assertThat(first.connectionReused).isNotEqualTo(Optional.of(true));
+        assertThat(second.connectionReused).isNotEqualTo(Optional.of(false));
+        if (first.connectionReused.isPresent()) {
+            assertThat(first.connectNanos).isNotNegative();
+            assertThat(second.connectNanos).isEqualTo(Timings.NOT_MEASURED);
+        }
+    }
+
+    @Test
+    public void cancellingAnAsyncCallLeavesTheClientUsable() throws IOException {
+        givenThat(get(urlEqualTo("/slow")).willReturn(aResponse().withFixedDelay(5000)));
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse().withBody("body")));
+
+        CompletableFuture<Response> slow = httpClient.executeAsync(Request.get().url(baseUrl() + "/slow"));
+        slow.cancel(true);
+        Response response = httpClient.execute(Request.get().url(baseUrl() + "/test"));
+
+        assertThat(slow).isCancelled();
+        assertThat(response.body).isEqualTo("body");
+    }
+
+    @Test
+    public void callsThatRunOutOfTimeFailFastWithARequestTimeout() throws IOException {
+        givenThat(get(urlEqualTo("/slow")).willReturn(aResponse().withFixedDelay(3000)));
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse().withBody("body")));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> httpClient.execute(Request.get().url(baseUrl() + "/slow").timeout(Duration.ofMillis(300))))
+                .isInstanceOf(RequestTimeoutException.class);
+        assertThatThrownBy(() -> httpClient.executeAsync(Request.get().url(baseUrl() + "/slow").deadline(Deadline.after(Duration.ofMillis(300)))).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RequestTimeoutException.class);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        Response response = httpClient.execute(Request.get().url(baseUrl() + "/test").timeout(Duration.ofSeconds(5)));
+
+        assertThat(elapsed).isLessThan(Duration.ofMillis(2500));
+        assertThat(response.body).isEqualTo("body");
+    }
+
+    @Test
+    public void callsWhoseDeadlineHasPassedAreNotSent() {
+        assertThatThrownBy(() -> httpClient.execute(Request.get().url(baseUrl() + "/test").deadline(Deadline.after(Duration.ofMillis(-1)))))
+                .isInstanceOf(RequestTimeoutException.class);
+        verify(0, getRequestedFor(urlEqualTo("/test")));
+    }
+
+    @Test
+    public void asyncFailureCompletesExceptionally() {
+        assertThatThrownBy(() -> httpClient.executeAsync(Request.get().url("http://localhost:1/test")).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-2.6">RFC 7230 HTTP/1.1 2.6 Protocol Versioning</a>
+     */
+    @Test
+    public void responseProtocol() throws IOException {
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse()));
+
+        Response response = httpClient.execute(Request.get().url(baseUrl() + "/test"));
+
+        assertThat(response.protocol).isEqualTo(Protocol.HTTP_1_1);
+    }
+
     /**
      * @see <a href="https://tools.ietf.org/html/rfc2616#section-6.1.1">RFC 2616 HTTP/1.1 6.1.1 Status Code and Reason Phrase</a>
      */
@@ -176,6 +439,33 @@ public abstract class HttpClientTest extends TestState implements WithAssertions
         assertThat(response.header("name")).isEqualTo("value");
     }
 
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.2">RFC 2616 HTTP/1.1 4.2 Message Headers</a>
+     */
+    @Test
+    public void requestHeaders() throws IOException {
+        httpClient.execute(Request.get().url(baseUrl() + "/test")
+                .header("name", "first")
+                .header("name", "second"));
+
+        verify(getRequestedFor(urlPathEqualTo("/test"))
+                .withHeader("name", equalTo("first"))
+                .withHeader("name", equalTo("second")));
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.2">RFC 2616 HTTP/1.1 4.2 Message Headers</a>
+     */
+    @Test
+    public void responseHeaderNamesAreCaseInsensitive() throws IOException {
+        givenThat(get(urlEqualTo("/test")).willReturn(aResponse()
+                .withHeader("content-language", "en")));
+
+        Response response = httpClient.execute(Request.get().url(baseUrl() + "/test"));
+
+        assertThat(response.header("Content-Language")).isEqualTo("en");
+    }
+
     /**
      * @see <a href="https://tools.ietf.org/html/rfc2616#section-4.2">RFC 2616 HTTP/1.1 4.2 Message Headers</a>
      */
@@ -225,6 +515,14 @@ public abstract class HttpClientTest extends TestState implements WithAssertions
         assertThat(response.headerValues("name")).containsExactly("first", "second", "third", "fourth");
     }
 
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(text.getBytes(UTF_8));
+        }
+        return gzipped.toByteArray();
+    }
+
     private String baseUrl() {
         return "http://localhost:" + Options.DEFAULT_PORT;
     }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+
+public class BatchExecutionTest implements WithAssertions {
+
+    private final ManualHttpClient httpClient = new ManualHttpClient();
+
+    @Test
+    public void responsesAreInTheOrderOfTheRequestsAndFailIndependently() throws Exception {
+        List<CompletableFuture<Response>> responses = httpClient.executeAll(requests("a", "b", "c"), 3);
+
+        httpClient.complete("http://c/2");
+        httpClient.fail("http://b/1");
+        httpClient.complete("http://a/0");
+
+        assertThat(responses.get(0).get().body).isEqualTo("http://a/0");
+        assertThatThrownBy(() -> responses.get(1).get()).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IOException.class);
+        assertThat(responses.get(2).get().body).isEqualTo("http://c/2");
+    }
+
+    @Test
+    public void noMoreThanTheConcurrencyAreOutstanding() {
+        httpClient.executeAll(requests("a", "b", "c", "d", "e"), 2);
+
+        assertThat(httpClient.outstanding()).containsExactly("http://a/0", "http://b/1");
+
+        httpClient.complete("http://b/1");
+
+        assertThat(httpClient.outstanding()).containsExactly("http://a/0", "http://c/2");
+    }
+
+    @Test
+    public void noMoreThanTheConcurrencyPerHostAreOutstandingToOneHost() {
+        httpClient.executeAll(requests("a", "a", "a", "b", "b"), 10, 2);
+
+        assertThat(httpClient.outstanding()).containsExactlyInAnyOrder("http://a/0", "http://a/1", "http://b/3", "http://b/4");
+
+        httpClient.complete("http://a/0");
+
+        assertThat(httpClient.outstanding()).contains("http://a/2");
+    }
+
+    @Test
+    public void blockingExecuteAsyncRunsTheRequestsOneAtATimeWithoutRecursing() {
+        HttpClient blockingHttpClient = new HttpClient() {
+            @Override
+            public Response execute(Request request) {
+                return response(headers(), 200, request.url.toString());
+            }
+
+            @Override
+            public void close() {
+                // Nothing to close
+            }
+        };
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            requests.add(Request.get().url("http://host/" + i).build());
+        }
+
+        List<CompletableFuture<Response>> responses = blockingHttpClient.executeAll(requests, 10);
+
+        assertThat(responses).allMatch(CompletableFuture::isDone);
+        assertThat(responses.get(99_999).join().body).isEqualTo("http://host/99999");
+    }
+
+    @Test
+    public void requestsThatCannotBeStartedFailWithoutStoppingTheOthers() {
+        HttpClient rejectingHttpClient = new ManualHttpClient() {
+            @Override
+            public CompletableFuture<Response> executeAsync(Request request) {
+                throw new IllegalArgumentException("unsupported");
+            }
+        };
+
+        List<CompletableFuture<Response>> responses = rejectingHttpClient.executeAll(requests("a", "b"), 1);
+
+        assertThat(responses).allMatch(CompletableFuture::isCompletedExceptionally);
+    }
+
+    @Test
+    public void concurrencyMustBePositive() {
+        assertThatThrownBy(() -> httpClient.executeAll(requests("a"), 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("concurrency must be positive but was 0");
+        assertThatThrownBy(() -> httpClient.executeAll(requests("a"), 1, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("concurrencyPerHost must be positive but was 0");
+    }
+
+    private static List<Request> requests(String... hosts) {
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < hosts.length; i++) {
+            requests.add(Request.get().url("http://" + hosts[i] + "/" + i).build());
+        }
+        return requests;
+    }
+
+    private static class ManualHttpClient implements HttpClient {
+        private final Map<String, CompletableFuture<Response>> outstanding = new HashMap<>();
+        private final List<String> started = new ArrayList<>();
+
+        List<String> outstanding() {
+            List<String> urls = new ArrayList<>();
+            for (String url : started) {
+                if (!outstanding.get(url).isDone()) {
+                    urls.add(url);
+                }
+            }
+            return urls;
+        }
+
+        void complete(String url) {
+            outstanding.get(url).complete(response(headers(), 200, url));
+        }
+
+        void fail(String url) {
+            outstanding.get(url).completeExceptionally(new IOException("failed"));
+        }
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            CompletableFuture<Response> response = new CompletableFuture<>();
+            outstanding.put(request.url.toString(), response);
+            started.add(request.url.toString());
+            return response;
+        }
+
+        @Override
+        public Response execute(Request request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+public class BlockingCallTest implements WithAssertions {
+
+    private static final Request REQUEST = Request.get().url("http://localhost/path").build();
+
+    @Test
+    public void theOutcomeOfTheCallIsReturned() throws IOException {
+        Response response = Response.response(Headers.headers(), 200, "body");
+
+        assertThat(BlockingCall.await(REQUEST, CompletableFuture.completedFuture(response))).isSameAs(response);
+    }
+
+    @Test
+    public void ioExceptionsAndRuntimeExceptionsAreThrownAsTheyAre() {
+        IOException ioException = new IOException("failed");
+        IllegalStateException runtimeException = new IllegalStateException("failed");
+
+        assertThatThrownBy(() -> BlockingCall.await(REQUEST, failed(ioException))).isSameAs(ioException);
+        assertThatThrownBy(() -> BlockingCall.await(REQUEST, failed(runtimeException))).isSameAs(runtimeException);
+    }
+
+    @Test
+    public void otherCheckedExceptionsAreWrapped() {
+        Exception checkedException = new Exception("failed");
+
+        assertThatThrownBy(() -> BlockingCall.await(REQUEST, failed(checkedException)))
+                .isExactlyInstanceOf(IOException.class)
+                .hasCause(checkedException);
+    }
+
+    @Test
+    public void anInterruptedWaitCancelsTheCallAndKeepsTheInterruptStatus() {
+        CompletableFuture<Response> call = new CompletableFuture<>();
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> BlockingCall.await(REQUEST, call))
+                    .isInstanceOf(InterruptedIOException.class)
+                    .hasMessageStartingWith("Interrupted while executing");
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+            assertThat(call).isCancelled();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void aCallThatRunsOutOfTimeIsCancelled() throws IOException {
+        CompletableFuture<Response> call = new CompletableFuture<>();
+        CallTimeout callTimeout = CallTimeout.start(Request.get().url("http://localhost/path").timeout(Duration.ofMillis(10)).build());
+
+        assertThatThrownBy(() -> BlockingCall.await(REQUEST, call, callTimeout))
+                .isInstanceOf(RequestTimeoutException.class)
+                .hasMessage("GET http://localhost/path did not complete within 10ms");
+        assertThat(call).isCancelled();
+    }
+
+    private static CompletableFuture<Response> failed(Throwable failure) {
+        CompletableFuture<Response> call = new CompletableFuture<>();
+        call.completeExceptionally(failure);
+        return call;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class BodyTest implements WithAssertions {
+
+    private static final byte[] CONTENT = "content".getBytes(UTF_8);
+
+    @Test
+    public void textIsEncodedWithTheGivenCharset() throws IOException {
+        Body body = Body.text("content", UTF_16);
+
+        assertThat(body.contentLength()).isEqualTo("content".getBytes(UTF_16).length);
+        assertThat(written(body)).isEqualTo("content".getBytes(UTF_16));
+        assertThat(body).hasToString("content");
+    }
+
+    @Test
+    public void bytes() throws IOException {
+        Body body = Body.bytes(CONTENT);
+
+        assertThat(body.contentLength()).isEqualTo(CONTENT.length);
+        assertThat(written(body)).isEqualTo(CONTENT);
+        assertThat(body.inputStream()).hasSameContentAs(Body.bytes(CONTENT).inputStream());
+    }
+
+    @Test
+    public void byteBufferIsReadFromItsPositionToItsLimitWithoutBeingConsumed() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap("xcontentx".getBytes(UTF_8));
+        buffer.position(1).limit(8);
+        Body body = Body.byteBuffer(buffer);
+
+        assertThat(body.contentLength()).isEqualTo(CONTENT.length);
+        assertThat(written(body)).isEqualTo(CONTENT);
+        assertThat(writtenToChannel(body)).isEqualTo(CONTENT);
+        assertThat(buffer.position()).isEqualTo(1);
+    }
+
+    @Test
+    public void directByteBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CONTENT.length);
+        buffer.put(CONTENT).flip();
+        Body body = Body.byteBuffer(buffer);
+
+        assertThat(written(body)).isEqualTo(CONTENT);
+        assertThat(body.inputStream()).hasSameContentAs(Body.bytes(CONTENT).inputStream());
+    }
+
+    @Test
+    public void fileIsStreamedFromDisk() throws IOException {
+        Path file = Files.createTempFile("body", ".txt");
+        try {
+            Files.write(file, CONTENT);
+            Body body = Body.file(file);
+
+            assertThat(body.contentLength()).isEqualTo(CONTENT.length);
+            assertThat(written(body)).isEqualTo(CONTENT);
+            assertThat(writtenToChannel(body)).isEqualTo(CONTENT);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void fileThatDoesNotExistIsRejected() {
+        assertThatThrownBy(() -> Body.file(Paths.get("does-not-exist")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void emptyBody() {
+        assertThat(Body.empty().isEmpty()).isTrue();
+        assertThat(Body.bytes(CONTENT).isEmpty()).isFalse();
+    }
+
+    @Test
+    public void bodiesWithTheSameContentAreEqual() {
+        assertThat(Body.bytes(CONTENT)).isEqualTo(Body.text("content", UTF_8));
+        assertThat(Body.bytes(CONTENT).hashCode()).isEqualTo(Body.text("content", UTF_8).hashCode());
+        assertThat(Body.byteBuffer(ByteBuffer.wrap(CONTENT))).isEqualTo(Body.byteBuffer(ByteBuffer.wrap(CONTENT.clone())));
+        assertThat(Body.bytes(CONTENT)).isNotEqualTo(Body.bytes(new byte[0]));
+    }
+
+    private static byte[] written(Body body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] writtenToChannel(Body body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(Channels.newChannel(outputStream));
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+public class CallTimeoutTest implements WithAssertions {
+
+    private static final String SOME_URL = "http://localhost/path";
+
+    @Test
+    public void callsWithoutATimeoutOrDeadlineAreNotLimited() throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(Request.get().url(SOME_URL).build());
+
+        assertThat(callTimeout.isLimited()).isFalse();
+        assertThat(callTimeout.remainingNanos()).isEqualTo(Long.MAX_VALUE);
+        assertThat(callTimeout.cap(Duration.ofSeconds(10))).isEqualTo(Duration.ofSeconds(10));
+        assertThat(callTimeout.cap(Duration.ZERO)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void theEarlierOfTheTimeoutAndTheDeadlineApplies() throws IOException {
+        Request request = Request.get().url(SOME_URL)
+                .timeout(Duration.ofSeconds(5))
+                .deadline(Deadline.after(Duration.ofSeconds(2)))
+                .build();
+
+        CallTimeout callTimeout = CallTimeout.start(request);
+
+        assertThat(callTimeout.isLimited()).isTrue();
+        assertThat(callTimeout.remainingNanos()).isBetween(Duration.ofSeconds(1).toNanos(), Duration.ofSeconds(2).toNanos());
+    }
+
+    @Test
+    public void socketTimeoutsAreCappedAtTheTimeLeft() throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(Request.get().url(SOME_URL).timeout(Duration.ofSeconds(2)).build());
+
+        assertThat(callTimeout.cap(Duration.ofSeconds(1))).isEqualTo(Duration.ofSeconds(1));
+        assertThat(callTimeout.cap(Duration.ofSeconds(10))).isLessThanOrEqualTo(Duration.ofSeconds(2));
+        assertThat(callTimeout.cap(Duration.ZERO)).isLessThanOrEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void failsFastWhenTheDeadlineHasAlreadyPassed() {
+        Request request = Request.get().url(SOME_URL).deadline(Deadline.after(Duration.ofMillis(-1))).build();
+
+        assertThatThrownBy(() -> CallTimeout.start(request))
+                .isInstanceOf(RequestTimeoutException.class)
+                .hasMessage("GET http://localhost/path did not complete within 0ms");
+    }
+
+    @Test
+    public void failuresAfterTheTimeRunsOutAreReportedAsTimeouts() throws IOException, InterruptedException {
+        CallTimeout callTimeout = CallTimeout.start(Request.get().url(SOME_URL).timeout(Duration.ofMillis(10)).build());
+        SocketTimeoutException failure = new SocketTimeoutException();
+
+        Thread.sleep(20);
+
+        assertThat(callTimeout.exceeded(failure))
+                .isInstanceOf(RequestTimeoutException.class)
+                .hasMessage("GET http://localhost/path did not complete within 10ms")
+                .hasCause(failure);
+    }
+
+    @Test
+    public void failuresBeforeTheTimeRunsOutAreLeftAlone() throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(Request.get().url(SOME_URL).timeout(Duration.ofSeconds(10)).build());
+        SocketTimeoutException failure = new SocketTimeoutException();
+
+        assertThat(callTimeout.exceeded(failure)).isSameAs(failure);
+    }
+
+    @Test
+    public void deadlinesCountDown() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(10));
+        Deadline passed = Deadline.after(Duration.ofSeconds(-1));
+
+        assertThat(deadline.hasPassed()).isFalse();
+        assertThat(deadline.remaining()).isBetween(Duration.ofSeconds(9), Duration.ofSeconds(10));
+        assertThat(passed.hasPassed()).isTrue();
+        assertThat(passed.remaining().isNegative()).isTrue();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static io.github.theangrydev.thinhttpclient.api.Compression.compression;
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_LENGTH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.RANGE;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.APPLICATION_JSON;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class CompressionTest implements WithAssertions {
+    private static final String URL = "http://localhost/resource";
+
+    private final Compression defaults = compression(HttpClientConfiguration.defaults());
+
+    @Test
+    public void requestsAskForCompressedResponses() throws IOException {
+        Request request = defaults.compress(Request.get().url(URL).build());
+
+        assertThat(request.header(ACCEPT_ENCODING)).isEqualTo("gzip, deflate");
+    }
+
+    @Test
+    public void acceptEncodingThatIsAlreadySetIsKept() throws IOException {
+        Request request = Request.get().url(URL).header(ACCEPT_ENCODING, "br").build();
+
+        assertThat(defaults.compress(request)).isSameAs(request);
+    }
+
+    @Test
+    public void rangeRequestsDoNotAskForCompressedResponses() throws IOException {
+        Request request = Request.get().url(URL).header(RANGE, "bytes=0-99").build();
+
+        assertThat(defaults.compress(request)).isSameAs(request);
+    }
+
+    @Test
+    public void nothingIsAskedForWhenDecompressionIsOff() throws IOException {
+        Compression off = compression(HttpClientConfiguration.builder().decompressResponses(false).build());
+        Request request = Request.get().url(URL).build();
+
+        assertThat(off.compress(request)).isSameAs(request);
+        assertThat(off.decompresses(headers(header(CONTENT_ENCODING, "gzip")))).isFalse();
+    }
+
+    @Test
+    public void requestBodiesFromTheThresholdAreGzipped() throws IOException {
+        Compression compression = compression(HttpClientConfiguration.builder().requestCompressionThreshold(10).build());
+        String json = "{\"values\": [1, 1, 1, 1, 1, 1, 1, 1]}";
+
+        Request request = compression.compress(Request.post().url(URL).body(json, APPLICATION_JSON).build());
+
+        assertThat(request.header(CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(request.header(CONTENT_TYPE)).isEqualTo("application/json");
+        assertThat(gunzip(request.body)).isEqualTo(json);
+    }
+
+    @Test
+    public void requestBodiesBelowTheThresholdAreNotGzipped() throws IOException {
+        Compression compression = compression(HttpClientConfiguration.builder().requestCompressionThreshold(10).build());
+
+        Request request = compression.compress(Request.post().url(URL).body("{}", APPLICATION_JSON).build());
+
+        assertThat(request.header(CONTENT_ENCODING)).isEmpty();
+        assertThat(request.body.toString()).isEqualTo("{}");
+    }
+
+    @Test
+    public void fileRequestBodiesAreNotGzipped() throws IOException {
+        Compression compression = compression(HttpClientConfiguration.builder().requestCompressionThreshold(10).build());
+        Path file = Files.createTempFile("body", ".json");
+        try {
+            Files.write(file, "{\"values\": [1, 1, 1, 1, 1, 1, 1, 1]}".getBytes(UTF_8));
+            Body body = Body.file(file);
+
+            Request request = compression.compress(Request.post().url(URL).body(body, APPLICATION_JSON).build());
+
+            assertThat(request.header(CONTENT_ENCODING)).isEmpty();
+            assertThat(request.body).isSameAs(body);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void gzippedResponsesAreDecompressed() throws IOException {
+        Headers headers = headers(header(CONTENT_ENCODING, "gzip"), header(CONTENT_LENGTH, "25"));
+
+        assertThat(defaults.decompresses(headers)).isTrue();
+        assertThat(decompress(headers, gzip("hello"))).isEqualTo("hello");
+        assertThat(Compression.decompressedHeaders(headers)).isEmpty();
+    }
+
+    @Test
+    public void zlibAndRawDeflateResponsesAreDecompressed() throws IOException {
+        Headers headers = headers(header(CONTENT_ENCODING, "deflate"));
+
+        assertThat(decompress(headers, deflate("hello", false))).isEqualTo("hello");
+        assertThat(decompress(headers, deflate("hello", true))).isEqualTo("hello");
+    }
+
+    @Test
+    public void codingsAreUndoneInReverseOrder() throws IOException {
+        Headers headers = headers(header(CONTENT_ENCODING, "deflate, gzip"));
+        byte[] body = gzip(deflate("hello", false));
+
+        assertThat(decompress(headers, body)).isEqualTo("hello");
+    }
+
+    @Test
+    public void emptyBodiesStayEmpty() throws IOException {
+        assertThat(decompress(headers(header(CONTENT_ENCODING, "gzip")), new byte[0])).isEmpty();
+    }
+
+    @Test
+    public void unsupportedCodingsAreLeftAlone() {
+        assertThat(defaults.decompresses(headers(header(CONTENT_ENCODING, "br")))).isFalse();
+        assertThat(defaults.decompresses(headers(header(CONTENT_ENCODING, "gzip, br")))).isFalse();
+        assertThat(defaults.decompresses(headers(header(CONTENT_ENCODING, "identity")))).isFalse();
+        assertThat(defaults.decompresses(headers())).isFalse();
+    }
+
+    private static String decompress(Headers headers, byte[] body) throws IOException {
+        return new String(Compression.decompress(headers, body, 0, body.length), UTF_8);
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        return gzip(text.getBytes(UTF_8));
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(bytes);
+        }
+        return gzipped.toByteArray();
+    }
+
+    private static byte[] deflate(String text, boolean raw) throws IOException {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(deflated, deflater)) {
+            deflate.write(text.getBytes(UTF_8));
+        } finally {
+            deflater.end();
+        }
+        return deflated.toByteArray();
+    }
+
+    private static String gunzip(Body body) throws IOException {
+        try (InputStream gunzip = new GZIPInputStream(body.inputStream())) {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = gunzip.read(buffer)) != -1) {
+                text.write(buffer, 0, read);
+            }
+            return new String(text.toByteArray(), UTF_8);
+        }
+    }
+}
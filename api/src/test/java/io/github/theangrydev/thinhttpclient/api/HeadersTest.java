@@ -18,9 +18,13 @@
 package io.github.theangrydev.thinhttpclient.api;
 
 import nl.jqno.equalsverifier.EqualsVerifier;
+import nl.jqno.equalsverifier.Warning;
 import org.assertj.core.api.WithAssertions;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static io.github.theangrydev.thinhttpclient.api.Header.header;
 import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
 import static java.lang.System.lineSeparator;
@@ -34,9 +38,22 @@ public class HeadersTest implements WithAssertions {
     public void equalsContract() {
         EqualsVerifier.forClass(Headers.class)
                 .withPrefabValues(Header.class, HEADER_1, HEADER_2)
+                .withPrefabValues(Headers.Fields.class, new ArrayFields("x", "1"), new ArrayFields("y", "3"))
+                .suppress(Warning.NULL_FIELDS) // The fields are always set by the factory methods
                 .verify();
     }
 
+    @Test
+    public void viewsAreEqualToCopiesWithTheSameFields() {
+        Headers view = Headers.view(new ArrayFields("name1", "value1", "name2", "value2"));
+        Headers copy = headers(header("name1", "value1"), header("name2", "value2"));
+
+        assertThat(view).isEqualTo(copy);
+        assertThat(view.hashCode()).isEqualTo(copy.hashCode());
+        assertThat(view).containsExactly(header("name1", "value1"), header("name2", "value2"));
+        assertThat(view.value("NAME2")).isEqualTo("value2");
+    }
+
     @Test
     public void toStringPrintsHeadersLineByLine() {
         Headers headers = headers(
@@ -45,4 +62,84 @@ public class HeadersTest implements WithAssertions {
 
         assertThat(headers).hasToString("name1: value1" + lineSeparator() + "name2: value2");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void namesAreLookedUpCaseInsensitively() {
+        Headers headers = headers(
+                header("Content-Type", "text/plain"),
+                header("x-custom", "1"));
+
+        assertThat(headers.value("content-type")).isEqualTo("text/plain");
+        assertThat(headers.value("X-Custom")).isEqualTo("1");
+    }
+
+    @Test
+    public void namesAreLookedUpCaseInsensitivelyWhenThereAreManyFields() {
+        Headers headers = manyHeaders();
+
+        assertThat(headers.value("NAME5")).isEqualTo("value5");
+        assertThat(headers.values("Repeated")).containsExactly("first", "second", "third");
+        assertThat(headers.value("repeated")).isEqualTo("first,second,third");
+        assertThat(headers.values("missing")).isEmpty();
+    }
+
+    @Test
+    public void multipleValuesAreKeptInOrder() {
+        Headers headers = headers(
+                header("name", "first"),
+                header("other", "x"),
+                header("Name", "second"));
+
+        assertThat(headers.values("name")).containsExactly("first", "second");
+        assertThat(headers.value("name")).isEqualTo("first,second");
+    }
+
+    @Test
+    public void missingNameHasNoValues() {
+        Headers headers = headers(header("name", "value"));
+
+        assertThat(headers.value("missing")).isEmpty();
+        assertThat(headers.values("missing")).isEmpty();
+    }
+
+    @Test
+    public void iteratesInTheOrderTheFieldsWereGiven() {
+        Headers headers = manyHeaders();
+
+        assertThat(headers).hasSize(headers.size()).startsWith(header("name0", "value0"), header("Repeated", "first"));
+    }
+
+    private static Headers manyHeaders() {
+        List<Header> headers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            headers.add(header("name" + i, "value" + i));
+        }
+        headers.add(1, header("Repeated", "first"));
+        headers.add(10, header("REPEATED", "second"));
+        headers.add(header("repeated", "third"));
+        return headers(headers);
+    }
+
+    private static final class ArrayFields implements Headers.Fields {
+        private final String[] namesAndValues;
+
+        ArrayFields(String... namesAndValues) {
+            this.namesAndValues = namesAndValues;
+        }
+
+        @Override
+        public int size() {
+            return namesAndValues.length / 2;
+        }
+
+        @Override
+        public String name(int field) {
+            return namesAndValues[field * 2];
+        }
+
+        @Override
+        public String value(int field) {
+            return namesAndValues[field * 2 + 1];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.time.Duration;
+
+public class HttpClientConfigurationTest implements WithAssertions {
+
+    @Test
+    public void modifyConfiguration() {
+        HttpClientConfiguration configuration = HttpClientConfiguration.builder()
+                .maxConnections(10)
+                .maxConnectionsPerHost(5)
+                .keepAlive(Duration.ofSeconds(30))
+                .validateAfterInactivity(Duration.ofSeconds(1))
+                .tcpNoDelay(false)
+                .sendBufferSize(1024)
+                .receiveBufferSize(2048)
+                .connectTimeout(Duration.ofSeconds(1))
+                .readTimeout(Duration.ofSeconds(3))
+                .http2PriorKnowledge(true)
+                .decompressResponses(false)
+                .requestCompressionThreshold(4096)
+                .build();
+
+        assertThat(configuration.modify().build()).isEqualTo(configuration);
+    }
+
+    @Test
+    public void defaults() {
+        HttpClientConfiguration defaults = HttpClientConfiguration.defaults();
+
+        assertThat(defaults.maxConnections).isEqualTo(64);
+        assertThat(defaults.maxConnectionsPerHost).isEqualTo(16);
+        assertThat(defaults.keepAlive).isEqualTo(Duration.ofMinutes(5));
+        assertThat(defaults.tcpNoDelay).isTrue();
+        assertThat(defaults.http2PriorKnowledge).isFalse();
+        assertThat(defaults.decompressResponses).isTrue();
+        assertThat(defaults.requestCompressionThreshold).isZero();
+    }
+
+    @Test
+    public void maxConnectionsMustBePositive() {
+        assertThatThrownBy(() -> HttpClientConfiguration.builder().maxConnections(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maxConnections should be positive but was 0");
+    }
+
+    @Test
+    public void timeoutsMustNotBeNegative() {
+        assertThatThrownBy(() -> HttpClientConfiguration.builder().readTimeout(Duration.ofMillis(-1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("readTimeout should not be negative but was PT-0.001S");
+    }
+
+    @Test
+    public void maxConnectionsPerHostMustNotExceedMaxConnections() {
+        assertThatThrownBy(() -> HttpClientConfiguration.builder().maxConnections(2).maxConnectionsPerHost(3).build())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("maxConnectionsPerHost (3) should not be more than maxConnections (2)!");
+    }
+
+    @Test
+    public void equalsContract() {
+        EqualsVerifier.forClass(HttpClientConfiguration.class)
+                .withPrefabValues(Duration.class, Duration.ofSeconds(1), Duration.ofSeconds(2))
+                .verify();
+    }
+}
@@ -18,9 +18,24 @@
 package io.github.theangrydev.thinhttpclient.api;
 
 import nl.jqno.equalsverifier.EqualsVerifier;
+import org.assertj.core.api.WithAssertions;
 import org.junit.Test;
 
-public class MediaTypeTest {
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class MediaTypeTest implements WithAssertions {
+
+    @Test
+    public void charsetIsTakenFromTheContentType() {
+        assertThat(MediaType.charset("text/plain; charset=\"ISO-8859-1\"; format=flowed")).isEqualTo(ISO_8859_1);
+    }
+
+    @Test
+    public void charsetDefaultsToUtf8() {
+        assertThat(MediaType.charset("")).isEqualTo(UTF_8);
+        assertThat(MediaType.charset("text/plain; charset=unknown")).isEqualTo(UTF_8);
+    }
 
     @Test
     public void equalsContract() {
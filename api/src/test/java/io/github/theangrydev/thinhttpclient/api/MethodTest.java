@@ -22,6 +22,7 @@ import org.assertj.core.api.WithAssertions;
 import org.junit.Test;
 
 import static io.github.theangrydev.thinhttpclient.api.Method.*;
+import static java.util.Arrays.asList;
 
 
 public class MethodTest implements WithAssertions {
@@ -51,6 +52,18 @@ public class MethodTest implements WithAssertions {
         assertThat(PATCH).hasToString("PATCH");
     }
 
+    @Test
+    public void safeMethods() {
+        assertThat(asList(OPTIONS, GET, HEAD, TRACE)).allMatch(Method::isSafe);
+        assertThat(asList(POST, PUT, DELETE, CONNECT, PATCH, method("PROPFIND", false))).filteredOn(Method::isSafe).isEmpty();
+    }
+
+    @Test
+    public void idempotentMethods() {
+        assertThat(asList(OPTIONS, GET, HEAD, TRACE, PUT, DELETE)).allMatch(Method::isIdempotent);
+        assertThat(asList(POST, CONNECT, PATCH, method("PROPFIND", false))).filteredOn(Method::isIdempotent).isEmpty();
+    }
+
     @Test
     public void equalsContract() {
         EqualsVerifier.forClass(Method.class).verify();
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import static io.github.theangrydev.thinhttpclient.api.Protocol.*;
+
+public class ProtocolTest implements WithAssertions {
+
+    @Test
+    public void lookupByProtocolName() {
+        assertThat(Protocol.protocol("HTTP/1.0")).isEqualTo(HTTP_1_0);
+        assertThat(Protocol.protocol("HTTP/1.1")).isEqualTo(HTTP_1_1);
+        assertThat(Protocol.protocol("HTTP/2")).isEqualTo(HTTP_2);
+    }
+
+    @Test
+    public void unrecognisedProtocol() {
+        assertThatThrownBy(() -> Protocol.protocol("SPDY/3.1"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unrecognised protocol 'SPDY/3.1'");
+    }
+
+    @Test
+    public void equalsContract() {
+        EqualsVerifier.forClass(Protocol.class).verify();
+    }
+}
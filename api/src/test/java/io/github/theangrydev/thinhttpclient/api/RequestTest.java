@@ -21,8 +21,7 @@ import nl.jqno.equalsverifier.EqualsVerifier;
 import org.assertj.core.api.WithAssertions;
 import org.junit.Test;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.time.Duration;
 
 import static io.github.theangrydev.thinhttpclient.api.Header.header;
 import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
@@ -34,8 +33,8 @@ public class RequestTest implements WithAssertions {
     private static final Headers HEADERS_2 = headers(header("b", "2"));
     private static final Method METHOD_1 = Method.GET;
     private static final Method METHOD_2 = Method.POST;
-    private static final URL URL_1 = url("http://www.google.co.uk/");
-    private static final URL URL_2 = url("http://www.bbc.co.uk/");
+    private static final Url URL_1 = Url.url("http://www.google.co.uk/");
+    private static final Url URL_2 = Url.url("http://www.bbc.co.uk/");
 
     @Test
     public void modifyRequest() {
@@ -44,24 +43,72 @@ public class RequestTest implements WithAssertions {
         assertThat(request.modify().build()).isEqualTo(request);
     }
 
+    @Test
+    public void requestsWithTheSameUrlTextAreEqualWithoutResolvingTheHost() {
+        Request request = Request.get().url("http://unresolvable.invalid/path").build();
+        Request sameRequest = Request.get().url("http://unresolvable.invalid/path").build();
+
+        assertThat(request).isEqualTo(sameRequest);
+        assertThat(request.hashCode()).isEqualTo(sameRequest.hashCode());
+    }
+
+    @Test
+    public void modifyKeepsTheTimeouts() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+        Request request = someRequest().modify()
+                .connectTimeout(Duration.ofSeconds(1))
+                .readTimeout(Duration.ZERO)
+                .timeout(Duration.ofSeconds(3))
+                .deadline(deadline)
+                .build();
+
+        Request modified = request.modify().build();
+
+        assertThat(modified).isEqualTo(request);
+        assertThat(modified.connectTimeout).contains(Duration.ofSeconds(1));
+        assertThat(modified.readTimeout).contains(Duration.ZERO);
+        assertThat(modified.timeout).contains(Duration.ofSeconds(3));
+        assertThat(modified.deadline).contains(deadline);
+    }
+
+    @Test
+    public void timeoutsAreNotSetByDefault() {
+        Request request = someRequest();
+
+        assertThat(request.connectTimeout).isEmpty();
+        assertThat(request.readTimeout).isEmpty();
+        assertThat(request.timeout).isEmpty();
+        assertThat(request.deadline).isEmpty();
+    }
+
+    @Test
+    public void timeoutMustBePositive() {
+        assertThatThrownBy(() -> Request.get().timeout(Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("timeout should be positive but was PT0S");
+    }
+
+    @Test
+    public void connectAndReadTimeoutsMustNotBeNegative() {
+        assertThatThrownBy(() -> Request.get().connectTimeout(Duration.ofMillis(-1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("connectTimeout should not be negative but was PT-0.001S");
+        assertThatThrownBy(() -> Request.get().readTimeout(Duration.ofMillis(-1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("readTimeout should not be negative but was PT-0.001S");
+    }
+
     @Test
     public void equalsContract() {
         EqualsVerifier.forClass(Request.class)
                 .withPrefabValues(Method.class, METHOD_1, METHOD_2)
                 .withPrefabValues(Headers.class, HEADERS_1, HEADERS_2)
-                .withPrefabValues(URL.class, URL_1, URL_2)
+                .withPrefabValues(Url.class, URL_1, URL_2)
+                .withPrefabValues(Duration.class, Duration.ofSeconds(1), Duration.ofSeconds(2))
                 .verify();
     }
 
     private Request someRequest() {
         return Request.post().header("a", "1").header("b", "2").body("{\"x\": 2}", APPLICATION_JSON).url(URL_1).build();
     }
-
-    private static URL url(String url) {
-        try {
-            return new URL(url);
-        } catch (MalformedURLException e) {
-            throw new IllegalStateException(e);
-        }
-    }
 }
\ No newline at end of file
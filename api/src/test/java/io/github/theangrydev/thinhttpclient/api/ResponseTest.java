@@ -32,6 +32,8 @@ public class ResponseTest {
     public void equalsContract() {
         EqualsVerifier.forClass(Response.class)
                 .withPrefabValues(Headers.class, HEADERS_1, HEADERS_2)
+                .withPrefabValues(Protocol.class, Protocol.HTTP_1_1, Protocol.HTTP_2)
+                .withIgnoredFields("timings") // They describe the call rather than the response
                 .verify();
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.StreamingResponse.streamingResponse;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class StreamingResponseTest implements WithAssertions {
+
+    @Test
+    public void bodyCanBeReadAsAChannel() throws IOException {
+        StreamingResponse response = streamingResponse(headers(), 200, new ByteArrayInputStream("body".getBytes(UTF_8)));
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        try (ReadableByteChannel channel = response.channel()) {
+            while (channel.read(buffer) != -1) {
+                // Keep reading until the end of the body
+            }
+        }
+
+        assertThat(new String(buffer.array(), 0, buffer.position(), UTF_8)).isEqualTo("body");
+    }
+
+    @Test
+    public void closingTheResponseClosesTheBody() throws IOException {
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream body = new ByteArrayInputStream(new byte[0]) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        streamingResponse(headers(), 200, body).close();
+
+        assertThat(closed.get()).isTrue();
+    }
+
+    @Test
+    public void headersAreAvailableBeforeTheBodyIsRead() {
+        StreamingResponse response = streamingResponse(headers(header("name", "value")), 200, new ByteArrayInputStream(new byte[0]));
+
+        assertThat(response.header("name")).isEqualTo("value");
+        assertThat(response.headerValues("name")).containsExactly("value");
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Timings.NOT_MEASURED;
+
+public class TimingsTest implements WithAssertions {
+
+    @Test
+    public void equalsContract() {
+        EqualsVerifier.forClass(Timings.class).verify();
+    }
+
+    @Test
+    public void phasesAreNotMeasuredUnlessTheyAreSet() {
+        Timings timings = Timings.builder().timeToFirstByteNanos(5).totalNanos(7).build();
+
+        assertThat(timings.dnsNanos).isEqualTo(NOT_MEASURED);
+        assertThat(timings.connectNanos).isEqualTo(NOT_MEASURED);
+        assertThat(timings.tlsNanos).isEqualTo(NOT_MEASURED);
+        assertThat(timings.timeToFirstByteNanos).isEqualTo(5);
+        assertThat(timings.bodyNanos).isEqualTo(NOT_MEASURED);
+        assertThat(timings.totalNanos).isEqualTo(7);
+        assertThat(timings.connectionReused).isEmpty();
+    }
+
+    @Test
+    public void responsesThatDoNotComeFromAnAdapterHaveNoTimings() {
+        assertThat(Response.response(headers(), 200, "").timings).isEqualTo(Timings.NONE);
+    }
+
+    @Test
+    public void toStringShowsEachPhase() {
+        Timings timings = Timings.builder().dnsNanos(1).connectNanos(2).tlsNanos(3).timeToFirstByteNanos(4).bodyNanos(5).totalNanos(15).connectionReused(false).build();
+
+        assertThat(timings).hasToString("dns=1ns, connect=2ns, tls=3ns, timeToFirstByte=4ns, body=5ns, total=15ns, connectionReused=false");
+    }
+}
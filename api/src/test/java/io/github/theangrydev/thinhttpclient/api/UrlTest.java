@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.api;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static io.github.theangrydev.thinhttpclient.api.Url.url;
+
+public class UrlTest implements WithAssertions {
+
+    @Test
+    public void componentsAreParsed() {
+        Url url = url("HTTPS://Example.COM:8443/a/b%20c?x=1&y=2#section");
+
+        assertThat(url.scheme).isEqualTo("https");
+        assertThat(url.host).isEqualTo("example.com");
+        assertThat(url.port).isEqualTo(8443);
+        assertThat(url.path).isEqualTo("/a/b%20c");
+        assertThat(url.query).isEqualTo("x=1&y=2");
+        assertThat(url.fragment).isEqualTo("section");
+        assertThat(url).hasToString("https://example.com:8443/a/b%20c?x=1&y=2#section");
+    }
+
+    @Test
+    public void missingComponentsAreEmpty() {
+        Url url = url("http://example.com");
+
+        assertThat(url.port).isEqualTo(-1);
+        assertThat(url.path).isEmpty();
+        assertThat(url.query).isEmpty();
+        assertThat(url.fragment).isEmpty();
+        assertThat(url.effectivePort()).isEqualTo(80);
+        assertThat(url.requestTarget()).isEqualTo("/");
+    }
+
+    @Test
+    public void requestTargetIsThePathAndQuery() {
+        assertThat(url("http://example.com/path?query#fragment").requestTarget()).isEqualTo("/path?query");
+        assertThat(url("http://example.com?query").requestTarget()).isEqualTo("/?query");
+    }
+
+    @Test
+    public void authorityOnlyIncludesAPortThatIsNotTheDefault() {
+        assertThat(url("http://example.com:80/").authority()).isEqualTo("example.com");
+        assertThat(url("https://example.com:443/").authority()).isEqualTo("example.com");
+        assertThat(url("http://example.com:8080/").authority()).isEqualTo("example.com:8080");
+        assertThat(url("https://example.com/").effectivePort()).isEqualTo(443);
+    }
+
+    @Test
+    public void ipv6LiteralsKeepTheirBrackets() {
+        Url url = url("http://[::1]:8080/");
+
+        assertThat(url.host).isEqualTo("[::1]");
+        assertThat(url.port).isEqualTo(8080);
+    }
+
+    @Test
+    public void invalidUrlsAreRejected() {
+        assertThatThrownBy(() -> url("example.com/path")).isInstanceOf(IllegalArgumentException.class).hasMessage("URL 'example.com/path' is not absolute");
+        assertThatThrownBy(() -> url("ftp://example.com/")).isInstanceOf(IllegalArgumentException.class).hasMessage("URL 'ftp://example.com/' has scheme 'ftp' but only http and https are supported");
+        assertThatThrownBy(() -> url("http:///path")).isInstanceOf(IllegalArgumentException.class).hasMessage("URL 'http:///path' has no host");
+        assertThatThrownBy(() -> url("http://example.com:99999/")).isInstanceOf(IllegalArgumentException.class).hasMessage("URL 'http://example.com:99999/' has an invalid port '99999'");
+        assertThatThrownBy(() -> url("http://user@example.com/")).isInstanceOf(IllegalArgumentException.class).hasMessage("URL 'http://user@example.com/' has user information, which is not supported");
+        assertThatThrownBy(() -> url("http://example.com/a b")).isInstanceOf(IllegalArgumentException.class).hasMessage("URL 'http://example.com/a b' has a character that must be percent-encoded at index 2");
+        assertThatThrownBy(() -> url(null)).isInstanceOf(IllegalArgumentException.class).hasMessage("URL must not be null");
+    }
+
+    @Test
+    public void queryParametersArePercentEncoded() {
+        Url url = Url.builder().host("example.com").path("/search").queryParameter("q", "a b&c=d").queryParameter("lang", "\u00e9").build();
+
+        assertThat(url).hasToString("http://example.com/search?q=a%20b%26c%3Dd&lang=%C3%A9");
+    }
+
+    @Test
+    public void modifyKeepsTheComponents() {
+        Url url = url("https://example.com:8443/path?x=1#fragment");
+
+        assertThat(url.modify().build()).isEqualTo(url);
+        assertThat(url.modify().queryParameter("y", "2").build()).hasToString("https://example.com:8443/path?x=1&y=2#fragment");
+    }
+
+    @Test
+    public void equalUrlsHaveEqualHashCodesWithoutResolvingTheHost() {
+        Url url = url("http://Unresolvable.invalid/path");
+        Url sameUrl = url("http://unresolvable.invalid/path");
+
+        assertThat(url).isEqualTo(sameUrl);
+        assertThat(url.hashCode()).isEqualTo(sameUrl.hashCode());
+        assertThat(url).isNotEqualTo(url("http://unresolvable.invalid/other"));
+    }
+
+    @Test
+    public void convertsToAUri() {
+        assertThat(url("http://example.com/a%20b?x=1").toUri()).isEqualTo(URI.create("http://example.com/a%20b?x=1"));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.benchmarks;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+
+import io.github.theangrydev.thinhttpclient.apache.ApacheHttpClient;
+import io.github.theangrydev.thinhttpclient.nio.NioHttpClient;
+import io.github.theangrydev.thinhttpclient.okhttp.OkHttpClient;
+
+import java.util.function.Supplier;
+
+/**
+ * The {@link HttpClient} implementations that are benchmarked against each other.
+ */
+public enum Adapter {
+    APACHE(ApacheHttpClient::apacheHttpClient),
+    OKHTTP(OkHttpClient::okHttpClient),
+    NIO(NioHttpClient::nioHttpClient);
+
+    private final Supplier<HttpClient> factory;
+
+    Adapter(Supplier<HttpClient> factory) {
+        this.factory = factory;
+    }
+
+    HttpClient create() {
+        return factory.get();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.benchmarks;
+
+/**
+ * The body sizes that are benchmarked. For GET and HEAD this is the size of the response body and for POST it is the
+ * size of the request body.
+ */
+public enum BodySize {
+    SMALL(16),
+    KIB_64(64 * 1024),
+    MIB_10(10 * 1024 * 1024);
+
+    public final int bytes;
+
+    BodySize(int bytes) {
+        this.bytes = bytes;
+    }
+}
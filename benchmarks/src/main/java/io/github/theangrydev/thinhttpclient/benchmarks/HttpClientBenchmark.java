@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.benchmarks;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Method;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.theangrydev.thinhttpclient.api.MediaType.TEXT_PLAIN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Measures {@link HttpClient#execute(Request)} end to end through each {@link Adapter} against a {@link LoopbackServer}.
+ * <p>
+ * Run it with {@link BenchmarkRunner} to also get the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpClientBenchmark {
+
+    @Param({"APACHE", "OKHTTP"})
+    public Adapter adapter;
+
+    @Param({"GET", "HEAD", "POST"})
+    public String method;
+
+    @Param({"SMALL", "KIB_64", "MIB_10"})
+    public BodySize bodySize;
+
+    private LoopbackServer server;
+    private HttpClient httpClient;
+    private Request request;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = LoopbackServer.start();
+        httpClient = adapter.create();
+        request = request(Method.method(method));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        httpClient.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Response execute() throws IOException {
+        return httpClient.execute(request);
+    }
+
+    private Request request(Method method) {
+        Request.RequestBuilder builder = Request.builder().method(method);
+        if (method.hasBody) {
+            return builder.url(server.baseUrl() + "/" + BodySize.SMALL.bytes)
+                    .body(Payloads.text(bodySize.bytes), TEXT_PLAIN, US_ASCII)
+                    .build();
+        }
+        return builder.url(server.baseUrl() + "/" + bodySize.bytes).build();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * A minimal HTTP/1.1 server bound to the loopback interface, so that the benchmarks measure the clients and not the
+ * network or a heavyweight server.
+ * <p>
+ * A GET for {@code /<bytes>} returns a body of that many bytes, a HEAD returns only a status and any other method has
+ * its request body drained and gets a small acknowledgement back.
+ */
+final class LoopbackServer implements AutoCloseable {
+
+    private static final byte[] ACKNOWLEDGEMENT = "ok".getBytes(US_ASCII);
+    private static final int DRAIN_BUFFER_SIZE = 64 * 1024;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    private LoopbackServer(HttpServer httpServer, ExecutorService executor) {
+        this.httpServer = httpServer;
+        this.executor = executor;
+    }
+
+    static LoopbackServer start() throws IOException {
+        // The server writes the response head and body separately, so with Nagle's algorithm on, pipelined responses
+        // stall on the client's delayed ACKs. This is read once, when the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/", LoopbackServer::handle);
+        httpServer.start();
+        return new LoopbackServer(httpServer, executor);
+    }
+
+    String baseUrl() {
+        InetSocketAddress address = httpServer.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if ("GET".equals(method)) {
+                respond(exchange, Payloads.payload(requestedBytes(exchange)));
+            } else if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                drain(exchange.getRequestBody());
+                respond(exchange, ACKNOWLEDGEMENT);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static int requestedBytes(HttpExchange exchange) {
+        return Integer.parseInt(exchange.getRequestURI().getPath().substring(1));
+    }
+
+    private static void drain(InputStream requestBody) throws IOException {
+        byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        while (requestBody.read(buffer) != -1) {
+            // Discard the body, only the transfer is of interest
+        }
+    }
+}
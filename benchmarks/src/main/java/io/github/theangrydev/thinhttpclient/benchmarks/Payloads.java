@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.benchmarks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * ASCII payloads of a given size, created once and shared so that building them is not part of the measurement.
+ */
+final class Payloads {
+
+    private static final Map<Integer, byte[]> PAYLOADS = new ConcurrentHashMap<>();
+
+    private Payloads() {
+    }
+
+    static byte[] payload(int bytes) {
+        return PAYLOADS.computeIfAbsent(bytes, Payloads::create);
+    }
+
+    static String text(int bytes) {
+        return new String(payload(bytes), US_ASCII);
+    }
+
+    private static byte[] create(int bytes) {
+        byte[] payload = new byte[bytes];
+        Arrays.fill(payload, (byte) 'x');
+        return payload;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.balance;
+
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Url;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * One replica of a service. Its cost is a peak-sensitive moving average of its latency, multiplied by the number of
+ * requests that are outstanding to it plus one, so that both a slow replica and a busy one look expensive. The average
+ * jumps straight up to a latency that is above it and decays towards one that is below it, so a replica that slows
+ * down is avoided at once and is only trusted again gradually.
+ *
+ * @see <a href="https://twitter.github.io/finagle/guide/Clients.html#power-of-two-choices-p2c-peak-ewma">Finagle P2C Peak EWMA</a>
+ */
+final class Endpoint {
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    private final Url base;
+    private final LoadBalancingHttpClient.Settings settings;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile double latencyNanos;
+    private volatile long ejectedUntil;
+    private long lastSample;
+    private int ejections;
+
+    Endpoint(Url base, LoadBalancingHttpClient.Settings settings, long now) {
+        this.base = base;
+        this.settings = settings;
+        this.lastSample = now;
+        this.ejectedUntil = now;
+    }
+
+    Request route(Request request) {
+        Url url = request.url.modify().scheme(base.scheme).host(base.host).port(base.port).path(base.path + request.url.path).build();
+        return request.modify().url(url).build();
+    }
+
+    /**
+     * @return The cost of sending one more request to this endpoint. An endpoint that has not answered yet costs
+     * nothing until a request is outstanding to it, and then costs more than any that has.
+     */
+    double cost() {
+        int pending = outstanding.get();
+        double latency = latencyNanos;
+        if (latency == 0 && pending != 0) {
+            return PENALTY;
+        }
+        return latency * (pending + 1);
+    }
+
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    boolean isEjected(long now) {
+        return now - ejectedUntil < 0;
+    }
+
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    void cancelled() {
+        outstanding.decrementAndGet();
+    }
+
+    void finished(long start, long now, boolean failed) {
+        outstanding.decrementAndGet();
+        sample(now, now - start);
+        if (!failed) {
+            consecutiveFailures.set(0);
+            succeeded(now);
+        } else if (consecutiveFailures.incrementAndGet() >= settings.consecutiveFailures) {
+            eject(now);
+        }
+    }
+
+    private synchronized void sample(long now, long latency) {
+        double weight = exp(-max(now - lastSample, 0) / (double) settings.decayNanos);
+        lastSample = now;
+        double average = latencyNanos;
+        latencyNanos = latency > average ? latency : average * weight + latency * (1 - weight);
+    }
+
+    private synchronized void succeeded(long now) {
+        if (!isEjected(now)) {
+            ejections = 0;
+        }
+    }
+
+    private synchronized void eject(long now) {
+        if (isEjected(now)) {
+            return;
+        }
+        consecutiveFailures.set(0);
+        ejections++;
+        long ejection = settings.ejectionNanos;
+        for (int i = 1; i < ejections && ejection < settings.maxEjectionNanos; i++) {
+            ejection *= 2;
+        }
+        ejectedUntil = now + min(ejection, settings.maxEjectionNanos);
+    }
+
+    @Override
+    public String toString() {
+        return base.toString();
+    }
+}
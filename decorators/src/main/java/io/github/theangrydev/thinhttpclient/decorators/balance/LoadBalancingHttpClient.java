@@ -0,0 +1,313 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.balance;
+
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.api.Url;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * A {@link HttpClient} that sends requests for a logical host to one of several replicas of a service, so that callers
+ * can build every {@link Request} against the service name and leave it to this client to choose where it goes.
+ * <p>
+ * A request whose {@link Url#host} is a logical host has the scheme, host and port of its URL replaced by those of
+ * the chosen replica, and the path of the replica, if it has one, put in front of its path. Requests for any other
+ * host are passed to the delegate unchanged.
+ * <p>
+ * Each request goes to the cheaper of two replicas picked at random, where the cost of a replica is its recent
+ * latency multiplied by the number of requests outstanding to it plus one. This spreads the load evenly across
+ * replicas that are equally fast and moves it away from one that is slow or backed up. A replica that fails a
+ * number of calls in a row, by throwing an {@link IOException} or with a response that the failure predicate matches,
+ * is ejected: it is not picked again until the ejection time has passed, which doubles each time it is ejected again
+ * before it has answered a call successfully. If every replica is ejected they are all picked from as usual.
+ * <p>
+ * A streaming call counts as outstanding until its response head arrives.
+ */
+public final class LoadBalancingHttpClient implements HttpClient {
+    private final HttpClient delegate;
+    private final Map<String, Service> services;
+    private final Predicate<Response> failure;
+    private final LongSupplier ticker;
+
+    private LoadBalancingHttpClient(HttpClient delegate, Map<String, Service> services, Predicate<Response> failure, LongSupplier ticker) {
+        this.delegate = delegate;
+        this.services = services;
+        this.failure = failure;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Start building a {@link LoadBalancingHttpClient}.
+     *
+     * @param delegate The {@link HttpClient} to send the requests with.
+     * @return A {@link LoadBalancingHttpClient.LoadBalancingHttpClientBuilder} that averages latencies over 10
+     * seconds and ejects a replica for 30 seconds, up to 5 minutes, after 5 failures in a row.
+     */
+    public static LoadBalancingHttpClientBuilder builder(HttpClient delegate) {
+        return new LoadBalancingHttpClientBuilder(delegate);
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Service service = services.get(request.url.host);
+        if (service == null) {
+            return delegate.execute(request);
+        }
+        long start = ticker.getAsLong();
+        Endpoint endpoint = service.select(start);
+        Request routed = endpoint.route(request);
+        endpoint.start();
+        Response response;
+        try {
+            response = delegate.execute(routed);
+        } catch (IOException | RuntimeException exception) {
+            endpoint.finished(start, ticker.getAsLong(), true);
+            throw exception;
+        }
+        endpoint.finished(start, ticker.getAsLong(), failure.test(response));
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        Service service = services.get(request.url.host);
+        if (service == null) {
+            return delegate.executeAsync(request);
+        }
+        long start = ticker.getAsLong();
+        Endpoint endpoint = service.select(start);
+        Request routed = endpoint.route(request);
+        endpoint.start();
+        CompletableFuture<Response> response;
+        try {
+            response = delegate.executeAsync(routed);
+        } catch (RuntimeException exception) {
+            endpoint.finished(start, ticker.getAsLong(), true);
+            throw exception;
+        }
+        response.whenComplete((result, exception) -> {
+            if (exception instanceof CancellationException) {
+                endpoint.cancelled();
+            } else {
+                endpoint.finished(start, ticker.getAsLong(), exception != null || failure.test(result));
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        Service service = services.get(request.url.host);
+        if (service == null) {
+            return delegate.executeStreaming(request);
+        }
+        long start = ticker.getAsLong();
+        Endpoint endpoint = service.select(start);
+        Request routed = endpoint.route(request);
+        endpoint.start();
+        StreamingResponse response;
+        try {
+            response = delegate.executeStreaming(routed);
+        } catch (IOException | RuntimeException exception) {
+            endpoint.finished(start, ticker.getAsLong(), true);
+            throw exception;
+        }
+        endpoint.finished(start, ticker.getAsLong(), failure.test(Response.response(response.headers, response.status, "")));
+        return response;
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /**
+     * The settings that every replica shares.
+     */
+    static final class Settings {
+        final long decayNanos;
+        final int consecutiveFailures;
+        final long ejectionNanos;
+        final long maxEjectionNanos;
+
+        Settings(long decayNanos, int consecutiveFailures, long ejectionNanos, long maxEjectionNanos) {
+            this.decayNanos = decayNanos;
+            this.consecutiveFailures = consecutiveFailures;
+            this.ejectionNanos = ejectionNanos;
+            this.maxEjectionNanos = maxEjectionNanos;
+        }
+    }
+
+    /**
+     * This is a builder for {@link LoadBalancingHttpClient} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static final class LoadBalancingHttpClientBuilder {
+        private final HttpClient delegate;
+        private final Map<String, List<Url>> services = new LinkedHashMap<>();
+        private Duration decayTime = Duration.ofSeconds(10);
+        private int consecutiveFailures = 5;
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+        private Predicate<Response> failure = response -> response.status >= 500;
+        private LongSupplier ticker = System::nanoTime;
+
+        private LoadBalancingHttpClientBuilder(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param logicalHost The host that requests for the service are built against.
+         * @param endpoints The base URLs of the replicas, such as "http://10.0.0.1:8080" or "https://host/prefix".
+         * @return This {@link LoadBalancingHttpClientBuilder}.
+         * @throws IllegalArgumentException If there are no endpoints, or one of them is not a valid http or https URL
+         * or has a query or fragment.
+         */
+        public LoadBalancingHttpClientBuilder service(String logicalHost, String... endpoints) {
+            return service(logicalHost, asList(endpoints));
+        }
+
+        /**
+         * @param logicalHost The host that requests for the service are built against.
+         * @param endpoints The base URLs of the replicas, such as "http://10.0.0.1:8080" or "https://host/prefix".
+         * @return This {@link LoadBalancingHttpClientBuilder}.
+         * @throws IllegalArgumentException If there are no endpoints, or one of them is not a valid http or https URL
+         * or has a query or fragment.
+         */
+        public LoadBalancingHttpClientBuilder service(String logicalHost, List<String> endpoints) {
+            if (endpoints.isEmpty()) {
+                throw new IllegalArgumentException(format("service '%s' must have at least one endpoint", logicalHost));
+            }
+            List<Url> bases = new ArrayList<>();
+            for (String endpoint : endpoints) {
+                bases.add(base(endpoint));
+            }
+            services.put(logicalHost.toLowerCase(Locale.ENGLISH), bases);
+            return this;
+        }
+
+        /**
+         * @param decayTime How long it takes for the latency of a replica to be mostly forgotten.
+         * @return This {@link LoadBalancingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the duration is not positive.
+         */
+        public LoadBalancingHttpClientBuilder decayTime(Duration decayTime) {
+            this.decayTime = checkPositive(decayTime, "decayTime");
+            return this;
+        }
+
+        /**
+         * @param consecutiveFailures How many calls in a row a replica must fail to be ejected.
+         * @param ejectionTime How long a replica is ejected for the first time.
+         * @param maxEjectionTime The longest a replica is ejected for, however many times it is ejected.
+         * @return This {@link LoadBalancingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the number or a duration is not positive, or the longest ejection time
+         * is shorter than the first.
+         */
+        public LoadBalancingHttpClientBuilder ejectAfter(int consecutiveFailures, Duration ejectionTime, Duration maxEjectionTime) {
+            if (consecutiveFailures <= 0) {
+                throw new IllegalArgumentException(format("consecutiveFailures must be positive but was %d", consecutiveFailures));
+            }
+            checkPositive(ejectionTime, "ejectionTime");
+            if (maxEjectionTime.compareTo(ejectionTime) < 0) {
+                throw new IllegalArgumentException(format("maxEjectionTime must be at least %s but was %s", ejectionTime, maxEjectionTime));
+            }
+            this.consecutiveFailures = consecutiveFailures;
+            this.ejectionTime = ejectionTime;
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        /**
+         * @param failure Which responses count as failures, on top of calls that throw an {@link IOException}.
+         * @return This {@link LoadBalancingHttpClientBuilder}.
+         */
+        public LoadBalancingHttpClientBuilder failure(Predicate<Response> failure) {
+            this.failure = failure;
+            return this;
+        }
+
+        /**
+         * @param ticker The source of {@link System#nanoTime()} readings that latencies and ejections are measured with.
+         * @return This {@link LoadBalancingHttpClientBuilder}.
+         */
+        LoadBalancingHttpClientBuilder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public LoadBalancingHttpClient build() {
+            Settings settings = new Settings(decayTime.toNanos(), consecutiveFailures, ejectionTime.toNanos(), maxEjectionTime.toNanos());
+            long now = ticker.getAsLong();
+            Map<String, Service> built = new HashMap<>();
+            services.forEach((logicalHost, bases) -> {
+                Endpoint[] endpoints = new Endpoint[bases.size()];
+                for (int i = 0; i < endpoints.length; i++) {
+                    endpoints[i] = new Endpoint(bases.get(i), settings, now);
+                }
+                built.put(logicalHost, new Service(endpoints));
+            });
+            return new LoadBalancingHttpClient(delegate, unmodifiableMap(built), failure, ticker);
+        }
+
+        private static Url base(String endpoint) {
+            Url url = Url.url(endpoint);
+            if (!url.query.isEmpty() || !url.fragment.isEmpty()) {
+                throw new IllegalArgumentException(format("endpoint '%s' must not have a query or fragment", endpoint));
+            }
+            if (url.path.endsWith("/")) {
+                return url.modify().path(url.path.substring(0, url.path.length() - 1)).build();
+            }
+            return url;
+        }
+
+        private static Duration checkPositive(Duration value, String fieldName) {
+            if (value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(format("%s must be positive but was %s", fieldName, value));
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.balance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The replicas behind one logical host, which picks between them with the power of two choices: it compares two
+ * replicas at random and takes the cheaper one. This spreads the load almost as well as comparing every replica,
+ * without every caller herding onto the same one.
+ *
+ * @see <a href="https://www.eecs.harvard.edu/~michaelm/postscripts/tpds2001.pdf">The Power of Two Choices in Randomized Load Balancing</a>
+ */
+final class Service {
+    private final Endpoint[] endpoints;
+
+    Service(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * Replicas that have been ejected are only picked if every replica has been, since sending requests to a replica
+     * that might be failing is better than failing them all.
+     *
+     * @param now The current {@link System#nanoTime()}.
+     * @return The replica to send the next request to.
+     */
+    Endpoint select(long now) {
+        if (endpoints.length == 1) {
+            return endpoints[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(endpoints.length);
+        int second = random.nextInt(endpoints.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint one = endpoints[first];
+        Endpoint other = endpoints[second];
+        boolean oneAvailable = !one.isEjected(now);
+        boolean otherAvailable = !other.isEjected(now);
+        if (oneAvailable && otherAvailable) {
+            return cheaper(one, other);
+        }
+        if (oneAvailable) {
+            return one;
+        }
+        if (otherAvailable) {
+            return other;
+        }
+        Endpoint cheapest = null;
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.isEjected(now) && (cheapest == null || cheaper(endpoint, cheapest) == endpoint)) {
+                cheapest = endpoint;
+            }
+        }
+        return cheapest == null ? cheaper(one, other) : cheapest;
+    }
+
+    private static Endpoint cheaper(Endpoint one, Endpoint other) {
+        double oneCost = one.cost();
+        double otherCost = other.cost();
+        if (oneCost == otherCost) {
+            return one.outstanding() <= other.outstanding() ? one : other;
+        }
+        return oneCost < otherCost ? one : other;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.breaker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.theangrydev.thinhttpclient.decorators.breaker.CircuitBreakerHttpClient.State.CLOSED;
+import static io.github.theangrydev.thinhttpclient.decorators.breaker.CircuitBreakerHttpClient.State.HALF_OPEN;
+import static io.github.theangrydev.thinhttpclient.decorators.breaker.CircuitBreakerHttpClient.State.OPEN;
+
+/**
+ * The circuit for one host. Each state is an immutable {@link Phase}, apart from the trial call counters of a half
+ * open one, and moving between them is a compare and set, so that the checks on the hot path never lock.
+ */
+final class CircuitBreaker {
+    private final CircuitBreakerHttpClient.Settings settings;
+    private final SlidingWindow window;
+    private final AtomicReference<Phase> phase;
+
+    CircuitBreaker(CircuitBreakerHttpClient.Settings settings, long now) {
+        this.settings = settings;
+        this.window = new SlidingWindow(settings.windowNanos, settings.windowBuckets);
+        this.phase = new AtomicReference<>(new Phase(CLOSED, now, 0));
+    }
+
+    /**
+     * @param now The current {@link System#nanoTime()}.
+     * @return The phase that the call was let through in, which its outcome is reported against, or null if the
+     * call should be rejected.
+     */
+    Phase tryAcquire(long now) {
+        while (true) {
+            Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return current;
+                case OPEN:
+                    if (now - current.since < settings.openNanos) {
+                        return null;
+                    }
+                    phase.compareAndSet(current, new Phase(HALF_OPEN, now, settings.halfOpenCalls));
+                    break;
+                default:
+                    return current.permits.getAndDecrement() > 0 ? current : null;
+            }
+        }
+    }
+
+    void onResult(Phase acquired, long now, long durationNanos, boolean failed) {
+        boolean slow = durationNanos >= settings.slowCallNanos;
+        if (acquired.state == CLOSED) {
+            window.record(now, failed, slow);
+            if (phase.get() == acquired && window.exceeds(now, acquired.since, settings.minimumCalls, settings.failureRate, settings.slowCallRate)) {
+                phase.compareAndSet(acquired, new Phase(OPEN, now, 0));
+            }
+        } else if (failed || slow) {
+            phase.compareAndSet(acquired, new Phase(OPEN, now, 0));
+        } else if (acquired.successes.incrementAndGet() == settings.halfOpenCalls) {
+            phase.compareAndSet(acquired, new Phase(CLOSED, now, 0));
+        }
+    }
+
+    /**
+     * A call that was cancelled says nothing about the host, but a trial call must still be given back, or the
+     * circuit could stay half open for good.
+     */
+    void onCancelled(Phase acquired) {
+        if (acquired.state == HALF_OPEN) {
+            acquired.permits.incrementAndGet();
+        }
+    }
+
+    CircuitBreakerHttpClient.State state() {
+        return phase.get().state;
+    }
+
+    static final class Phase {
+        final CircuitBreakerHttpClient.State state;
+        final long since;
+        final AtomicInteger permits;
+        final AtomicInteger successes = new AtomicInteger();
+
+        Phase(CircuitBreakerHttpClient.State state, long since, int permits) {
+            this.state = state;
+            this.since = since;
+            this.permits = new AtomicInteger(permits);
+        }
+    }
+}
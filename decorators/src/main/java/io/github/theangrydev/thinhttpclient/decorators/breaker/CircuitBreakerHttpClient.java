@@ -0,0 +1,347 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.breaker;
+
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+
+/**
+ * A {@link HttpClient} that stops sending requests to a host that keeps failing or answering slowly, so that callers
+ * fail straight away instead of each waiting for a timeout and holding on to a pooled connection while they do.
+ * <p>
+ * Each host has its own circuit, keyed by {@link io.github.theangrydev.thinhttpclient.api.Url#host}, which starts
+ * {@link State#CLOSED closed}. Once enough calls have been made in the sliding window and the percentage of them
+ * that failed or were slow reaches its threshold, the circuit {@link State#OPEN opens} and every request to the host
+ * is rejected with a {@link CircuitOpenException}, without reaching the delegate. After a while it becomes
+ * {@link State#HALF_OPEN half open} and lets a few trial calls through: if they all succeed quickly the circuit
+ * closes again, and if any of them fails it opens again.
+ * <p>
+ * A call fails if it throws an {@link IOException} or its response is one that the failure predicate matches,
+ * which by default is any 5xx status. A streaming call is judged by the time until its response head arrived.
+ *
+ * @see <a href="https://martinfowler.com/bliki/CircuitBreaker.html">Circuit Breaker</a>
+ */
+public final class CircuitBreakerHttpClient implements HttpClient {
+
+    /**
+     * The states of the circuit for a host.
+     */
+    public enum State {
+        /**
+         * Requests are sent and their outcomes are counted.
+         */
+        CLOSED,
+        /**
+         * Requests are rejected.
+         */
+        OPEN,
+        /**
+         * A few trial requests are sent to find out whether the host has recovered.
+         */
+        HALF_OPEN
+    }
+
+    private final HttpClient delegate;
+    private final Settings settings;
+    private final LongSupplier ticker;
+    private final ConcurrentHashMap<String, CircuitBreaker> circuits = new ConcurrentHashMap<>();
+
+    private CircuitBreakerHttpClient(HttpClient delegate, Settings settings, LongSupplier ticker) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Start building a {@link CircuitBreakerHttpClient}.
+     *
+     * @param delegate The {@link HttpClient} to send the requests with.
+     * @return A {@link CircuitBreakerHttpClient.CircuitBreakerHttpClientBuilder} that opens a circuit when at least
+     * 50% of at least 20 calls in the last 10 seconds failed, or all of them took 5 seconds or more, keeps it open for
+     * 30 seconds and then lets 5 trial calls through.
+     */
+    public static CircuitBreakerHttpClientBuilder builder(HttpClient delegate) {
+        return new CircuitBreakerHttpClientBuilder(delegate);
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        CircuitBreaker circuit = circuit(request);
+        CircuitBreaker.Phase phase = acquire(circuit, request);
+        long start = ticker.getAsLong();
+        Response response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException | RuntimeException exception) {
+            onFailure(circuit, phase, start, exception);
+            throw exception;
+        }
+        onResponse(circuit, phase, start, settings.failure.test(response));
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CircuitBreaker circuit = circuit(request);
+        CircuitBreaker.Phase phase;
+        try {
+            phase = acquire(circuit, request);
+        } catch (CircuitOpenException exception) {
+            CompletableFuture<Response> response = new CompletableFuture<>();
+            response.completeExceptionally(exception);
+            return response;
+        }
+        long start = ticker.getAsLong();
+        CompletableFuture<Response> response;
+        try {
+            response = delegate.executeAsync(request);
+        } catch (RuntimeException exception) {
+            onFailure(circuit, phase, start, exception);
+            throw exception;
+        }
+        response.whenComplete((result, failure) -> {
+            if (failure == null) {
+                onResponse(circuit, phase, start, settings.failure.test(result));
+            } else {
+                onFailure(circuit, phase, start, failure);
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        CircuitBreaker circuit = circuit(request);
+        CircuitBreaker.Phase phase = acquire(circuit, request);
+        long start = ticker.getAsLong();
+        StreamingResponse response;
+        try {
+            response = delegate.executeStreaming(request);
+        } catch (IOException | RuntimeException exception) {
+            onFailure(circuit, phase, start, exception);
+            throw exception;
+        }
+        onResponse(circuit, phase, start, settings.failure.test(Response.response(response.headers, response.status, "")));
+        return response;
+    }
+
+    /**
+     * @param host The host to check.
+     * @return The state of the circuit for the host, which is {@link State#CLOSED} if no requests have been made to it.
+     */
+    public State state(String host) {
+        CircuitBreaker circuit = circuits.get(host);
+        return circuit == null ? State.CLOSED : circuit.state();
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private CircuitBreaker circuit(Request request) {
+        String host = request.url.host;
+        CircuitBreaker circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = circuits.computeIfAbsent(host, ignored -> new CircuitBreaker(settings, ticker.getAsLong()));
+        }
+        return circuit;
+    }
+
+    private CircuitBreaker.Phase acquire(CircuitBreaker circuit, Request request) throws CircuitOpenException {
+        CircuitBreaker.Phase phase = circuit.tryAcquire(ticker.getAsLong());
+        if (phase == null) {
+            throw new CircuitOpenException(request.url.host);
+        }
+        return phase;
+    }
+
+    private void onResponse(CircuitBreaker circuit, CircuitBreaker.Phase phase, long start, boolean failed) {
+        long now = ticker.getAsLong();
+        circuit.onResult(phase, now, now - start, failed);
+    }
+
+    private void onFailure(CircuitBreaker circuit, CircuitBreaker.Phase phase, long start, Throwable failure) {
+        if (failure instanceof CancellationException) {
+            circuit.onCancelled(phase);
+        } else {
+            onResponse(circuit, phase, start, true);
+        }
+    }
+
+    /**
+     * The thresholds that every circuit shares.
+     */
+    static final class Settings {
+        final double failureRate;
+        final double slowCallRate;
+        final long slowCallNanos;
+        final int minimumCalls;
+        final long windowNanos;
+        final int windowBuckets;
+        final long openNanos;
+        final int halfOpenCalls;
+        final Predicate<Response> failure;
+
+        Settings(double failureRate, double slowCallRate, long slowCallNanos, int minimumCalls, long windowNanos,
+                 int windowBuckets, long openNanos, int halfOpenCalls, Predicate<Response> failure) {
+            this.failureRate = failureRate;
+            this.slowCallRate = slowCallRate;
+            this.slowCallNanos = slowCallNanos;
+            this.minimumCalls = minimumCalls;
+            this.windowNanos = windowNanos;
+            this.windowBuckets = windowBuckets;
+            this.openNanos = openNanos;
+            this.halfOpenCalls = halfOpenCalls;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * This is a builder for {@link CircuitBreakerHttpClient} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static final class CircuitBreakerHttpClientBuilder {
+        private static final int WINDOW_BUCKETS = 10;
+
+        private final HttpClient delegate;
+        private double failureRate = 50;
+        private double slowCallRate = 100;
+        private Duration slowCall = Duration.ofSeconds(5);
+        private int minimumCalls = 20;
+        private Duration window = Duration.ofSeconds(10);
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 5;
+        private Predicate<Response> failure = response -> response.status >= 500;
+        private LongSupplier ticker = System::nanoTime;
+
+        private CircuitBreakerHttpClientBuilder(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param percent The percentage of calls in the window that must fail for the circuit to open.
+         * @return This {@link CircuitBreakerHttpClientBuilder}.
+         * @throws IllegalArgumentException If the percentage is not between 0 and 100.
+         */
+        public CircuitBreakerHttpClientBuilder failureRate(double percent) {
+            this.failureRate = checkPercentage(percent, "failureRate");
+            return this;
+        }
+
+        /**
+         * @param slowCall How long a call must take to count as slow.
+         * @param percent The percentage of calls in the window that must be slow for the circuit to open.
+         * @return This {@link CircuitBreakerHttpClientBuilder}.
+         * @throws IllegalArgumentException If the duration is not positive or the percentage is not between 0 and 100.
+         */
+        public CircuitBreakerHttpClientBuilder slowCallRate(Duration slowCall, double percent) {
+            this.slowCall = checkPositive(slowCall, "slowCall");
+            this.slowCallRate = checkPercentage(percent, "slowCallRate");
+            return this;
+        }
+
+        /**
+         * @param window How far back calls are counted. It is split into ten slices that are dropped one at a time.
+         * @param minimumCalls How many calls there must be in the window before the circuit can open.
+         * @return This {@link CircuitBreakerHttpClientBuilder}.
+         * @throws IllegalArgumentException If the duration or the number is not positive.
+         */
+        public CircuitBreakerHttpClientBuilder window(Duration window, int minimumCalls) {
+            if (minimumCalls <= 0) {
+                throw new IllegalArgumentException(format("minimumCalls must be positive but was %d", minimumCalls));
+            }
+            this.window = checkPositive(window, "window");
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param openDuration How long the circuit stays open before trial calls are let through.
+         * @param halfOpenCalls How many trial calls must succeed for the circuit to close.
+         * @return This {@link CircuitBreakerHttpClientBuilder}.
+         * @throws IllegalArgumentException If the duration or the number is not positive.
+         */
+        public CircuitBreakerHttpClientBuilder open(Duration openDuration, int halfOpenCalls) {
+            if (halfOpenCalls <= 0) {
+                throw new IllegalArgumentException(format("halfOpenCalls must be positive but was %d", halfOpenCalls));
+            }
+            this.openDuration = checkPositive(openDuration, "openDuration");
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * @param failure Which responses count as failures, on top of calls that throw an {@link IOException}.
+         * @return This {@link CircuitBreakerHttpClientBuilder}.
+         */
+        public CircuitBreakerHttpClientBuilder failure(Predicate<Response> failure) {
+            this.failure = failure;
+            return this;
+        }
+
+        /**
+         * @param ticker The source of {@link System#nanoTime()} readings that calls are timed and circuits are
+         *               opened and closed with.
+         * @return This {@link CircuitBreakerHttpClientBuilder}.
+         */
+        CircuitBreakerHttpClientBuilder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public CircuitBreakerHttpClient build() {
+            return new CircuitBreakerHttpClient(delegate, new Settings(failureRate, slowCallRate, slowCall.toNanos(),
+                    minimumCalls, window.toNanos(), WINDOW_BUCKETS, openDuration.toNanos(), halfOpenCalls, failure), ticker);
+        }
+
+        private static double checkPercentage(double value, String fieldName) {
+            if (value < 0 || value > 100) {
+                throw new IllegalArgumentException(format("%s must be between 0 and 100 but was %s", fieldName, value));
+            }
+            return value;
+        }
+
+        private static Duration checkPositive(Duration value, String fieldName) {
+            if (value.isNegative() || value.isZero()) {
+                throw new IllegalArgumentException(format("%s must be positive but was %s", fieldName, value));
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.breaker;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request to a host whose circuit is open. It has no stack trace, so that rejecting a
+ * call costs next to nothing, and is not worth retrying until {@link #host} has had time to recover.
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The host that the request was for.
+     */
+    public final String host;
+
+    public CircuitOpenException(String host) {
+        super("The circuit for " + host + " is open");
+        this.host = host;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
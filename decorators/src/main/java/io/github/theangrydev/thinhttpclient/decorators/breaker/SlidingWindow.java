@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.breaker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The outcomes of the calls made within the last window of time, counted in a ring of buckets that each cover an
+ * equal slice of it. Recording is a few atomic operations on a fixed array, with no locks and no allocation.
+ * <p>
+ * The first call in a new slice takes over the oldest bucket and clears it, so a call that is recorded in the
+ * bucket at the same moment may be lost. The counts are only used for rates, so that does not matter.
+ */
+final class SlidingWindow {
+    private static final int FIELDS = 4;
+    private static final int EPOCH = 0;
+    private static final int CALLS = 1;
+    private static final int FAILURES = 2;
+    private static final int SLOW = 3;
+
+    private final AtomicLongArray buckets;
+    private final int size;
+    private final long bucketNanos;
+
+    SlidingWindow(long windowNanos, int size) {
+        this.buckets = new AtomicLongArray(size * FIELDS);
+        this.size = size;
+        this.bucketNanos = Math.max(1, windowNanos / size);
+        for (int bucket = 0; bucket < size; bucket++) {
+            buckets.set(bucket * FIELDS + EPOCH, Long.MIN_VALUE);
+        }
+    }
+
+    void record(long now, boolean failed, boolean slow) {
+        long epoch = Math.floorDiv(now, bucketNanos);
+        int bucket = (int) Math.floorMod(epoch, (long) size) * FIELDS;
+        long bucketEpoch = buckets.get(bucket + EPOCH);
+        if (bucketEpoch != epoch) {
+            if (bucketEpoch > epoch) {
+                // The call took so long that its slice has already been reused
+                return;
+            }
+            if (buckets.compareAndSet(bucket + EPOCH, bucketEpoch, epoch)) {
+                buckets.set(bucket + CALLS, 0);
+                buckets.set(bucket + FAILURES, 0);
+                buckets.set(bucket + SLOW, 0);
+            }
+        }
+        buckets.incrementAndGet(bucket + CALLS);
+        if (failed) {
+            buckets.incrementAndGet(bucket + FAILURES);
+        }
+        if (slow) {
+            buckets.incrementAndGet(bucket + SLOW);
+        }
+    }
+
+    /**
+     * @param now The current {@link System#nanoTime()}.
+     * @param since Calls recorded in slices before the one this falls in are not counted.
+     * @param minimumCalls How many calls there must be for the rates to mean anything.
+     * @param failureRate The percentage of calls that must have failed.
+     * @param slowCallRate The percentage of calls that must have been slow.
+     * @return True if there were enough calls and either rate was reached.
+     */
+    boolean exceeds(long now, long since, int minimumCalls, double failureRate, double slowCallRate) {
+        long currentEpoch = Math.floorDiv(now, bucketNanos);
+        long oldestEpoch = Math.max(currentEpoch - size + 1, Math.floorDiv(since, bucketNanos));
+        long calls = 0;
+        long failures = 0;
+        long slow = 0;
+        for (int bucket = 0; bucket < size * FIELDS; bucket += FIELDS) {
+            long epoch = buckets.get(bucket + EPOCH);
+            if (epoch >= oldestEpoch && epoch <= currentEpoch) {
+                calls += buckets.get(bucket + CALLS);
+                failures += buckets.get(bucket + FAILURES);
+                slow += buckets.get(bucket + SLOW);
+            }
+        }
+        if (calls < minimumCalls || calls == 0) {
+            return false;
+        }
+        return failures * 100.0 >= failureRate * calls || slow * 100.0 >= slowCallRate * calls;
+    }
+}
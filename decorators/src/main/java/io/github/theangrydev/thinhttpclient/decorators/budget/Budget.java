@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.budget;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that every request adds a fraction of a token to and every extra request, such as a retry or a hedge,
+ * takes a whole token from. While the server is healthy the bucket stays full, but once the extra requests start to
+ * pile up it soon empties, so that they are held to that fraction of the traffic, apart from a small burst, instead of
+ * adding to the load.
+ *
+ * @see <a href="https://finagle.github.io/blog/2016/02/08/retry-budgets/">Finagle Retry Budgets</a>
+ */
+public final class Budget {
+    private static final long TOKEN = 1000;
+
+    private final AtomicLong balance;
+    private final long deposit;
+    private final long capacity;
+
+    private Budget(long deposit, long capacity) {
+        this.deposit = deposit;
+        this.capacity = capacity;
+        this.balance = new AtomicLong(capacity);
+    }
+
+    /**
+     * @param percent The percentage of requests that extra requests are held to.
+     * @param burst How many extra requests can be made in a row when the bucket is full, which it starts out as.
+     * @return A full {@link Budget}.
+     */
+    public static Budget budget(double percent, int burst) {
+        return new Budget(Math.round(percent * TOKEN / 100), burst * TOKEN);
+    }
+
+    /**
+     * Add the fraction of a token that one request earns.
+     */
+    public void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return True if there was a whole token to take for an extra request.
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+}
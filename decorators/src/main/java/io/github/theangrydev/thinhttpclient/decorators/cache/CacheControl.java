@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Headers;
+
+import java.util.Locale;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CACHE_CONTROL;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.PRAGMA;
+
+/**
+ * The Cache-Control directives that a private cache acts on. Directives that are not understood are ignored, as are
+ * arguments that are not valid delta-seconds.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7234#section-5.2">RFC 7234 HTTP/1.1 Caching 5.2 Cache-Control</a>
+ * @see <a href="https://tools.ietf.org/html/rfc5861">RFC 5861 HTTP Cache-Control Extensions for Stale Content</a>
+ */
+final class CacheControl {
+    static final long NOT_SET = -1;
+
+    final boolean noCache;
+    final boolean noStore;
+    final boolean onlyIfCached;
+    final boolean mustRevalidate;
+    final long maxAgeSeconds;
+    final long maxStaleSeconds;
+    final long minFreshSeconds;
+    final long staleWhileRevalidateSeconds;
+    final long staleIfErrorSeconds;
+
+    private CacheControl(boolean noCache, boolean noStore, boolean onlyIfCached, boolean mustRevalidate,
+                         long maxAgeSeconds, long maxStaleSeconds, long minFreshSeconds,
+                         long staleWhileRevalidateSeconds, long staleIfErrorSeconds) {
+        this.noCache = noCache;
+        this.noStore = noStore;
+        this.onlyIfCached = onlyIfCached;
+        this.mustRevalidate = mustRevalidate;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.maxStaleSeconds = maxStaleSeconds;
+        this.minFreshSeconds = minFreshSeconds;
+        this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+        this.staleIfErrorSeconds = staleIfErrorSeconds;
+    }
+
+    /**
+     * @param headers The request or response headers.
+     * @return The directives in all of the Cache-Control fields, or the HTTP/1.0 Pragma: no-cache if there are none.
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-5.4">RFC 7234 HTTP/1.1 Caching 5.4 Pragma</a>
+     */
+    static CacheControl parse(Headers headers) {
+        String cacheControl = headers.value(CACHE_CONTROL);
+        if (cacheControl.isEmpty()) {
+            cacheControl = headers.value(PRAGMA);
+        }
+        return parse(cacheControl);
+    }
+
+    static CacheControl parse(String cacheControl) {
+        boolean noCache = false;
+        boolean noStore = false;
+        boolean onlyIfCached = false;
+        boolean mustRevalidate = false;
+        long maxAgeSeconds = NOT_SET;
+        long maxStaleSeconds = NOT_SET;
+        long minFreshSeconds = NOT_SET;
+        long staleWhileRevalidateSeconds = NOT_SET;
+        long staleIfErrorSeconds = NOT_SET;
+
+        int position = 0;
+        while (position < cacheControl.length()) {
+            int nameEnd = indexOfAny(cacheControl, position, ",=");
+            String name = cacheControl.substring(position, nameEnd).trim().toLowerCase(Locale.ENGLISH);
+            String argument = null;
+            position = nameEnd;
+            if (position < cacheControl.length() && cacheControl.charAt(position) == '=') {
+                position++;
+                if (position < cacheControl.length() && cacheControl.charAt(position) == '"') {
+                    int closingQuote = cacheControl.indexOf('"', position + 1);
+                    int argumentEnd = closingQuote == -1 ? cacheControl.length() : closingQuote;
+                    argument = cacheControl.substring(position + 1, argumentEnd);
+                    position = indexOfAny(cacheControl, argumentEnd, ",");
+                } else {
+                    int argumentEnd = indexOfAny(cacheControl, position, ",");
+                    argument = cacheControl.substring(position, argumentEnd).trim();
+                    position = argumentEnd;
+                }
+            }
+            position++;
+
+            switch (name) {
+                case "no-cache":
+                    noCache = true;
+                    break;
+                case "no-store":
+                    noStore = true;
+                    break;
+                case "only-if-cached":
+                    onlyIfCached = true;
+                    break;
+                case "must-revalidate":
+                case "proxy-revalidate":
+                    mustRevalidate = true;
+                    break;
+                case "max-age":
+                    maxAgeSeconds = deltaSeconds(argument, maxAgeSeconds);
+                    break;
+                case "max-stale":
+                    // Without an argument, a response of any staleness is acceptable
+                    maxStaleSeconds = argument == null ? Long.MAX_VALUE : deltaSeconds(argument, maxStaleSeconds);
+                    break;
+                case "min-fresh":
+                    minFreshSeconds = deltaSeconds(argument, minFreshSeconds);
+                    break;
+                case "stale-while-revalidate":
+                    staleWhileRevalidateSeconds = deltaSeconds(argument, staleWhileRevalidateSeconds);
+                    break;
+                case "stale-if-error":
+                    staleIfErrorSeconds = deltaSeconds(argument, staleIfErrorSeconds);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new CacheControl(noCache, noStore, onlyIfCached, mustRevalidate, maxAgeSeconds, maxStaleSeconds, minFreshSeconds,
+                staleWhileRevalidateSeconds, staleIfErrorSeconds);
+    }
+
+    private static int indexOfAny(String text, int from, String characters) {
+        for (int i = from; i < text.length(); i++) {
+            if (characters.indexOf(text.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-1.2.1">RFC 7234 HTTP/1.1 Caching 1.2.1 Delta Seconds</a>
+     */
+    private static long deltaSeconds(String argument, long otherwise) {
+        if (argument == null || argument.isEmpty()) {
+            return otherwise;
+        }
+        long seconds = 0;
+        for (int i = 0; i < argument.length(); i++) {
+            int digit = Character.digit(argument.charAt(i), 10);
+            if (digit < 0) {
+                return otherwise;
+            }
+            // Values too large to represent are treated as the largest representable value
+            if (seconds > (Integer.MAX_VALUE - digit) / 10) {
+                return Integer.MAX_VALUE;
+            }
+            seconds = seconds * 10 + digit;
+        }
+        return seconds;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Headers;
+import io.github.theangrydev.thinhttpclient.api.Response;
+
+import java.util.Objects;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.AGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.DATE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.EXPIRES;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.LAST_MODIFIED;
+import static java.lang.Math.max;
+import static java.lang.String.format;
+
+/**
+ * A stored {@link Response}, along with what is needed to work out how old it is and whether it can be used for a
+ * later request.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7234#section-3">RFC 7234 HTTP/1.1 Caching 3 Storing Responses in Caches</a>
+ */
+public final class CacheEntry {
+    /**
+     * The fraction of the time since the response was last modified that it is heuristically assumed to be fresh for.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.2.2">RFC 7234 HTTP/1.1 Caching 4.2.2 Calculating Heuristic Freshness</a>
+     */
+    private static final int HEURISTIC_FRACTION = 10;
+
+    public final Response response;
+
+    /**
+     * The fields of the request that caused the response to be stored that are nominated by the Vary response field.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.1">RFC 7234 HTTP/1.1 Caching 4.1 Calculating Secondary Keys with Vary</a>
+     */
+    public final Headers varyHeaders;
+
+    /**
+     * When the request that caused the response to be stored was sent, in milliseconds since the epoch.
+     */
+    public final long requestMillis;
+
+    /**
+     * When the response was received, in milliseconds since the epoch.
+     */
+    public final long responseMillis;
+
+    private CacheEntry(Response response, Headers varyHeaders, long requestMillis, long responseMillis) {
+        this.response = response;
+        this.varyHeaders = varyHeaders;
+        this.requestMillis = requestMillis;
+        this.responseMillis = responseMillis;
+    }
+
+    public static CacheEntry cacheEntry(Response response, Headers varyHeaders, long requestMillis, long responseMillis) {
+        return new CacheEntry(response, varyHeaders, requestMillis, responseMillis);
+    }
+
+    /**
+     * @param nowMillis The current time in milliseconds since the epoch.
+     * @return The current age of the response in milliseconds.
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.2.3">RFC 7234 HTTP/1.1 Caching 4.2.3 Calculating Age</a>
+     */
+    public long ageMillis(long nowMillis) {
+        long dateMillis = HttpDates.parse(response.header(DATE));
+        long apparentAge = dateMillis == HttpDates.INVALID ? 0 : max(0, responseMillis - dateMillis);
+        long responseDelay = responseMillis - requestMillis;
+        long correctedAgeValue = ageValueSeconds() * 1000 + responseDelay;
+        long correctedInitialAge = max(apparentAge, correctedAgeValue);
+        long residentTime = nowMillis - responseMillis;
+        return correctedInitialAge + residentTime;
+    }
+
+    /**
+     * @return How long the response is fresh for after it was generated by the origin server, in milliseconds.
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.2.1">RFC 7234 HTTP/1.1 Caching 4.2.1 Calculating Freshness Lifetime</a>
+     */
+    public long freshnessLifetimeMillis() {
+        CacheControl cacheControl = CacheControl.parse(response.headers);
+        if (cacheControl.maxAgeSeconds != CacheControl.NOT_SET) {
+            return cacheControl.maxAgeSeconds * 1000;
+        }
+        long dateMillis = HttpDates.parse(response.header(DATE));
+        long servedMillis = dateMillis == HttpDates.INVALID ? responseMillis : dateMillis;
+        String expires = response.header(EXPIRES);
+        if (!expires.isEmpty()) {
+            long expiresMillis = HttpDates.parse(expires);
+            // An invalid date, like "0", means that the response has already expired
+            return expiresMillis == HttpDates.INVALID ? 0 : max(0, expiresMillis - servedMillis);
+        }
+        long lastModifiedMillis = HttpDates.parse(response.header(LAST_MODIFIED));
+        if (lastModifiedMillis != HttpDates.INVALID) {
+            return max(0, servedMillis - lastModifiedMillis) / HEURISTIC_FRACTION;
+        }
+        return 0;
+    }
+
+    private long ageValueSeconds() {
+        String age = response.header(AGE);
+        try {
+            return age.isEmpty() ? 0 : max(0, Long.parseLong(age.trim()));
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        CacheEntry cacheEntry = (CacheEntry) other;
+        return requestMillis == cacheEntry.requestMillis &&
+                responseMillis == cacheEntry.responseMillis &&
+                Objects.equals(response, cacheEntry.response) &&
+                Objects.equals(varyHeaders, cacheEntry.varyHeaders);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(response, varyHeaders, requestMillis, responseMillis);
+    }
+
+    @Override
+    public String toString() {
+        return format("status=%d, varyHeaders=%s, requestMillis=%d, responseMillis=%d",
+                response.status, varyHeaders, requestMillis, responseMillis);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+/**
+ * Where a {@link CachingHttpClient} keeps its {@link CacheEntry entries}. Implementations must be thread safe, and are
+ * free to forget an entry at any time.
+ */
+public interface CacheStorage {
+
+    /**
+     * @param key The cache key of the request.
+     * @return The stored entry, or null if there is none.
+     */
+    CacheEntry get(String key);
+
+    /**
+     * Store an entry, replacing any that was stored for the same key. The storage may decline to keep it.
+     *
+     * @param key The cache key of the request.
+     * @param entry The entry to store.
+     */
+    void put(String key, CacheEntry entry);
+
+    /**
+     * @param key The cache key of the request.
+     */
+    void remove(String key);
+}
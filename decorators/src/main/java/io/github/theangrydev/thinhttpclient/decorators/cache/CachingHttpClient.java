@@ -0,0 +1,538 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Header;
+import io.github.theangrydev.thinhttpclient.api.Headers;
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Method;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.api.Url;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.AGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_LENGTH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ETAG;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.EXPIRES;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_MATCH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_MODIFIED_SINCE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_NONE_MATCH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_RANGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_UNMODIFIED_SINCE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.LAST_MODIFIED;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.RANGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.TRANSFER_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.VARY;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.WARNING;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Method.GET;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.CacheEntry.cacheEntry;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A {@link HttpClient} that acts as a private cache in front of another one, following the caching rules of RFC 7234.
+ * <p>
+ * Only {@link Method#GET} responses are stored. A stored response is served without contacting the origin server for
+ * as long as it is fresh. Once it is stale, it is revalidated with If-None-Match or If-Modified-Since, and if the
+ * server answers 304 Not Modified then the stored body is served with the updated header fields.
+ * <p>
+ * Only one variant of each URL is kept: a response that has a Vary field is only served for requests with the same
+ * values for the nominated fields, and a request with different values replaces it.
+ * <p>
+ * Requests that carry their own conditional or range header fields are passed straight through, as are streaming
+ * requests.
+ * <p>
+ * A stale response within its stale-while-revalidate window is served straight away, and a single revalidation of it
+ * is run in the background on a bounded executor. If that executor is busy, the stale response is still served and a
+ * later request triggers the revalidation. A stale response within its stale-if-error window is served if the origin
+ * server cannot be reached or answers with a server error.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7234">RFC 7234 HTTP/1.1 Caching</a>
+ * @see <a href="https://tools.ietf.org/html/rfc5861">RFC 5861 HTTP Cache-Control Extensions for Stale Content</a>
+ */
+public final class CachingHttpClient implements HttpClient {
+    private static final int GATEWAY_TIMEOUT = 504;
+    private static final int NOT_MODIFIED = 304;
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_SIZE = 256;
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc5861#section-4">RFC 5861 4 The stale-if-error Cache-Control Extension</a>
+     */
+    private static final Set<Integer> ERROR_STATUSES = unmodifiableSet(new HashSet<>(Arrays.asList(500, 502, 503, 504)));
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7231#section-6.1">RFC 7231 HTTP/1.1 Semantics 6.1 Overview of Status Codes</a>
+     * @see <a href="https://tools.ietf.org/html/rfc7538#section-3">RFC 7538 Permanent Redirect 3</a>
+     */
+    private static final Set<Integer> HEURISTICALLY_CACHEABLE_STATUSES = unmodifiableSet(new HashSet<>(Arrays.asList(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501)));
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.3.4">RFC 7234 HTTP/1.1 Caching 4.3.4 Freshening Stored Responses upon Validation</a>
+     */
+    private static final Set<String> NOT_UPDATED_BY_VALIDATION = unmodifiableSet(new HashSet<>(Arrays.asList(
+            lowerCase(CONTENT_LENGTH), lowerCase(CONTENT_ENCODING), lowerCase(CONTENT_TYPE), lowerCase(TRANSFER_ENCODING))));
+
+    private final HttpClient delegate;
+    private final CacheStorage storage;
+    private final Clock clock;
+    private final ExecutorService refreshExecutor;
+    private final boolean ownsRefreshExecutor;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private CachingHttpClient(HttpClient delegate, CacheStorage storage, Clock clock, ExecutorService refreshExecutor, boolean ownsRefreshExecutor) {
+        this.delegate = delegate;
+        this.storage = storage;
+        this.clock = clock;
+        this.refreshExecutor = refreshExecutor;
+        this.ownsRefreshExecutor = ownsRefreshExecutor;
+    }
+
+    /**
+     * @param delegate The {@link HttpClient} to send requests that cannot be served from the cache with.
+     * @param storage Where to keep the stored responses.
+     * @return A {@link CachingHttpClient} that uses the system clock.
+     */
+    public static CachingHttpClient cachingHttpClient(HttpClient delegate, CacheStorage storage) {
+        return cachingHttpClient(delegate, storage, Clock.systemUTC());
+    }
+
+    /**
+     * @param delegate The {@link HttpClient} to send requests that cannot be served from the cache with.
+     * @param storage Where to keep the stored responses.
+     * @param clock The {@link Clock} to measure the age of stored responses with.
+     * @return A {@link CachingHttpClient}.
+     */
+    public static CachingHttpClient cachingHttpClient(HttpClient delegate, CacheStorage storage, Clock clock) {
+        return new CachingHttpClient(delegate, storage, clock, defaultRefreshExecutor(), true);
+    }
+
+    /**
+     * @param delegate The {@link HttpClient} to send requests that cannot be served from the cache with.
+     * @param storage Where to keep the stored responses.
+     * @param clock The {@link Clock} to measure the age of stored responses with.
+     * @param refreshExecutor Where to run background revalidations. It should have a bounded queue, and is not shut
+     *                        down when the client is closed.
+     * @return A {@link CachingHttpClient}.
+     */
+    public static CachingHttpClient cachingHttpClient(HttpClient delegate, CacheStorage storage, Clock clock, ExecutorService refreshExecutor) {
+        return new CachingHttpClient(delegate, storage, clock, refreshExecutor, false);
+    }
+
+    private static ExecutorService defaultRefreshExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 60, SECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "caching-http-client-refresh-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Lookup lookup = lookup(request);
+        if (lookup.cachedResponse != null) {
+            return lookup.cachedResponse;
+        }
+        Response response;
+        try {
+            response = delegate.execute(lookup.networkRequest);
+        } catch (IOException | RuntimeException exception) {
+            Response stale = lookup.staleIfError();
+            if (stale == null) {
+                throw exception;
+            }
+            return stale;
+        }
+        return lookup.complete(response);
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        Lookup lookup = lookup(request);
+        if (lookup.cachedResponse != null) {
+            return CompletableFuture.completedFuture(lookup.cachedResponse);
+        }
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        delegate.executeAsync(lookup.networkRequest).whenComplete((networkResponse, failure) -> {
+            if (failure == null) {
+                response.complete(lookup.complete(networkResponse));
+                return;
+            }
+            Response stale = lookup.staleIfError();
+            if (stale == null) {
+                response.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+            } else {
+                response.complete(stale);
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        return delegate.executeStreaming(request);
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsRefreshExecutor) {
+            refreshExecutor.shutdown();
+        }
+        delegate.close();
+    }
+
+    private Lookup lookup(Request request) {
+        String key = key(request.url);
+        CacheControl requestCacheControl = CacheControl.parse(request.headers);
+        if (!GET.equals(request.method) || requestCacheControl.noStore || hasPreconditions(request)) {
+            return new Lookup(request, key, requestCacheControl, null, null, clock.millis(), false);
+        }
+
+        CacheEntry entry = storage.get(key);
+        if (entry != null && !varyMatches(entry, request)) {
+            entry = null;
+        }
+        long nowMillis = clock.millis();
+        if (entry != null && !requestCacheControl.noCache) {
+            Response cachedResponse = servable(entry, requestCacheControl, nowMillis);
+            if (cachedResponse != null) {
+                return new Lookup(request, key, requestCacheControl, null, cachedResponse, nowMillis, true);
+            }
+            Response staleResponse = servableWhileRevalidating(entry, nowMillis);
+            if (staleResponse != null) {
+                refreshInBackground(request, key, requestCacheControl, entry);
+                return new Lookup(request, key, requestCacheControl, null, staleResponse, nowMillis, true);
+            }
+        }
+        if (requestCacheControl.onlyIfCached) {
+            return new Lookup(request, key, requestCacheControl, null, response(headers(), GATEWAY_TIMEOUT, ""), nowMillis, true);
+        }
+        if (entry == null) {
+            return new Lookup(request, key, requestCacheControl, null, null, nowMillis, true);
+        }
+        return new Lookup(conditionalRequest(request, entry.response), key, requestCacheControl, entry, null, nowMillis, true);
+    }
+
+    /**
+     * @return The stale response, or null if it is not within its stale-while-revalidate window.
+     * @see <a href="https://tools.ietf.org/html/rfc5861#section-3">RFC 5861 3 The stale-while-revalidate Cache-Control Extension</a>
+     */
+    private static Response servableWhileRevalidating(CacheEntry entry, long nowMillis) {
+        CacheControl responseCacheControl = CacheControl.parse(entry.response.headers);
+        if (responseCacheControl.noCache || responseCacheControl.mustRevalidate || responseCacheControl.staleWhileRevalidateSeconds == CacheControl.NOT_SET) {
+            return null;
+        }
+        long ageMillis = entry.ageMillis(nowMillis);
+        long stalenessSeconds = (ageMillis - entry.freshnessLifetimeMillis()) / 1000;
+        if (stalenessSeconds > responseCacheControl.staleWhileRevalidateSeconds) {
+            return null;
+        }
+        return withAge(entry.response, ageMillis, true);
+    }
+
+    private void refreshInBackground(Request request, String key, CacheControl requestCacheControl, CacheEntry entry) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    Lookup lookup = new Lookup(conditionalRequest(request, entry.response), key, requestCacheControl, entry, null, clock.millis(), true);
+                    lookup.complete(delegate.execute(lookup.networkRequest));
+                } catch (IOException | RuntimeException exception) {
+                    // The stale response carries on being served until it is outside its stale-while-revalidate window
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * @return The stored response with its current Age, or null if it has to be validated with the origin server first.
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.2.4">RFC 7234 HTTP/1.1 Caching 4.2.4 Serving Stale Responses</a>
+     */
+    private static Response servable(CacheEntry entry, CacheControl requestCacheControl, long nowMillis) {
+        CacheControl responseCacheControl = CacheControl.parse(entry.response.headers);
+        if (responseCacheControl.noCache) {
+            return null;
+        }
+        long ageMillis = entry.ageMillis(nowMillis);
+        long freshnessLifetimeMillis = entry.freshnessLifetimeMillis();
+        if (requestCacheControl.maxAgeSeconds != CacheControl.NOT_SET) {
+            freshnessLifetimeMillis = Math.min(freshnessLifetimeMillis, requestCacheControl.maxAgeSeconds * 1000);
+        }
+        long minFreshMillis = requestCacheControl.minFreshSeconds == CacheControl.NOT_SET ? 0 : requestCacheControl.minFreshSeconds * 1000;
+        if (ageMillis + minFreshMillis < freshnessLifetimeMillis) {
+            return withAge(entry.response, ageMillis, false);
+        }
+        long stalenessSeconds = (ageMillis - freshnessLifetimeMillis) / 1000;
+        if (!responseCacheControl.mustRevalidate && requestCacheControl.maxStaleSeconds != CacheControl.NOT_SET
+                && stalenessSeconds <= requestCacheControl.maxStaleSeconds) {
+            return withAge(entry.response, ageMillis, true);
+        }
+        return null;
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-5.1">RFC 7234 HTTP/1.1 Caching 5.1 Age</a>
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-5.5.1">RFC 7234 HTTP/1.1 Caching 5.5.1 Warning: 110 - "Response is Stale"</a>
+     */
+    private static Response withAge(Response response, long ageMillis, boolean stale) {
+        return withAge(response, ageMillis, stale ? "110 - \"Response is Stale\"" : null);
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-5.5">RFC 7234 HTTP/1.1 Caching 5.5 Warning</a>
+     */
+    private static Response withAge(Response response, long ageMillis, String warning) {
+        List<Header> headers = new ArrayList<>(response.headers.size() + 2);
+        for (Header header : response.headers) {
+            if (!header.name.equalsIgnoreCase(AGE)) {
+                headers.add(header);
+            }
+        }
+        headers.add(header(AGE, Long.toString(Math.max(0, ageMillis / 1000))));
+        if (warning != null) {
+            headers.add(header(WARNING, warning));
+        }
+        return response(response.protocol, headers(headers), response.status, response.body);
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.3.1">RFC 7234 HTTP/1.1 Caching 4.3.1 Sending a Validation Request</a>
+     */
+    private static Request conditionalRequest(Request request, Response stored) {
+        String entityTag = stored.header(ETAG);
+        String lastModified = stored.header(LAST_MODIFIED);
+        if (entityTag.isEmpty() && lastModified.isEmpty()) {
+            return request;
+        }
+        Request.RequestBuilder conditionalRequest = request.modify();
+        if (!entityTag.isEmpty()) {
+            conditionalRequest.header(IF_NONE_MATCH, entityTag);
+        }
+        if (!lastModified.isEmpty()) {
+            conditionalRequest.header(IF_MODIFIED_SINCE, lastModified);
+        }
+        return conditionalRequest.build();
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-3">RFC 7234 HTTP/1.1 Caching 3 Storing Responses in Caches</a>
+     */
+    private static boolean isCacheable(Response response) {
+        if (CacheControl.parse(response.headers).noStore || "*".equals(response.header(VARY).trim())) {
+            return false;
+        }
+        if (HEURISTICALLY_CACHEABLE_STATUSES.contains(response.status)) {
+            return true;
+        }
+        return CacheControl.parse(response.headers).maxAgeSeconds != CacheControl.NOT_SET || !response.header(EXPIRES).isEmpty();
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.1">RFC 7234 HTTP/1.1 Caching 4.1 Calculating Secondary Keys with Vary</a>
+     */
+    private static Headers varyHeaders(Request request, Response response) {
+        List<Header> varyHeaders = new ArrayList<>();
+        for (String name : varyFieldNames(response)) {
+            for (String value : request.headers.values(name)) {
+                varyHeaders.add(header(name, value));
+            }
+        }
+        return headers(varyHeaders);
+    }
+
+    private static boolean varyMatches(CacheEntry entry, Request request) {
+        for (String name : varyFieldNames(entry.response)) {
+            if (!request.headers.values(name).equals(entry.varyHeaders.values(name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> varyFieldNames(Response response) {
+        List<String> names = new ArrayList<>();
+        for (String name : response.header(VARY).split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty()) {
+                names.add(trimmed);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.3.4">RFC 7234 HTTP/1.1 Caching 4.3.4 Freshening Stored Responses upon Validation</a>
+     */
+    private static Response freshen(Response stored, Response notModified) {
+        List<Header> headers = new ArrayList<>();
+        for (Header header : stored.headers) {
+            String name = lowerCase(header.name);
+            if (NOT_UPDATED_BY_VALIDATION.contains(name) || notModified.headers.values(header.name).isEmpty()) {
+                headers.add(header);
+            }
+        }
+        for (Header header : notModified.headers) {
+            if (!NOT_UPDATED_BY_VALIDATION.contains(lowerCase(header.name))) {
+                headers.add(header);
+            }
+        }
+        return response(notModified.protocol, headers(headers), stored.status, stored.body);
+    }
+
+    private static boolean hasPreconditions(Request request) {
+        return !request.header(IF_NONE_MATCH).isEmpty() || !request.header(IF_MODIFIED_SINCE).isEmpty()
+                || !request.header(IF_MATCH).isEmpty() || !request.header(IF_UNMODIFIED_SINCE).isEmpty()
+                || !request.header(IF_RANGE).isEmpty() || !request.header(RANGE).isEmpty();
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7234#section-2">RFC 7234 HTTP/1.1 Caching 2 Overview of Cache Operation</a>
+     */
+    static String key(Url url) {
+        return url.fragment.isEmpty() ? url.toString() : url.modify().fragment("").build().toString();
+    }
+
+    private static String lowerCase(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * What was found in the cache for a request, and what to do with the response if it has to go to the network.
+     */
+    private final class Lookup {
+        final Request networkRequest;
+        final String key;
+        final CacheControl requestCacheControl;
+        final CacheEntry validatedEntry;
+        final Response cachedResponse;
+        final long requestMillis;
+        final boolean storable;
+
+        Lookup(Request networkRequest, String key, CacheControl requestCacheControl, CacheEntry validatedEntry, Response cachedResponse,
+               long requestMillis, boolean storable) {
+            this.networkRequest = networkRequest;
+            this.key = key;
+            this.requestCacheControl = requestCacheControl;
+            this.validatedEntry = validatedEntry;
+            this.cachedResponse = cachedResponse;
+            this.requestMillis = requestMillis;
+            this.storable = storable;
+        }
+
+        Response complete(Response response) {
+            long responseMillis = clock.millis();
+            if (!storable) {
+                invalidate(response);
+                return response;
+            }
+            if (ERROR_STATUSES.contains(response.status)) {
+                Response stale = staleIfError();
+                if (stale != null) {
+                    return stale;
+                }
+            }
+            if (response.status == NOT_MODIFIED && validatedEntry != null) {
+                Response freshened = freshen(validatedEntry.response, response);
+                CacheEntry entry = cacheEntry(freshened, validatedEntry.varyHeaders, requestMillis, responseMillis);
+                if (isCacheable(freshened)) {
+                    storage.put(key, entry);
+                } else {
+                    storage.remove(key);
+                }
+                return withAge(freshened, entry.ageMillis(responseMillis), false);
+            }
+            if (isCacheable(response)) {
+                storage.put(key, cacheEntry(response, varyHeaders(networkRequest, response), requestMillis, responseMillis));
+            } else if (validatedEntry != null) {
+                storage.remove(key);
+            }
+            return response;
+        }
+
+        /**
+         * @return The stale response, or null if there is none or it is not within its stale-if-error window.
+         * @see <a href="https://tools.ietf.org/html/rfc5861#section-4">RFC 5861 4 The stale-if-error Cache-Control Extension</a>
+         */
+        Response staleIfError() {
+            if (validatedEntry == null) {
+                return null;
+            }
+            CacheControl responseCacheControl = CacheControl.parse(validatedEntry.response.headers);
+            long staleIfErrorSeconds = Math.max(responseCacheControl.staleIfErrorSeconds, requestCacheControl.staleIfErrorSeconds);
+            if (responseCacheControl.mustRevalidate || staleIfErrorSeconds == CacheControl.NOT_SET) {
+                return null;
+            }
+            long nowMillis = clock.millis();
+            long ageMillis = validatedEntry.ageMillis(nowMillis);
+            long stalenessSeconds = (ageMillis - validatedEntry.freshnessLifetimeMillis()) / 1000;
+            if (stalenessSeconds > staleIfErrorSeconds) {
+                return null;
+            }
+            return withAge(validatedEntry.response, ageMillis, "111 - \"Revalidation Failed\"");
+        }
+
+        /**
+         * @see <a href="https://tools.ietf.org/html/rfc7234#section-4.4">RFC 7234 HTTP/1.1 Caching 4.4 Invalidation</a>
+         */
+        private void invalidate(Response response) {
+            if (!networkRequest.method.isSafe() && response.status < 400) {
+                storage.remove(key);
+            }
+        }
+    }
+}
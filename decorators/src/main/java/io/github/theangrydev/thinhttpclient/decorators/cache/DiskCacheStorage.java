@@ -0,0 +1,287 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A {@link CacheStorage} that keeps entries in memory-mapped segment files in a directory, so that they survive a
+ * restart without being held on the heap.
+ * <p>
+ * Entries are only ever appended to the newest segment, in the format described by {@link RecordCodec}, and removals
+ * are appended as tombstones. The only thing kept on the heap is an index from each key to where its latest record
+ * is, which is rebuilt by scanning the segments when the storage is opened. Records that were only partly written
+ * when the process stopped fail their checksum and are ignored.
+ * <p>
+ * When the segments would take up more than the budget of bytes, the oldest segment is deleted along with every entry
+ * that was in it. Superseded records are not compacted, they just take up space until their segment is deleted.
+ * <p>
+ * Lookups do not block each other or the writer. Writes are serialized. A record that has been damaged is treated as
+ * a miss, and once the storage has been closed every lookup misses and nothing more is stored.
+ */
+public final class DiskCacheStorage implements CacheStorage, Closeable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".cache";
+    private static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maximumSegments;
+    private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<Segment> segments = new ConcurrentLinkedDeque<>();
+
+    // Guarded by this
+    private Segment activeSegment;
+
+    private DiskCacheStorage(Path directory, int segmentBytes, int maximumSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maximumSegments = maximumSegments;
+    }
+
+    /**
+     * @param directory The directory to keep the segment files in, which will be created if it does not exist.
+     * @param maximumBytes The most disk space that the segment files should take up.
+     * @return A {@link DiskCacheStorage} with the entries that were already in the directory.
+     * @throws IOException If the directory could not be read.
+     */
+    public static DiskCacheStorage diskCacheStorage(Path directory, long maximumBytes) throws IOException {
+        return diskCacheStorage(directory, maximumBytes, (int) Math.min(DEFAULT_SEGMENT_BYTES, Math.max(1, maximumBytes / 2)));
+    }
+
+    /**
+     * @param directory The directory to keep the segment files in, which will be created if it does not exist.
+     * @param maximumBytes The most disk space that the segment files should take up.
+     * @param segmentBytes The size of each segment file. An entry whose record is bigger than this is not stored.
+     * @return A {@link DiskCacheStorage} with the entries that were already in the directory.
+     * @throws IOException If the directory could not be read.
+     */
+    public static DiskCacheStorage diskCacheStorage(Path directory, long maximumBytes, int segmentBytes) throws IOException {
+        if (segmentBytes <= RecordCodec.HEADER_BYTES) {
+            throw new IllegalArgumentException(format("segmentBytes must be more than %d but was %d", RecordCodec.HEADER_BYTES, segmentBytes));
+        }
+        if (maximumBytes < 2L * segmentBytes) {
+            throw new IllegalArgumentException(format("maximumBytes must be at least two segments (%d) but was %d", 2L * segmentBytes, maximumBytes));
+        }
+        int maximumSegments = (int) Math.min(Integer.MAX_VALUE, maximumBytes / segmentBytes);
+        DiskCacheStorage storage = new DiskCacheStorage(directory, segmentBytes, maximumSegments);
+        storage.open();
+        return storage;
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        try {
+            return RecordCodec.decodeEntry(location.segment.buffer, location.offset, location.length);
+        } catch (IllegalStateException corrupt) {
+            // A damaged record is a miss, and is forgotten so that it is not decoded again
+            index.remove(key, location);
+            return null;
+        }
+    }
+
+    /**
+     * Once the storage has been closed, entries are no longer stored.
+     */
+    @Override
+    public synchronized void put(String key, CacheEntry entry) {
+        if (activeSegment == null) {
+            return;
+        }
+        ByteBuffer record = RecordCodec.encodePut(key, entry);
+        if (record.remaining() > segmentBytes) {
+            remove(key);
+            return;
+        }
+        Location location = append(record);
+        index.put(key, location);
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        if (index.remove(key) != null && activeSegment != null) {
+            append(RecordCodec.encodeRemove(key));
+        }
+    }
+
+    /**
+     * @return How many entries are stored.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Flush what has been written to the segment files and stop writing to them.
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        index.clear();
+        segments.clear();
+        activeSegment = null;
+    }
+
+    private synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> segmentFiles = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            segmentFiles.forEach(paths::add);
+        }
+        // The sequence numbers are zero padded, so the names sort in the order that the segments were created
+        Collections.sort(paths);
+        for (Path path : paths) {
+            Segment segment = Segment.map(path, sequence(path), segmentBytes);
+            segments.addLast(segment);
+            replay(segment);
+        }
+        if (segments.isEmpty()) {
+            roll(0);
+        } else {
+            activeSegment = segments.getLast();
+        }
+        evictOldSegments();
+    }
+
+    private void replay(Segment segment) {
+        int offset = 0;
+        while (true) {
+            int length = RecordCodec.recordLength(segment.buffer, offset);
+            if (length == 0) {
+                break;
+            }
+            String key = RecordCodec.key(segment.buffer, offset, length);
+            if (RecordCodec.type(segment.buffer, offset) == RecordCodec.PUT) {
+                index.put(key, new Location(segment, offset, length));
+            } else {
+                index.remove(key);
+            }
+            offset += RecordCodec.HEADER_BYTES + length;
+        }
+        segment.writeOffset = offset;
+    }
+
+    private Location append(ByteBuffer record) {
+        if (activeSegment == null) {
+            throw new IllegalStateException("The storage has been closed");
+        }
+        if (activeSegment.writeOffset + record.remaining() > segmentBytes) {
+            roll(activeSegment.sequence + 1);
+        }
+        int offset = activeSegment.writeOffset;
+        int length = record.remaining() - RecordCodec.HEADER_BYTES;
+        // The length goes in last, so that a reader scanning the segment never sees a record before it is complete
+        ByteBuffer destination = activeSegment.buffer.duplicate();
+        destination.position(offset + 4);
+        record.position(4);
+        destination.put(record);
+        activeSegment.buffer.putInt(offset, length);
+        activeSegment.writeOffset = offset + RecordCodec.HEADER_BYTES + length;
+        return new Location(activeSegment, offset, length);
+    }
+
+    private void roll(long sequence) {
+        try {
+            Segment segment = Segment.map(directory.resolve(format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX)), sequence, segmentBytes);
+            segments.addLast(segment);
+            activeSegment = segment;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        evictOldSegments();
+    }
+
+    private void evictOldSegments() {
+        while (segments.size() > maximumSegments) {
+            Segment oldest = segments.removeFirst();
+            index.values().removeIf(location -> location.segment == oldest);
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    private static long sequence(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException exception) {
+            throw new IllegalStateException(format("Unexpected segment file name '%s'", name), exception);
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long sequence;
+        final MappedByteBuffer buffer;
+
+        // Guarded by the storage
+        int writeOffset;
+
+        private Segment(Path path, long sequence, MappedByteBuffer buffer) {
+            this.path = path;
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path path, long sequence, int segmentBytes) throws IOException {
+            // The mapping stays valid after the channel is closed, and is released when the buffer is garbage collected
+            try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+                return new Segment(path, sequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            }
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+/**
+ * A count-min sketch of 4-bit counters that estimates how often each key has been seen recently, in a fixed amount of
+ * memory. All of the counters are halved periodically so that keys that used to be popular are eventually forgotten.
+ * <p>
+ * This is not thread safe.
+ *
+ * @see <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache Admission Policy</a>
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int COUNTERS_PER_SLOT = 16;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final long HALVE_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys Roughly how many distinct keys are expected to be worth remembering at once.
+     */
+    FrequencySketch(int expectedKeys) {
+        int slots = Integer.highestOneBit(Math.max(1, Math.min(expectedKeys, 1 << 24)) - 1) << 1;
+        this.table = new long[Math.max(8, slots)];
+        this.counterMask = table.length * COUNTERS_PER_SLOT - 1;
+        this.sampleSize = 10 * table.length;
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return An estimate of how often the key has been seen recently, which will never be an underestimate.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, count(counterIndex(hash, i)));
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            added |= incrementAt(counterIndex(hash, i));
+        }
+        if (added && ++additions == sampleSize) {
+            halve();
+        }
+    }
+
+    private int counterIndex(int hash, int depth) {
+        int index = hash * SEEDS[depth];
+        index += index >>> 16;
+        return index & counterMask;
+    }
+
+    private int count(int counterIndex) {
+        return (int) (table[counterIndex / COUNTERS_PER_SLOT] >>> shift(counterIndex)) & MAX_COUNT;
+    }
+
+    private boolean incrementAt(int counterIndex) {
+        int slot = counterIndex / COUNTERS_PER_SLOT;
+        int shift = shift(counterIndex);
+        if (((table[slot] >>> shift) & MAX_COUNT) == MAX_COUNT) {
+            return false;
+        }
+        table[slot] += 1L << shift;
+        return true;
+    }
+
+    private static int shift(int counterIndex) {
+        return (counterIndex % COUNTERS_PER_SLOT) * 4;
+    }
+
+    private void halve() {
+        int oddCounters = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCounters += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & HALVE_MASK;
+        }
+        // Each odd counter lost half an addition to rounding, so the total is corrected for that
+        additions = (additions - oddCounters / 4) / 2;
+    }
+
+    private static int spread(int hash) {
+        int spread = hash * 0x9e3779b9;
+        return spread ^ (spread >>> 16);
+    }
+}
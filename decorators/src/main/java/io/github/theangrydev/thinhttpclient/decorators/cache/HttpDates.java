@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.1.1.1">RFC 7231 HTTP/1.1 Semantics 7.1.1.1 Date/Time Formats</a>
+ */
+final class HttpDates {
+    static final long INVALID = Long.MIN_VALUE;
+
+    // The RFC 1123 formatter does not pad the day of the month to two digits, which an IMF-fixdate requires
+    private static final DateTimeFormatter IMF_FIXDATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH);
+
+    private HttpDates() {
+    }
+
+    /**
+     * @param date An IMF-fixdate, which is the only format that senders are allowed to generate.
+     * @return The date in milliseconds since the epoch, or {@link #INVALID} if it could not be parsed. Recipients must
+     * treat an invalid Expires date as being in the past, so callers should not treat it as being absent.
+     */
+    static long parse(String date) {
+        if (date.isEmpty()) {
+            return INVALID;
+        }
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException exception) {
+            return INVALID;
+        }
+    }
+
+    static String format(long epochMillis) {
+        return IMF_FIXDATE.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+}
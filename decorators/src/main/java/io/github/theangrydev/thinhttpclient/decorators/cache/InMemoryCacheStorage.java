@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Header;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.String.format;
+
+/**
+ * A {@link CacheStorage} that keeps entries on the heap, up to a budget of bytes.
+ * <p>
+ * Lookups go straight to a {@link ConcurrentHashMap}, so readers never block each other. The recency order that
+ * eviction uses is guarded by a lock, which a lookup only takes if it is free: under heavy contention some lookups are
+ * not recorded, which makes eviction slightly less accurate rather than making every reader wait.
+ * <p>
+ * When the budget is full, the least recently used entries are only evicted to make room for a new one if the new one
+ * has been asked for more often than each of them. This keeps a burst of one-off requests from flushing out entries
+ * that are used all the time. An entry whose replacement is not stored is removed, since it is out of date.
+ *
+ * @see <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache Admission Policy</a>
+ */
+public final class InMemoryCacheStorage implements CacheStorage {
+    // A rough allowance for the objects that make up an entry, beyond the characters in it
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int HEADER_OVERHEAD_BYTES = 48;
+    private static final int EXPECTED_ENTRY_BYTES = 4096;
+
+    private final long maximumBytes;
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // The following are guarded by the lock
+    private final FrequencySketch sketch;
+    private final Node head = new Node(null, null, 0);
+    private long totalBytes;
+
+    private InMemoryCacheStorage(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maximumBytes / EXPECTED_ENTRY_BYTES));
+        head.previous = head;
+        head.next = head;
+    }
+
+    /**
+     * @param maximumBytes An estimate of the most heap that the stored entries should take up.
+     * @return An empty {@link InMemoryCacheStorage}.
+     */
+    public static InMemoryCacheStorage inMemoryCacheStorage(long maximumBytes) {
+        if (maximumBytes <= 0) {
+            throw new IllegalArgumentException(format("maximumBytes must be positive but was %d", maximumBytes));
+        }
+        return new InMemoryCacheStorage(maximumBytes);
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        Node node = nodes.get(key);
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key);
+                if (node != null && node.isLinked()) {
+                    node.unlink();
+                    node.linkAfter(head);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node == null ? null : node.entry;
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        long bytes = weigh(key, entry);
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node existing = nodes.get(key);
+            long freedBytes = existing == null ? 0 : existing.bytes;
+            boolean admitted = bytes <= maximumBytes && makeRoom(key, bytes - freedBytes, existing);
+            if (existing != null) {
+                remove(existing);
+            }
+            if (!admitted) {
+                return;
+            }
+            Node node = new Node(key, entry, bytes);
+            nodes.put(key, node);
+            node.linkAfter(head);
+            totalBytes += bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.lock();
+        try {
+            Node node = nodes.get(key);
+            if (node != null) {
+                remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return An estimate of how many bytes of heap the stored entries are taking up.
+     */
+    public long totalBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    private boolean makeRoom(String key, long neededBytes, Node existing) {
+        long excessBytes = totalBytes + neededBytes - maximumBytes;
+        if (excessBytes <= 0) {
+            return true;
+        }
+        int candidateFrequency = sketch.frequency(key);
+        List<Node> victims = new ArrayList<>();
+        for (Node victim = head.previous; excessBytes > 0 && victim != head; victim = victim.previous) {
+            if (victim == existing) {
+                continue;
+            }
+            if (sketch.frequency(victim.key) >= candidateFrequency) {
+                return false;
+            }
+            victims.add(victim);
+            excessBytes -= victim.bytes;
+        }
+        if (excessBytes > 0) {
+            return false;
+        }
+        victims.forEach(this::remove);
+        return true;
+    }
+
+    private void remove(Node node) {
+        nodes.remove(node.key, node);
+        node.unlink();
+        totalBytes -= node.bytes;
+    }
+
+    private static long weigh(String key, CacheEntry entry) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * key.length() + 2L * entry.response.body.length();
+        for (Header header : entry.response.headers) {
+            bytes += HEADER_OVERHEAD_BYTES + 2L * (header.name.length() + header.value.length());
+        }
+        for (Header header : entry.varyHeaders) {
+            bytes += HEADER_OVERHEAD_BYTES + 2L * (header.name.length() + header.value.length());
+        }
+        return bytes;
+    }
+
+    private static final class Node {
+        final String key;
+        final CacheEntry entry;
+        final long bytes;
+        Node previous;
+        Node next;
+
+        Node(String key, CacheEntry entry, long bytes) {
+            this.key = key;
+            this.entry = entry;
+            this.bytes = bytes;
+        }
+
+        boolean isLinked() {
+            return next != null;
+        }
+
+        void linkAfter(Node node) {
+            previous = node;
+            next = node.next;
+            node.next.previous = this;
+            node.next = this;
+        }
+
+        void unlink() {
+            if (next != null) {
+                previous.next = next;
+                next.previous = previous;
+                previous = null;
+                next = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Header;
+import io.github.theangrydev.thinhttpclient.api.Headers;
+import io.github.theangrydev.thinhttpclient.api.Response;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Protocol.protocol;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.CacheEntry.cacheEntry;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The binary format of the records in a {@link DiskCacheStorage} segment. Each record is:
+ * <pre>
+ * int    length of everything after the checksum
+ * int    CRC-32 of everything after the checksum
+ * byte   {@link #PUT} or {@link #REMOVE}
+ * string key
+ * </pre>
+ * followed, for a {@link #PUT}, by:
+ * <pre>
+ * string protocol
+ * int    status
+ * long   request millis
+ * long   response millis
+ * int    header count, then a string name and string value for each
+ * int    vary header count, then a string name and string value for each
+ * string body
+ * </pre>
+ * A string is an int count of bytes followed by that many bytes of UTF-8. Numbers are big-endian.
+ * <p>
+ * A length of zero marks the end of the records in a segment, and a record whose checksum does not match is treated
+ * the same way, since it can only have been partly written.
+ */
+final class RecordCodec {
+    static final int HEADER_BYTES = 8;
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+
+    private RecordCodec() {
+    }
+
+    static ByteBuffer encodePut(String key, CacheEntry entry) {
+        Response response = entry.response;
+        byte[] keyBytes = key.getBytes(UTF_8);
+        byte[] protocolBytes = response.protocol.name.getBytes(UTF_8);
+        byte[] bodyBytes = response.body.getBytes(UTF_8);
+        List<byte[]> headerBytes = encode(response.headers);
+        List<byte[]> varyHeaderBytes = encode(entry.varyHeaders);
+
+        int length = 1 + stringBytes(keyBytes) + stringBytes(protocolBytes) + 4 + 8 + 8
+                + headersBytes(headerBytes) + headersBytes(varyHeaderBytes) + stringBytes(bodyBytes);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.position(HEADER_BYTES);
+        record.put(PUT);
+        putString(record, keyBytes);
+        putString(record, protocolBytes);
+        record.putInt(response.status);
+        record.putLong(entry.requestMillis);
+        record.putLong(entry.responseMillis);
+        putHeaders(record, headerBytes);
+        putHeaders(record, varyHeaderBytes);
+        putString(record, bodyBytes);
+        return seal(record, length);
+    }
+
+    static ByteBuffer encodeRemove(String key) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int length = 1 + stringBytes(keyBytes);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.position(HEADER_BYTES);
+        record.put(REMOVE);
+        putString(record, keyBytes);
+        return seal(record, length);
+    }
+
+    /**
+     * @param segment The segment to read from. Only absolute reads are used, so it may be shared between threads.
+     * @param offset Where the record starts.
+     * @return The length of the record after its header, or zero if there is no complete record at the offset.
+     */
+    static int recordLength(ByteBuffer segment, int offset) {
+        if (offset + HEADER_BYTES > segment.limit()) {
+            return 0;
+        }
+        int length = segment.getInt(offset);
+        if (length <= 0 || length > segment.limit() - offset - HEADER_BYTES) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = slice(segment, offset + HEADER_BYTES, length);
+        crc.update(payload);
+        return (int) crc.getValue() == segment.getInt(offset + 4) ? length : 0;
+    }
+
+    static byte type(ByteBuffer segment, int offset) {
+        return segment.get(offset + HEADER_BYTES);
+    }
+
+    static String key(ByteBuffer segment, int offset, int length) {
+        ByteBuffer record = slice(segment, offset + HEADER_BYTES + 1, length - 1);
+        return getString(record);
+    }
+
+    static CacheEntry decodeEntry(ByteBuffer segment, int offset, int length) {
+        ByteBuffer record = slice(segment, offset + HEADER_BYTES + 1, length - 1);
+        try {
+            getString(record);
+            String protocol = getString(record);
+            int status = record.getInt();
+            long requestMillis = record.getLong();
+            long responseMillis = record.getLong();
+            Headers headers = getHeaders(record);
+            Headers varyHeaders = getHeaders(record);
+            String body = getString(record);
+            return cacheEntry(response(protocol(protocol), headers, status, body), varyHeaders, requestMillis, responseMillis);
+        } catch (BufferUnderflowException | IllegalArgumentException exception) {
+            throw new IllegalStateException("Corrupt cache record at offset " + offset, exception);
+        }
+    }
+
+    private static ByteBuffer seal(ByteBuffer record, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static ByteBuffer slice(ByteBuffer segment, int offset, int length) {
+        ByteBuffer slice = segment.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice.slice();
+    }
+
+    private static List<byte[]> encode(Headers headers) {
+        List<byte[]> bytes = new ArrayList<>(headers.size() * 2);
+        for (Header header : headers) {
+            bytes.add(header.name.getBytes(UTF_8));
+            bytes.add(header.value.getBytes(UTF_8));
+        }
+        return bytes;
+    }
+
+    private static int headersBytes(List<byte[]> headerBytes) {
+        int bytes = 4;
+        for (byte[] string : headerBytes) {
+            bytes += stringBytes(string);
+        }
+        return bytes;
+    }
+
+    private static int stringBytes(byte[] string) {
+        return 4 + string.length;
+    }
+
+    private static void putHeaders(ByteBuffer record, List<byte[]> headerBytes) {
+        record.putInt(headerBytes.size() / 2);
+        headerBytes.forEach(string -> putString(record, string));
+    }
+
+    private static void putString(ByteBuffer record, byte[] string) {
+        record.putInt(string.length);
+        record.put(string);
+    }
+
+    private static Headers getHeaders(ByteBuffer record) {
+        int count = record.getInt();
+        if (count < 0 || count > record.remaining()) {
+            throw new IllegalArgumentException("Invalid header count " + count);
+        }
+        List<Header> headers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            headers.add(header(getString(record), getString(record)));
+        }
+        return headers(headers);
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0 || length > record.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
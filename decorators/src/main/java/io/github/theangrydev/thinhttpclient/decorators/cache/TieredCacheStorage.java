@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+/**
+ * A {@link CacheStorage} that puts a small, fast storage in front of a larger, slower one, such as an
+ * {@link InMemoryCacheStorage} in front of a {@link DiskCacheStorage}.
+ * <p>
+ * Every entry is written to both tiers. Entries are looked up in the first tier and then the second, and an entry that
+ * was only found in the second tier is copied into the first so that the next lookup is fast.
+ */
+public final class TieredCacheStorage implements CacheStorage {
+    private final CacheStorage first;
+    private final CacheStorage second;
+
+    private TieredCacheStorage(CacheStorage first, CacheStorage second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * @param first The storage to look in first.
+     * @param second The storage to look in if the entry is not in the first one.
+     * @return A {@link TieredCacheStorage}.
+     */
+    public static TieredCacheStorage tieredCacheStorage(CacheStorage first, CacheStorage second) {
+        return new TieredCacheStorage(first, second);
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        CacheEntry entry = first.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = second.get(key);
+        if (entry != null) {
+            first.put(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        second.put(key, entry);
+        first.put(key, entry);
+    }
+
+    @Override
+    public void remove(String key) {
+        first.remove(key);
+        second.remove(key);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.coalesce;
+
+import io.github.theangrydev.thinhttpclient.api.BlockingCall;
+import io.github.theangrydev.thinhttpclient.api.CallTimeout;
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_CHARSET;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_LANGUAGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.AUTHORIZATION;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.PROXY_AUTHORIZATION;
+import static io.github.theangrydev.thinhttpclient.decorators.coalesce.RequestKey.requestKey;
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A {@link HttpClient} that sends only one of a group of identical requests that are in flight at the same time, and
+ * gives every caller the same {@link Response}. This stops a burst of requests for the same resource, such as when a
+ * popular cached response expires, from all reaching the server.
+ * <p>
+ * Only requests with a {@link io.github.theangrydev.thinhttpclient.api.Method#isSafe() safe} method, such as a GET, are
+ * coalesced, since those are reads where one response answers every caller. A DELETE or PUT is idempotent, but each
+ * caller must see the outcome of its own request. Requests are identical if they have the same {@link RequestKey}.
+ * <p>
+ * Streaming requests are passed straight through, since a stream can only be read once.
+ */
+public final class CoalescingHttpClient implements HttpClient {
+
+    /**
+     * The header fields that usually change what the response is. Any others that do should be added to these.
+     */
+    public static final List<String> DEFAULT_KEY_HEADERS = unmodifiableList(asList(
+            ACCEPT, ACCEPT_CHARSET, ACCEPT_ENCODING, ACCEPT_LANGUAGE, AUTHORIZATION, PROXY_AUTHORIZATION, "Cookie"));
+
+    private final HttpClient delegate;
+    private final List<String> keyHeaders;
+    private final ConcurrentHashMap<RequestKey, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    private CoalescingHttpClient(HttpClient delegate, List<String> keyHeaders) {
+        this.delegate = delegate;
+        this.keyHeaders = keyHeaders;
+    }
+
+    /**
+     * @param delegate The {@link HttpClient} to send the requests with.
+     * @return A {@link CoalescingHttpClient} that uses the {@link #DEFAULT_KEY_HEADERS}.
+     */
+    public static CoalescingHttpClient coalescingHttpClient(HttpClient delegate) {
+        return coalescingHttpClient(delegate, DEFAULT_KEY_HEADERS);
+    }
+
+    /**
+     * @param delegate The {@link HttpClient} to send the requests with.
+     * @param keyHeaders The names of the header fields that must have the same values for two requests to be coalesced.
+     * @return A {@link CoalescingHttpClient}.
+     */
+    public static CoalescingHttpClient coalescingHttpClient(HttpClient delegate, List<String> keyHeaders) {
+        return new CoalescingHttpClient(delegate, unmodifiableList(asList(keyHeaders.toArray(new String[0]))));
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        if (!isCoalescable(request)) {
+            return delegate.execute(request);
+        }
+        RequestKey key = requestKey(request, keyHeaders);
+        CompletableFuture<Response> call = new CompletableFuture<>();
+        CompletableFuture<Response> existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            // A caller that joins another's call still only waits as long as its own timeout and deadline allow
+            return BlockingCall.await(request, copyOf(existingCall), CallTimeout.start(request));
+        }
+        try {
+            Response response = delegate.execute(request);
+            call.complete(response);
+            return response;
+        } catch (IOException | RuntimeException | Error exception) {
+            call.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        if (!isCoalescable(request)) {
+            return delegate.executeAsync(request);
+        }
+        RequestKey key = requestKey(request, keyHeaders);
+        CompletableFuture<Response> call = new CompletableFuture<>();
+        CompletableFuture<Response> existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            return copyOf(existingCall);
+        }
+        CompletableFuture<Response> response;
+        try {
+            response = delegate.executeAsync(request);
+        } catch (RuntimeException | Error exception) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(exception);
+            return copyOf(call);
+        }
+        response.whenComplete((result, failure) -> {
+            inFlight.remove(key, call);
+            if (failure == null) {
+                call.complete(result);
+            } else {
+                call.completeExceptionally(failure);
+            }
+        });
+        return copyOf(call);
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        return delegate.executeStreaming(request);
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    /**
+     * @return How many distinct requests are in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static boolean isCoalescable(Request request) {
+        return request.method.isSafe();
+    }
+
+    // Each caller gets its own future, so that one of them cancelling does not cancel the call for the others
+    private static CompletableFuture<Response> copyOf(CompletableFuture<Response> call) {
+        return call.thenApply(response -> response);
+    }
+
+}
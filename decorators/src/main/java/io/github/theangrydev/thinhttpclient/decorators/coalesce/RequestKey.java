@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.coalesce;
+
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Url;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * What makes two requests the same for the purposes of coalescing them: the method, the URL and the values of a
+ * chosen set of header fields. The hash is computed once.
+ */
+public final class RequestKey {
+    private final String method;
+    private final Url url;
+    private final List<List<String>> headerValues;
+    private final int hash;
+
+    private RequestKey(String method, Url url, List<List<String>> headerValues) {
+        this.method = method;
+        this.url = url;
+        this.headerValues = headerValues;
+        this.hash = Objects.hash(method, url, headerValues);
+    }
+
+    /**
+     * @param request The {@link Request} to make a key for.
+     * @param headerNames The names of the header fields whose values the key includes. Fields with other names are
+     *                    ignored, so two requests that differ only in those fields have the same key.
+     * @return A {@link RequestKey}.
+     */
+    public static RequestKey requestKey(Request request, List<String> headerNames) {
+        List<List<String>> headerValues = new ArrayList<>(headerNames.size());
+        for (String headerName : headerNames) {
+            headerValues.add(request.headers.values(headerName));
+        }
+        return new RequestKey(request.method.name, request.url, headerValues);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        RequestKey requestKey = (RequestKey) other;
+        return hash == requestKey.hash &&
+                Objects.equals(method, requestKey.method) &&
+                Objects.equals(url, requestKey.url) &&
+                Objects.equals(headerValues, requestKey.headerValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return format("%s %s %s", method, url, headerValues);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.fanout;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+
+/**
+ * Sends the same question to several servers at once, such as the replicas of a service, and gathers the answers
+ * according to a {@link Policy}: the first acceptable response, all of them, or a quorum of them, within a deadline.
+ * <p>
+ * As soon as the outcome is decided, whether by enough acceptable responses arriving, by too many calls failing for
+ * the policy to be met, by the deadline passing or by the caller cancelling the result, the calls that are still
+ * outstanding are cancelled. The adapters pass that cancellation on to the underlying call, so that its connection
+ * and thread are freed straight away rather than when the response finally arrives.
+ */
+public final class FanOut implements Closeable {
+    private final HttpClient client;
+    private final Predicate<Response> acceptable;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+
+    private FanOut(HttpClient client, Predicate<Response> acceptable, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        this.client = client;
+        this.acceptable = acceptable;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * @param client The {@link HttpClient} to send the requests with.
+     * @return A {@link FanOut} that accepts any response that is not a server error (5xx), and has its own thread to
+     * enforce deadlines with.
+     */
+    public static FanOut fanOut(HttpClient client) {
+        return new FanOut(client, response -> response.status < 500, defaultScheduler(), true);
+    }
+
+    /**
+     * @param client The {@link HttpClient} to send the requests with.
+     * @param acceptable Whether a response counts towards the {@link Policy}. Those that do not count as failures.
+     * @param scheduler Where to enforce deadlines. It is not shut down when the {@link FanOut} is closed.
+     * @return A {@link FanOut}.
+     */
+    public static FanOut fanOut(HttpClient client, Predicate<Response> acceptable, ScheduledExecutorService scheduler) {
+        return new FanOut(client, acceptable, scheduler, false);
+    }
+
+    private static ScheduledExecutorService defaultScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "fan-out-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * @param requests The requests to send, usually the same one addressed to each server.
+     * @param policy How many acceptable responses to wait for.
+     * @param deadline How long to wait for them.
+     * @return The acceptable responses in the order of their requests, once the policy is met. The future fails with
+     * an {@link java.io.IOException} that has the failures as suppressed exceptions if the policy can no longer be
+     * met, or with a {@link java.util.concurrent.TimeoutException} if the deadline passes first.
+     */
+    public CompletableFuture<List<Response>> execute(List<Request> requests, Policy policy, Duration deadline) {
+        if (deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException(format("deadline must be positive but was %s", deadline));
+        }
+        Gather gather = new Gather(requests.size(), policy.required(requests.size()), acceptable);
+        gather.start(client, requests, scheduler, deadline);
+        return gather.result;
+    }
+
+    /**
+     * Stops the thread that enforces deadlines, if it belongs to this {@link FanOut}. The {@link HttpClient} is not
+     * closed, since it is usually shared.
+     */
+    @Override
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.fanout;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * The state of one {@link FanOut#execute}. The outcome is decided under the lock, but the result is completed outside
+ * it so that the caller's callbacks and the cancellation of the outstanding calls never run while it is held. The
+ * outstanding calls are cancelled before the result is completed, so a caller that sees the outcome sees them cancelled.
+ */
+final class Gather {
+    final CompletableFuture<List<Response>> result = new CompletableFuture<>();
+
+    private final Predicate<Response> acceptable;
+    private final int required;
+    private final CompletableFuture<?>[] calls;
+    private final Response[] responses;
+    private final List<Throwable> failures = new ArrayList<>();
+    private int accepted;
+    private boolean decided;
+
+    Gather(int size, int required, Predicate<Response> acceptable) {
+        this.acceptable = acceptable;
+        this.required = required;
+        this.calls = new CompletableFuture<?>[size];
+        this.responses = new Response[size];
+    }
+
+    void start(HttpClient client, List<Request> requests, ScheduledExecutorService scheduler, Duration deadline) {
+        if (required == 0) {
+            result.complete(new ArrayList<>());
+            return;
+        }
+        ScheduledFuture<?> timeout = scheduler.schedule(this::timedOut, deadline.toNanos(), NANOSECONDS);
+        result.whenComplete((responses, failure) -> {
+            timeout.cancel(false);
+            cancelOutstanding();
+        });
+        for (int i = 0; i < requests.size() && !result.isDone(); i++) {
+            int index = i;
+            CompletableFuture<Response> call;
+            try {
+                call = client.executeAsync(requests.get(index));
+            } catch (RuntimeException exception) {
+                call = new CompletableFuture<>();
+                call.completeExceptionally(exception);
+            }
+            synchronized (this) {
+                calls[index] = call;
+            }
+            if (result.isDone()) {
+                call.cancel(true);
+            }
+            call.whenComplete((response, failure) -> arrived(index, response, failure));
+        }
+    }
+
+    private void arrived(int index, Response response, Throwable failure) {
+        List<Response> complete = null;
+        IOException failed = null;
+        synchronized (this) {
+            if (decided || result.isDone()) {
+                return;
+            }
+            if (failure == null && acceptable.test(response)) {
+                responses[index] = response;
+                accepted++;
+                if (accepted == required) {
+                    decided = true;
+                    complete = acceptedResponses();
+                }
+            } else {
+                failures.add(failure == null ? new IOException(format("Unacceptable response with status %d", response.status)) : unwrap(failure));
+                if (calls.length - failures.size() < required) {
+                    decided = true;
+                    failed = new IOException(format("Only %d of the %d responses needed can arrive, since %d of the %d calls failed",
+                            calls.length - failures.size(), required, failures.size(), calls.length));
+                    failures.forEach(failed::addSuppressed);
+                }
+            }
+        }
+        if (complete != null) {
+            cancelOutstanding();
+            result.complete(complete);
+        } else if (failed != null) {
+            cancelOutstanding();
+            result.completeExceptionally(failed);
+        }
+    }
+
+    private void timedOut() {
+        TimeoutException timeout;
+        synchronized (this) {
+            if (decided || result.isDone()) {
+                return;
+            }
+            decided = true;
+            timeout = new TimeoutException(format("Only %d of the %d responses needed arrived before the deadline", accepted, required));
+        }
+        cancelOutstanding();
+        result.completeExceptionally(timeout);
+    }
+
+    private void cancelOutstanding() {
+        List<CompletableFuture<?>> outstanding = new ArrayList<>(calls.length);
+        synchronized (this) {
+            for (CompletableFuture<?> call : calls) {
+                if (call != null) {
+                    outstanding.add(call);
+                }
+            }
+        }
+        for (CompletableFuture<?> call : outstanding) {
+            call.cancel(true);
+        }
+    }
+
+    private List<Response> acceptedResponses() {
+        List<Response> acceptedResponses = new ArrayList<>(accepted);
+        for (Response response : responses) {
+            if (response != null) {
+                acceptedResponses.add(response);
+            }
+        }
+        return acceptedResponses;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.fanout;
+
+import static java.lang.String.format;
+
+/**
+ * How many acceptable responses a {@link FanOut} waits for before it completes and cancels the rest of the calls.
+ */
+public final class Policy {
+    private final String name;
+    private final int quorum;
+
+    private Policy(String name, int quorum) {
+        this.name = name;
+        this.quorum = quorum;
+    }
+
+    /**
+     * @return A {@link Policy} that completes with the first acceptable response.
+     */
+    public static Policy anyOf() {
+        return new Policy("anyOf", 1);
+    }
+
+    /**
+     * @return A {@link Policy} that completes once every call has returned an acceptable response.
+     */
+    public static Policy allOf() {
+        return new Policy("allOf", -1);
+    }
+
+    /**
+     * @param quorum How many acceptable responses are needed.
+     * @return A {@link Policy} that completes once a quorum of the calls have returned an acceptable response.
+     */
+    public static Policy quorum(int quorum) {
+        if (quorum <= 0) {
+            throw new IllegalArgumentException(format("quorum must be positive but was %d", quorum));
+        }
+        return new Policy(format("quorum(%d)", quorum), quorum);
+    }
+
+    int required(int calls) {
+        int required = quorum < 0 ? calls : quorum;
+        if (required > calls) {
+            throw new IllegalArgumentException(format("%s needs %d responses but there are only %d requests", name, required, calls));
+        }
+        return required;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
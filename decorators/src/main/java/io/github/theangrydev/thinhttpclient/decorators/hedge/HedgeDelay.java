@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.hedge;
+
+import io.github.theangrydev.thinhttpclient.decorators.metrics.HistogramSnapshot;
+import io.github.theangrydev.thinhttpclient.decorators.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * How long to wait for a response before sending a hedge. It is either fixed, or follows a percentile of the
+ * latencies that were seen, which is worked out again every second from the latencies recorded since the last time,
+ * once there are enough of them.
+ */
+final class HedgeDelay {
+    static final long MIN_SAMPLES = 100;
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double percentile;
+    private final LongSupplier ticker;
+    private final AtomicLong nextRefresh;
+    private volatile LatencyHistogram latencies = new LatencyHistogram();
+    private volatile long nanos;
+
+    private HedgeDelay(double percentile, long nanos, LongSupplier ticker) {
+        this.percentile = percentile;
+        this.nanos = nanos;
+        this.ticker = ticker;
+        this.nextRefresh = new AtomicLong(ticker.getAsLong() + REFRESH_NANOS);
+    }
+
+    static HedgeDelay fixed(Duration delay, LongSupplier ticker) {
+        return new HedgeDelay(Double.NaN, delay.toNanos(), ticker);
+    }
+
+    static HedgeDelay atPercentile(double percentile, Duration initialDelay, LongSupplier ticker) {
+        return new HedgeDelay(percentile, initialDelay.toNanos(), ticker);
+    }
+
+    long nanos() {
+        return nanos;
+    }
+
+    void record(long latencyNanos) {
+        if (Double.isNaN(percentile)) {
+            return;
+        }
+        latencies.record(latencyNanos);
+        long now = ticker.getAsLong();
+        long next = nextRefresh.get();
+        if (now - next >= 0 && nextRefresh.compareAndSet(next, now + REFRESH_NANOS)) {
+            refresh();
+        }
+    }
+
+    // Only one thread refreshes at a time, so the swap does not need to be atomic with taking the snapshot
+    void refresh() {
+        HistogramSnapshot snapshot = latencies.snapshot();
+        if (snapshot.count >= MIN_SAMPLES) {
+            nanos = snapshot.nanosAtPercentile(percentile);
+            latencies = new LatencyHistogram();
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.hedge;
+
+import io.github.theangrydev.thinhttpclient.api.BlockingCall;
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.decorators.budget.Budget;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A {@link HttpClient} that sends a second copy of a request, a hedge, if the first has not been answered within a
+ * delay, and takes whichever response comes back first. The other call is cancelled. This cuts the tail latency that
+ * comes from a few slow servers or connections, at the cost of a little extra load.
+ * <p>
+ * Only requests with a {@link io.github.theangrydev.thinhttpclient.api.Method#isSafe() safe} method, such as GET,
+ * HEAD and OPTIONS, and no body are hedged, since sending them twice cannot change anything on the server. The extra
+ * load is capped by a budget: each request earns a fraction of a hedge and each hedge spends a whole one, so hedges
+ * cannot be more than a fixed percentage of the traffic, even when every request is slow.
+ * <p>
+ * Hedging needs the delegate to execute requests asynchronously, as all of the adapters do. A failed call does not
+ * trigger a hedge, since that would be retrying. The call only fails if every copy that was sent fails. Streaming
+ * requests are passed straight through.
+ *
+ * @see <a href="https://research.google/pubs/pub40801/">The Tail at Scale</a>
+ */
+public final class HedgingHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+    private final HedgeDelay delay;
+    private final Budget budget;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final LongSupplier ticker;
+    private final LongAdder hedgesSent = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    private HedgingHttpClient(HttpClient delegate, HedgeDelay delay, Budget budget, ScheduledExecutorService scheduler, boolean ownsScheduler, LongSupplier ticker) {
+        this.delegate = delegate;
+        this.delay = delay;
+        this.budget = budget;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Start building a {@link HedgingHttpClient}.
+     *
+     * @param delegate The {@link HttpClient} to send the requests and their hedges with.
+     * @return A {@link HedgingHttpClientBuilder} that hedges after the p95 latency, with a budget of 5% of requests.
+     */
+    public static HedgingHttpClientBuilder builder(HttpClient delegate) {
+        return new HedgingHttpClientBuilder(delegate);
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        if (!isHedgeable(request)) {
+            return delegate.execute(request);
+        }
+        return BlockingCall.await(request, executeAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        if (!isHedgeable(request)) {
+            return delegate.executeAsync(request);
+        }
+        budget.deposit();
+        Hedge hedge = new Hedge(request);
+        hedge.start();
+        return hedge.result;
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        return delegate.executeStreaming(request);
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    /**
+     * @return The number of hedges that have been sent.
+     */
+    public long hedgesSent() {
+        return hedgesSent.sum();
+    }
+
+    /**
+     * @return The number of hedges that were answered before the request they were a copy of.
+     */
+    public long hedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * @return How long requests currently wait before they are hedged.
+     */
+    public Duration delay() {
+        return Duration.ofNanos(delay.nanos());
+    }
+
+    /**
+     * Closes the delegate, and stops the thread that sends hedges if it belongs to this {@link HedgingHttpClient}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+        delegate.close();
+    }
+
+    private static boolean isHedgeable(Request request) {
+        return request.method.isSafe() && !request.method.hasBody;
+    }
+
+    /**
+     * The state of one request and its hedge, which only changes a handful of times, so it is simply synchronized.
+     */
+    private final class Hedge {
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        private final Request request;
+        private final long start = ticker.getAsLong();
+        private CompletableFuture<Response> first;
+        private CompletableFuture<Response> second;
+        private ScheduledFuture<?> timer;
+        private Throwable failure;
+        private int outstanding;
+
+        Hedge(Request request) {
+            this.request = request;
+        }
+
+        void start() {
+            synchronized (this) {
+                first = send(false);
+                if (!result.isDone()) {
+                    timer = scheduler.schedule(this::hedge, delay.nanos(), NANOSECONDS);
+                }
+            }
+            result.whenComplete((response, ignored) -> cancelTheRest());
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (result.isDone() || !budget.tryWithdraw()) {
+                    return;
+                }
+                hedgesSent.increment();
+                second = send(true);
+            }
+        }
+
+        private CompletableFuture<Response> send(boolean isHedge) {
+            outstanding++;
+            CompletableFuture<Response> call;
+            try {
+                call = delegate.executeAsync(request);
+            } catch (RuntimeException exception) {
+                call = new CompletableFuture<>();
+                call.completeExceptionally(exception);
+            }
+            call.whenComplete((response, callFailure) -> {
+                if (callFailure == null) {
+                    answered(response, isHedge);
+                } else {
+                    failed(callFailure);
+                }
+            });
+            return call;
+        }
+
+        private void answered(Response response, boolean isHedge) {
+            if (result.complete(response)) {
+                delay.record(ticker.getAsLong() - start);
+                if (isHedge) {
+                    hedgesWon.increment();
+                }
+            }
+        }
+
+        // The call only fails once there is nothing left that could answer it, including a hedge that is still to come
+        private synchronized void failed(Throwable callFailure) {
+            outstanding--;
+            if (failure == null) {
+                failure = callFailure;
+            } else if (failure != callFailure) {
+                failure.addSuppressed(callFailure);
+            }
+            if (outstanding == 0) {
+                result.completeExceptionally(failure);
+            }
+        }
+
+        private synchronized void cancelTheRest() {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (first != null) {
+                first.cancel(true);
+            }
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * This is a builder for {@link HedgingHttpClient} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static final class HedgingHttpClientBuilder {
+        private final HttpClient delegate;
+        private double percentile = 95;
+        private Duration initialDelay = Duration.ofMillis(100);
+        private double budgetPercent = 5;
+        private int burst = 10;
+        private ScheduledExecutorService scheduler;
+        private LongSupplier ticker = System::nanoTime;
+
+        private HedgingHttpClientBuilder(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param delay How long to wait for a response before sending a hedge.
+         * @return This {@link HedgingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the delay is negative.
+         */
+        public HedgingHttpClientBuilder delay(Duration delay) {
+            this.initialDelay = checkNotNegative(delay, "delay");
+            this.percentile = Double.NaN;
+            return this;
+        }
+
+        /**
+         * Wait as long as the given percentile of the latencies that have been seen recently before sending a hedge.
+         *
+         * @param percentile The percentile, from 0 to 100, e.g. 95 to hedge the slowest 5% of requests.
+         * @param initialDelay The delay to use until enough latencies have been seen.
+         * @return This {@link HedgingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the percentile is not between 0 and 100 or the delay is negative.
+         */
+        public HedgingHttpClientBuilder delayAtPercentile(double percentile, Duration initialDelay) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException(format("percentile must be between 0 and 100 but was %s", percentile));
+            }
+            this.initialDelay = checkNotNegative(initialDelay, "initialDelay");
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * @param percent The most hedges there can be, as a percentage of the requests that could be hedged.
+         * @param burst How many hedges can be sent in a row before the budget runs out, which is also how many it
+         *              starts with.
+         * @return This {@link HedgingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the percentage is not between 0 and 100 or the burst is negative.
+         */
+        public HedgingHttpClientBuilder budget(double percent, int burst) {
+            if (percent < 0 || percent > 100) {
+                throw new IllegalArgumentException(format("percent must be between 0 and 100 but was %s", percent));
+            }
+            if (burst < 0) {
+                throw new IllegalArgumentException(format("burst must not be negative but was %d", burst));
+            }
+            this.budgetPercent = percent;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param scheduler Where to send hedges from. It is not shut down when the {@link HedgingHttpClient} is closed.
+         * @return This {@link HedgingHttpClientBuilder}.
+         */
+        public HedgingHttpClientBuilder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @param ticker The source of {@link System#nanoTime()} readings that latencies are measured with.
+         * @return This {@link HedgingHttpClientBuilder}.
+         */
+        HedgingHttpClientBuilder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public HedgingHttpClient build() {
+            HedgeDelay delay = Double.isNaN(percentile) ? HedgeDelay.fixed(initialDelay, ticker) : HedgeDelay.atPercentile(percentile, initialDelay, ticker);
+            Budget budget = Budget.budget(budgetPercent, burst);
+            if (scheduler == null) {
+                return new HedgingHttpClient(delegate, delay, budget, defaultScheduler(), true, ticker);
+            }
+            return new HedgingHttpClient(delegate, delay, budget, scheduler, false, ticker);
+        }
+
+        private static ScheduledExecutorService defaultScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "hedging-http-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+
+        private static Duration checkNotNegative(Duration value, String fieldName) {
+            if (value.isNegative()) {
+                throw new IllegalArgumentException(format("%s must not be negative but was %s", fieldName, value));
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import static java.lang.String.format;
+
+/**
+ * The counts of a {@link LatencyHistogram} at one point in time.
+ */
+public final class HistogramSnapshot {
+
+    /**
+     * How many values were recorded.
+     */
+    public final long count;
+
+    /**
+     * The largest value that was recorded, in nanoseconds, or zero if there were none.
+     */
+    public final long maxNanos;
+
+    private final long[] counts;
+    private final long totalNanos;
+
+    @SuppressWarnings("PMD.ArrayIsStoredDirectly") // The histogram made this copy for the snapshot
+    HistogramSnapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+        this.counts = counts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return The mean of the recorded values in nanoseconds, or zero if there were none.
+     */
+    public double meanNanos() {
+        if (count == 0) {
+            return 0;
+        }
+        return (double) totalNanos / count;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100, e.g. 99.9 for the p999.
+     * @return The value in nanoseconds that the given percentage of the recorded values are less than or equal to,
+     * to within the precision of the histogram, or zero if there were none.
+     * @throws IllegalArgumentException If the percentile is not between 0 and 100.
+     */
+    public long nanosAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(format("percentile must be between 0 and 100 but was %s", percentile));
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValue(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return format("count=%d, mean=%.0fns, p50=%dns, p99=%dns, p999=%dns, max=%dns",
+                count, meanNanos(), nanosAtPercentile(50), nanosAtPercentile(99), nanosAtPercentile(99.9), maxNanos);
+    }
+}
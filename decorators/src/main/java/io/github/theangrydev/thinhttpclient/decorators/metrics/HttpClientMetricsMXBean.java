@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+/**
+ * The JMX view of the gauges of an {@link InstrumentedHttpClient}. The connection pool gauges are -1 if the client
+ * does not report {@link io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats}.
+ *
+ * @see InstrumentedHttpClient#registerMBeans(javax.management.MBeanServer, String)
+ */
+public interface HttpClientMetricsMXBean {
+    long getInFlight();
+
+    int getConnections();
+
+    int getIdleConnections();
+
+    int getPendingRequests();
+}
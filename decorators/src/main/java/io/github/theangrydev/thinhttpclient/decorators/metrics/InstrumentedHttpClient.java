@@ -0,0 +1,327 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.github.theangrydev.thinhttpclient.api.StreamingResponse.streamingResponse;
+import static io.github.theangrydev.thinhttpclient.decorators.metrics.MetricKey.FAILED;
+import static io.github.theangrydev.thinhttpclient.decorators.metrics.MetricKey.metricKey;
+import static io.github.theangrydev.thinhttpclient.decorators.metrics.MetricKey.statusClass;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * A {@link HttpClient} that records the latency, the number of bytes sent and received and the number of requests in
+ * flight, broken down by {@link MetricKey}, along with the {@link ConnectionPoolStats} of the client it wraps.
+ * <p>
+ * Recording is cheap enough to leave on all the time: it takes no locks and allocates nothing once a key has been
+ * seen. The metrics can be pulled with {@link #snapshot()}, or published over JMX with
+ * {@link #registerMBeans(MBeanServer, String)}.
+ */
+public final class InstrumentedHttpClient implements HttpClient, HttpClientMetricsMXBean {
+
+    /**
+     * The JMX domain that the MBeans are registered under.
+     */
+    public static final String JMX_DOMAIN = "io.github.theangrydev.thinhttpclient";
+
+    private final HttpClient delegate;
+    private final ConcurrentHashMap<MetricKey, RequestMetrics> requestMetrics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> inFlight = new ConcurrentHashMap<>();
+    private final List<ObjectName> registeredMBeans = new CopyOnWriteArrayList<>();
+    private volatile MBeanServer mBeanServer;
+    private volatile String name;
+
+    private InstrumentedHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param delegate The {@link HttpClient} to send the requests with.
+     * @return An {@link InstrumentedHttpClient}.
+     */
+    public static InstrumentedHttpClient instrumentedHttpClient(HttpClient delegate) {
+        return new InstrumentedHttpClient(delegate);
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        String host = request.url.authority();
+        LongAdder inFlightToHost = inFlight(host);
+        inFlightToHost.increment();
+        long start = System.nanoTime();
+        try {
+            Response response = delegate.execute(request);
+            RequestMetrics metrics = record(request, host, statusClass(response.status), start);
+            metrics.addResponseBytes(utf8Length(response.body));
+            return response;
+        } catch (IOException | RuntimeException | Error exception) {
+            record(request, host, FAILED, start);
+            throw exception;
+        } finally {
+            inFlightToHost.decrement();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        String host = request.url.authority();
+        LongAdder inFlightToHost = inFlight(host);
+        inFlightToHost.increment();
+        long start = System.nanoTime();
+        CompletableFuture<Response> response;
+        try {
+            response = delegate.executeAsync(request);
+        } catch (RuntimeException | Error exception) {
+            inFlightToHost.decrement();
+            record(request, host, FAILED, start);
+            throw exception;
+        }
+        // The caller gets the future of the wrapped client, so that cancelling it still cancels the call
+        response.whenComplete((result, failure) -> {
+            inFlightToHost.decrement();
+            if (failure == null) {
+                record(request, host, statusClass(result.status), start).addResponseBytes(utf8Length(result.body));
+            } else {
+                record(request, host, FAILED, start);
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        String host = request.url.authority();
+        LongAdder inFlightToHost = inFlight(host);
+        inFlightToHost.increment();
+        long start = System.nanoTime();
+        try {
+            StreamingResponse response = delegate.executeStreaming(request);
+            RequestMetrics metrics = record(request, host, statusClass(response.status), start);
+            return streamingResponse(response.headers, response.status, new CountingInputStream(response.body(), metrics));
+        } catch (IOException | RuntimeException | Error exception) {
+            record(request, host, FAILED, start);
+            throw exception;
+        } finally {
+            inFlightToHost.decrement();
+        }
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    /**
+     * @return The metrics recorded so far, along with the current gauges.
+     */
+    public MetricsSnapshot snapshot() {
+        List<RequestMetricsSnapshot> requests = new ArrayList<>();
+        requestMetrics.values().forEach(metrics -> requests.add(metrics.snapshot()));
+        Map<String, Long> inFlightPerHost = new LinkedHashMap<>();
+        inFlight.forEach((host, count) -> inFlightPerHost.put(host, count.sum()));
+        return new MetricsSnapshot(unmodifiableList(requests), unmodifiableMap(inFlightPerHost), connectionPoolStats());
+    }
+
+    /**
+     * Publish the metrics over JMX, as an {@link HttpClientMetricsMXBean} named
+     * {@code io.github.theangrydev.thinhttpclient:type=HttpClient,name=<name>} and a {@link RequestMetricsMXBean} for
+     * each {@link MetricKey} named {@code io.github.theangrydev.thinhttpclient:type=Requests,name=<name>,host=<host>,method=<method>,status=<status class>}.
+     * MBeans for keys that are seen later are registered as they appear. They are all unregistered by {@link #close()}.
+     *
+     * @param mBeanServer The {@link MBeanServer} to register with, usually {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}.
+     * @param name The name that tells this client apart from any others registered with the same server.
+     * @throws JMException If the MBeans could not be registered, e.g. because the name is already taken.
+     */
+    public void registerMBeans(MBeanServer mBeanServer, String name) throws JMException {
+        ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=HttpClient,name=" + ObjectName.quote(name));
+        mBeanServer.registerMBean(this, objectName);
+        registeredMBeans.add(objectName);
+        this.name = name;
+        this.mBeanServer = mBeanServer;
+        for (Map.Entry<MetricKey, RequestMetrics> entry : requestMetrics.entrySet()) {
+            register(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public int getConnections() {
+        return connectionPoolStats().map(stats -> stats.connections).orElse(-1);
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return connectionPoolStats().map(stats -> stats.idleConnections).orElse(-1);
+    }
+
+    @Override
+    public int getPendingRequests() {
+        return connectionPoolStats().map(stats -> stats.pendingRequests).orElse(-1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        MBeanServer server = mBeanServer;
+        mBeanServer = null;
+        if (server != null) {
+            for (ObjectName objectName : registeredMBeans) {
+                unregister(server, objectName);
+            }
+            registeredMBeans.clear();
+        }
+        delegate.close();
+    }
+
+    private LongAdder inFlight(String host) {
+        LongAdder count = inFlight.get(host);
+        if (count != null) {
+            return count;
+        }
+        LongAdder newCount = new LongAdder();
+        LongAdder existingCount = inFlight.putIfAbsent(host, newCount);
+        return existingCount == null ? newCount : existingCount;
+    }
+
+    private RequestMetrics record(Request request, String host, String statusClass, long start) {
+        long latency = System.nanoTime() - start;
+        RequestMetrics metrics = requestMetrics(metricKey(host, request.method.name, statusClass));
+        metrics.record(latency, Math.max(request.body.contentLength(), 0));
+        return metrics;
+    }
+
+    // Looked up before inserting, so that the common case of a key that has been seen before does not allocate
+    private RequestMetrics requestMetrics(MetricKey key) {
+        RequestMetrics metrics = requestMetrics.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        RequestMetrics newMetrics = new RequestMetrics(key);
+        RequestMetrics existingMetrics = requestMetrics.putIfAbsent(key, newMetrics);
+        if (existingMetrics != null) {
+            return existingMetrics;
+        }
+        if (mBeanServer != null) {
+            register(key, newMetrics);
+        }
+        return newMetrics;
+    }
+
+    // A key can be registered by both registerMBeans and the first request with it, so the second one is ignored.
+    // Recording a request must never fail because of JMX, so any other problem just leaves that key unpublished.
+    private void register(MetricKey key, RequestMetrics metrics) {
+        MBeanServer server = mBeanServer;
+        if (server == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Requests,name=" + ObjectName.quote(name)
+                    + ",host=" + ObjectName.quote(key.host) + ",method=" + key.method + ",status=" + key.statusClass);
+            server.registerMBean(metrics, objectName);
+            registeredMBeans.add(objectName);
+        } catch (JMException ignored) {
+            // Either already registered, or left unpublished
+        }
+    }
+
+    private static void unregister(MBeanServer server, ObjectName objectName) {
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException ignored) {
+            // Either already unregistered, or there is nothing more that can be done
+        }
+    }
+
+    // The length of the UTF-8 encoding, worked out without encoding it
+    static long utf8Length(String string) {
+        long length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char character = string.charAt(i);
+            if (character < 0x80) {
+                length++;
+            } else if (character < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(character) && i + 1 < string.length() && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final RequestMetrics metrics;
+
+        CountingInputStream(InputStream body, RequestMetrics metrics) {
+            super(body);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                metrics.addResponseBytes(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                metrics.addResponseBytes(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            metrics.addResponseBytes(skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * What the metrics of an {@link InstrumentedHttpClient} are broken down by.
+ */
+public final class MetricKey {
+
+    /**
+     * The status class of requests that failed without a response.
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * The host of the request URL, followed by the port if it is not the default one for the scheme.
+     */
+    public final String host;
+
+    /**
+     * The name of the request method.
+     */
+    public final String method;
+
+    /**
+     * The class of the response status, such as "2xx", or {@link #FAILED}.
+     */
+    public final String statusClass;
+
+    private MetricKey(String host, String method, String statusClass) {
+        this.host = host;
+        this.method = method;
+        this.statusClass = statusClass;
+    }
+
+    /**
+     * @param host The host and, if it is not the default, port.
+     * @param method The name of the request method.
+     * @param statusClass The class of the response status, such as "2xx", or {@link #FAILED}.
+     * @return A {@link MetricKey}.
+     */
+    public static MetricKey metricKey(String host, String method, String statusClass) {
+        return new MetricKey(host, method, statusClass);
+    }
+
+    static String statusClass(int status) {
+        switch (status / 100) {
+            case 1:
+                return "1xx";
+            case 2:
+                return "2xx";
+            case 3:
+                return "3xx";
+            case 4:
+                return "4xx";
+            case 5:
+                return "5xx";
+            default:
+                return "other";
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        MetricKey metricKey = (MetricKey) other;
+        return Objects.equals(host, metricKey.host) &&
+                Objects.equals(method, metricKey.method) &&
+                Objects.equals(statusClass, metricKey.statusClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, method, statusClass);
+    }
+
+    @Override
+    public String toString() {
+        return format("%s %s %s", method, host, statusClass);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.lang.String.format;
+
+/**
+ * Everything an {@link InstrumentedHttpClient} knows, at one point in time.
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * The metrics of each {@link MetricKey} that has been seen.
+     */
+    public final List<RequestMetricsSnapshot> requests;
+
+    /**
+     * How many requests are outstanding to each host.
+     */
+    public final Map<String, Long> inFlight;
+
+    /**
+     * The connection pool of the wrapped client, if it reports it.
+     */
+    public final Optional<ConnectionPoolStats> connectionPool;
+
+    MetricsSnapshot(List<RequestMetricsSnapshot> requests, Map<String, Long> inFlight, Optional<ConnectionPoolStats> connectionPool) {
+        this.requests = requests;
+        this.inFlight = inFlight;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * @param key The {@link MetricKey} to look for.
+     * @return The metrics of that key, if any requests with it have finished.
+     */
+    public Optional<RequestMetricsSnapshot> requests(MetricKey key) {
+        return requests.stream().filter(snapshot -> snapshot.key.equals(key)).findFirst();
+    }
+
+    @Override
+    public String toString() {
+        return format("requests=%s, inFlight=%s, connectionPool=%s", requests, inFlight, connectionPool);
+    }
+}
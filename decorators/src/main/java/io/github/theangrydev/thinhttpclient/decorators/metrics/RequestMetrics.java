@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the requests with one {@link MetricKey}. The byte counters are {@link LongAdder}s, which spread
+ * their updates over several cells, so that threads recording at the same time do not contend for one counter.
+ */
+final class RequestMetrics implements RequestMetricsMXBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final MetricKey key;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+
+    RequestMetrics(MetricKey key) {
+        this.key = key;
+    }
+
+    void record(long latencyNanos, long requestBytes) {
+        latency.record(latencyNanos);
+        this.requestBytes.add(requestBytes);
+    }
+
+    void addResponseBytes(long responseBytes) {
+        this.responseBytes.add(responseBytes);
+    }
+
+    RequestMetricsSnapshot snapshot() {
+        return new RequestMetricsSnapshot(key, latency.snapshot(), requestBytes.sum(), responseBytes.sum());
+    }
+
+    @Override
+    public long getCount() {
+        return latency.snapshot().count;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.snapshot().meanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.snapshot().maxNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get50thPercentileMillis() {
+        return latency.snapshot().nanosAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return latency.snapshot().nanosAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get999thPercentileMillis() {
+        return latency.snapshot().nanosAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+}
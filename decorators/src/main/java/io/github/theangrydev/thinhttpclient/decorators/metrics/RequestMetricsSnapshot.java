@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import static java.lang.String.format;
+
+/**
+ * The metrics of the requests with one {@link MetricKey} at one point in time.
+ */
+public final class RequestMetricsSnapshot {
+
+    public final MetricKey key;
+
+    /**
+     * The time from sending each request until its response was available: the whole body for a buffered response,
+     * and the headers for a streaming one.
+     */
+    public final HistogramSnapshot latency;
+
+    /**
+     * The total size of the request bodies, as sent by the wrapped client.
+     */
+    public final long requestBytes;
+
+    /**
+     * The total size of the response bodies in bytes, as the UTF-8 encoding of buffered bodies and as read from
+     * streaming ones.
+     */
+    public final long responseBytes;
+
+    RequestMetricsSnapshot(MetricKey key, HistogramSnapshot latency, long requestBytes, long responseBytes) {
+        this.key = key;
+        this.latency = latency;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+    }
+
+    @Override
+    public String toString() {
+        return format("%s: %s, requestBytes=%d, responseBytes=%d", key, latency, requestBytes, responseBytes);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.retry;
+
+import io.github.theangrydev.thinhttpclient.api.Response;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.RETRY_AFTER;
+
+/**
+ * @see <a href="https://tools.ietf.org/html/rfc7231#section-7.1.3">RFC 7231 HTTP/1.1 Semantics 7.1.3 Retry-After</a>
+ */
+final class RetryAfter {
+
+    private RetryAfter() {
+    }
+
+    /**
+     * @param response The response that may ask the client to wait.
+     * @param nowMillis The current time in milliseconds since the epoch, to compare a date with.
+     * @return How long the server asked the client to wait in nanoseconds, which is zero for a date in the past, or
+     * nothing if the response has no Retry-After header that can be understood.
+     */
+    static OptionalLong nanos(Response response, long nowMillis) {
+        String value = response.header(RETRY_AFTER).trim();
+        if (value.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        if (isDigits(value)) {
+            try {
+                return OptionalLong.of(TimeUnit.SECONDS.toNanos(Long.parseLong(value)));
+            } catch (NumberFormatException exception) {
+                // Too many digits to be a delay that anyone would wait for
+                return OptionalLong.of(Long.MAX_VALUE);
+            }
+        }
+        try {
+            long dateMillis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(Math.max(0, dateMillis - nowMillis)));
+        } catch (DateTimeParseException exception) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.retry;
+
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.decorators.budget.Budget;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A {@link HttpClient} that sends a request again when it fails in a way that is likely to be transient, such as a
+ * connection reset or a 503 Service Unavailable.
+ * <p>
+ * A request with an {@link io.github.theangrydev.thinhttpclient.api.Method#isIdempotent() idempotent} method is
+ * retried after any {@link IOException} and after any of the retryable statuses. Other requests might already have
+ * changed something on the server, so they are only retried when it is certain that the server did not act on
+ * them: when the connection could not be made at all, or when a 429 Too Many Requests or 503 Service Unavailable
+ * response says when to try again with a Retry-After header.
+ * <p>
+ * The delay between attempts grows with decorrelated jitter, so that clients that failed together do not retry in
+ * step. It is stretched to the Retry-After the server asked for, unless that is longer than the most the client is
+ * willing to wait, in which case the response is returned as it is. No retry is made that could not finish before
+ * the {@link Request#deadline}. Retries are also held to a percentage of the requests by a budget, so that during an
+ * incident they cannot multiply the load on a server that is already struggling. When no retry can be made, the last
+ * response is returned or the last failure is thrown, with the earlier failures suppressed in it.
+ * <p>
+ * Streaming requests are passed straight through, since the response may already have been partly read.
+ *
+ * @see <a href="https://aws.amazon.com/blogs/architecture/exponential-backoff-and-jitter/">Exponential Backoff And Jitter</a>
+ */
+public final class RetryingHttpClient implements HttpClient {
+
+    /**
+     * The statuses that usually mean that the server, or one in front of it, is briefly unable to handle requests.
+     */
+    public static final Set<Integer> DEFAULT_RETRYABLE_STATUSES = Collections.unmodifiableSet(new HashSet<>(asList(429, 502, 503, 504)));
+
+    private static final long NO_RETRY = -1;
+
+    private final HttpClient delegate;
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final long maxRetryAfterNanos;
+    private final Set<Integer> retryableStatuses;
+    private final Budget budget;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesOverBudget = new LongAdder();
+
+    private RetryingHttpClient(HttpClient delegate, int maxAttempts, long baseDelayNanos, long maxDelayNanos,
+                               long maxRetryAfterNanos, Set<Integer> retryableStatuses, Budget budget,
+                               ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        this.delegate = delegate;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+        this.maxRetryAfterNanos = maxRetryAfterNanos;
+        this.retryableStatuses = retryableStatuses;
+        this.budget = budget;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * Start building a {@link RetryingHttpClient}.
+     *
+     * @param delegate The {@link HttpClient} to send the requests with.
+     * @return A {@link RetryingHttpClientBuilder} that makes up to 3 attempts, waiting from 100ms up to 10s between
+     * them, follows a Retry-After of up to 30s and keeps retries to 10% of requests.
+     */
+    public static RetryingHttpClientBuilder builder(HttpClient delegate) {
+        return new RetryingHttpClientBuilder(delegate);
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        budget.deposit();
+        Attempts attempts = new Attempts(request);
+        while (true) {
+            long delay;
+            try {
+                Response response = delegate.execute(request);
+                delay = attempts.afterResponse(response);
+                if (delay == NO_RETRY) {
+                    return response;
+                }
+            } catch (IOException exception) {
+                delay = attempts.afterFailure(exception);
+                if (delay == NO_RETRY) {
+                    throw exception;
+                }
+            }
+            sleep(delay, request);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        budget.deposit();
+        AsyncAttempts attempts = new AsyncAttempts(request);
+        attempts.attempt();
+        return attempts.result;
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        return delegate.executeStreaming(request);
+    }
+
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        return delegate.connectionPoolStats();
+    }
+
+    /**
+     * @return The number of retries that have been made.
+     */
+    public long retries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return The number of retries that were not made because the budget had run out.
+     */
+    public long retriesOverBudget() {
+        return retriesOverBudget.sum();
+    }
+
+    /**
+     * Closes the delegate, and stops the thread that schedules async retries if it belongs to this
+     * {@link RetryingHttpClient}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+        delegate.close();
+    }
+
+    private static void sleep(long delayNanos, Request request) throws InterruptedIOException {
+        try {
+            NANOSECONDS.sleep(delayNanos);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedIOException = new InterruptedIOException(format("Interrupted while waiting to retry %s", request));
+            interruptedIOException.initCause(exception);
+            throw interruptedIOException;
+        }
+    }
+
+    /**
+     * Decides whether each attempt at one request should be followed by another, and how long to wait first.
+     */
+    private class Attempts {
+        final Request request;
+        private int attempts = 1;
+        private long previousDelayNanos = baseDelayNanos;
+        private final List<Throwable> earlierFailures = new ArrayList<>();
+
+        Attempts(Request request) {
+            this.request = request;
+        }
+
+        long afterResponse(Response response) {
+            if (!retryableStatuses.contains(response.status)) {
+                return NO_RETRY;
+            }
+            OptionalLong retryAfter = RetryAfter.nanos(response, System.currentTimeMillis());
+            boolean serverRefused = (response.status == 429 || response.status == 503) && retryAfter.isPresent();
+            if (!request.method.isIdempotent() && !serverRefused) {
+                return NO_RETRY;
+            }
+            return retryDelay(retryAfter);
+        }
+
+        long afterFailure(Throwable failure) {
+            if (!isRetryable(failure)) {
+                earlierFailures.forEach(failure::addSuppressed);
+                return NO_RETRY;
+            }
+            long delay = retryDelay(OptionalLong.empty());
+            if (delay == NO_RETRY) {
+                earlierFailures.forEach(failure::addSuppressed);
+            } else {
+                earlierFailures.add(failure);
+            }
+            return delay;
+        }
+
+        /**
+         * @param failure The last failure, which was going to be retried.
+         * @return The last failure, with the earlier ones suppressed in it.
+         */
+        Throwable giveUp(Throwable failure) {
+            earlierFailures.remove(failure);
+            earlierFailures.forEach(failure::addSuppressed);
+            return failure;
+        }
+
+        private boolean isRetryable(Throwable failure) {
+            if (failure instanceof ConnectException) {
+                return true;
+            }
+            if (!(failure instanceof IOException) || !request.method.isIdempotent()) {
+                return false;
+            }
+            // Anything else that was interrupted was given up on deliberately
+            return !(failure instanceof InterruptedIOException) || failure instanceof SocketTimeoutException;
+        }
+
+        private long retryDelay(OptionalLong retryAfterNanos) {
+            if (attempts >= maxAttempts) {
+                return NO_RETRY;
+            }
+            long delay = decorrelatedJitter();
+            if (retryAfterNanos.isPresent()) {
+                if (retryAfterNanos.getAsLong() > maxRetryAfterNanos) {
+                    return NO_RETRY;
+                }
+                delay = Math.max(delay, retryAfterNanos.getAsLong());
+            }
+            if (request.deadline.isPresent() && request.deadline.get().remaining().toNanos() <= delay) {
+                return NO_RETRY;
+            }
+            if (!budget.tryWithdraw()) {
+                retriesOverBudget.increment();
+                return NO_RETRY;
+            }
+            retries.increment();
+            attempts++;
+            return delay;
+        }
+
+        // Each delay is drawn between the base delay and three times the previous one, up to the maximum
+        private long decorrelatedJitter() {
+            long upper = Math.max(baseDelayNanos + 1, Math.min(maxDelayNanos, previousDelayNanos * 3));
+            previousDelayNanos = Math.min(maxDelayNanos, ThreadLocalRandom.current().nextLong(baseDelayNanos, upper));
+            return previousDelayNanos;
+        }
+    }
+
+    private final class AsyncAttempts extends Attempts {
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        private volatile CompletableFuture<Response> call;
+
+        AsyncAttempts(Request request) {
+            super(request);
+            // Cancelling the result cancels the attempt that is in flight, and no more are made
+            result.whenComplete((response, failure) -> {
+                CompletableFuture<Response> current = call;
+                if (result.isCancelled() && current != null) {
+                    current.cancel(true);
+                }
+            });
+        }
+
+        void attempt() {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<Response> current;
+            try {
+                current = delegate.executeAsync(request);
+            } catch (RuntimeException exception) {
+                result.completeExceptionally(exception);
+                return;
+            }
+            call = current;
+            current.whenComplete(this::attempted);
+        }
+
+        private void attempted(Response response, Throwable callFailure) {
+            if (callFailure == null) {
+                long delay = afterResponse(response);
+                if (delay == NO_RETRY || !retryLater(delay)) {
+                    result.complete(response);
+                }
+                return;
+            }
+            Throwable failure = callFailure instanceof CompletionException && callFailure.getCause() != null ? callFailure.getCause() : callFailure;
+            long delay = afterFailure(failure);
+            if (delay == NO_RETRY) {
+                result.completeExceptionally(failure);
+            } else if (!retryLater(delay)) {
+                result.completeExceptionally(giveUp(failure));
+            }
+        }
+
+        // The scheduler rejects the retry once the client has been closed, or if a bounded one is full
+        private boolean retryLater(long delay) {
+            try {
+                scheduler.schedule(this::attempt, delay, NANOSECONDS);
+                return true;
+            } catch (RejectedExecutionException exception) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * This is a builder for {@link RetryingHttpClient} objects.
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern#Java_example">The Builder Pattern</a>
+     */
+    public static final class RetryingHttpClientBuilder {
+        private final HttpClient delegate;
+        private int maxAttempts = 3;
+        private Duration baseDelay = Duration.ofMillis(100);
+        private Duration maxDelay = Duration.ofSeconds(10);
+        private Duration maxRetryAfter = Duration.ofSeconds(30);
+        private Set<Integer> retryableStatuses = DEFAULT_RETRYABLE_STATUSES;
+        private double budgetPercent = 10;
+        private int burst = 10;
+        private ScheduledExecutorService scheduler;
+
+        private RetryingHttpClientBuilder(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param maxAttempts The most times a request is sent, including the first.
+         * @return This {@link RetryingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the number is not positive.
+         */
+        public RetryingHttpClientBuilder maxAttempts(int maxAttempts) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException(format("maxAttempts must be positive but was %d", maxAttempts));
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelay The shortest time to wait between attempts.
+         * @param maxDelay The longest time to wait between attempts, unless the server asks for longer.
+         * @return This {@link RetryingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the base delay is not positive or the maximum is shorter than it.
+         */
+        public RetryingHttpClientBuilder backoff(Duration baseDelay, Duration maxDelay) {
+            if (baseDelay.isNegative() || baseDelay.isZero()) {
+                throw new IllegalArgumentException(format("baseDelay must be positive but was %s", baseDelay));
+            }
+            if (maxDelay.compareTo(baseDelay) < 0) {
+                throw new IllegalArgumentException(format("maxDelay must not be shorter than baseDelay (%s) but was %s", baseDelay, maxDelay));
+            }
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * @param maxRetryAfter The longest Retry-After to wait for. A response that asks for longer is returned.
+         * @return This {@link RetryingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the duration is negative.
+         */
+        public RetryingHttpClientBuilder maxRetryAfter(Duration maxRetryAfter) {
+            if (maxRetryAfter.isNegative()) {
+                throw new IllegalArgumentException(format("maxRetryAfter must not be negative but was %s", maxRetryAfter));
+            }
+            this.maxRetryAfter = maxRetryAfter;
+            return this;
+        }
+
+        /**
+         * @param retryableStatuses The response statuses that are worth retrying.
+         * @return This {@link RetryingHttpClientBuilder}.
+         */
+        public RetryingHttpClientBuilder retryableStatuses(Set<Integer> retryableStatuses) {
+            this.retryableStatuses = Collections.unmodifiableSet(new HashSet<>(retryableStatuses));
+            return this;
+        }
+
+        /**
+         * @param percent The most retries there can be, as a percentage of requests.
+         * @param burst How many retries can be made in a row before the budget runs out, which is also how many it
+         *              starts with.
+         * @return This {@link RetryingHttpClientBuilder}.
+         * @throws IllegalArgumentException If the percentage is not between 0 and 100 or the burst is negative.
+         */
+        public RetryingHttpClientBuilder budget(double percent, int burst) {
+            if (percent < 0 || percent > 100) {
+                throw new IllegalArgumentException(format("percent must be between 0 and 100 but was %s", percent));
+            }
+            if (burst < 0) {
+                throw new IllegalArgumentException(format("burst must not be negative but was %d", burst));
+            }
+            this.budgetPercent = percent;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param scheduler Where to make async retries from. It is not shut down when the {@link RetryingHttpClient}
+         *                  is closed.
+         * @return This {@link RetryingHttpClientBuilder}.
+         */
+        public RetryingHttpClientBuilder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public RetryingHttpClient build() {
+            Budget budget = Budget.budget(budgetPercent, burst);
+            boolean ownsScheduler = scheduler == null;
+            return new RetryingHttpClient(delegate, maxAttempts, baseDelay.toNanos(), maxDelay.toNanos(),
+                    maxRetryAfter.toNanos(), retryableStatuses, budget, ownsScheduler ? defaultScheduler() : scheduler, ownsScheduler);
+        }
+
+        private static ScheduledExecutorService defaultScheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "retrying-http-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * An {@link HttpClient} whose asynchronous calls stay pending until a test completes them.
+ */
+public final class PendingHttpClient implements HttpClient {
+    private final List<CompletableFuture<Response>> calls = new CopyOnWriteArrayList<>();
+    private volatile boolean failToStart;
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        if (failToStart) {
+            throw new IllegalStateException("The client was closed");
+        }
+        CompletableFuture<Response> call = new CompletableFuture<>();
+        calls.add(call);
+        return call;
+    }
+
+    @Override
+    public Response execute(Request request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return The calls that have been started, in the order they were started
+     */
+    public List<CompletableFuture<Response>> calls() {
+        return unmodifiableList(calls);
+    }
+
+    /**
+     * Calls started from now on fail before they are sent.
+     */
+    public void failToStart() {
+        failToStart = true;
+    }
+
+    /**
+     * Waits up to five seconds for the given number of calls to have been started.
+     *
+     * @param count The number of calls to wait for
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public void awaitCalls(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(5);
+        while (calls.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.balance;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.api.Url;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+
+public class LoadBalancingHttpClientTest implements WithAssertions {
+    private static final Request USERS = Request.get().url("http://users/people?name=bob").build();
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final FakeHttpClient delegate = new FakeHttpClient(ticker);
+
+    @Test
+    public void requestsForALogicalHostAreSentToAReplica() throws IOException {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "https://10.0.0.1:8443/api/")
+                .build();
+
+        loadBalancer.execute(USERS);
+
+        assertThat(delegate.urls).containsExactly(Url.url("https://10.0.0.1:8443/api/people?name=bob"));
+    }
+
+    @Test
+    public void requestsForOtherHostsAreSentUnchanged() throws IOException {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "http://10.0.0.1:8080")
+                .build();
+
+        loadBalancer.execute(Request.get().url("http://orders/order/1").build());
+
+        assertThat(delegate.urls).containsExactly(Url.url("http://orders/order/1"));
+    }
+
+    @Test
+    public void requestsAreSpreadEvenlyAcrossReplicasThatAreEquallyBusy() {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "http://one", "http://two", "http://three")
+                .build();
+        delegate.pending = true;
+
+        for (int i = 0; i < 300; i++) {
+            loadBalancer.executeAsync(USERS);
+        }
+
+        assertThat(callsTo("one")).isBetween(90, 110);
+        assertThat(callsTo("two")).isBetween(90, 110);
+        assertThat(callsTo("three")).isBetween(90, 110);
+    }
+
+    @Test
+    public void requestsAreSentAwayFromASlowReplica() throws IOException {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "http://fast", "http://slow")
+                .build();
+        delegate.delays.put("slow", Duration.ofMillis(20));
+
+        for (int i = 0; i < 50; i++) {
+            loadBalancer.execute(USERS);
+        }
+
+        assertThat(callsTo("slow")).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    public void aReplicaIsEjectedAfterFailingSeveralCallsInARow() throws IOException {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "http://healthy", "http://broken")
+                .ejectAfter(3, Duration.ofMinutes(1), Duration.ofMinutes(1))
+                .build();
+        delegate.failing.add("broken");
+
+        for (int i = 0; i < 50; i++) {
+            try {
+                loadBalancer.execute(USERS);
+            } catch (ConnectException ignored) {
+                // the broken replica is still being tried
+            }
+        }
+
+        assertThat(callsTo("broken")).isEqualTo(3);
+        assertThat(callsTo("healthy")).isEqualTo(47);
+    }
+
+    @Test
+    public void anEjectedReplicaIsPickedAgainOnceTheEjectionTimeHasPassed() throws IOException {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "http://healthy", "http://recovering")
+                .ejectAfter(1, Duration.ofMillis(50), Duration.ofSeconds(1))
+                .build();
+        delegate.delays.put("healthy", Duration.ofMillis(5));
+        delegate.failing.add("recovering");
+        while (callsTo("recovering") == 0) {
+            try {
+                loadBalancer.execute(USERS);
+            } catch (ConnectException ignored) {
+                // the recovering replica has been tried and ejected
+            }
+        }
+        delegate.failing.clear();
+
+        loadBalancer.execute(USERS);
+        assertThat(callsTo("recovering")).isEqualTo(1);
+        ticker.addAndGet(Duration.ofMillis(50).toNanos());
+        loadBalancer.execute(USERS);
+
+        assertThat(callsTo("recovering")).isEqualTo(2);
+    }
+
+    @Test
+    public void requestsAreStillSentWhenEveryReplicaHasBeenEjected() {
+        LoadBalancingHttpClient loadBalancer = LoadBalancingHttpClient.builder(delegate)
+                .ticker(ticker::get)
+                .service("users", "http://one", "http://two")
+                .ejectAfter(1, Duration.ofMinutes(1), Duration.ofMinutes(1))
+                .build();
+        delegate.failing.add("one");
+        delegate.failing.add("two");
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> loadBalancer.execute(USERS)).isInstanceOf(ConnectException.class);
+        }
+
+        assertThat(delegate.urls).hasSize(5);
+    }
+
+    @Test
+    public void aServiceMustHaveAnEndpoint() {
+        assertThatThrownBy(() -> LoadBalancingHttpClient.builder(delegate).service("users"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("service 'users' must have at least one endpoint");
+    }
+
+    @Test
+    public void anEndpointMustNotHaveAQuery() {
+        assertThatThrownBy(() -> LoadBalancingHttpClient.builder(delegate).service("users", "http://one?a=b"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("endpoint 'http://one?a=b' must not have a query or fragment");
+    }
+
+    @Test
+    public void consecutiveFailuresMustBePositive() {
+        assertThatThrownBy(() -> LoadBalancingHttpClient.builder(delegate).ejectAfter(0, Duration.ofSeconds(1), Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("consecutiveFailures must be positive but was 0");
+    }
+
+    private int callsTo(String host) {
+        return (int) delegate.urls.stream().filter(url -> url.host.equals(host)).count();
+    }
+
+    private static final class FakeHttpClient implements HttpClient {
+        private final List<Url> urls = new CopyOnWriteArrayList<>();
+        private final Map<String, Duration> delays = new ConcurrentHashMap<>();
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final AtomicLong ticker;
+        private boolean pending;
+
+        private FakeHttpClient(AtomicLong ticker) {
+            this.ticker = ticker;
+        }
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            urls.add(request.url);
+            ticker.addAndGet(delays.getOrDefault(request.url.host, Duration.ZERO).toNanos());
+            if (failing.contains(request.url.host)) {
+                throw new ConnectException("Connection refused");
+            }
+            return response(headers(), 200, "");
+        }
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            if (pending) {
+                urls.add(request.url);
+                return new CompletableFuture<>();
+            }
+            return HttpClient.super.executeAsync(request);
+        }
+
+        @Override
+        public StreamingResponse executeStreaming(Request request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
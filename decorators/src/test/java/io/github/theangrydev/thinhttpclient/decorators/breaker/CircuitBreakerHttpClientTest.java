@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.breaker;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.decorators.breaker.CircuitBreakerHttpClient.State;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+
+public class CircuitBreakerHttpClientTest implements WithAssertions {
+    private static final Request SERVER = Request.get().url("http://server/resource").build();
+    private static final Request OTHER_SERVER = Request.get().url("http://other-server/resource").build();
+    private static final Response OK = response(headers(), 200, "body");
+    private static final Response ERROR = response(headers(), 500, "");
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final FakeHttpClient delegate = new FakeHttpClient(ticker);
+    private final CircuitBreakerHttpClient circuitBreaker = CircuitBreakerHttpClient.builder(delegate)
+            .window(Duration.ofSeconds(10), 4)
+            .open(Duration.ofMillis(50), 2)
+            .ticker(ticker::get)
+            .build();
+
+    @Test
+    public void theCircuitOpensOnceEnoughCallsFailAndThenRejectsCallsWithoutSendingThem() throws IOException {
+        delegate.outcome = ERROR;
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(SERVER);
+        }
+
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.OPEN);
+        assertThatThrownBy(() -> circuitBreaker.execute(SERVER))
+                .isInstanceOf(CircuitOpenException.class)
+                .hasMessage("The circuit for server is open");
+        assertThat(delegate.calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void theCircuitStaysClosedWhileTooFewCallsHaveBeenMade() throws IOException {
+        delegate.outcome = new SocketTimeoutException();
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> circuitBreaker.execute(SERVER)).isInstanceOf(SocketTimeoutException.class);
+        }
+
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void theCircuitStaysClosedWhileTheFailureRateIsBelowTheThreshold() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            delegate.outcome = i % 4 == 0 ? ERROR : OK;
+            circuitBreaker.execute(SERVER);
+        }
+
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void eachHostHasItsOwnCircuit() throws IOException {
+        openTheCircuit();
+        delegate.outcome = OK;
+
+        assertThat(circuitBreaker.execute(OTHER_SERVER)).isEqualTo(OK);
+        assertThat(circuitBreaker.state("other-server")).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void theCircuitClosesOnceTheTrialCallsSucceed() throws IOException {
+        openTheCircuit();
+        ticker.addAndGet(Duration.ofMillis(50).toNanos());
+        delegate.outcome = OK;
+
+        circuitBreaker.execute(SERVER);
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.HALF_OPEN);
+        circuitBreaker.execute(SERVER);
+
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void theCircuitOpensAgainIfATrialCallFails() throws IOException {
+        openTheCircuit();
+        ticker.addAndGet(Duration.ofMillis(50).toNanos());
+
+        circuitBreaker.execute(SERVER);
+
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    public void theCircuitStaysOpenUntilTheOpenDurationHasPassed() throws IOException {
+        openTheCircuit();
+        ticker.addAndGet(Duration.ofMillis(50).toNanos() - 1);
+
+        assertThatThrownBy(() -> circuitBreaker.execute(SERVER)).isInstanceOf(CircuitOpenException.class);
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    public void onlyTheTrialCallsAreLetThroughWhileHalfOpen() throws IOException {
+        openTheCircuit();
+        ticker.addAndGet(Duration.ofMillis(50).toNanos());
+        delegate.pending = true;
+
+        CompletableFuture<Response> first = circuitBreaker.executeAsync(SERVER);
+        CompletableFuture<Response> second = circuitBreaker.executeAsync(SERVER);
+        CompletableFuture<Response> third = circuitBreaker.executeAsync(SERVER);
+
+        assertThat(first).isNotDone();
+        assertThat(second).isNotDone();
+        assertThatThrownBy(third::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(CircuitOpenException.class);
+    }
+
+    @Test
+    public void slowCallsCanOpenTheCircuit() throws IOException {
+        CircuitBreakerHttpClient slowCircuitBreaker = CircuitBreakerHttpClient.builder(delegate)
+                .window(Duration.ofSeconds(10), 2)
+                .slowCallRate(Duration.ofMillis(5), 100)
+                .ticker(ticker::get)
+                .build();
+        delegate.outcome = OK;
+        delegate.delay = Duration.ofMillis(5);
+
+        slowCircuitBreaker.execute(SERVER);
+        slowCircuitBreaker.execute(SERVER);
+
+        assertThat(slowCircuitBreaker.state("server")).isEqualTo(State.OPEN);
+    }
+
+    private void openTheCircuit() throws IOException {
+        delegate.outcome = ERROR;
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(SERVER);
+        }
+        assertThat(circuitBreaker.state("server")).isEqualTo(State.OPEN);
+    }
+
+    private static final class FakeHttpClient implements HttpClient {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicLong ticker;
+        private Object outcome = OK;
+        private Duration delay = Duration.ZERO;
+        private boolean pending;
+
+        private FakeHttpClient(AtomicLong ticker) {
+            this.ticker = ticker;
+        }
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            calls.incrementAndGet();
+            ticker.addAndGet(delay.toNanos());
+            if (outcome instanceof IOException) {
+                throw (IOException) outcome;
+            }
+            return (Response) outcome;
+        }
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            if (pending) {
+                calls.incrementAndGet();
+                return new CompletableFuture<>();
+            }
+            return HttpClient.super.executeAsync(request);
+        }
+
+        @Override
+        public StreamingResponse executeStreaming(Request request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
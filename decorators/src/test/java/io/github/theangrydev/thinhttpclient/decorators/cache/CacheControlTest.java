@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.PRAGMA;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+
+public class CacheControlTest implements WithAssertions {
+
+    @Test
+    public void directivesAreParsedCaseInsensitively() {
+        CacheControl cacheControl = CacheControl.parse("No-Cache, NO-STORE, must-revalidate, only-if-cached");
+
+        assertThat(cacheControl.noCache).isTrue();
+        assertThat(cacheControl.noStore).isTrue();
+        assertThat(cacheControl.mustRevalidate).isTrue();
+        assertThat(cacheControl.onlyIfCached).isTrue();
+    }
+
+    @Test
+    public void deltaSecondsArguments() {
+        CacheControl cacheControl = CacheControl.parse("max-age=60, max-stale=\"30\", min-fresh=10");
+
+        assertThat(cacheControl.maxAgeSeconds).isEqualTo(60);
+        assertThat(cacheControl.maxStaleSeconds).isEqualTo(30);
+        assertThat(cacheControl.minFreshSeconds).isEqualTo(10);
+    }
+
+    @Test
+    public void staleContentExtensions() {
+        CacheControl cacheControl = CacheControl.parse("stale-while-revalidate=30, stale-if-error=600");
+
+        assertThat(cacheControl.staleWhileRevalidateSeconds).isEqualTo(30);
+        assertThat(cacheControl.staleIfErrorSeconds).isEqualTo(600);
+    }
+
+    @Test
+    public void maxStaleWithoutAnArgumentAcceptsAnyStaleness() {
+        assertThat(CacheControl.parse("max-stale").maxStaleSeconds).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void invalidArgumentsAreIgnored() {
+        assertThat(CacheControl.parse("max-age=-1").maxAgeSeconds).isEqualTo(CacheControl.NOT_SET);
+        assertThat(CacheControl.parse("max-age=abc").maxAgeSeconds).isEqualTo(CacheControl.NOT_SET);
+    }
+
+    @Test
+    public void hugeArgumentsAreCapped() {
+        assertThat(CacheControl.parse("max-age=99999999999999999999").maxAgeSeconds).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void unknownDirectivesAndQuotedCommasAreSkipped() {
+        CacheControl cacheControl = CacheControl.parse("private=\"Set-Cookie, Authorization\", extension=token, no-store");
+
+        assertThat(cacheControl.noStore).isTrue();
+        assertThat(cacheControl.noCache).isFalse();
+    }
+
+    @Test
+    public void pragmaNoCacheIsUsedWhenThereIsNoCacheControl() {
+        assertThat(CacheControl.parse(headers(header(PRAGMA, "no-cache"))).noCache).isTrue();
+    }
+}
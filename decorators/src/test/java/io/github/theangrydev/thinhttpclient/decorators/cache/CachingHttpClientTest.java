@@ -0,0 +1,409 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Header;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_LANGUAGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.AGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CACHE_CONTROL;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.DATE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ETAG;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.EXPIRES;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_MODIFIED_SINCE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.IF_NONE_MATCH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.LAST_MODIFIED;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.VARY;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.WARNING;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.TEXT_PLAIN;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.CachingHttpClient.cachingHttpClient;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.InMemoryCacheStorage.inMemoryCacheStorage;
+
+public class CachingHttpClientTest implements WithAssertions {
+    private static final String URL = "http://localhost/resource";
+
+    private final MutableClock clock = new MutableClock(1_000_000_000_000L);
+    private final FakeHttpClient origin = new FakeHttpClient();
+    private final ManualExecutor refreshExecutor = new ManualExecutor();
+    private final CachingHttpClient cachingHttpClient = cachingHttpClient(origin, inMemoryCacheStorage(1 << 20), clock, refreshExecutor);
+
+    @Test
+    public void freshResponseIsServedFromTheCacheWithItsAge() throws IOException {
+        origin.respond(200, "body", header(CACHE_CONTROL, "max-age=60"), header(DATE, HttpDates.format(clock.millis())));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(10);
+        Response cached = cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(origin.requests).hasSize(1);
+        assertThat(cached.body).isEqualTo("body");
+        assertThat(cached.header(AGE)).isEqualTo("10");
+    }
+
+    @Test
+    public void staleResponseIsRevalidatedWithItsEntityTagAndServedFromTheCacheOnNotModified() throws IOException {
+        origin.respond(200, "body", header(CACHE_CONTROL, "max-age=60"), header(ETAG, "\"v1\""), header("X-Version", "1"));
+        origin.respond(304, "", header(CACHE_CONTROL, "max-age=60"), header(ETAG, "\"v1\""), header("X-Version", "2"));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(61);
+        Response revalidated = cachingHttpClient.execute(Request.get().url(URL));
+        Response cached = cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(origin.requests).hasSize(2);
+        assertThat(origin.requests.get(1).header(IF_NONE_MATCH)).isEqualTo("\"v1\"");
+        assertThat(revalidated.status).isEqualTo(200);
+        assertThat(revalidated.body).isEqualTo("body");
+        assertThat(revalidated.header("X-Version")).isEqualTo("2");
+        assertThat(cached.body).isEqualTo("body");
+    }
+
+    @Test
+    public void staleResponseIsRevalidatedWithItsLastModifiedDate() throws IOException {
+        String lastModified = HttpDates.format(clock.millis() - 10_000);
+        origin.respond(200, "old", header(DATE, HttpDates.format(clock.millis())), header(LAST_MODIFIED, lastModified));
+        origin.respond(200, "new", header(DATE, HttpDates.format(clock.millis())), header(LAST_MODIFIED, lastModified));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(1);
+        Response response = cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(origin.requests).hasSize(2);
+        assertThat(origin.requests.get(1).header(IF_MODIFIED_SINCE)).isEqualTo(lastModified);
+        assertThat(response.body).isEqualTo("new");
+    }
+
+    @Test
+    public void freshnessIsHeuristicallyATenthOfTheTimeSinceLastModified() throws IOException {
+        origin.respond(200, "body", header(DATE, HttpDates.format(clock.millis())), header(LAST_MODIFIED, HttpDates.format(clock.millis() - 100_000)));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(9);
+        cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(origin.requests).hasSize(1);
+    }
+
+    @Test
+    public void expiresIsUsedWhenThereIsNoMaxAge() throws IOException {
+        origin.respond(200, "first", header(DATE, HttpDates.format(clock.millis())), header(EXPIRES, HttpDates.format(clock.millis() + 30_000)));
+        origin.respond(200, "second");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(29);
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("first");
+        clock.advanceSeconds(2);
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void noStoreResponsesAreNotStored() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60, no-store"));
+        origin.respond(200, "second");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void noCacheRequestsGoToTheOriginServer() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60"));
+        origin.respond(200, "second", header(CACHE_CONTROL, "max-age=60"));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL).header(CACHE_CONTROL, "no-cache")).body).isEqualTo("second");
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void maxStaleAllowsAStaleResponseToBeServedWithAWarning() throws IOException {
+        origin.respond(200, "body", header(CACHE_CONTROL, "max-age=60"));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(90);
+        Response stale = cachingHttpClient.execute(Request.get().url(URL).header(CACHE_CONTROL, "max-stale=60"));
+
+        assertThat(origin.requests).hasSize(1);
+        assertThat(stale.body).isEqualTo("body");
+        assertThat(stale.header(WARNING)).startsWith("110");
+    }
+
+    @Test
+    public void onlyIfCachedIsAGatewayTimeoutWhenNothingIsStored() throws IOException {
+        Response response = cachingHttpClient.execute(Request.get().url(URL).header(CACHE_CONTROL, "only-if-cached"));
+
+        assertThat(origin.requests).isEmpty();
+        assertThat(response.status).isEqualTo(504);
+    }
+
+    @Test
+    public void responsesAreOnlyServedForRequestsWithTheSameVaryingFields() throws IOException {
+        origin.respond(200, "english", header(CACHE_CONTROL, "max-age=60"), header(VARY, ACCEPT_LANGUAGE));
+        origin.respond(200, "french", header(CACHE_CONTROL, "max-age=60"), header(VARY, ACCEPT_LANGUAGE));
+
+        cachingHttpClient.execute(Request.get().url(URL).header(ACCEPT_LANGUAGE, "en"));
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL).header(ACCEPT_LANGUAGE, "en")).body).isEqualTo("english");
+        assertThat(cachingHttpClient.execute(Request.get().url(URL).header(ACCEPT_LANGUAGE, "fr")).body).isEqualTo("french");
+        assertThat(origin.requests).hasSize(2);
+    }
+
+    @Test
+    public void varyStarIsNotStored() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60"), header(VARY, "*"));
+        origin.respond(200, "second");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void successfulUnsafeRequestsInvalidateTheStoredResponse() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60"));
+        origin.respond(204, "");
+        origin.respond(200, "second");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        cachingHttpClient.execute(Request.post().url(URL).body("update", TEXT_PLAIN));
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void uncacheableStatusesWithoutExplicitFreshnessAreNotStored() throws IOException {
+        origin.respond(500, "first", header(LAST_MODIFIED, HttpDates.format(0)));
+        origin.respond(200, "second");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void requestsWithTheirOwnPreconditionsArePassedThrough() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60"));
+        origin.respond(304, "");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        Response response = cachingHttpClient.execute(Request.get().url(URL).header(IF_NONE_MATCH, "\"v1\""));
+
+        assertThat(response.status).isEqualTo(304);
+    }
+
+    @Test
+    public void asyncRequestsUseTheCache() throws Exception {
+        origin.respond(200, "body", header(CACHE_CONTROL, "max-age=60"));
+
+        cachingHttpClient.executeAsync(Request.get().url(URL)).get();
+        Response cached = cachingHttpClient.executeAsync(Request.get().url(URL)).get();
+
+        assertThat(origin.requests).hasSize(1);
+        assertThat(cached.body).isEqualTo("body");
+    }
+
+    @Test
+    public void staleWhileRevalidateServesTheStaleResponseAndRefreshesItOnceInTheBackground() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60, stale-while-revalidate=30"));
+        origin.respond(200, "second", header(CACHE_CONTROL, "max-age=60, stale-while-revalidate=30"));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(70);
+        Response stale = cachingHttpClient.execute(Request.get().url(URL));
+        Response alsoStale = cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(stale.body).isEqualTo("first");
+        assertThat(stale.header(WARNING)).startsWith("110");
+        assertThat(alsoStale.body).isEqualTo("first");
+        assertThat(origin.requests).hasSize(1);
+        assertThat(refreshExecutor.tasks).hasSize(1);
+
+        refreshExecutor.runAll();
+
+        assertThat(origin.requests).hasSize(2);
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+    }
+
+    @Test
+    public void staleWhileRevalidateDoesNotApplyAfterItsWindow() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60, stale-while-revalidate=30"));
+        origin.respond(200, "second");
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(100);
+
+        assertThat(cachingHttpClient.execute(Request.get().url(URL)).body).isEqualTo("second");
+        assertThat(refreshExecutor.tasks).isEmpty();
+    }
+
+    @Test
+    public void staleIfErrorServesTheStaleResponseWhenTheOriginServerFails() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60, stale-if-error=30"));
+        origin.respond(503, "unavailable");
+        origin.fail(new IOException("connection refused"));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(70);
+        Response afterServerError = cachingHttpClient.execute(Request.get().url(URL));
+        Response afterFailure = cachingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(afterServerError.body).isEqualTo("first");
+        assertThat(afterServerError.header(WARNING)).startsWith("111");
+        assertThat(afterFailure.body).isEqualTo("first");
+    }
+
+    @Test
+    public void staleIfErrorDoesNotApplyAfterItsWindow() throws IOException {
+        origin.respond(200, "first", header(CACHE_CONTROL, "max-age=60, stale-if-error=30"));
+        origin.fail(new IOException("connection refused"));
+
+        cachingHttpClient.execute(Request.get().url(URL));
+        clock.advanceSeconds(100);
+
+        assertThatThrownBy(() -> cachingHttpClient.execute(Request.get().url(URL))).hasMessage("connection refused");
+    }
+
+    @Test
+    public void fragmentsAreNotPartOfTheKey() {
+        assertThat(CachingHttpClient.key(Request.get().url(URL + "?query#fragment").build().url)).isEqualTo(URL + "?query");
+    }
+
+    private static final class FakeHttpClient implements HttpClient {
+        final List<Request> requests = new ArrayList<>();
+        final Deque<Object> responses = new ArrayDeque<>();
+
+        void respond(int status, String body, Header... headers) {
+            responses.add(response(headers(headers), status, body));
+        }
+
+        void fail(IOException failure) {
+            responses.add(failure);
+        }
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            requests.add(request);
+            Object response = responses.remove();
+            if (response instanceof IOException) {
+                throw (IOException) response;
+            }
+            return (Response) response;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+
+    private static final class ManualExecutor extends AbstractExecutorService {
+        final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove().run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void shutdown() {
+            tasks.clear();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> remaining = new ArrayList<>(tasks);
+            tasks.clear();
+            return remaining;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advanceSeconds(long seconds) {
+            millis += seconds * 1000;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import io.github.theangrydev.thinhttpclient.api.Protocol;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_LANGUAGE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CACHE_CONTROL;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.CacheEntry.cacheEntry;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.DiskCacheStorage.diskCacheStorage;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+public class DiskCacheStorageTest implements WithAssertions {
+    private static final CacheEntry ENTRY = cacheEntry(
+            response(Protocol.HTTP_2, headers(header(CACHE_CONTROL, "max-age=60"), header("X-Unicode", "\u00e9")), 200, "body \u00e9"),
+            headers(header(ACCEPT_LANGUAGE, "en")), 1000, 2000);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void storedEntriesCanBeRetrievedAndRemoved() throws IOException {
+        DiskCacheStorage storage = diskCacheStorage(temporaryFolder.getRoot().toPath(), 1 << 20, 1 << 16);
+
+        storage.put("key", ENTRY);
+        assertThat(storage.get("key")).isEqualTo(ENTRY);
+
+        storage.remove("key");
+        assertThat(storage.get("key")).isNull();
+    }
+
+    @Test
+    public void entriesSurviveARestart() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        DiskCacheStorage storage = diskCacheStorage(directory, 1 << 20, 1 << 16);
+        storage.put("kept", ENTRY);
+        storage.put("removed", ENTRY);
+        storage.put("replaced", ENTRY);
+        storage.remove("removed");
+        CacheEntry replacement = cacheEntry(response(headers(), 404, ""), headers(), 3000, 4000);
+        storage.put("replaced", replacement);
+        storage.close();
+
+        DiskCacheStorage reopened = diskCacheStorage(directory, 1 << 20, 1 << 16);
+
+        assertThat(reopened.size()).isEqualTo(2);
+        assertThat(reopened.get("kept")).isEqualTo(ENTRY);
+        assertThat(reopened.get("removed")).isNull();
+        assertThat(reopened.get("replaced")).isEqualTo(replacement);
+    }
+
+    @Test
+    public void appendsCarryOnAfterTheLastRecordOnRestart() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        DiskCacheStorage storage = diskCacheStorage(directory, 1 << 20, 1 << 16);
+        storage.put("first", ENTRY);
+        storage.close();
+
+        DiskCacheStorage reopened = diskCacheStorage(directory, 1 << 20, 1 << 16);
+        reopened.put("second", ENTRY);
+        reopened.close();
+
+        DiskCacheStorage reopenedAgain = diskCacheStorage(directory, 1 << 20, 1 << 16);
+        assertThat(reopenedAgain.get("first")).isEqualTo(ENTRY);
+        assertThat(reopenedAgain.get("second")).isEqualTo(ENTRY);
+    }
+
+    @Test
+    public void partlyWrittenRecordsAreIgnoredOnRestart() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        DiskCacheStorage storage = diskCacheStorage(directory, 1 << 20, 1 << 16);
+        storage.put("complete", ENTRY);
+        storage.put("torn", ENTRY);
+        storage.close();
+        int tornRecordOffset = RecordCodec.encodePut("complete", ENTRY).remaining();
+        try (FileChannel channel = FileChannel.open(segmentFiles(directory).get(0), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0}), tornRecordOffset + RecordCodec.HEADER_BYTES + 2);
+        }
+
+        DiskCacheStorage reopened = diskCacheStorage(directory, 1 << 20, 1 << 16);
+
+        assertThat(reopened.get("complete")).isEqualTo(ENTRY);
+        assertThat(reopened.get("torn")).isNull();
+    }
+
+    @Test
+    public void damagedRecordsAreMisses() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        DiskCacheStorage storage = diskCacheStorage(directory, 1 << 20, 1 << 16);
+        storage.put("key", ENTRY);
+        int protocolLengthOffset = RecordCodec.HEADER_BYTES + 1 + 4 + "key".length();
+        try (FileChannel channel = FileChannel.open(segmentFiles(directory).get(0), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1}), protocolLengthOffset);
+        }
+
+        assertThat(storage.get("key")).isNull();
+        assertThat(storage.size()).isZero();
+    }
+
+    @Test
+    public void nothingIsStoredOnceTheStorageIsClosed() throws IOException {
+        DiskCacheStorage storage = diskCacheStorage(temporaryFolder.getRoot().toPath(), 1 << 20, 1 << 16);
+        storage.close();
+
+        storage.put("key", ENTRY);
+        storage.remove("key");
+
+        assertThat(storage.get("key")).isNull();
+    }
+
+    @Test
+    public void oldestSegmentsAreDeletedWhenTheBudgetIsExceeded() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        int recordBytes = RecordCodec.encodePut("key-00", ENTRY).remaining();
+        DiskCacheStorage storage = diskCacheStorage(directory, 2L * recordBytes, recordBytes);
+
+        storage.put("key-00", ENTRY);
+        storage.put("key-01", ENTRY);
+        storage.put("key-02", ENTRY);
+
+        assertThat(storage.get("key-00")).isNull();
+        assertThat(storage.get("key-01")).isEqualTo(ENTRY);
+        assertThat(storage.get("key-02")).isEqualTo(ENTRY);
+        assertThat(segmentFiles(directory)).hasSize(2);
+    }
+
+    @Test
+    public void entriesBiggerThanASegmentAreNotStored() throws IOException {
+        DiskCacheStorage storage = diskCacheStorage(temporaryFolder.getRoot().toPath(), 1 << 10, 1 << 9);
+
+        storage.put("key", cacheEntry(response(headers(), 200, new String(new char[1024]).replace('\0', 'x')), headers(), 0, 0));
+
+        assertThat(storage.get("key")).isNull();
+    }
+
+    @Test
+    public void budgetMustHoldAtLeastTwoSegments() {
+        assertThatThrownBy(() -> diskCacheStorage(temporaryFolder.getRoot().toPath(), 1000, 1000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maximumBytes must be at least two segments (2000) but was 1000");
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.CacheEntry.cacheEntry;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.InMemoryCacheStorage.inMemoryCacheStorage;
+
+public class InMemoryCacheStorageTest implements WithAssertions {
+
+    @Test
+    public void storedEntriesCanBeRetrievedAndRemoved() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(1 << 20);
+        CacheEntry entry = entry(10);
+
+        storage.put("key", entry);
+        assertThat(storage.get("key")).isEqualTo(entry);
+
+        storage.remove("key");
+        assertThat(storage.get("key")).isNull();
+        assertThat(storage.totalBytes()).isZero();
+    }
+
+    @Test
+    public void replacingAnEntryReplacesItsWeight() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(1 << 20);
+
+        storage.put("key", entry(1000));
+        storage.put("key", entry(10));
+
+        assertThat(storage.size()).isEqualTo(1);
+        assertThat(storage.totalBytes()).isLessThan(1000);
+    }
+
+    @Test
+    public void entriesLargerThanTheBudgetAreNotStored() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(1000);
+
+        storage.put("key", entry(1000));
+
+        assertThat(storage.get("key")).isNull();
+    }
+
+    @Test
+    public void anEntryWhoseReplacementIsTooLargeIsRemoved() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(1000);
+        storage.put("key", entry(10));
+
+        storage.put("key", entry(1000));
+
+        assertThat(storage.get("key")).isNull();
+        assertThat(storage.totalBytes()).isZero();
+    }
+
+    @Test
+    public void anEntryWhoseReplacementIsNotAdmittedIsRemoved() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(1000);
+        storage.put("popular", entry(400));
+        for (int i = 0; i < 5; i++) {
+            storage.get("popular");
+        }
+        storage.put("key", entry(10));
+
+        storage.put("key", entry(700));
+
+        assertThat(storage.get("key")).isNull();
+        assertThat(storage.get("popular")).isNotNull();
+    }
+
+    @Test
+    public void frequentlyUsedEntriesAreNotEvictedByOneOffEntries() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(3000);
+        storage.put("popular", entry(500));
+        for (int i = 0; i < 5; i++) {
+            storage.get("popular");
+        }
+
+        for (int i = 0; i < 100; i++) {
+            storage.put("one-off-" + i, entry(500));
+        }
+
+        assertThat(storage.get("popular")).isNotNull();
+        assertThat(storage.totalBytes()).isLessThanOrEqualTo(3000);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedForMorePopularOnes() {
+        InMemoryCacheStorage storage = inMemoryCacheStorage(3000);
+        storage.put("old", entry(1000));
+        storage.put("recent", entry(1000));
+        storage.get("old");
+        storage.get("recent");
+        for (int i = 0; i < 5; i++) {
+            storage.get("new");
+        }
+
+        storage.put("new", entry(1000));
+
+        assertThat(storage.get("new")).isNotNull();
+        assertThat(storage.get("old")).isNull();
+        assertThat(storage.get("recent")).isNotNull();
+    }
+
+    @Test
+    public void maximumBytesMustBePositive() {
+        assertThatThrownBy(() -> inMemoryCacheStorage(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("maximumBytes must be positive but was 0");
+    }
+
+    private static CacheEntry entry(int bodyLength) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < bodyLength / 2; i++) {
+            body.append('x');
+        }
+        return cacheEntry(response(headers(), 200, body.toString()), headers(), 0, 0);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.cache;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.CacheEntry.cacheEntry;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.InMemoryCacheStorage.inMemoryCacheStorage;
+import static io.github.theangrydev.thinhttpclient.decorators.cache.TieredCacheStorage.tieredCacheStorage;
+
+public class TieredCacheStorageTest implements WithAssertions {
+    private static final CacheEntry ENTRY = cacheEntry(response(headers(), 200, "body"), headers(), 0, 0);
+
+    private final InMemoryCacheStorage first = inMemoryCacheStorage(1 << 20);
+    private final InMemoryCacheStorage second = inMemoryCacheStorage(1 << 20);
+    private final TieredCacheStorage storage = tieredCacheStorage(first, second);
+
+    @Test
+    public void entriesOnlyInTheSecondTierAreCopiedIntoTheFirst() {
+        second.put("key", ENTRY);
+
+        assertThat(storage.get("key")).isEqualTo(ENTRY);
+        assertThat(first.get("key")).isEqualTo(ENTRY);
+    }
+
+    @Test
+    public void entriesAreWrittenToAndRemovedFromBothTiers() {
+        storage.put("key", ENTRY);
+        assertThat(first.get("key")).isEqualTo(ENTRY);
+        assertThat(second.get("key")).isEqualTo(ENTRY);
+
+        storage.remove("key");
+        assertThat(first.get("key")).isNull();
+        assertThat(second.get("key")).isNull();
+    }
+}
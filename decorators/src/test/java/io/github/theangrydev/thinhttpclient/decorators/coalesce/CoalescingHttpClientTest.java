@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.coalesce;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.RequestTimeoutException;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import org.assertj.core.api.WithAssertions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.TEXT_PLAIN;
+import static io.github.theangrydev.thinhttpclient.api.Method.DELETE;
+import static io.github.theangrydev.thinhttpclient.api.Method.HEAD;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.coalesce.CoalescingHttpClient.coalescingHttpClient;
+import static io.github.theangrydev.thinhttpclient.decorators.coalesce.RequestKey.requestKey;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class CoalescingHttpClientTest implements WithAssertions {
+    private static final String URL = "http://localhost/resource";
+    private static final int CALLERS = 8;
+
+    private final BlockingHttpClient origin = new BlockingHttpClient();
+    private final CoalescingHttpClient coalescingHttpClient = coalescingHttpClient(origin);
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+
+    @After
+    public void stopCallers() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void identicalConcurrentRequestsShareOneCallAndOneResponse() throws Exception {
+        List<Future<Response>> responses = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            responses.add(callers.submit(() -> coalescingHttpClient.execute(Request.get().url(URL))));
+        }
+        awaitCallersWaiting();
+
+        origin.release.countDown();
+
+        Response first = responses.get(0).get(5, SECONDS);
+        for (Future<Response> response : responses) {
+            assertThat(response.get(5, SECONDS)).isSameAs(first);
+        }
+        assertThat(origin.calls.get()).isEqualTo(1);
+        assertThat(coalescingHttpClient.inFlight()).isZero();
+    }
+
+    @Test
+    public void failuresAreSharedWithEveryWaiter() throws Exception {
+        origin.failure = new IOException("connection reset");
+        List<Future<Response>> responses = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            responses.add(callers.submit(() -> coalescingHttpClient.execute(Request.get().url(URL))));
+        }
+        awaitCallersWaiting();
+
+        origin.release.countDown();
+
+        for (Future<Response> response : responses) {
+            assertThatThrownBy(() -> response.get(5, SECONDS)).hasRootCauseExactlyInstanceOf(IOException.class);
+        }
+        assertThat(origin.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void requestsAreNotCoalescedOnceTheCallHasFinished() throws IOException {
+        origin.release.countDown();
+
+        coalescingHttpClient.execute(Request.get().url(URL));
+        coalescingHttpClient.execute(Request.get().url(URL));
+
+        assertThat(origin.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void requestsWithABodyAreNotCoalesced() throws Exception {
+        Future<Response> first = callers.submit(() -> coalescingHttpClient.execute(Request.post().url(URL).body("body", TEXT_PLAIN)));
+        Future<Response> second = callers.submit(() -> coalescingHttpClient.execute(Request.post().url(URL).body("body", TEXT_PLAIN)));
+        while (origin.calls.get() < 2) {
+            Thread.yield();
+        }
+
+        origin.release.countDown();
+
+        first.get(5, SECONDS);
+        second.get(5, SECONDS);
+        assertThat(origin.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void requestsThatAreNotSafeAreNotCoalesced() throws Exception {
+        Future<Response> first = callers.submit(() -> coalescingHttpClient.execute(Request.builder().method(DELETE).url(URL)));
+        Future<Response> second = callers.submit(() -> coalescingHttpClient.execute(Request.builder().method(DELETE).url(URL)));
+        while (origin.calls.get() < 2) {
+            Thread.yield();
+        }
+
+        origin.release.countDown();
+
+        first.get(5, SECONDS);
+        second.get(5, SECONDS);
+        assertThat(origin.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void asyncRequestsAreCoalesced() throws Exception {
+        Future<Response> first = callers.submit(() -> coalescingHttpClient.executeAsync(Request.get().url(URL)).get());
+        while (origin.calls.get() < 1) {
+            Thread.yield();
+        }
+        // The first call is still in flight, so this one does not block
+        Future<Response> second = coalescingHttpClient.executeAsync(Request.get().url(URL));
+
+        origin.release.countDown();
+
+        assertThat(second.get(5, SECONDS)).isSameAs(first.get(5, SECONDS));
+        assertThat(origin.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void aCallerThatJoinsAnotherCallOnlyWaitsForItsOwnTimeout() throws Exception {
+        callers.submit(() -> coalescingHttpClient.execute(Request.get().url(URL)));
+        while (origin.calls.get() < 1) {
+            Thread.yield();
+        }
+
+        assertThatThrownBy(() -> coalescingHttpClient.execute(Request.get().url(URL).timeout(Duration.ofMillis(50))))
+                .isInstanceOf(RequestTimeoutException.class);
+        assertThat(origin.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void asyncCallsThatFailToStartAreNotJoinedByLaterRequests() throws Exception {
+        origin.startFailure = new IllegalArgumentException("https is not supported");
+
+        assertThatThrownBy(() -> coalescingHttpClient.executeAsync(Request.get().url(URL)).get(5, SECONDS))
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(coalescingHttpClient.inFlight()).isZero();
+
+        origin.startFailure = null;
+        origin.release.countDown();
+        assertThat(coalescingHttpClient.executeAsync(Request.get().url(URL)).get(5, SECONDS).status).isEqualTo(200);
+    }
+
+    @Test
+    public void requestKeysOnlyDependOnTheChosenHeaders() {
+        Request json = Request.get().url(URL).header(ACCEPT, "application/json").header("X-Trace", "1").build();
+        Request jsonWithOtherTrace = Request.get().url(URL).header(ACCEPT, "application/json").header("X-Trace", "2").build();
+        Request xml = Request.get().url(URL).header(ACCEPT, "application/xml").build();
+
+        assertThat(requestKey(json, singletonList(ACCEPT))).isEqualTo(requestKey(jsonWithOtherTrace, singletonList(ACCEPT)));
+        assertThat(requestKey(json, singletonList(ACCEPT)).hashCode()).isEqualTo(requestKey(jsonWithOtherTrace, singletonList(ACCEPT)).hashCode());
+        assertThat(requestKey(json, singletonList(ACCEPT))).isNotEqualTo(requestKey(xml, singletonList(ACCEPT)));
+        assertThat(requestKey(json, singletonList(ACCEPT))).isNotEqualTo(requestKey(Request.builder().method(HEAD).url(URL).header(ACCEPT, "application/json").build(), singletonList(ACCEPT)));
+    }
+
+    private void awaitCallersWaiting() throws InterruptedException {
+        // The first caller is blocked in the origin, and the others should soon be waiting for it
+        while (origin.calls.get() < 1) {
+            Thread.yield();
+        }
+        Thread.sleep(100);
+    }
+
+    private static final class BlockingHttpClient implements HttpClient {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        volatile IOException failure;
+        volatile RuntimeException startFailure;
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            if (startFailure != null) {
+                throw startFailure;
+            }
+            return HttpClient.super.executeAsync(request);
+        }
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException(exception);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return response(headers(), 200, "body");
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
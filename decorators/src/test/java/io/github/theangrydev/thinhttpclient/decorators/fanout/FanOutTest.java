@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.fanout;
+
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.decorators.PendingHttpClient;
+import org.assertj.core.api.WithAssertions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.fanout.FanOut.fanOut;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class FanOutTest implements WithAssertions {
+    private static final Duration DEADLINE = Duration.ofSeconds(30);
+    private static final List<Request> REPLICAS = asList(
+            Request.get().url("http://replica-1/resource").build(),
+            Request.get().url("http://replica-2/resource").build(),
+            Request.get().url("http://replica-3/resource").build());
+
+    private final PendingHttpClient replicas = new PendingHttpClient();
+    private final FanOut fanOut = fanOut(replicas);
+
+    @After
+    public void close() {
+        fanOut.close();
+    }
+
+    @Test
+    public void anyOfCompletesWithTheFirstAcceptableResponseAndCancelsTheRest() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.anyOf(), DEADLINE);
+
+        replicas.calls().get(1).complete(response(headers(), 200, "second"));
+
+        assertThat(result.join()).extracting(response -> response.body).containsExactly("second");
+        assertThat(replicas.calls().get(0)).isCancelled();
+        assertThat(replicas.calls().get(2)).isCancelled();
+    }
+
+    @Test
+    public void serverErrorsAndFailuresDoNotCount() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.anyOf(), DEADLINE);
+
+        replicas.calls().get(0).complete(response(headers(), 503, "unavailable"));
+        replicas.calls().get(1).completeExceptionally(new IOException("connection refused"));
+        replicas.calls().get(2).complete(response(headers(), 200, "third"));
+
+        assertThat(result.join()).extracting(response -> response.body).containsExactly("third");
+    }
+
+    @Test
+    public void allOfReturnsTheResponsesInTheOrderOfTheRequests() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.allOf(), DEADLINE);
+
+        replicas.calls().get(2).complete(response(headers(), 200, "third"));
+        replicas.calls().get(0).complete(response(headers(), 200, "first"));
+        assertThat(result).isNotDone();
+        replicas.calls().get(1).complete(response(headers(), 200, "second"));
+
+        assertThat(result.join()).extracting(response -> response.body).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    public void quorumCompletesOnceEnoughResponsesHaveArrived() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.quorum(2), DEADLINE);
+
+        replicas.calls().get(2).complete(response(headers(), 200, "third"));
+        replicas.calls().get(0).complete(response(headers(), 200, "first"));
+
+        assertThat(result.join()).extracting(response -> response.body).containsExactly("first", "third");
+        assertThat(replicas.calls().get(1)).isCancelled();
+    }
+
+    @Test
+    public void failsAsSoonAsThePolicyCanNoLongerBeMet() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.quorum(2), DEADLINE);
+
+        replicas.calls().get(0).completeExceptionally(new IOException("connection refused"));
+        replicas.calls().get(1).complete(response(headers(), 500, "error"));
+
+        assertThatThrownBy(result::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessageContaining("since 2 of the 3 calls failed");
+        assertThat(replicas.calls().get(2)).isCancelled();
+    }
+
+    @Test
+    public void theDeadlinePassingFailsTheResultAndCancelsTheCalls() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.allOf(), Duration.ofMillis(50));
+
+        replicas.calls().get(0).complete(response(headers(), 200, "first"));
+
+        assertThatThrownBy(() -> result.get(5, SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class)
+                .hasMessageContaining("Only 1 of the 3 responses needed arrived before the deadline");
+        assertThat(replicas.calls().get(1)).isCancelled();
+        assertThat(replicas.calls().get(2)).isCancelled();
+    }
+
+    @Test
+    public void cancellingTheResultCancelsTheCalls() {
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.anyOf(), DEADLINE);
+
+        result.cancel(true);
+
+        assertThat(replicas.calls()).allMatch(CompletableFuture::isCancelled);
+    }
+
+    @Test
+    public void callsThatFailToStartCountAsFailures() {
+        replicas.failToStart();
+
+        CompletableFuture<List<Response>> result = fanOut.execute(REPLICAS, Policy.anyOf(), DEADLINE);
+
+        assertThatThrownBy(result::get).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void aQuorumMustBeReachable() {
+        assertThatThrownBy(() -> fanOut.execute(REPLICAS, Policy.quorum(4), DEADLINE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("quorum(4) needs 4 responses but there are only 3 requests");
+        assertThatThrownBy(() -> Policy.quorum(0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("quorum must be positive but was 0");
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.hedge;
+
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.decorators.PendingHttpClient;
+import org.assertj.core.api.WithAssertions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.TEXT_PLAIN;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+
+public class HedgingHttpClientTest implements WithAssertions {
+    private static final Request GET = Request.get().url("http://replica/resource").build();
+    private static final Response RESPONSE = response(headers(), 200, "body");
+
+    private final PendingHttpClient delegate = new PendingHttpClient();
+    private HedgingHttpClient hedgingHttpClient;
+
+    @After
+    public void close() throws IOException {
+        hedgingHttpClient.close();
+    }
+
+    @Test
+    public void aHedgeIsSentAfterTheDelayAndTheFirstResponseWinsWhileTheOtherCallIsCancelled() throws Exception {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).delay(Duration.ZERO).build();
+
+        CompletableFuture<Response> response = hedgingHttpClient.executeAsync(GET);
+        delegate.awaitCalls(2);
+        delegate.calls().get(1).complete(RESPONSE);
+
+        assertThat(response.get()).isEqualTo(RESPONSE);
+        assertThat(delegate.calls().get(0)).isCancelled();
+        assertThat(hedgingHttpClient.hedgesSent()).isEqualTo(1);
+        assertThat(hedgingHttpClient.hedgesWon()).isEqualTo(1);
+    }
+
+    @Test
+    public void noHedgeIsSentIfTheResponseArrivesWithinTheDelay() throws Exception {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).delay(Duration.ofHours(1)).build();
+
+        CompletableFuture<Response> response = hedgingHttpClient.executeAsync(GET);
+        delegate.calls().get(0).complete(RESPONSE);
+
+        assertThat(response.get()).isEqualTo(RESPONSE);
+        assertThat(delegate.calls()).hasSize(1);
+        assertThat(hedgingHttpClient.hedgesSent()).isZero();
+    }
+
+    @Test
+    public void requestsThatAreNotSafeAreNotHedged() {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).delay(Duration.ZERO).build();
+        Request post = Request.post().url("http://replica/resource").body("body", TEXT_PLAIN).build();
+
+        CompletableFuture<Response> response = hedgingHttpClient.executeAsync(post);
+
+        assertThat(response).isSameAs(delegate.calls().get(0));
+    }
+
+    @Test
+    public void theBudgetCapsTheNumberOfHedges() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            hedgingHttpClient = HedgingHttpClient.builder(delegate).delay(Duration.ZERO).budget(0, 1).scheduler(scheduler).build();
+
+            hedgingHttpClient.executeAsync(GET);
+            runScheduledHedges(scheduler);
+            hedgingHttpClient.executeAsync(GET);
+            runScheduledHedges(scheduler);
+
+            assertThat(delegate.calls()).hasSize(3);
+            assertThat(hedgingHttpClient.hedgesSent()).isEqualTo(1);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void theCallOnlyFailsOnceEveryCopyHasFailed() throws Exception {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).delay(Duration.ZERO).build();
+        IOException firstFailure = new IOException("first");
+        IOException secondFailure = new IOException("second");
+
+        CompletableFuture<Response> response = hedgingHttpClient.executeAsync(GET);
+        delegate.awaitCalls(2);
+        delegate.calls().get(0).completeExceptionally(firstFailure);
+        boolean doneAfterFirstFailure = response.isDone();
+        delegate.calls().get(1).completeExceptionally(secondFailure);
+
+        assertThat(doneAfterFirstFailure).isFalse();
+        assertThatThrownBy(response::get)
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(firstFailure);
+        assertThat(firstFailure.getSuppressed()).containsExactly(secondFailure);
+    }
+
+    @Test
+    public void aFailureBeforeTheDelayIsNotHedged() {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).delay(Duration.ofHours(1)).build();
+        IOException failure = new IOException("failed");
+
+        CompletableFuture<Response> response = hedgingHttpClient.executeAsync(GET);
+        delegate.calls().get(0).completeExceptionally(failure);
+
+        assertThatThrownBy(response::get).hasCause(failure);
+        assertThat(delegate.calls()).hasSize(1);
+    }
+
+    @Test
+    public void theDelayFollowsThePercentileOfRecentLatencies() {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).build();
+        HedgeDelay delay = HedgeDelay.atPercentile(95, Duration.ofSeconds(1), System::nanoTime);
+
+        for (int i = 1; i <= HedgeDelay.MIN_SAMPLES; i++) {
+            delay.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        delay.refresh();
+
+        assertThat(Duration.ofNanos(delay.nanos())).isBetween(Duration.ofMillis(94), Duration.ofMillis(97));
+    }
+
+    @Test
+    public void theDelayIsOnlyWorkedOutAgainOnceASecond() {
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).build();
+        AtomicLong ticker = new AtomicLong();
+        HedgeDelay delay = HedgeDelay.atPercentile(50, Duration.ofSeconds(1), ticker::get);
+
+        for (int i = 0; i < HedgeDelay.MIN_SAMPLES; i++) {
+            delay.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        long beforeASecond = delay.nanos();
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        delay.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(Duration.ofNanos(beforeASecond)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(Duration.ofNanos(delay.nanos())).isBetween(Duration.ofMillis(9), Duration.ofMillis(11));
+    }
+
+    @Test
+    public void theLatencyOfTheWinningCallIsMeasuredFromWhenTheRequestWasMade() throws Exception {
+        AtomicLong ticker = new AtomicLong();
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).delayAtPercentile(50, Duration.ofHours(1)).ticker(ticker::get).build();
+
+        for (int i = 0; i < HedgeDelay.MIN_SAMPLES; i++) {
+            CompletableFuture<Response> response = hedgingHttpClient.executeAsync(GET);
+            ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+            delegate.calls().get(i).complete(RESPONSE);
+            response.get();
+        }
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        hedgingHttpClient.executeAsync(GET);
+        delegate.calls().get(delegate.calls().size() - 1).complete(RESPONSE);
+
+        assertThat(hedgingHttpClient.delay()).isBetween(Duration.ofMillis(19), Duration.ofMillis(21));
+    }
+
+    @Test
+    public void theBudgetMustBeAPercentage() {
+        assertThatThrownBy(() -> HedgingHttpClient.builder(delegate).budget(101, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("percent must be between 0 and 100 but was 101.0");
+        hedgingHttpClient = HedgingHttpClient.builder(delegate).build();
+    }
+
+    // Hedges that are due now run before a task that is scheduled after them for now
+    private static void runScheduledHedges(ScheduledExecutorService scheduler) throws Exception {
+        scheduler.schedule(() -> { }, 0, TimeUnit.NANOSECONDS).get();
+    }
+}
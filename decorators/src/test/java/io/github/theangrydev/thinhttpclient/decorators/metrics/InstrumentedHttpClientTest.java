@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats.connectionPoolStats;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.TEXT_PLAIN;
+import static io.github.theangrydev.thinhttpclient.api.Method.HEAD;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+import static io.github.theangrydev.thinhttpclient.decorators.metrics.InstrumentedHttpClient.instrumentedHttpClient;
+import static io.github.theangrydev.thinhttpclient.decorators.metrics.MetricKey.FAILED;
+import static io.github.theangrydev.thinhttpclient.decorators.metrics.MetricKey.metricKey;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class InstrumentedHttpClientTest implements WithAssertions {
+    private final StubHttpClient origin = new StubHttpClient();
+    private final InstrumentedHttpClient instrumentedHttpClient = instrumentedHttpClient(origin);
+
+    @Test
+    public void requestsAreRecordedByHostMethodAndStatusClass() throws IOException {
+        origin.response = response(headers(), 200, "caf\u00e9");
+        instrumentedHttpClient.execute(Request.post().url("http://example.com:8080/a").body("hello", TEXT_PLAIN));
+        instrumentedHttpClient.execute(Request.post().url("http://example.com:8080/b").body("hi", TEXT_PLAIN));
+        origin.response = response(headers(), 404, "");
+        instrumentedHttpClient.execute(Request.get().url("http://example.com/c"));
+
+        MetricsSnapshot snapshot = instrumentedHttpClient.snapshot();
+
+        assertThat(snapshot.requests).hasSize(2);
+        RequestMetricsSnapshot posts = snapshot.requests(metricKey("example.com:8080", "POST", "2xx")).get();
+        assertThat(posts.latency.count).isEqualTo(2);
+        assertThat(posts.requestBytes).isEqualTo(7);
+        assertThat(posts.responseBytes).isEqualTo(10);
+        assertThat(snapshot.requests(metricKey("example.com", "GET", "4xx")).get().latency.count).isEqualTo(1);
+    }
+
+    @Test
+    public void failuresAreRecordedUnderTheirOwnStatusClass() {
+        origin.failure = new IOException("connection refused");
+
+        assertThatThrownBy(() -> instrumentedHttpClient.execute(Request.get().url("http://example.com/")))
+                .isSameAs(origin.failure);
+        assertThat(instrumentedHttpClient.executeAsync(Request.get().url("http://example.com/"))).isCompletedExceptionally();
+
+        assertThat(instrumentedHttpClient.snapshot().requests(metricKey("example.com", "GET", FAILED)).get().latency.count).isEqualTo(2);
+    }
+
+    @Test
+    public void streamingResponseBytesAreCountedAsTheyAreRead() throws IOException {
+        origin.response = response(headers(), 200, "0123456789");
+
+        try (StreamingResponse response = instrumentedHttpClient.executeStreaming(Request.get().url("http://example.com/"))) {
+            InputStream body = response.body();
+            assertThat(body.read()).isEqualTo('0');
+            assertThat(body.read(new byte[4])).isEqualTo(4);
+        }
+
+        assertThat(instrumentedHttpClient.snapshot().requests(metricKey("example.com", "GET", "2xx")).get().responseBytes).isEqualTo(5);
+    }
+
+    @Test
+    public void requestsInFlightAreCountedPerHost() {
+        origin.pending = new CompletableFuture<>();
+
+        CompletableFuture<Response> response = instrumentedHttpClient.executeAsync(Request.get().url("http://example.com/"));
+
+        assertThat(instrumentedHttpClient.snapshot().inFlight).containsEntry("example.com", 1L);
+        assertThat(instrumentedHttpClient.getInFlight()).isEqualTo(1);
+        origin.pending.complete(response(headers(), 200, ""));
+        assertThat(response).isCompleted();
+        assertThat(instrumentedHttpClient.snapshot().inFlight).containsEntry("example.com", 0L);
+    }
+
+    @Test
+    public void asyncCallsThatFailToStartAreNotLeftInFlight() {
+        origin.startFailure = new IllegalArgumentException("https is not supported");
+
+        assertThatThrownBy(() -> instrumentedHttpClient.executeAsync(Request.get().url("http://example.com/")))
+                .isSameAs(origin.startFailure);
+
+        assertThat(instrumentedHttpClient.snapshot().inFlight).containsEntry("example.com", 0L);
+        assertThat(instrumentedHttpClient.snapshot().requests(metricKey("example.com", "GET", FAILED)).get().latency.count).isEqualTo(1);
+    }
+
+    @Test
+    public void connectionPoolStatsArePassedThrough() {
+        assertThat(instrumentedHttpClient.getConnections()).isEqualTo(-1);
+
+        origin.connectionPoolStats = Optional.of(connectionPoolStats(3, 1, 2));
+
+        assertThat(instrumentedHttpClient.snapshot().connectionPool).contains(connectionPoolStats(3, 1, 2));
+        assertThat(instrumentedHttpClient.getConnections()).isEqualTo(3);
+        assertThat(instrumentedHttpClient.getIdleConnections()).isEqualTo(1);
+        assertThat(instrumentedHttpClient.getPendingRequests()).isEqualTo(2);
+    }
+
+    @Test
+    public void metricsArePublishedOverJmxUntilTheClientIsClosed() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        origin.response = response(headers(), 200, "");
+        instrumentedHttpClient.execute(Request.get().url("http://example.com/"));
+
+        instrumentedHttpClient.registerMBeans(mBeanServer, "test");
+        instrumentedHttpClient.execute(Request.builder().method(HEAD).url("http://example.com/"));
+
+        ObjectName client = new ObjectName("io.github.theangrydev.thinhttpclient:type=HttpClient,name=\"test\"");
+        ObjectName gets = new ObjectName("io.github.theangrydev.thinhttpclient:type=Requests,name=\"test\",host=\"example.com\",method=GET,status=2xx");
+        ObjectName heads = new ObjectName("io.github.theangrydev.thinhttpclient:type=Requests,name=\"test\",host=\"example.com\",method=HEAD,status=2xx");
+        assertThat(mBeanServer.getAttribute(client, "InFlight")).isEqualTo(0L);
+        assertThat(mBeanServer.getAttribute(gets, "Count")).isEqualTo(1L);
+        assertThat(mBeanServer.getAttribute(heads, "Count")).isEqualTo(1L);
+
+        instrumentedHttpClient.close();
+
+        assertThat(mBeanServer.isRegistered(client)).isFalse();
+        assertThat(mBeanServer.isRegistered(gets)).isFalse();
+        assertThat(mBeanServer.isRegistered(heads)).isFalse();
+    }
+
+    @Test
+    public void utf8LengthMatchesTheEncodedLength() {
+        String text = "a\u00e9\u20ac\ud83d\ude00";
+
+        assertThat(InstrumentedHttpClient.utf8Length(text)).isEqualTo(text.getBytes(UTF_8).length);
+    }
+
+    private static final class StubHttpClient implements HttpClient {
+        private Response response;
+        private IOException failure;
+        private CompletableFuture<Response> pending;
+        private RuntimeException startFailure;
+        private Optional<ConnectionPoolStats> connectionPoolStats = Optional.empty();
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            if (startFailure != null) {
+                throw startFailure;
+            }
+            if (pending != null) {
+                return pending;
+            }
+            return HttpClient.super.executeAsync(request);
+        }
+
+        @Override
+        public Optional<ConnectionPoolStats> connectionPoolStats() {
+            return connectionPoolStats;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
+}
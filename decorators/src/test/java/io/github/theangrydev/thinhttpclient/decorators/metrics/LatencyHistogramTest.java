@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.metrics;
+
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+public class LatencyHistogramTest implements WithAssertions {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogramReportsZeroes() {
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count).isZero();
+        assertThat(snapshot.meanNanos()).isZero();
+        assertThat(snapshot.nanosAtPercentile(99)).isZero();
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 128; value++) {
+            assertThat(LatencyHistogram.highestValue(LatencyHistogram.index(value))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void everyValueIsWithinTwoPercentOfTheHighestValueInItsBucket() {
+        for (long value = 1; value < LatencyHistogram.MAX_TRACKABLE_NANOS; value += value / 7 + 1) {
+            long highestValue = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            assertThat(highestValue).isGreaterThanOrEqualTo(value);
+            assertThat((double) (highestValue - value) / value).isLessThanOrEqualTo(1.0 / 64);
+        }
+    }
+
+    @Test
+    public void percentilesAreAccurateToThePrecisionOfTheBuckets() {
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(MILLISECONDS.toNanos(millis));
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.count).isEqualTo(1000);
+        assertThat(snapshot.maxNanos).isEqualTo(MILLISECONDS.toNanos(1000));
+        assertThat(snapshot.meanNanos()).isEqualTo(MILLISECONDS.toNanos(1) * 500.5);
+        assertThat(snapshot.nanosAtPercentile(50)).isBetween(MILLISECONDS.toNanos(500), MILLISECONDS.toNanos(508));
+        assertThat(snapshot.nanosAtPercentile(99)).isBetween(MILLISECONDS.toNanos(990), MILLISECONDS.toNanos(1000));
+        assertThat(snapshot.nanosAtPercentile(100)).isEqualTo(MILLISECONDS.toNanos(1000));
+    }
+
+    @Test
+    public void valuesOutsideTheTrackableRangeAreClamped() {
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.nanosAtPercentile(50)).isZero();
+        assertThat(snapshot.maxNanos).isEqualTo(LatencyHistogram.MAX_TRACKABLE_NANOS);
+    }
+
+    @Test
+    public void percentileMustBeBetweenZeroAndOneHundred() {
+        assertThatThrownBy(() -> histogram.snapshot().nanosAtPercentile(100.1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("percentile must be between 0 and 100 but was 100.1");
+    }
+}
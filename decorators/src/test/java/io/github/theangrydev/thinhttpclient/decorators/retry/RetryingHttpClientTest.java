@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.decorators.retry;
+
+import io.github.theangrydev.thinhttpclient.api.Deadline;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import org.assertj.core.api.WithAssertions;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.RETRY_AFTER;
+import static io.github.theangrydev.thinhttpclient.api.Headers.headers;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.TEXT_PLAIN;
+import static io.github.theangrydev.thinhttpclient.api.Response.response;
+
+public class RetryingHttpClientTest implements WithAssertions {
+    private static final Request GET = Request.get().url("http://server/resource").build();
+    private static final Request POST = Request.post().url("http://server/resource").body("body", TEXT_PLAIN).build();
+    private static final Response OK = response(headers(), 200, "body");
+    private static final Response UNAVAILABLE = response(headers(), 503, "");
+
+    private final ScriptedHttpClient delegate = new ScriptedHttpClient();
+    private RetryingHttpClient retryingHttpClient = RetryingHttpClient.builder(delegate)
+            .backoff(Duration.ofMillis(1), Duration.ofMillis(2))
+            .build();
+
+    @After
+    public void close() throws IOException {
+        retryingHttpClient.close();
+    }
+
+    @Test
+    public void idempotentRequestsAreRetriedAfterAConnectionReset() throws IOException {
+        delegate.then(new SocketException("Connection reset")).then(OK);
+
+        assertThat(retryingHttpClient.execute(GET)).isEqualTo(OK);
+        assertThat(delegate.calls.get()).isEqualTo(2);
+        assertThat(retryingHttpClient.retries()).isEqualTo(1);
+    }
+
+    @Test
+    public void idempotentRequestsAreRetriedAfterARetryableStatus() throws IOException {
+        delegate.then(UNAVAILABLE).then(OK);
+
+        assertThat(retryingHttpClient.execute(GET)).isEqualTo(OK);
+    }
+
+    @Test
+    public void otherStatusesAreReturnedStraightAway() throws IOException {
+        Response notFound = response(headers(), 404, "");
+        delegate.then(notFound);
+
+        assertThat(retryingHttpClient.execute(GET)).isEqualTo(notFound);
+        assertThat(delegate.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void nonIdempotentRequestsAreNotRetriedAfterTheyMayHaveReachedTheServer() {
+        SocketException reset = new SocketException("Connection reset");
+        delegate.then(reset).then(OK);
+
+        assertThatThrownBy(() -> retryingHttpClient.execute(POST)).isSameAs(reset);
+        assertThat(delegate.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void nonIdempotentRequestsAreRetriedIfTheConnectionCouldNotBeMade() throws IOException {
+        delegate.then(new ConnectException("Connection refused")).then(OK);
+
+        assertThat(retryingHttpClient.execute(POST)).isEqualTo(OK);
+    }
+
+    @Test
+    public void nonIdempotentRequestsAreOnlyRetriedWhenTheServerSaysWhenToTryAgain() throws IOException {
+        delegate.then(response(headers(header(RETRY_AFTER, "0")), 503, "")).then(OK).then(UNAVAILABLE);
+
+        assertThat(retryingHttpClient.execute(POST)).isEqualTo(OK);
+        assertThat(retryingHttpClient.execute(POST)).isEqualTo(UNAVAILABLE);
+    }
+
+    @Test
+    public void retryAfterIsHonoured() throws IOException {
+        delegate.then(response(headers(header(RETRY_AFTER, "1")), 429, "")).then(OK);
+
+        long start = System.nanoTime();
+        Response response = retryingHttpClient.execute(GET);
+
+        assertThat(response).isEqualTo(OK);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void aRetryAfterThatIsTooLongIsNotWaitedFor() throws IOException {
+        Response tooLong = response(headers(header(RETRY_AFTER, "3600")), 503, "");
+        delegate.then(tooLong).then(OK);
+
+        assertThat(retryingHttpClient.execute(GET)).isEqualTo(tooLong);
+    }
+
+    @Test
+    public void noRetryIsMadeThatWouldEndAfterTheDeadline() throws IOException {
+        Response retryLater = response(headers(header(RETRY_AFTER, "1")), 503, "");
+        delegate.then(retryLater).then(OK);
+
+        Response response = retryingHttpClient.execute(GET.modify().deadline(Deadline.after(Duration.ofMillis(500))));
+
+        assertThat(response).isEqualTo(retryLater);
+    }
+
+    @Test
+    public void theLastFailureIsThrownWithTheEarlierOnesSuppressedOnceTheAttemptsRunOut() {
+        SocketException first = new SocketException("first");
+        SocketException second = new SocketException("second");
+        SocketException third = new SocketException("third");
+        delegate.then(first).then(second).then(third).then(OK);
+
+        assertThatThrownBy(() -> retryingHttpClient.execute(GET)).isSameAs(third);
+        assertThat(third.getSuppressed()).containsExactly(first, second);
+    }
+
+    @Test
+    public void theBudgetCapsTheNumberOfRetries() throws IOException {
+        retryingHttpClient = RetryingHttpClient.builder(delegate).backoff(Duration.ofMillis(1), Duration.ofMillis(2)).budget(0, 1).build();
+        delegate.then(UNAVAILABLE).then(UNAVAILABLE).then(UNAVAILABLE);
+
+        assertThat(retryingHttpClient.execute(GET)).isEqualTo(UNAVAILABLE);
+        assertThat(retryingHttpClient.execute(GET)).isEqualTo(UNAVAILABLE);
+        assertThat(retryingHttpClient.retries()).isEqualTo(1);
+        assertThat(retryingHttpClient.retriesOverBudget()).isEqualTo(2);
+    }
+
+    @Test
+    public void asyncRequestsAreRetried() throws Exception {
+        delegate.then(new SocketException("Connection reset")).then(UNAVAILABLE).then(OK);
+
+        assertThat(retryingHttpClient.executeAsync(GET).get()).isEqualTo(OK);
+        assertThat(delegate.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void asyncRequestsCompleteWithTheLastOutcomeIfTheRetryCannotBeScheduled() throws Exception {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.shutdown();
+        retryingHttpClient = RetryingHttpClient.builder(delegate).scheduler(scheduler).build();
+        SocketException reset = new SocketException("Connection reset");
+        delegate.then(UNAVAILABLE).then(reset);
+
+        assertThat(retryingHttpClient.executeAsync(GET).get()).isEqualTo(UNAVAILABLE);
+        assertThatThrownBy(() -> retryingHttpClient.executeAsync(GET).get()).hasCause(reset);
+        assertThat(delegate.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void retryAfterCanBeADate() {
+        Response response = response(headers(header(RETRY_AFTER, "Sun, 06 Nov 1994 08:49:42 GMT")), 503, "");
+        long date = 784111782000L;
+
+        assertThat(RetryAfter.nanos(response, date - 2000).getAsLong()).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+        assertThat(RetryAfter.nanos(response, date + 2000).getAsLong()).isZero();
+    }
+
+    private static final class ScriptedHttpClient implements HttpClient {
+        private final Queue<Object> outcomes = new ArrayDeque<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        ScriptedHttpClient then(Object outcome) {
+            outcomes.add(outcome);
+            return this;
+        }
+
+        @Override
+        public synchronized Response execute(Request request) throws IOException {
+            calls.incrementAndGet();
+            Object outcome = outcomes.remove();
+            if (outcome instanceof IOException) {
+                throw (IOException) outcome;
+            }
+            return (Response) outcome;
+        }
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            CompletableFuture<Response> response = new CompletableFuture<>();
+            try {
+                response.complete(execute(request));
+            } catch (IOException exception) {
+                response.completeExceptionally(exception);
+            }
+            return response;
+        }
+
+        @Override
+        public StreamingResponse executeStreaming(Request request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.jdk;
+
+import io.github.theangrydev.thinhttpclient.api.BlockingCall;
+import io.github.theangrydev.thinhttpclient.api.Body;
+import io.github.theangrydev.thinhttpclient.api.CallTimeout;
+import io.github.theangrydev.thinhttpclient.api.Compression;
+import io.github.theangrydev.thinhttpclient.api.Header;
+import io.github.theangrydev.thinhttpclient.api.Headers;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.MediaType;
+import io.github.theangrydev.thinhttpclient.api.Protocol;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.api.Timings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
+import static io.github.theangrydev.thinhttpclient.api.Method.HEAD;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A {@link HttpClient} backed by the {@link java.net.http.HttpClient} that ships with the JDK.
+ * <p>
+ * HTTP/2 is negotiated where the server supports it, in which case concurrent requests to the same host are
+ * multiplexed over a single connection rather than each taking a pooled HTTP/1.1 connection.
+ * <p>
+ * The JDK does not say how a call went, so the {@link Response#timings} only tell the time until the response head
+ * arrived, which includes connecting, apart from the time spent reading the body.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7540#section-5">RFC 7540 HTTP/2 5 Streams and Multiplexing</a>
+ */
+public class JdkHttpClient implements HttpClient {
+
+    private final java.net.http.HttpClient httpClient;
+    private final ExecutorService executor;
+    private final Duration readTimeout;
+    private final Compression compression;
+
+    private JdkHttpClient(java.net.http.HttpClient httpClient, ExecutorService executor, Duration readTimeout, Compression compression) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.readTimeout = readTimeout;
+        this.compression = compression;
+    }
+
+    public static HttpClient jdkHttpClient() {
+        return jdkHttpClient(HttpClientConfiguration.defaults());
+    }
+
+    /**
+     * The JDK only allows the connection pool size and keep-alive to be set with system properties that apply to
+     * every client in the JVM ({@code jdk.httpclient.connectionPoolSize} and
+     * {@code jdk.httpclient.keepalive.timeout}), so only the connect and read timeouts are taken from the
+     * configuration. The read timeout is applied per request and covers the wait for the response headers.
+     * <p>
+     * The JDK can only set the connect timeout for the whole client, so {@link Request#connectTimeout} is ignored.
+     * The {@link Request#readTimeout} replaces the configured one, and both are capped at the time left for the call.
+     * A call with a {@link Request#timeout} or {@link Request#deadline} is sent asynchronously and given up on, which
+     * cancels the exchange, once it runs out of time.
+     *
+     * @param configuration The transport settings to use.
+     * @return A {@link HttpClient} backed by a new {@link java.net.http.HttpClient}.
+     */
+    public static HttpClient jdkHttpClient(HttpClientConfiguration configuration) {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        java.net.http.HttpClient.Builder httpClient = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_2)
+                .executor(executor);
+        if (!configuration.connectTimeout.isZero()) {
+            httpClient.connectTimeout(configuration.connectTimeout);
+        }
+        return new JdkHttpClient(httpClient.build(), executor, configuration.readTimeout, Compression.compression(configuration));
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        CallTimer timer = new CallTimer();
+        return adaptResponse(send(request, responseInfo -> stringBody(responseInfo, timer)), timer);
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        HttpResponse<InputStream> jdkResponse = send(request, BodyHandlers.ofInputStream());
+        Headers headers = adaptHeaders(jdkResponse.headers());
+        // Closing the body stream before the end cancels the exchange, which discards the connection
+        if (compression.decompresses(headers)) {
+            try {
+                return StreamingResponse.streamingResponse(Compression.decompressedHeaders(headers), jdkResponse.statusCode(), Compression.decompress(headers, jdkResponse.body()));
+            } catch (IOException | RuntimeException exception) {
+                jdkResponse.body().close();
+                throw exception;
+            }
+        }
+        return StreamingResponse.streamingResponse(headers, jdkResponse.statusCode(), jdkResponse.body());
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CallTimer timer = new CallTimer();
+        CallTimeout callTimeout;
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            callTimeout = CallTimeout.start(request);
+            exchange = httpClient.sendAsync(adaptRequest(request, callTimeout), responseInfo -> stringBody(responseInfo, timer));
+        } catch (IOException | RuntimeException exception) {
+            CompletableFuture<Response> response = new CompletableFuture<>();
+            response.completeExceptionally(exception);
+            return response;
+        }
+        CompletableFuture<Response> response = exchange.handle((jdkResponse, failure) -> {
+            if (failure != null) {
+                throw new CompletionException(exceeded(callTimeout, unwrap(failure)));
+            }
+            return adaptResponse(jdkResponse, timer);
+        });
+        if (callTimeout.isLimited()) {
+            // Completing the timer early, which happens when the response does, cancels its scheduled task
+            CompletableFuture<Void> outOfTime = new CompletableFuture<Void>().completeOnTimeout(null, callTimeout.remainingNanos(), NANOSECONDS);
+            outOfTime.thenRun(() -> {
+                if (response.completeExceptionally(callTimeout.timedOut())) {
+                    exchange.cancel(true);
+                }
+            });
+            response.whenComplete((ignored, failure) -> outOfTime.cancel(false));
+        }
+        // Cancelling a dependent future does not reach the exchange it depends on, so pass it along
+        response.whenComplete((ignored, failure) -> {
+            if (response.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    private <T> HttpResponse<T> send(Request request, BodyHandler<T> bodyHandler) throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(request);
+        java.net.http.HttpRequest jdkRequest = adaptRequest(request, callTimeout);
+        if (!callTimeout.isLimited()) {
+            try {
+                return httpClient.send(jdkRequest, bodyHandler);
+            } catch (InterruptedException exception) {
+                throw BlockingCall.interrupted(request, exception);
+            }
+        }
+        CompletableFuture<HttpResponse<T>> exchange = httpClient.sendAsync(jdkRequest, bodyHandler);
+        try {
+            return exchange.get(callTimeout.remainingNanos(), NANOSECONDS);
+        } catch (TimeoutException exception) {
+            exchange.cancel(true);
+            throw callTimeout.timedOut();
+        } catch (ExecutionException exception) {
+            Throwable failure = exceeded(callTimeout, unwrap(exception.getCause()));
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new IOException(failure);
+        } catch (InterruptedException exception) {
+            exchange.cancel(true);
+            throw BlockingCall.interrupted(request, exception);
+        }
+    }
+
+    private static Throwable exceeded(CallTimeout callTimeout, Throwable failure) {
+        if (failure instanceof IOException) {
+            return callTimeout.exceeded((IOException) failure);
+        }
+        return failure;
+    }
+
+    /**
+     * Compressed bodies are collected as bytes and decompressed in one go, before they are decoded with the charset
+     * that {@link BodyHandlers#ofString()} would have used.
+     */
+    private BodySubscriber<String> stringBody(ResponseInfo responseInfo, CallTimer timer) {
+        timer.headersArrived = System.nanoTime();
+        Headers headers = adaptHeaders(responseInfo.headers());
+        if (!compression.decompresses(headers)) {
+            return BodyHandlers.ofString().apply(responseInfo);
+        }
+        Charset charset = MediaType.charset(headers.value(CONTENT_TYPE));
+        return BodySubscribers.mapping(BodySubscribers.ofByteArray(), body -> decompress(headers, body, charset));
+    }
+
+    private static String decompress(Headers headers, byte[] body, Charset charset) {
+        try {
+            return new String(Compression.decompress(headers, body, 0, body.length), charset);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof UncheckedIOException) {
+            return cause.getCause();
+        }
+        return cause;
+    }
+
+    private java.net.http.HttpRequest adaptRequest(Request request, CallTimeout callTimeout) throws IOException {
+        return adaptCompressedRequest(compression.compress(request), callTimeout);
+    }
+
+    private java.net.http.HttpRequest adaptCompressedRequest(Request request, CallTimeout callTimeout) {
+        java.net.http.HttpRequest.Builder jdkRequest = java.net.http.HttpRequest.newBuilder(request.url.toUri())
+                .method(request.method.name, adaptBody(request));
+        for (Header header : request.headers) {
+            jdkRequest.header(header.name, header.value);
+        }
+        Duration timeout = callTimeout.cap(request.readTimeout.orElse(readTimeout));
+        if (!timeout.isZero()) {
+            jdkRequest.timeout(timeout);
+        }
+        return jdkRequest.build();
+    }
+
+    private BodyPublisher adaptBody(Request request) {
+        Body body = request.body;
+        // A publisher with a known length must have a positive one
+        if (!request.method.hasBody || body.isEmpty()) {
+            return BodyPublishers.noBody();
+        }
+        return BodyPublishers.fromPublisher(BodyPublishers.ofInputStream(() -> inputStream(body)), body.contentLength());
+    }
+
+    private static InputStream inputStream(Body body) {
+        try {
+            return body.inputStream();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private Response adaptResponse(HttpResponse<String> jdkResponse, CallTimer timer) {
+        String body = HEAD.name.equals(jdkResponse.request().method()) ? "" : jdkResponse.body();
+        Headers headers = adaptHeaders(jdkResponse.headers());
+        if (compression.decompresses(headers)) {
+            headers = Compression.decompressedHeaders(headers);
+        }
+        return Response.response(adaptProtocol(jdkResponse.version()), headers, jdkResponse.statusCode(), body, timer.timings());
+    }
+
+    private Protocol adaptProtocol(java.net.http.HttpClient.Version version) {
+        if (version == java.net.http.HttpClient.Version.HTTP_2) {
+            return Protocol.HTTP_2;
+        }
+        return Protocol.HTTP_1_1;
+    }
+
+    private Headers adaptHeaders(java.net.http.HttpHeaders headers) {
+        return Headers.view(new JdkHeaderFields(headers));
+    }
+
+    /**
+     * The JDK groups the values of each header under its name, so they are flattened back out into fields here.
+     * HTTP/2 pseudo-headers such as {@code :status} are not headers in the HTTP/1.1 sense and are left out.
+     */
+    private static final class JdkHeaderFields implements Headers.Fields {
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        JdkHeaderFields(java.net.http.HttpHeaders headers) {
+            for (Map.Entry<String, List<String>> header : headers.map().entrySet()) {
+                if (header.getKey().startsWith(":")) {
+                    continue;
+                }
+                for (String value : header.getValue()) {
+                    names.add(header.getKey());
+                    values.add(value);
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return names.size();
+        }
+
+        @Override
+        public String name(int field) {
+            return names.get(field);
+        }
+
+        @Override
+        public String value(int field) {
+            return values.get(field);
+        }
+    }
+
+    /**
+     * The body handler is called once the response head has arrived, on one of the client's threads, and the
+     * response is handed back afterwards.
+     */
+    private static final class CallTimer {
+        private final long start = System.nanoTime();
+        private volatile long headersArrived;
+
+        Timings timings() {
+            long now = System.nanoTime();
+            return Timings.builder()
+                    .timeToFirstByteNanos(headersArrived - start)
+                    .bodyNanos(now - headersArrived)
+                    .totalNanos(now - start)
+                    .build();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.Timings;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+import static java.lang.String.format;
+
+/**
+ * A non-blocking HTTP/1.1 connection. Requests are written in the order they are enqueued, without waiting for the
+ * responses to the earlier ones, and the responses are matched up with them in the same order.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7230#section-6.3.2">RFC 7230 HTTP/1.1 6.3.2 Pipelining</a>
+ */
+final class Connection {
+    final Route route;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ArrayDeque<Exchange> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Exchange> unwritten = new ArrayDeque<>();
+    private final ResponseParser parser = new ResponseParser();
+    private final long dnsNanos;
+    private final long connectStarted;
+    private ByteBuffer writeBuffer;
+    private boolean connected;
+    private boolean parsing;
+    private boolean reusable = true;
+    private int completed;
+    private long lastActivity;
+    private long connectNanos;
+
+    private Connection(Route route, SocketChannel channel, SelectionKey key, long now, long dnsNanos, long connectStarted) {
+        this.route = route;
+        this.channel = channel;
+        this.key = key;
+        this.lastActivity = now;
+        this.dnsNanos = dnsNanos;
+        this.connectStarted = connectStarted;
+    }
+
+    /**
+     * @param route The route that the connection is for.
+     * @param address The address of the host, which has already been looked up.
+     * @param dnsNanos How long looking up the address took, which the first exchange on the connection is charged for.
+     * @param configuration The transport settings to use.
+     * @param selector The selector to register the connection with.
+     * @param now The current {@link System#nanoTime()}.
+     * @return A connection that is connecting or connected.
+     * @throws IOException If the socket could not be opened.
+     */
+    static Connection open(Route route, InetSocketAddress address, long dnsNanos, HttpClientConfiguration configuration,
+                           Selector selector, long now) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, configuration.tcpNoDelay);
+            if (configuration.sendBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, configuration.sendBufferSize);
+            }
+            if (configuration.receiveBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, configuration.receiveBufferSize);
+            }
+            long connectStarted = System.nanoTime();
+            boolean connected = channel.connect(address);
+            SelectionKey key = channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT);
+            Connection connection = new Connection(route, channel, key, now, dnsNanos, connectStarted);
+            connection.connected = connected;
+            if (connected) {
+                connection.connectNanos = System.nanoTime() - connectStarted;
+            }
+            key.attach(connection);
+            return connection;
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    void finishConnect(BufferPool bufferPool, long now) throws IOException {
+        channel.finishConnect();
+        connectNanos = System.nanoTime() - connectStarted;
+        connected = true;
+        lastActivity = now;
+        write(bufferPool);
+    }
+
+    boolean connected() {
+        return connected;
+    }
+
+    /**
+     * @return True if nothing is in flight and another request can be sent.
+     */
+    boolean idle() {
+        return reusable && inFlight.isEmpty();
+    }
+
+    /**
+     * A request is only pipelined behind other idempotent requests, so that if the connection fails they can all be
+     * retried, and only once the server has shown that it keeps connections alive.
+     *
+     * @return True if another request can be sent before the responses to the ones in flight have been received.
+     */
+    boolean canPipeline() {
+        if (!reusable || completed == 0) {
+            return false;
+        }
+        for (Exchange exchange : inFlight) {
+            if (!exchange.idempotent) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return The exchanges in flight, in the order that their responses will arrive.
+     */
+    Iterable<Exchange> exchanges() {
+        return inFlight;
+    }
+
+    boolean reused() {
+        return completed > 0;
+    }
+
+    long lastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * @return True if the server has started to send the response to the first exchange in flight.
+     */
+    boolean responseStarted() {
+        return parsing && parser.started();
+    }
+
+    void enqueue(Exchange exchange, BufferPool bufferPool) throws IOException {
+        inFlight.add(exchange);
+        unwritten.add(exchange);
+        if (connected) {
+            write(bufferPool);
+        }
+    }
+
+    /**
+     * Write as many of the unwritten requests as the socket will take, batching them into as few writes as possible.
+     *
+     * @param bufferPool Where the write buffer is borrowed from, for as long as there is something left to write.
+     * @throws IOException If the socket could not be written to or a request body could not be read.
+     */
+    void write(BufferPool bufferPool) throws IOException {
+        if (writeBuffer == null) {
+            if (unwritten.isEmpty()) {
+                return;
+            }
+            writeBuffer = bufferPool.acquire();
+        }
+        while (true) {
+            while (writeBuffer.hasRemaining() && !unwritten.isEmpty()) {
+                if (unwritten.peek().encodeInto(writeBuffer)) {
+                    unwritten.poll();
+                }
+            }
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            boolean flushed = !writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (!flushed) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            if (unwritten.isEmpty()) {
+                bufferPool.release(writeBuffer);
+                writeBuffer = null;
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read and parse everything that is available on the socket, completing each response as it arrives.
+     *
+     * @param bufferPool Where the read buffer is borrowed from, for as long as the read takes.
+     * @param now The current {@link System#nanoTime()}.
+     * @return False if the connection cannot be used any more.
+     * @throws IOException If the socket could not be read from or the response was malformed.
+     */
+    boolean read(BufferPool bufferPool, long now) throws IOException {
+        ByteBuffer readBuffer = bufferPool.acquire();
+        try {
+            int read;
+            while ((read = channel.read(readBuffer)) > 0) {
+                lastActivity = now;
+                readBuffer.flip();
+                if (!parse(readBuffer)) {
+                    return false;
+                }
+                readBuffer.clear();
+            }
+            if (read < 0) {
+                if (parsing && parser.endOfStream()) {
+                    complete();
+                }
+                return false;
+            }
+            return true;
+        } finally {
+            bufferPool.release(readBuffer);
+        }
+    }
+
+    private boolean parse(ByteBuffer readBuffer) throws IOException {
+        while (readBuffer.hasRemaining()) {
+            Exchange exchange = inFlight.peek();
+            if (exchange == null) {
+                throw new IOException(format("Received %d bytes from %s:%d without sending a request", readBuffer.remaining(), route.host, route.port));
+            }
+            if (!parsing) {
+                parser.begin(exchange.head);
+                parsing = true;
+                exchange.responseStarted(System.nanoTime());
+            }
+            if (parser.parse(readBuffer)) {
+                complete();
+                if (!reusable) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The first exchange on a connection is the one that waited for it to open, so it is the one that is charged for
+     * resolving the host name and connecting.
+     */
+    private void complete() {
+        Exchange exchange = inFlight.poll();
+        parsing = false;
+        Timings.TimingsBuilder timings = exchange.timings(System.nanoTime()).connectionReused(completed > 0);
+        if (completed == 0) {
+            timings.dnsNanos(dnsNanos).connectNanos(connectNanos);
+        }
+        completed++;
+        if (!parser.keepAlive()) {
+            reusable = false;
+        }
+        try {
+            exchange.response.complete(parser.response(exchange.compression, timings.build()));
+        } catch (IOException exception) {
+            exchange.fail(exception);
+        }
+    }
+
+    /**
+     * Close the socket and hand back the exchanges that are still in flight, in the order they were sent.
+     *
+     * @param bufferPool Where the write buffer is returned to.
+     * @return The exchanges that did not get a response.
+     */
+    ArrayDeque<Exchange> close(BufferPool bufferPool) {
+        reusable = false;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // There is nothing more that can be done with the connection
+        }
+        if (writeBuffer != null) {
+            bufferPool.release(writeBuffer);
+            writeBuffer = null;
+        }
+        unwritten.clear();
+        return inFlight;
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.String.format;
+
+/**
+ * A single thread that owns the {@link Selector} and every {@link Connection}, so none of the connection state needs
+ * to be synchronized. Other threads only hand over new exchanges, and the addresses that they have looked up, through
+ * queues. Host names are looked up on other threads, because a lookup blocks and would hold up every connection.
+ * <p>
+ * Responses are completed on this thread, so anything chained onto them should be quick or should hop onto another
+ * executor.
+ */
+final class EventLoop implements Runnable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_PIPELINED = 16;
+    private static final int MAX_RETRIES = 2;
+    private static final long TIMEOUT_CHECK_INTERVAL_MILLIS = 100;
+    // The same as the JVM caches successful lookups for by default
+    private static final long ADDRESS_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final HttpClientConfiguration configuration;
+    private final Selector selector;
+    private final BufferPool bufferPool;
+    private final Queue<Exchange> submitted = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ExecutorService resolver = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "nio-http-client-dns");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean awake = new AtomicBoolean(true);
+    private final Map<String, Route> routes = new HashMap<>();
+    private final long connectTimeoutNanos;
+    private final long readTimeoutNanos;
+    private final long keepAliveNanos;
+    private volatile boolean running = true;
+    private int connections;
+    private int resolving;
+    private boolean waitingForConnection;
+    private long lastTimeoutCheck;
+
+    private EventLoop(HttpClientConfiguration configuration, Selector selector) {
+        this.configuration = configuration;
+        this.selector = selector;
+        this.bufferPool = new BufferPool(BUFFER_SIZE, configuration.maxConnections);
+        this.connectTimeoutNanos = configuration.connectTimeout.toNanos();
+        this.readTimeoutNanos = configuration.readTimeout.toNanos();
+        this.keepAliveNanos = configuration.keepAlive.toNanos();
+    }
+
+    static EventLoop start(HttpClientConfiguration configuration) throws IOException {
+        EventLoop eventLoop = new EventLoop(configuration, Selector.open());
+        Thread thread = new Thread(eventLoop, "nio-http-client");
+        thread.setDaemon(true);
+        thread.start();
+        return eventLoop;
+    }
+
+    void submit(Exchange exchange) {
+        submitted.add(exchange);
+        if (!running) {
+            failSubmitted();
+        } else if (!awake.getAndSet(true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * @param task Something to run on the event loop, which is dropped if the loop has stopped.
+     */
+    private void execute(Runnable task) {
+        tasks.add(task);
+        if (!awake.getAndSet(true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Close the connection that a cancelled exchange is on if its response is the next one to arrive. Otherwise it is
+     * closed by the next timeout check after the responses ahead of it have arrived.
+     *
+     * @param exchange The exchange that was cancelled.
+     */
+    void cancelled(Exchange exchange) {
+        execute(() -> abandon(exchange));
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                awake.set(false);
+                if (submitted.isEmpty() && tasks.isEmpty()) {
+                    selector.select(connections == 0 && resolving == 0 ? 0 : TIMEOUT_CHECK_INTERVAL_MILLIS);
+                } else {
+                    selector.selectNow();
+                }
+                awake.set(true);
+                long now = System.nanoTime();
+                processSelectedKeys(now);
+                processSubmitted(now);
+                runTasks();
+                if (now - lastTimeoutCheck >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_CHECK_INTERVAL_MILLIS)) {
+                    lastTimeoutCheck = now;
+                    checkTimeouts(now);
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            running = false;
+            closeAll(new IOException("The event loop failed", exception));
+            return;
+        }
+        closeAll(new IOException("The client was closed"));
+    }
+
+    private void processSelectedKeys(long now) {
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+            SelectionKey key = selectedKeys.next();
+            selectedKeys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isValid() && key.isConnectable()) {
+                    connection.finishConnect(bufferPool, now);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.write(bufferPool);
+                }
+                if (key.isValid() && key.isReadable() && !connection.read(bufferPool, now)) {
+                    close(connection, new IOException(format("Connection to %s:%d was closed by the server", connection.route.host, connection.route.port)), false);
+                }
+            } catch (IOException | RuntimeException exception) {
+                close(connection, exception, false);
+            }
+            dispatch(connection.route, now);
+        }
+    }
+
+    private void processSubmitted(long now) {
+        Exchange exchange;
+        while ((exchange = submitted.poll()) != null) {
+            if (exchange.response.isDone()) {
+                continue;
+            }
+            String key = Route.key(exchange.host, exchange.port);
+            Route route = routes.get(key);
+            if (route == null) {
+                route = new Route(exchange.host, exchange.port);
+                routes.put(key, route);
+            }
+            route.pending.add(exchange);
+            dispatch(route, now);
+        }
+    }
+
+    private void abandon(Exchange exchange) {
+        Route route = routes.get(Route.key(exchange.host, exchange.port));
+        if (route == null) {
+            return;
+        }
+        route.pending.remove(exchange);
+        for (Connection connection : new ArrayList<>(route.connections)) {
+            if (connection.inFlight() > 0 && connection.exchanges().iterator().next() == exchange) {
+                close(connection, new IOException(format("A call to %s:%d was cancelled", route.host, route.port)), true);
+                dispatch(route, System.nanoTime());
+                return;
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Hand out pending exchanges to idle connections first, then to new connections while there is room for them,
+     * and only then pipeline them onto busy connections. A new connection waits for the address of the host to be
+     * looked up if it has not been recently, and the exchanges wait with it unless they can be pipelined.
+     */
+    private void dispatch(Route route, long now) {
+        while (!route.pending.isEmpty()) {
+            Exchange exchange = route.pending.peek();
+            if (exchange.response.isDone()) {
+                route.pending.poll();
+                continue;
+            }
+            Connection connection = route.idleConnection();
+            if (connection == null && route.connections.size() < configuration.maxConnectionsPerHost) {
+                InetSocketAddress address = route.address(now, ADDRESS_TTL_NANOS);
+                if (address == null) {
+                    lookUp(route);
+                } else if (makeRoomForConnection()) {
+                    try {
+                        connection = Connection.open(route, address, route.takeDnsNanos(), configuration, selector, now);
+                    } catch (IOException | RuntimeException exception) {
+                        route.pending.poll().fail(exception);
+                        continue;
+                    }
+                    route.connections.add(connection);
+                    connections++;
+                }
+            }
+            if (connection == null) {
+                connection = route.pipelineConnectionFor(exchange, MAX_PIPELINED);
+            }
+            if (connection == null) {
+                return;
+            }
+            route.pending.poll();
+            try {
+                connection.enqueue(exchange, bufferPool);
+            } catch (IOException | RuntimeException exception) {
+                close(connection, exception, false);
+            }
+        }
+    }
+
+    private void lookUp(Route route) {
+        if (route.resolving()) {
+            return;
+        }
+        try {
+            resolver.execute(() -> {
+                long started = System.nanoTime();
+                InetSocketAddress address = route.lookUp();
+                long dnsNanos = System.nanoTime() - started;
+                execute(() -> resolved(route, address, dnsNanos));
+            });
+        } catch (RejectedExecutionException exception) {
+            // The client is closing, which fails the exchanges that are waiting
+            return;
+        }
+        route.resolving(true);
+        resolving++;
+    }
+
+    private void resolved(Route route, InetSocketAddress address, long dnsNanos) {
+        resolving--;
+        long now = System.nanoTime();
+        route.resolved(address.isUnresolved() ? null : address, dnsNanos, now);
+        if (address.isUnresolved()) {
+            UnknownHostException unknownHost = new UnknownHostException(route.host);
+            for (Exchange exchange : route.pending) {
+                exchange.fail(unknownHost);
+            }
+            route.pending.clear();
+        }
+        dispatch(route, now);
+    }
+
+    /**
+     * @return True if another connection can be opened, closing an idle connection to another host if need be.
+     */
+    private boolean makeRoomForConnection() {
+        if (connections < configuration.maxConnections) {
+            return true;
+        }
+        for (Route route : routes.values()) {
+            Connection idle = route.idleConnection();
+            if (idle != null) {
+                close(idle, new IOException("Closed to make room for another connection"), false);
+                return true;
+            }
+        }
+        waitingForConnection = true;
+        return false;
+    }
+
+    /**
+     * An exchange whose request never reached the server can always be sent again. Otherwise only an idempotent
+     * exchange is retried, and only if its response had not started to arrive and the connection was not at fault:
+     * either a pooled connection turned out to be stale, or the exchange was pipelined behind the one that failed.
+     */
+    private void close(Connection connection, Exception cause, boolean timedOut) {
+        Route route = connection.route;
+        if (!route.connections.remove(connection)) {
+            return;
+        }
+        connections--;
+        boolean responseStarted = connection.responseStarted();
+        boolean connected = connection.connected();
+        boolean reused = connection.reused();
+        ArrayDeque<Exchange> inFlight = connection.close(bufferPool);
+        List<Exchange> retries = new ArrayList<>(inFlight.size());
+        boolean first = true;
+        for (Exchange exchange : inFlight) {
+            boolean retry = !exchange.response.isDone() && connected && !(first && responseStarted)
+                    && (!exchange.started() || exchange.idempotent && (!first || reused && !timedOut));
+            if (retry && retryExchange(exchange)) {
+                retries.add(exchange);
+            } else {
+                exchange.fail(cause);
+            }
+            first = false;
+        }
+        for (int i = retries.size() - 1; i >= 0; i--) {
+            route.pending.addFirst(retries.get(i));
+        }
+        if (waitingForConnection) {
+            waitingForConnection = false;
+            for (Route waiting : routes.values()) {
+                if (waiting != route) {
+                    dispatch(waiting, System.nanoTime());
+                }
+            }
+        }
+    }
+
+    private boolean retryExchange(Exchange exchange) {
+        try {
+            return exchange.retry(MAX_RETRIES);
+        } catch (IOException exception) {
+            exchange.fail(exception);
+            return false;
+        }
+    }
+
+    private void checkTimeouts(long now) {
+        Iterator<Route> allRoutes = routes.values().iterator();
+        while (allRoutes.hasNext()) {
+            Route route = allRoutes.next();
+            route.pending.removeIf(Exchange::failIfOutOfTime);
+            for (Connection connection : new ArrayList<>(route.connections)) {
+                if (failIfOutOfTime(connection)) {
+                    continue;
+                }
+                long inactive = now - connection.lastActivity();
+                Exchange first = connection.inFlight() > 0 ? connection.exchanges().iterator().next() : null;
+                if (!connection.connected()) {
+                    long connectTimeout = first == null ? connectTimeoutNanos : first.connectTimeoutNanos(connectTimeoutNanos);
+                    if (connectTimeout > 0 && inactive > connectTimeout) {
+                        close(connection, new SocketTimeoutException(format("Connecting to %s:%d timed out", route.host, route.port)), true);
+                    }
+                } else if (first != null) {
+                    long readTimeout = first.readTimeoutNanos(readTimeoutNanos);
+                    if (readTimeout > 0 && inactive > readTimeout) {
+                        close(connection, new SocketTimeoutException(format("Reading from %s:%d timed out", route.host, route.port)), true);
+                    }
+                } else if (inactive > keepAliveNanos) {
+                    close(connection, new IOException("Idle connection expired"), false);
+                }
+            }
+            if (route.connections.isEmpty() && route.pending.isEmpty()) {
+                allRoutes.remove();
+            } else {
+                dispatch(route, now);
+            }
+        }
+    }
+
+    /**
+     * Exchanges that are waiting behind others on the connection are failed where they are. The connection is closed
+     * once the first exchange has run out of time or been cancelled, since nobody is waiting for its response.
+     *
+     * @return True if the connection was closed.
+     */
+    private boolean failIfOutOfTime(Connection connection) {
+        boolean first = true;
+        boolean firstAbandoned = false;
+        for (Exchange exchange : connection.exchanges()) {
+            boolean abandoned = exchange.failIfOutOfTime() || exchange.response.isDone();
+            firstAbandoned |= first && abandoned;
+            first = false;
+        }
+        if (firstAbandoned) {
+            close(connection, new IOException(format("A call to %s:%d ran out of time or was cancelled", connection.route.host, connection.route.port)), true);
+        }
+        return firstAbandoned;
+    }
+
+    private void closeAll(IOException cause) {
+        for (Route route : new ArrayList<>(routes.values())) {
+            for (Connection connection : new ArrayList<>(route.connections)) {
+                for (Exchange exchange : connection.close(bufferPool)) {
+                    exchange.fail(cause);
+                }
+            }
+            route.connections.clear();
+            for (Exchange exchange : route.pending) {
+                exchange.fail(cause);
+            }
+            route.pending.clear();
+        }
+        routes.clear();
+        resolver.shutdownNow();
+        tasks.clear();
+        failSubmitted();
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // The selector is no longer needed
+        }
+    }
+
+    private void failSubmitted() {
+        Exchange exchange;
+        while ((exchange = submitted.poll()) != null) {
+            exchange.response.completeExceptionally(new IOException("The client was closed"));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import io.github.theangrydev.thinhttpclient.api.Body;
+import io.github.theangrydev.thinhttpclient.api.CallTimeout;
+import io.github.theangrydev.thinhttpclient.api.Compression;
+import io.github.theangrydev.thinhttpclient.api.Header;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.Timings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_LENGTH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.HOST;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * A {@link Request} on its way to the server and the {@link Response} that will eventually come back.
+ * <p>
+ * The request head is encoded when the exchange is created, on the calling thread, so that the {@link EventLoop}
+ * only has to copy bytes.
+ */
+final class Exchange {
+    final CompletableFuture<Response> response = new CompletableFuture<>();
+    final String host;
+    final int port;
+    final boolean head;
+    final boolean idempotent;
+    final Compression compression;
+
+    private final CallTimeout callTimeout;
+    private final long connectTimeoutNanos;
+    private final long readTimeoutNanos;
+    private final long created = System.nanoTime();
+    private final byte[] requestHead;
+    private final Body body;
+    private int requestHeadWritten;
+    private ReadableByteChannel bodyChannel;
+    private boolean started;
+    private int retries;
+    private long sent;
+    private long responseStarted;
+
+    Exchange(Request request, Compression compression, CallTimeout callTimeout) {
+        this.compression = compression;
+        this.callTimeout = callTimeout;
+        this.connectTimeoutNanos = request.connectTimeout.map(Duration::toNanos).orElse(-1L);
+        this.readTimeoutNanos = request.readTimeout.map(Duration::toNanos).orElse(-1L);
+        this.host = request.url.host;
+        this.port = request.url.effectivePort();
+        this.head = "HEAD".equals(request.method.name);
+        this.idempotent = request.method.isIdempotent();
+        this.body = request.method.hasBody ? request.body : null;
+        this.requestHead = encodeRequestHead(request, body);
+    }
+
+    /**
+     * Copy as much of the request as will fit into the buffer.
+     *
+     * @param buffer The buffer to copy into.
+     * @return True once the whole request has been copied.
+     * @throws IOException If the body could not be read.
+     */
+    boolean encodeInto(ByteBuffer buffer) throws IOException {
+        started = true;
+        if (requestHeadWritten < requestHead.length) {
+            int length = Math.min(buffer.remaining(), requestHead.length - requestHeadWritten);
+            buffer.put(requestHead, requestHeadWritten, length);
+            requestHeadWritten += length;
+            if (requestHeadWritten < requestHead.length) {
+                return false;
+            }
+        }
+        if (body == null) {
+            sent = System.nanoTime();
+            return true;
+        }
+        if (bodyChannel == null) {
+            bodyChannel = Channels.newChannel(body.inputStream());
+        }
+        while (buffer.hasRemaining()) {
+            if (bodyChannel.read(buffer) < 0) {
+                bodyChannel.close();
+                sent = System.nanoTime();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param now The {@link System#nanoTime()} when the first bytes of the response were read.
+     */
+    void responseStarted(long now) {
+        responseStarted = now;
+    }
+
+    /**
+     * The request counts as sent once it has been copied into the write buffer, which is only flushed afterwards, and
+     * a pipelined request also waits for the responses ahead of it, which counts towards its time to first byte.
+     *
+     * @param now The {@link System#nanoTime()} when the response was complete.
+     * @return The phases that the exchange itself knows about, without those of the connection.
+     */
+    Timings.TimingsBuilder timings(long now) {
+        return Timings.builder()
+                .timeToFirstByteNanos(responseStarted - sent)
+                .bodyNanos(now - responseStarted)
+                .totalNanos(now - created);
+    }
+
+    /**
+     * @param defaultNanos The connect timeout of the client.
+     * @return The connect timeout of the request, if it has one, or else the default.
+     */
+    long connectTimeoutNanos(long defaultNanos) {
+        return connectTimeoutNanos < 0 ? defaultNanos : connectTimeoutNanos;
+    }
+
+    /**
+     * @param defaultNanos The read timeout of the client.
+     * @return The read timeout of the request, if it has one, or else the default.
+     */
+    long readTimeoutNanos(long defaultNanos) {
+        return readTimeoutNanos < 0 ? defaultNanos : readTimeoutNanos;
+    }
+
+    /**
+     * Fail the response with a {@link io.github.theangrydev.thinhttpclient.api.RequestTimeoutException} if the call
+     * has run out of time.
+     *
+     * @return True if the call has run out of time.
+     */
+    boolean failIfOutOfTime() {
+        if (callTimeout.remainingNanos() > 0) {
+            return false;
+        }
+        response.completeExceptionally(callTimeout.timedOut());
+        return true;
+    }
+
+    /**
+     * Fail the response and close the body, once the exchange is no longer on a connection.
+     *
+     * @param cause Why the exchange failed.
+     */
+    void fail(Throwable cause) {
+        response.completeExceptionally(cause);
+        if (bodyChannel != null) {
+            try {
+                bodyChannel.close();
+            } catch (IOException ignored) {
+                // The body is not going to be read again
+            }
+            bodyChannel = null;
+        }
+    }
+
+    /**
+     * @return True if any of the request may have reached the server.
+     */
+    boolean started() {
+        return started;
+    }
+
+    /**
+     * Prepare to send the request again on another connection.
+     *
+     * @param maxRetries The number of times a request may be sent again.
+     * @return False if the request has already been retried too many times.
+     * @throws IOException If the body could not be closed.
+     */
+    boolean retry(int maxRetries) throws IOException {
+        if (retries >= maxRetries) {
+            return false;
+        }
+        retries++;
+        started = false;
+        requestHeadWritten = 0;
+        if (bodyChannel != null) {
+            bodyChannel.close();
+            bodyChannel = null;
+        }
+        return true;
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-3.1.1">RFC 7230 HTTP/1.1 3.1.1 Request Line</a>
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-5.4">RFC 7230 HTTP/1.1 5.4 Host</a>
+     */
+    private static byte[] encodeRequestHead(Request request, Body body) {
+        StringBuilder requestHead = new StringBuilder(256);
+        requestHead.append(request.method.name).append(' ').append(request.url.requestTarget()).append(" HTTP/1.1\r\n");
+        if (request.headers.values(HOST).isEmpty()) {
+            appendHeader(requestHead, HOST, request.url.authority());
+        }
+        for (Header header : request.headers) {
+            appendHeader(requestHead, header.name, header.value);
+        }
+        if (body != null && request.headers.values(CONTENT_LENGTH).isEmpty()) {
+            appendHeader(requestHead, CONTENT_LENGTH, String.valueOf(body.contentLength()));
+        }
+        requestHead.append("\r\n");
+        return requestHead.toString().getBytes(ISO_8859_1);
+    }
+
+    private static void appendHeader(StringBuilder requestHead, String name, String value) {
+        if (containsLineBreak(name) || containsLineBreak(value)) {
+            throw new IllegalArgumentException(format("Header '%s' must not contain a line break", name));
+        }
+        requestHead.append(name).append(": ").append(value).append("\r\n");
+    }
+
+    private static boolean containsLineBreak(String text) {
+        return text.indexOf('\r') >= 0 || text.indexOf('\n') >= 0;
+    }
+}
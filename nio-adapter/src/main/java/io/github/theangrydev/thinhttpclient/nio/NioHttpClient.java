@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import io.github.theangrydev.thinhttpclient.api.BlockingCall;
+import io.github.theangrydev.thinhttpclient.api.CallTimeout;
+import io.github.theangrydev.thinhttpclient.api.Compression;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static java.lang.String.format;
+
+/**
+ * A {@link HttpClient} with its own HTTP/1.1 engine, built directly on non-blocking sockets and a single selector
+ * thread, with no dependencies beyond the JDK.
+ * <p>
+ * Connections are pooled per host and read and written through pooled direct buffers. Once the per-host connection
+ * limit is reached, idempotent requests are pipelined onto the connections that are already open rather than waiting
+ * for one of them to become idle. Only plain http URLs are supported and the {@link #executeStreaming(Request)}
+ * response is buffered.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7230#section-6.3.2">RFC 7230 HTTP/1.1 6.3.2 Pipelining</a>
+ */
+public class NioHttpClient implements HttpClient {
+
+    private final EventLoop eventLoop;
+    private final Compression compression;
+
+    private NioHttpClient(EventLoop eventLoop, Compression compression) {
+        this.eventLoop = eventLoop;
+        this.compression = compression;
+    }
+
+    public static HttpClient nioHttpClient() {
+        return nioHttpClient(HttpClientConfiguration.defaults());
+    }
+
+    /**
+     * Stale connections are noticed as soon as the server closes them, because idle connections stay registered with
+     * the selector, so {@link HttpClientConfiguration#validateAfterInactivity} is not needed.
+     * <p>
+     * Timeouts, including the {@link Request#timeout} and {@link Request#deadline}, are checked by the event loop every
+     * 100ms. A call that runs out of time closes its connection if its response is next on it, since the rest of that
+     * response can no longer be told apart from the ones behind it.
+     * <p>
+     * Cancelling the future returned by {@link #executeAsync(Request)} closes the connection that the call is on as
+     * soon as its response is the next one to arrive, so that the connection is not held until the response is read.
+     *
+     * @param configuration The connection pooling and transport settings to use.
+     * @return A {@link HttpClient} with its own event loop thread.
+     */
+    public static HttpClient nioHttpClient(HttpClientConfiguration configuration) {
+        try {
+            return new NioHttpClient(EventLoop.start(configuration), Compression.compression(configuration));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not open a selector", exception);
+        }
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        return BlockingCall.await(request, executeAsync(request));
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        if (request.url.isHttps()) {
+            return failed(new IllegalArgumentException(format("Only http URLs are supported but the URL was '%s'", request.url)));
+        }
+        Exchange exchange;
+        try {
+            CallTimeout callTimeout = CallTimeout.start(request);
+            exchange = new Exchange(compression.compress(request), compression, callTimeout);
+        } catch (IOException | RuntimeException exception) {
+            return failed(exception);
+        }
+        exchange.response.whenComplete((response, failure) -> {
+            if (failure instanceof CancellationException) {
+                eventLoop.cancelled(exchange);
+            }
+        });
+        eventLoop.submit(exchange);
+        return exchange.response;
+    }
+
+    private static CompletableFuture<Response> failed(Exception exception) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        response.completeExceptionally(exception);
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        eventLoop.shutdown();
+    }
+}
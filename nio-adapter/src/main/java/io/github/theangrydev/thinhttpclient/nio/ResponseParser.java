@@ -0,0 +1,433 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import io.github.theangrydev.thinhttpclient.api.Compression;
+import io.github.theangrydev.thinhttpclient.api.Headers;
+import io.github.theangrydev.thinhttpclient.api.Protocol;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.Timings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONNECTION;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_LENGTH;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.TRANSFER_ENCODING;
+import static io.github.theangrydev.thinhttpclient.api.MediaType.charset;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * An incremental HTTP/1.1 response parser. Bytes are fed in as they arrive from the socket, in chunks of any size, and
+ * the parser stops at the end of each response so that the bytes of the next pipelined response are left in the buffer.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7230#section-3">RFC 7230 HTTP/1.1 3 Message Format</a>
+ */
+final class ResponseParser {
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private static final int MAX_BUFFERED_BODY_BYTES = Integer.MAX_VALUE - 8;
+    private static final int MAX_PREALLOCATED_BODY_BYTES = 64 * 1024;
+    private static final int INITIAL_HEADER_FIELDS = 16;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private enum State {
+        STATUS_LINE, HEADER_LINE, FIXED_LENGTH_BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILER, BODY_UNTIL_CLOSE, COMPLETE
+    }
+
+    private State state = State.COMPLETE;
+    private boolean head;
+    private boolean started;
+    private boolean informational;
+    private boolean keepAlive;
+    private Protocol protocol;
+    private int status;
+
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean lineComplete;
+    private int headerBytes;
+
+    private String[] names;
+    private String[] values;
+    private int fields;
+
+    private byte[] body;
+    private int bodyLength;
+    private long remaining;
+
+    /**
+     * Prepare to parse the next response.
+     *
+     * @param head Whether the response is to a HEAD request, which has headers that describe a body that is not sent.
+     */
+    void begin(boolean head) {
+        this.head = head;
+        this.state = State.STATUS_LINE;
+        this.started = false;
+        this.informational = false;
+        this.lineLength = 0;
+        this.lineComplete = false;
+        this.headerBytes = 0;
+        // The arrays are handed over to the response, so each response needs its own
+        this.names = new String[INITIAL_HEADER_FIELDS];
+        this.values = new String[INITIAL_HEADER_FIELDS];
+        this.fields = 0;
+        this.body = NO_BYTES;
+        this.bodyLength = 0;
+    }
+
+    /**
+     * @return True if any bytes of the current response have been parsed.
+     */
+    boolean started() {
+        return started;
+    }
+
+    /**
+     * @return True if the connection can be used for another request after this response.
+     */
+    boolean keepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Parse as much of the input as belongs to the current response.
+     *
+     * @param input The bytes that have been read from the socket.
+     * @return True if the response is complete, in which case the input is left at the start of the next response.
+     * @throws IOException If the response is malformed.
+     */
+    boolean parse(ByteBuffer input) throws IOException {
+        while (state != State.COMPLETE && input.hasRemaining()) {
+            started = true;
+            switch (state) {
+                case STATUS_LINE:
+                    if (readLine(input)) {
+                        statusLine();
+                    }
+                    break;
+                case HEADER_LINE:
+                    if (readLine(input)) {
+                        headerLine();
+                    }
+                    break;
+                case FIXED_LENGTH_BODY:
+                    remaining -= readBody(input, remaining);
+                    if (remaining == 0) {
+                        state = State.COMPLETE;
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    if (readLine(input)) {
+                        chunkSize();
+                    }
+                    break;
+                case CHUNK_DATA:
+                    remaining -= readBody(input, remaining);
+                    if (remaining == 0) {
+                        state = State.CHUNK_DATA_END;
+                    }
+                    break;
+                case CHUNK_DATA_END:
+                    if (readLine(input)) {
+                        if (lineLength != 0) {
+                            throw new IOException("Chunk data was longer than the chunk size");
+                        }
+                        state = State.CHUNK_SIZE;
+                    }
+                    break;
+                case TRAILER:
+                    if (readLine(input) && lineLength == 0) {
+                        state = State.COMPLETE;
+                    }
+                    break;
+                case BODY_UNTIL_CLOSE:
+                    readBody(input, input.remaining());
+                    break;
+                default:
+                    throw new IllegalStateException(format("Unexpected state %s", state));
+            }
+        }
+        return state == State.COMPLETE;
+    }
+
+    /**
+     * Called when the server closes the connection.
+     *
+     * @return True if the response is complete, because its body was delimited by the end of the connection.
+     */
+    boolean endOfStream() {
+        if (state == State.BODY_UNTIL_CLOSE) {
+            state = State.COMPLETE;
+        }
+        return state == State.COMPLETE;
+    }
+
+    /**
+     * @return The response that has been parsed, with the body decoded using the charset in the Content-Type header,
+     * or UTF-8 if there isn't one.
+     */
+    Response response() {
+        return response(Timings.NONE);
+    }
+
+    private Response response(Timings timings) {
+        Headers headers = Headers.view(new ResponseFields(names, values, fields));
+        return Response.response(protocol, headers, status, new String(body, 0, bodyLength, charset(headers.value(CONTENT_TYPE))), timings);
+    }
+
+    /**
+     * @param compression The policy that decides whether the body is decompressed before it is decoded.
+     * @param timings How long each phase of the exchange took.
+     * @return The response that has been parsed, as for {@link #response()}.
+     * @throws IOException If the body should have been decompressed but was not validly compressed.
+     */
+    Response response(Compression compression, Timings timings) throws IOException {
+        Headers headers = Headers.view(new ResponseFields(names, values, fields));
+        if (!compression.decompresses(headers)) {
+            return response(timings);
+        }
+        byte[] decompressed = Compression.decompress(headers, body, 0, bodyLength);
+        return Response.response(protocol, Compression.decompressedHeaders(headers), status, new String(decompressed, charset(headers.value(CONTENT_TYPE))), timings);
+    }
+
+    private boolean readLine(ByteBuffer input) throws IOException {
+        if (lineComplete) {
+            lineLength = 0;
+            lineComplete = false;
+        }
+        while (input.hasRemaining()) {
+            byte next = input.get();
+            if (++headerBytes > MAX_HEADER_BYTES) {
+                throw new IOException(format("Response headers were longer than %d bytes", MAX_HEADER_BYTES));
+            }
+            if (next == '\n') {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                lineComplete = true;
+                return true;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = next;
+        }
+        return false;
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-3.1.2">RFC 7230 HTTP/1.1 3.1.2 Status Line</a>
+     */
+    private void statusLine() throws IOException {
+        if (lineLength == 0) {
+            // Tolerate a stray empty line between responses
+            return;
+        }
+        if (lineLength < 12 || !startsWithHttpVersion() || line[8] != ' ') {
+            throw new IOException(format("Malformed status line '%s'", lineString(0, lineLength)));
+        }
+        status = statusCode();
+        protocol = line[7] == '0' ? Protocol.HTTP_1_0 : Protocol.HTTP_1_1;
+        keepAlive = line[7] != '0';
+        informational = status >= 100 && status < 200;
+        state = State.HEADER_LINE;
+    }
+
+    private boolean startsWithHttpVersion() {
+        return line[0] == 'H' && line[1] == 'T' && line[2] == 'T' && line[3] == 'P' && line[4] == '/' && line[5] == '1' && line[6] == '.';
+    }
+
+    private int statusCode() throws IOException {
+        int statusCode = 0;
+        for (int i = 9; i < 12; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException(format("Malformed status line '%s'", lineString(0, lineLength)));
+            }
+            statusCode = statusCode * 10 + digit;
+        }
+        return statusCode;
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-3.2">RFC 7230 HTTP/1.1 3.2 Header Fields</a>
+     */
+    private void headerLine() throws IOException {
+        if (lineLength == 0) {
+            endOfHeaders();
+            return;
+        }
+        if ((line[0] == ' ' || line[0] == '\t') && fields > 0) {
+            // Obsolete line folding, which is replaced with a single space
+            values[fields - 1] = values[fields - 1] + ' ' + lineString(0, lineLength).trim();
+            return;
+        }
+        int colon = indexOfColon();
+        if (colon <= 0) {
+            throw new IOException(format("Malformed header '%s'", lineString(0, lineLength)));
+        }
+        if (fields == names.length) {
+            names = Arrays.copyOf(names, fields * 2);
+            values = Arrays.copyOf(values, fields * 2);
+        }
+        names[fields] = lineString(0, colon).trim();
+        values[fields] = lineString(colon + 1, lineLength - colon - 1).trim();
+        fields++;
+    }
+
+    private int indexOfColon() {
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3">RFC 7230 HTTP/1.1 3.3.3 Message Body Length</a>
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-6.3">RFC 7230 HTTP/1.1 6.3 Persistence</a>
+     */
+    private void endOfHeaders() throws IOException {
+        if (informational) {
+            // Informational responses are followed by the real response
+            informational = false;
+            fields = 0;
+            state = State.STATUS_LINE;
+            return;
+        }
+        String connection = value(CONNECTION).toLowerCase(Locale.ENGLISH);
+        if (connection.contains("close")) {
+            keepAlive = false;
+        } else if (connection.contains("keep-alive")) {
+            keepAlive = true;
+        }
+        if (head || status == 204 || status == 304) {
+            state = State.COMPLETE;
+        } else if (value(TRANSFER_ENCODING).toLowerCase(Locale.ENGLISH).endsWith("chunked")) {
+            state = State.CHUNK_SIZE;
+        } else if (!value(CONTENT_LENGTH).isEmpty()) {
+            remaining = contentLength();
+            // The Content-Length is only trusted as far as the bytes that actually arrive
+            body = new byte[(int) Math.min(remaining, MAX_PREALLOCATED_BODY_BYTES)];
+            state = remaining == 0 ? State.COMPLETE : State.FIXED_LENGTH_BODY;
+        } else {
+            keepAlive = false;
+            state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private long contentLength() throws IOException {
+        String contentLength = value(CONTENT_LENGTH);
+        try {
+            long length = Long.parseLong(contentLength);
+            if (length < 0 || length > MAX_BUFFERED_BODY_BYTES) {
+                throw new IOException(format("Cannot buffer a body with Content-Length %d", length));
+            }
+            return length;
+        } catch (NumberFormatException exception) {
+            throw new IOException(format("Malformed Content-Length '%s'", contentLength), exception);
+        }
+    }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7230#section-4.1">RFC 7230 HTTP/1.1 4.1 Chunked Transfer Coding</a>
+     */
+    private void chunkSize() throws IOException {
+        // Only the headers and trailers are limited in size, not the chunk size lines in between
+        headerBytes = 0;
+        long size = 0;
+        int digits = 0;
+        for (int i = 0; i < lineLength && line[i] != ';' && line[i] != ' ' && line[i] != '\t'; i++) {
+            int digit = Character.digit(line[i], 16);
+            if (digit < 0 || ++digits > 8) {
+                throw new IOException(format("Malformed chunk size '%s'", lineString(0, lineLength)));
+            }
+            size = size * 16 + digit;
+        }
+        if (digits == 0) {
+            throw new IOException(format("Malformed chunk size '%s'", lineString(0, lineLength)));
+        }
+        if (size == 0) {
+            state = State.TRAILER;
+        } else {
+            remaining = size;
+            state = State.CHUNK_DATA;
+        }
+    }
+
+    private int readBody(ByteBuffer input, long max) throws IOException {
+        int length = (int) Math.min(input.remaining(), max);
+        if (bodyLength + length > body.length) {
+            if ((long) bodyLength + length > MAX_BUFFERED_BODY_BYTES) {
+                throw new IOException(format("Cannot buffer a body of more than %d bytes", MAX_BUFFERED_BODY_BYTES));
+            }
+            long limit = state == State.FIXED_LENGTH_BODY ? bodyLength + remaining : MAX_BUFFERED_BODY_BYTES;
+            body = Arrays.copyOf(body, (int) Math.min(limit, Math.max(bodyLength + length, body.length * 2L)));
+        }
+        input.get(body, bodyLength, length);
+        bodyLength += length;
+        return length;
+    }
+
+    private String value(String name) {
+        for (int i = 0; i < fields; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return values[i];
+            }
+        }
+        return "";
+    }
+
+    private String lineString(int offset, int length) {
+        return new String(line, offset, length, ISO_8859_1);
+    }
+
+    private static final class ResponseFields implements Headers.Fields {
+        private final String[] names;
+        private final String[] values;
+        private final int size;
+
+        @SuppressWarnings("PMD.ArrayIsStoredDirectly") // The parser allocates new arrays for each response
+        ResponseFields(String[] names, String[] values, int size) {
+            this.names = names;
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String name(int field) {
+            return names[field];
+        }
+
+        @Override
+        public String value(int field) {
+            return values[field];
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+
+/**
+ * The connections to a single host and port, and the exchanges that are waiting for one of them.
+ */
+final class Route {
+    final String host;
+    final int port;
+    final ArrayDeque<Connection> connections = new ArrayDeque<>();
+    final ArrayDeque<Exchange> pending = new ArrayDeque<>();
+
+    private InetSocketAddress address;
+    private long resolvedAt;
+    private long dnsNanos;
+    private boolean resolving;
+
+    Route(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    static String key(String host, int port) {
+        return host + ':' + port;
+    }
+
+    /**
+     * Look up the address of the host. This blocks, so it must not be called on the event loop.
+     *
+     * @return The address, which is unresolved if the host could not be found.
+     */
+    InetSocketAddress lookUp() {
+        return new InetSocketAddress(unbracketed(host), port);
+    }
+
+    /**
+     * @return True if a lookup has been started and has not finished yet.
+     */
+    boolean resolving() {
+        return resolving;
+    }
+
+    void resolving(boolean resolving) {
+        this.resolving = resolving;
+    }
+
+    /**
+     * @param address The address that was looked up.
+     * @param dnsNanos How long the lookup took, which the next connection that is opened is charged for.
+     * @param now The current {@link System#nanoTime()}.
+     */
+    void resolved(InetSocketAddress address, long dnsNanos, long now) {
+        this.address = address;
+        this.dnsNanos = dnsNanos;
+        this.resolvedAt = now;
+        this.resolving = false;
+    }
+
+    /**
+     * @param now The current {@link System#nanoTime()}.
+     * @param ttlNanos How long an address is used for before it is looked up again.
+     * @return The address to open a new connection to, or null if it needs to be looked up first.
+     */
+    InetSocketAddress address(long now, long ttlNanos) {
+        if (address == null || now - resolvedAt > ttlNanos) {
+            return null;
+        }
+        return address;
+    }
+
+    /**
+     * @return How long the lookup of the address took, the first time this is called after each lookup, and zero
+     * after that.
+     */
+    long takeDnsNanos() {
+        long taken = dnsNanos;
+        dnsNanos = 0;
+        return taken;
+    }
+
+    Connection idleConnection() {
+        for (Connection connection : connections) {
+            if (connection.idle()) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param exchange The exchange that needs a connection.
+     * @param maxPipelined The maximum number of exchanges that may be in flight on one connection.
+     * @return The connection with the fewest exchanges in flight that the exchange can be pipelined onto, or null if
+     * there isn't one.
+     */
+    Connection pipelineConnectionFor(Exchange exchange, int maxPipelined) {
+        if (!exchange.idempotent) {
+            return null;
+        }
+        Connection leastBusy = null;
+        for (Connection connection : connections) {
+            if (connection.canPipeline() && connection.inFlight() < maxPipelined
+                    && (leastBusy == null || connection.inFlight() < leastBusy.inFlight())) {
+                leastBusy = connection;
+            }
+        }
+        return leastBusy;
+    }
+
+    /**
+     * {@link InetSocketAddress} expects IPv6 literals without the brackets that a {@link io.github.theangrydev.thinhttpclient.api.Url} keeps around them.
+     */
+    private static String unbracketed(String host) {
+        if (host.startsWith("[") && host.endsWith("]")) {
+            return host.substring(1, host.length() - 1);
+        }
+        return host;
+    }
+}
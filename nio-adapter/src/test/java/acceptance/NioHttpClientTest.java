@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package acceptance;
+
+import com.github.tomakehurst.wiremock.core.Options;
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.nio.NioHttpClient;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.givenThat;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class NioHttpClientTest extends HttpClientTest {
+
+    public NioHttpClientTest() {
+        super(NioHttpClient.nioHttpClient());
+    }
+
+    @Test
+    public void pipelinedResponsesAreMatchedToTheirRequests() throws Exception {
+        int requests = 20;
+        for (int i = 0; i < requests; i++) {
+            givenThat(get(urlEqualTo("/pipelined/" + i)).willReturn(aResponse()
+                    .withBody(String.valueOf(i))));
+        }
+        HttpClientConfiguration oneConnection = HttpClientConfiguration.builder().maxConnections(1).maxConnectionsPerHost(1).build();
+        try (HttpClient httpClient = NioHttpClient.nioHttpClient(oneConnection)) {
+            // Requests are only pipelined once the server has shown that it keeps the connection alive
+            httpClient.execute(Request.get().url(url("/pipelined/0")));
+
+            List<CompletableFuture<Response>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(httpClient.executeAsync(Request.get().url(url("/pipelined/" + i))));
+            }
+
+            for (int i = 0; i < requests; i++) {
+                assertThat(responses.get(i).get().body).isEqualTo(String.valueOf(i));
+            }
+        }
+    }
+
+    @Test
+    public void requestsThatCannotBeSentFailTheirFutures() throws Exception {
+        try (HttpClient httpClient = NioHttpClient.nioHttpClient()) {
+            CompletableFuture<Response> https = httpClient.executeAsync(Request.get().url("https://localhost/"));
+            CompletableFuture<Response> lineBreak = httpClient.executeAsync(Request.get().url(url("/")).header("Name", "line\r\nbreak"));
+
+            assertThatThrownBy(https::get).hasCauseInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(lineBreak::get).hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void unknownHostsFailWithoutAffectingOtherHosts() throws Exception {
+        givenThat(get(urlEqualTo("/known")).willReturn(aResponse().withBody("known")));
+        try (HttpClient httpClient = NioHttpClient.nioHttpClient()) {
+            assertThatThrownBy(() -> httpClient.execute(Request.get().url("http://unknown-host.invalid/")))
+                    .isInstanceOf(UnknownHostException.class);
+
+            assertThat(httpClient.execute(Request.get().url(url("/known"))).body).isEqualTo("known");
+        }
+    }
+
+    @Test
+    public void cancellingACallFreesItsConnection() throws Exception {
+        givenThat(get(urlEqualTo("/slow")).willReturn(aResponse().withFixedDelay(5000).withBody("slow")));
+        givenThat(get(urlEqualTo("/fast")).willReturn(aResponse().withBody("fast")));
+        HttpClientConfiguration oneConnection = HttpClientConfiguration.builder().maxConnections(1).maxConnectionsPerHost(1).build();
+        try (HttpClient httpClient = NioHttpClient.nioHttpClient(oneConnection)) {
+            CompletableFuture<Response> slow = httpClient.executeAsync(Request.get().url(url("/slow")));
+            Thread.sleep(100);
+
+            slow.cancel(true);
+
+            assertThat(httpClient.executeAsync(Request.get().url(url("/fast"))).get(2, SECONDS).body).isEqualTo("fast");
+        }
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + Options.DEFAULT_PORT + path;
+    }
+}
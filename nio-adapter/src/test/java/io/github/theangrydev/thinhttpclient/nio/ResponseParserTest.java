@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.nio;
+
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.Protocol;
+import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.Timings;
+import org.assertj.core.api.WithAssertions;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
+
+import static io.github.theangrydev.thinhttpclient.api.Compression.compression;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public class ResponseParserTest implements WithAssertions {
+
+    private final ResponseParser parser = new ResponseParser();
+
+    @Test
+    public void fixedLengthBody() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nName: value\r\n\r\nhello"))).isTrue();
+
+        Response response = parser.response();
+        assertThat(response.status).isEqualTo(200);
+        assertThat(response.header("name")).isEqualTo("value");
+        assertThat(response.body).isEqualTo("hello");
+        assertThat(parser.keepAlive()).isTrue();
+    }
+
+    @Test
+    public void responseSplitAcrossReads() throws IOException {
+        parser.begin(false);
+        String response = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello";
+
+        for (int i = 0; i < response.length() - 1; i++) {
+            assertThat(parser.parse(bytes(response.substring(i, i + 1)))).isFalse();
+        }
+
+        assertThat(parser.parse(bytes(response.substring(response.length() - 1)))).isTrue();
+        assertThat(parser.response().body).isEqualTo("hello");
+    }
+
+    @Test
+    public void largeFixedLengthBodyIsBufferedAsItArrives() throws IOException {
+        parser.begin(false);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            body.append((char) ('a' + i % 26));
+        }
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 200000\r\n\r\n"))).isFalse();
+        for (int i = 0; i < body.length() - 16 * 1024; i += 16 * 1024) {
+            assertThat(parser.parse(bytes(body.substring(i, i + 16 * 1024)))).isFalse();
+        }
+        assertThat(parser.parse(bytes(body.substring(body.length() / (16 * 1024) * 16 * 1024)))).isTrue();
+
+        assertThat(parser.response().body).isEqualTo(body.toString());
+    }
+
+    @Test
+    public void hugeContentLengthIsNotAllocatedUpFront() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 2000000000\r\n\r\nhello"))).isFalse();
+    }
+
+    @Test
+    public void chunkedBody() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5;extension\r\nhello\r\n7\r\n, world\r\n0\r\nTrailer: value\r\n\r\n"))).isTrue();
+
+        assertThat(parser.response().body).isEqualTo("hello, world");
+    }
+
+    @Test
+    public void pipelinedResponsesAreLeftInTheBuffer() throws IOException {
+        ByteBuffer input = bytes("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nfirstHTTP/1.1 201 Created\r\nContent-Length: 6\r\n\r\nsecond");
+
+        parser.begin(false);
+        assertThat(parser.parse(input)).isTrue();
+        assertThat(parser.response().body).isEqualTo("first");
+
+        parser.begin(false);
+        assertThat(parser.parse(input)).isTrue();
+        assertThat(parser.response().status).isEqualTo(201);
+        assertThat(parser.response().body).isEqualTo("second");
+        assertThat(input.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void headResponseHasNoBody() throws IOException {
+        parser.begin(true);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\n"))).isTrue();
+
+        assertThat(parser.response().body).isEmpty();
+    }
+
+    @Test
+    public void informationalResponsesAreSkipped() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 204 No Content\r\n\r\n"))).isTrue();
+
+        assertThat(parser.response().status).isEqualTo(204);
+    }
+
+    @Test
+    public void bodyWithoutALengthEndsWithTheConnection() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\n\r\nuntil the end"))).isFalse();
+        assertThat(parser.endOfStream()).isTrue();
+
+        assertThat(parser.response().body).isEqualTo("until the end");
+        assertThat(parser.keepAlive()).isFalse();
+    }
+
+    @Test
+    public void connectionCloseIsNotKeptAlive() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"))).isTrue();
+
+        assertThat(parser.keepAlive()).isFalse();
+    }
+
+    @Test
+    public void http10IsNotKeptAliveByDefault() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"))).isTrue();
+
+        assertThat(parser.response().protocol).isEqualTo(Protocol.HTTP_1_0);
+        assertThat(parser.keepAlive()).isFalse();
+    }
+
+    @Test
+    public void bodyIsDecodedWithTheContentTypeCharset() throws IOException {
+        parser.begin(false);
+
+        assertThat(parser.parse(bytes("HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=ISO-8859-1\r\nContent-Length: 1\r\n\r\n\u00e9"))).isTrue();
+
+        assertThat(parser.response().body).isEqualTo("\u00e9");
+    }
+
+    @Test
+    public void gzippedBodyIsDecompressed() throws IOException {
+        parser.begin(false);
+        byte[] gzipped = gzip("hello");
+        ByteBuffer response = ByteBuffer.allocate(256);
+        response.put(("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\nContent-Length: " + gzipped.length + "\r\n\r\n").getBytes(ISO_8859_1)).put(gzipped).flip();
+
+        assertThat(parser.parse(response)).isTrue();
+
+        Response decompressed = parser.response(compression(HttpClientConfiguration.defaults()), Timings.NONE);
+        assertThat(decompressed.body).isEqualTo("hello");
+        assertThat(decompressed.header("Content-Encoding")).isEmpty();
+        assertThat(decompressed.header("Content-Length")).isEmpty();
+    }
+
+    @Test
+    public void malformedStatusLine() {
+        parser.begin(false);
+
+        assertThatThrownBy(() -> parser.parse(bytes("SMTP/1.1 200 OK\r\n")))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Malformed status line 'SMTP/1.1 200 OK'");
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(text.getBytes(ISO_8859_1));
+        }
+        return gzipped.toByteArray();
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(ISO_8859_1));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Liam Williams <liam.williams@zoho.com>.
+ *
+ * This file is part of thin-http-client.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.theangrydev.thinhttpclient.okhttp;
+
+import io.github.theangrydev.thinhttpclient.api.Timings;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * Collects the {@link Timings} of one call from the events that OkHttp sends while making it. A listener is made for
+ * each call and attached to its request as a tag, so that it can be found again once the response has arrived.
+ * <p>
+ * The events of a call are sent one after the other, never at the same time, so no synchronization is needed.
+ *
+ * @see <a href="https://square.github.io/okhttp/events/">OkHttp Events</a>
+ */
+final class CallTimer extends EventListener {
+
+    static final EventListener.Factory FACTORY = call -> {
+        CallTimer timer = call.request().tag(CallTimer.class);
+        return timer == null ? EventListener.NONE : timer;
+    };
+
+    private long start = System.nanoTime();
+    private long phaseStart;
+    private long requestSent;
+    private boolean opened;
+    private boolean handshaken;
+    private boolean received;
+    private boolean read;
+    private boolean handshakeStarted;
+    private long dns;
+    private long connect;
+    private long tls;
+    private long timeToFirstByte;
+    private long body;
+
+    @Override
+    public void callStart(Call call) {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        phaseStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+        opened = true;
+        dns += System.nanoTime() - phaseStart;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+        opened = true;
+        handshakeStarted = false;
+        phaseStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        long now = System.nanoTime();
+        connect += now - phaseStart;
+        handshakeStarted = true;
+        phaseStart = now;
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        handshaken = true;
+        tls += System.nanoTime() - phaseStart;
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+        connected();
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException exception) {
+        connected();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, okhttp3.Request request) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestSent = System.nanoTime();
+    }
+
+    // OkHttp sends responseHeadersStart before it waits for the response, so the wait ends with responseHeadersEnd
+    @Override
+    public void responseHeadersEnd(Call call, okhttp3.Response response) {
+        received = true;
+        timeToFirstByte += System.nanoTime() - requestSent;
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        phaseStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        read = true;
+        body += System.nanoTime() - phaseStart;
+    }
+
+    /**
+     * @return The timings so far, which should be taken once the body has been read.
+     */
+    Timings timings() {
+        Timings.TimingsBuilder timings = Timings.builder()
+                .totalNanos(System.nanoTime() - start)
+                .connectionReused(!opened);
+        if (opened) {
+            timings.dnsNanos(dns).connectNanos(connect);
+        }
+        if (handshaken) {
+            timings.tlsNanos(tls);
+        }
+        if (received) {
+            timings.timeToFirstByteNanos(timeToFirstByte);
+        }
+        if (read) {
+            timings.bodyNanos(body);
+        }
+        return timings.build();
+    }
+
+    private void connected() {
+        if (!handshakeStarted) {
+            connect += System.nanoTime() - phaseStart;
+        }
+    }
+}
@@ -17,53 +17,265 @@
  */
 package io.github.theangrydev.thinhttpclient.okhttp;
 
+import io.github.theangrydev.thinhttpclient.api.Body;
+import io.github.theangrydev.thinhttpclient.api.CallTimeout;
+import io.github.theangrydev.thinhttpclient.api.Compression;
+import io.github.theangrydev.thinhttpclient.api.ConnectionPoolStats;
+import io.github.theangrydev.thinhttpclient.api.Header;
 import io.github.theangrydev.thinhttpclient.api.Headers;
 import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.Protocol;
 import io.github.theangrydev.thinhttpclient.api.Request;
 import io.github.theangrydev.thinhttpclient.api.Response;
+import io.github.theangrydev.thinhttpclient.api.StreamingResponse;
+import io.github.theangrydev.thinhttpclient.api.Timings;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.ConnectionPool;
 import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
 
 import java.io.IOException;
-import java.util.stream.Stream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
-import static io.github.theangrydev.thinhttpclient.api.Header.header;
+import static io.github.theangrydev.thinhttpclient.api.HeaderName.ACCEPT_ENCODING;
 import static io.github.theangrydev.thinhttpclient.api.HeaderName.CONTENT_TYPE;
 import static io.github.theangrydev.thinhttpclient.api.Method.HEAD;
-import static java.util.stream.Collectors.toList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @SuppressWarnings("PMD") //TODO: fix
 public class OkHttpClient implements HttpClient {
 
     private final okhttp3.OkHttpClient httpClient;
+    private final okhttp3.OkHttpClient plaintextHttpClient;
+    private final Compression compression;
 
-    private OkHttpClient(okhttp3.OkHttpClient httpClient) {
+    private OkHttpClient(okhttp3.OkHttpClient httpClient, okhttp3.OkHttpClient plaintextHttpClient, Compression compression) {
         this.httpClient = httpClient;
+        this.plaintextHttpClient = plaintextHttpClient;
+        this.compression = compression;
     }
 
     // TODO https://github.com/theangrydev/thin-http-client/issues/1
     // if a custom okhttp3.OkHttpClient is passed in, the dispatcher and connection pool may be shared amongst many
     // clients and so this class cannot be responsible for closing them
     public static HttpClient okHttpClient() {
+        return okHttpClient(HttpClientConfiguration.defaults());
+    }
+
+    /**
+     * The connection limits are applied to the {@link Dispatcher}, which only limits asynchronous calls, and to the
+     * number of idle connections that the {@link ConnectionPool} keeps. Over HTTP/2 many calls share one connection,
+     * so the per-host limit bounds the number of concurrent streams rather than connections.
+     * <p>
+     * HTTP/2 is negotiated with ALPN over TLS. OkHttp cannot offer both HTTP/2 with prior knowledge and HTTP/1.1 on
+     * the same client, so when {@link HttpClientConfiguration#http2PriorKnowledge} is set, plaintext calls are made
+     * through a second client that shares the same connection pool and dispatcher.
+     * <p>
+     * OkHttp only decompresses responses transparently when it was the one to ask for gzip, so the adapter asks for
+     * and decompresses compressed responses itself, following {@link HttpClientConfiguration#decompressResponses}.
+     * <p>
+     * The {@link Response#timings} are collected from OkHttp's events, by an {@link okhttp3.EventListener} for each call.
+     * <p>
+     * The {@link Request#timeout} and {@link Request#deadline} become OkHttp's call timeout, which also covers reading
+     * a streaming response. The per request connect and read timeouts are applied by an {@link Interceptor}.
+     *
+     * @param configuration The connection pooling and transport settings to use.
+     * @return A {@link HttpClient} backed by a new {@link okhttp3.OkHttpClient}.
+     */
+    public static HttpClient okHttpClient(HttpClientConfiguration configuration) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(configuration.maxConnections);
+        dispatcher.setMaxRequestsPerHost(configuration.maxConnectionsPerHost);
         okhttp3.OkHttpClient httpClient = new okhttp3.OkHttpClient.Builder()
-                .connectionPool(new ConnectionPool())
-                .dispatcher(new Dispatcher())
+                .connectionPool(new ConnectionPool(configuration.maxConnections, configuration.keepAlive.toMillis(), MILLISECONDS))
+                .dispatcher(dispatcher)
+                .socketFactory(new ConfiguredSocketFactory(configuration))
+                .eventListenerFactory(CallTimer.FACTORY)
+                .addInterceptor(OkHttpClient::requestTimeouts)
+                .connectTimeout(configuration.connectTimeout.toMillis(), MILLISECONDS)
+                .readTimeout(configuration.readTimeout.toMillis(), MILLISECONDS)
+                .writeTimeout(configuration.readTimeout.toMillis(), MILLISECONDS)
+                .protocols(asList(okhttp3.Protocol.HTTP_2, okhttp3.Protocol.HTTP_1_1))
                 .build();
-        return new OkHttpClient(httpClient);
+        if (configuration.http2PriorKnowledge) {
+            okhttp3.OkHttpClient plaintextHttpClient = httpClient.newBuilder()
+                    .protocols(singletonList(okhttp3.Protocol.H2_PRIOR_KNOWLEDGE))
+                    .build();
+            return new OkHttpClient(httpClient, plaintextHttpClient, Compression.compression(configuration));
+        }
+        return new OkHttpClient(httpClient, httpClient, Compression.compression(configuration));
     }
 
     @Override
     public Response execute(Request request) throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(request);
+        try {
+            return adaptResponse(request, newCall(request, callTimeout).execute());
+        } catch (IOException exception) {
+            throw callTimeout.exceeded(exception);
+        }
+    }
+
+    @Override
+    public StreamingResponse executeStreaming(Request request) throws IOException {
+        CallTimeout callTimeout = CallTimeout.start(request);
+        okhttp3.Response okHttpResponse;
+        try {
+            okHttpResponse = newCall(request, callTimeout).execute();
+        } catch (IOException exception) {
+            throw callTimeout.exceeded(exception);
+        }
+        Headers headers = adaptHeaders(okHttpResponse.headers());
+        // Closing the body stream releases the connection, or discards it if the body was not read to the end
+        InputStream body = okHttpResponse.body().byteStream();
+        if (compression.decompresses(headers)) {
+            try {
+                return StreamingResponse.streamingResponse(Compression.decompressedHeaders(headers), okHttpResponse.code(), Compression.decompress(headers, body));
+            } catch (IOException | RuntimeException exception) {
+                okHttpResponse.close();
+                throw exception;
+            }
+        }
+        return StreamingResponse.streamingResponse(headers, okHttpResponse.code(), body);
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        CallTimeout callTimeout;
+        Call call;
+        try {
+            callTimeout = CallTimeout.start(request);
+            call = newCall(request, callTimeout);
+        } catch (IOException exception) {
+            response.completeExceptionally(exception);
+            return response;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException exception) {
+                response.completeExceptionally(callTimeout.exceeded(exception));
+            }
+
+            @Override
+            public void onResponse(Call call, okhttp3.Response okHttpResponse) {
+                try {
+                    response.complete(adaptResponse(request, okHttpResponse));
+                } catch (IOException exception) {
+                    response.completeExceptionally(callTimeout.exceeded(exception));
+                }
+            }
+        });
+        // Cancelling the future cancels the call, which frees its connection and thread straight away
+        response.whenComplete((ignored, failure) -> {
+            if (response.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return response;
+    }
+
+    /**
+     * @return The connections in the pool, and the async calls that the {@link Dispatcher} has queued because the
+     * connection limits were reached.
+     */
+    @Override
+    public Optional<ConnectionPoolStats> connectionPoolStats() {
+        ConnectionPool connectionPool = httpClient.connectionPool();
+        return Optional.of(ConnectionPoolStats.connectionPoolStats(connectionPool.connectionCount(), connectionPool.idleConnectionCount(), httpClient.dispatcher().queuedCallsCount()));
+    }
+
+    private Call newCall(Request request, CallTimeout callTimeout) throws IOException {
+        okhttp3.Request okHttpRequest = adaptRequest(compression.compress(request));
+        Call call = okHttpRequest.isHttps() ? httpClient.newCall(okHttpRequest) : plaintextHttpClient.newCall(okHttpRequest);
+        if (callTimeout.isLimited()) {
+            // A timeout of zero would mean no timeout at all
+            call.timeout().timeout(Math.max(1, callTimeout.remainingNanos()), NANOSECONDS);
+        }
+        return call;
+    }
+
+    private static okhttp3.Response requestTimeouts(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request().tag(Request.class);
+        Interceptor.Chain timedChain = chain;
+        if (request != null && request.connectTimeout.isPresent()) {
+            timedChain = timedChain.withConnectTimeout(millis(request.connectTimeout.get()), MILLISECONDS);
+        }
+        if (request != null && request.readTimeout.isPresent()) {
+            int readTimeout = millis(request.readTimeout.get());
+            timedChain = timedChain.withReadTimeout(readTimeout, MILLISECONDS).withWriteTimeout(readTimeout, MILLISECONDS);
+        }
+        return timedChain.proceed(timedChain.request());
+    }
+
+    private static int millis(Duration duration) {
+        return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
+    }
+
+    private okhttp3.Request adaptRequest(Request request) {
         String contentType = request.header(CONTENT_TYPE);
-        okhttp3.Request okHttpRequest = new okhttp3.Request.Builder()
+        okhttp3.Request.Builder okHttpRequest = new okhttp3.Request.Builder()
                 .method(request.method.name, adaptBody(request, contentType))
-                .url(request.url)
+                .url(request.url.toString())
                 .headers(adaptHeaders(request.headers))
-                .build();
-        okhttp3.Response okHttpResponse = httpClient.newCall(okHttpRequest).execute();
-        return Response.response(adaptHeaders(okHttpResponse.headers()), okHttpResponse.code(), adaptBody(request, okHttpResponse));
+                .tag(CallTimer.class, new CallTimer())
+                .tag(Request.class, request);
+        if (!compression.decompressesResponses() && request.header(ACCEPT_ENCODING).isEmpty()) {
+            // Otherwise OkHttp would ask for gzip and decompress the response itself
+            okHttpRequest.header(ACCEPT_ENCODING, "identity");
+        }
+        return okHttpRequest.build();
+    }
+
+    private Response adaptResponse(Request request, okhttp3.Response okHttpResponse) throws IOException {
+        try {
+            Headers headers = adaptHeaders(okHttpResponse.headers());
+            String body;
+            if (compression.decompresses(headers)) {
+                body = decompressedBody(request, headers, okHttpResponse);
+                headers = Compression.decompressedHeaders(headers);
+            } else {
+                body = adaptBody(request, okHttpResponse);
+            }
+            return Response.response(adaptProtocol(okHttpResponse.protocol()), headers, okHttpResponse.code(), body, timings(okHttpResponse));
+        } finally {
+            okHttpResponse.close();
+        }
+    }
+
+    // Taken once the body has been read, so that reading it is included
+    private Timings timings(okhttp3.Response okHttpResponse) {
+        CallTimer timer = okHttpResponse.request().tag(CallTimer.class);
+        return timer == null ? Timings.NONE : timer.timings();
+    }
+
+    private Protocol adaptProtocol(okhttp3.Protocol protocol) {
+        switch (protocol) {
+            case HTTP_1_0:
+                return Protocol.HTTP_1_0;
+            case HTTP_1_1:
+                return Protocol.HTTP_1_1;
+            case HTTP_2:
+            case H2_PRIOR_KNOWLEDGE:
+                return Protocol.HTTP_2;
+            default:
+                return Protocol.protocol(protocol.toString());
+        }
     }
 
     private String adaptBody(Request request, okhttp3.Response okHttpResponse) throws IOException {
@@ -73,24 +285,86 @@ public class OkHttpClient implements HttpClient {
         return okHttpResponse.body().string();
     }
 
+    private String decompressedBody(Request request, Headers headers, okhttp3.Response okHttpResponse) throws IOException {
+        if (HEAD.equals(request.method)) {
+            return "";
+        }
+        MediaType contentType = okHttpResponse.body().contentType();
+        Charset charset = contentType == null ? UTF_8 : contentType.charset(UTF_8);
+        try (BufferedSource body = Okio.buffer(Okio.source(Compression.decompress(headers, okHttpResponse.body().byteStream())))) {
+            return body.readString(charset);
+        }
+    }
+
     private RequestBody adaptBody(Request request, String contentType) {
         if (request.method.hasBody) {
-            return RequestBody.create(MediaType.parse(contentType), request.body);
+            return new BodyRequestBody(request.body, MediaType.parse(contentType));
         } else {
             return null;
         }
     }
 
     private Headers adaptHeaders(okhttp3.Headers headers) {
-        return Headers.headers(headers.names().stream()
-                .flatMap(name -> headers.values(name).stream().map(value -> header(name, value)))
-                .collect(toList()));
+        return Headers.view(new OkHttpHeaderFields(headers));
     }
 
     private okhttp3.Headers adaptHeaders(Headers headers) {
-        return okhttp3.Headers.of(headers.stream()
-                .flatMap(header -> Stream.of(header.name, header.value))
-                .toArray(String[]::new));
+        okhttp3.Headers.Builder okHttpHeaders = new okhttp3.Headers.Builder();
+        for (Header header : headers) {
+            okHttpHeaders.add(header.name, header.value);
+        }
+        return okHttpHeaders.build();
+    }
+
+    private static final class OkHttpHeaderFields implements Headers.Fields {
+        private final okhttp3.Headers headers;
+
+        OkHttpHeaderFields(okhttp3.Headers headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public int size() {
+            return headers.size();
+        }
+
+        @Override
+        public String name(int field) {
+            return headers.name(field);
+        }
+
+        @Override
+        public String value(int field) {
+            return headers.value(field);
+        }
+    }
+
+    /**
+     * Writes the {@link Body} straight to the connection, rather than copying it into an intermediate buffer.
+     */
+    private static final class BodyRequestBody extends RequestBody {
+        private final Body body;
+        private final MediaType mediaType;
+
+        BodyRequestBody(Body body, MediaType mediaType) {
+            this.body = body;
+            this.mediaType = mediaType;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            body.writeTo(sink.outputStream());
+        }
     }
 
     @Override
@@ -17,11 +17,67 @@
  */
 package acceptance;
 
+import io.github.theangrydev.thinhttpclient.api.HttpClient;
+import io.github.theangrydev.thinhttpclient.api.HttpClientConfiguration;
+import io.github.theangrydev.thinhttpclient.api.Protocol;
+import io.github.theangrydev.thinhttpclient.api.Request;
+import io.github.theangrydev.thinhttpclient.api.Response;
 import io.github.theangrydev.thinhttpclient.okhttp.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.singletonList;
 
 public class OkHttpClientTest extends HttpClientTest {
 
     public OkHttpClientTest() {
         super(OkHttpClient.okHttpClient());
     }
+
+    /**
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3.4">RFC 7540 HTTP/2 3.4 Starting HTTP/2 with Prior Knowledge</a>
+     */
+    @Test
+    public void plaintextCallsAreMultiplexedOverHttp2WithPriorKnowledge() throws Exception {
+        int calls = 100;
+        try (MockWebServer server = new MockWebServer()) {
+            server.setProtocols(singletonList(okhttp3.Protocol.H2_PRIOR_KNOWLEDGE));
+            for (int i = 0; i <= calls; i++) {
+                server.enqueue(new MockResponse().setBody("body"));
+            }
+            server.start();
+            String url = server.url("/test").toString();
+            HttpClientConfiguration configuration = HttpClientConfiguration.builder()
+                    .maxConnections(calls)
+                    .maxConnectionsPerHost(calls)
+                    .http2PriorKnowledge(true)
+                    .build();
+
+            try (HttpClient httpClient = OkHttpClient.okHttpClient(configuration)) {
+                // Open the connection first, so that the concurrent calls do not race to open their own
+                assertThat(httpClient.execute(Request.get().url(url)).protocol).isEqualTo(Protocol.HTTP_2);
+
+                List<CompletableFuture<Response>> responses = new ArrayList<>();
+                for (int i = 0; i < calls; i++) {
+                    responses.add(httpClient.executeAsync(Request.get().url(url)));
+                }
+                for (CompletableFuture<Response> response : responses) {
+                    assertThat(response.get().protocol).isEqualTo(Protocol.HTTP_2);
+                }
+            }
+
+            int connections = 0;
+            for (int i = 0; i <= calls; i++) {
+                if (server.takeRequest().getSequenceNumber() == 0) {
+                    connections++;
+                }
+            }
+            assertThat(connections).isEqualTo(1);
+        }
+    }
 }